@@ -54,6 +54,16 @@ public class JUnitLaunchConfigurationConstants {
 
 	public static final String ATTR_TEST_RUNNER_KIND= JUnitCorePlugin.PLUGIN_ID+".TEST_KIND"; //$NON-NLS-1$
 
+	/**
+	 * The number of threads that run the test classes, or 1 to run them one after the other.
+	 * Defaults to 1.
+	 * <p>
+	 * The attribute is not shown on the launch configuration tabs, it has to be set in the launch
+	 * configuration by clients.
+	 * </p>
+	 */
+	public static final String ATTR_TEST_THREADS= JUnitCorePlugin.PLUGIN_ID+".TEST_THREADS"; //$NON-NLS-1$
+
 	public static ITestKind getTestRunnerKind(ILaunchConfiguration launchConfiguration) {
 		try {
 			String loaderId = launchConfiguration.getAttribute(JUnitLaunchConfigurationConstants.ATTR_TEST_RUNNER_KIND, (String) null);
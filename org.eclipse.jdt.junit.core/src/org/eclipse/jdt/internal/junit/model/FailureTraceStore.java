@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.eclipse.jdt.junit.model.ITestElement.FailureTrace;
+
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+
+/**
+ * Holds the failure traces of the test elements of a test run. The traces are kept in memory up
+ * to a budget, further traces are spilled to a temporary file and are only read back when they
+ * are requested. If the file cannot be written, all traces are kept in memory.
+ * <p>
+ * A store is owned by a {@link TestRoot} and is disposed with it. Left over files are deleted
+ * together with the swap files of the test run history.
+ * </p>
+ */
+final class FailureTraceStore {
+
+	/**
+	 * Number of characters of traces kept in memory before traces are spilled to the file.
+	 */
+	private static final int MEMORY_BUDGET= 1 << 20;
+
+	private static final int NULL_LENGTH= -1;
+
+	private int fMemoryBudget= MEMORY_BUDGET;
+
+	private int fCharsInMemory;
+
+	private File fFile;
+	private RandomAccessFile fAccess;
+
+	/**
+	 * <code>true</code> iff the file cannot be used, because it could not be written or because
+	 * the store has been disposed
+	 */
+	private boolean fFileUnusable;
+
+	/**
+	 * Sets the number of characters of traces kept in memory. Traces that are already stored are
+	 * not moved.
+	 *
+	 * @param budget the number of characters
+	 */
+	synchronized void setMemoryBudget(int budget) {
+		fMemoryBudget= budget;
+	}
+
+	/**
+	 * Stores a failure trace, replacing a trace stored before.
+	 *
+	 * @param previous the handle of the trace to replace, or <code>null</code>
+	 * @param trace the trace, can be <code>null</code>
+	 * @param expected the expected result, can be <code>null</code>
+	 * @param actual the actual result, can be <code>null</code>
+	 * @return the trace, or a handle to pass to {@link #load(Object)}
+	 */
+	public synchronized Object store(Object previous, String trace, String expected, String actual) {
+		release(previous);
+		int chars= length(trace) + length(expected) + length(actual);
+		if (!fFileUnusable && fCharsInMemory + chars > fMemoryBudget) {
+			try {
+				long offset= previous instanceof Long ? ((Long) previous).longValue() : -1;
+				return new Long(write(offset, trace, expected, actual));
+			} catch (IOException e) {
+				JUnitCorePlugin.log(e);
+				fFileUnusable= true;
+			} catch (IllegalStateException e) {
+				// no history directory
+				fFileUnusable= true;
+			}
+		}
+		fCharsInMemory+= chars;
+		return new FailureTrace(trace, expected, actual);
+	}
+
+	/**
+	 * Releases the memory of a stored failure trace. The handle must not be used anymore.
+	 *
+	 * @param handle the handle returned by {@link #store(Object, String, String, String)}, or
+	 *            <code>null</code>
+	 */
+	public synchronized void release(Object handle) {
+		if (handle instanceof FailureTrace) {
+			FailureTrace failure= (FailureTrace) handle;
+			fCharsInMemory-= length(failure.getTrace()) + length(failure.getExpected()) + length(failure.getActual());
+		}
+	}
+
+	/**
+	 * Returns a stored failure trace.
+	 *
+	 * @param handle the handle returned by {@link #store(Object, String, String, String)}
+	 * @return the failure trace, or <code>null</code> if it cannot be read
+	 */
+	public synchronized FailureTrace load(Object handle) {
+		if (handle instanceof FailureTrace)
+			return (FailureTrace) handle;
+		if (fAccess == null)
+			return null; // disposed
+
+		try {
+			fAccess.seek(((Long) handle).longValue());
+			String trace= readString();
+			String expected= readString();
+			String actual= readString();
+			return new FailureTrace(trace, expected, actual);
+		} catch (IOException e) {
+			JUnitCorePlugin.log(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the file of the store. Traces that have been spilled to the file cannot be loaded
+	 * anymore.
+	 */
+	public synchronized void dispose() {
+		fFileUnusable= true;
+		if (fAccess != null) {
+			try {
+				fAccess.close();
+			} catch (IOException e) {
+				// the file is deleted anyway
+			}
+			fAccess= null;
+		}
+		if (fFile != null) {
+			fFile.delete();
+			fFile= null;
+		}
+	}
+
+	/**
+	 * Writes a failure trace to the file. The record of the previous trace is overwritten if the
+	 * new record fits into it or if it is the last record of the file.
+	 *
+	 * @param previous the offset of the record of the previous trace, or <code>-1</code>
+	 * @param trace the trace, can be <code>null</code>
+	 * @param expected the expected result, can be <code>null</code>
+	 * @param actual the actual result, can be <code>null</code>
+	 * @return the offset of the record
+	 * @throws IOException if the file cannot be written
+	 */
+	private long write(long previous, String trace, String expected, String actual) throws IOException {
+		if (fAccess == null) {
+			fFile= File.createTempFile("traces", ".bin", JUnitCorePlugin.getHistoryDirectory()); //$NON-NLS-1$ //$NON-NLS-2$
+			fAccess= new RandomAccessFile(fFile, "rw"); //$NON-NLS-1$
+		}
+
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream(length(trace) + length(expected) + length(actual) + 12);
+		DataOutputStream out= new DataOutputStream(bytes);
+		writeString(out, trace);
+		writeString(out, expected);
+		writeString(out, actual);
+		out.flush();
+
+		long length= fAccess.length();
+		long offset= length;
+		if (previous >= 0) {
+			long previousEnd= previous + recordLength(previous);
+			if (previousEnd == length) {
+				offset= previous;
+				fAccess.setLength(offset + bytes.size());
+			} else if (previousEnd - previous >= bytes.size()) {
+				offset= previous;
+			}
+		}
+		fAccess.seek(offset);
+		fAccess.write(bytes.toByteArray());
+		return offset;
+	}
+
+	private long recordLength(long offset) throws IOException {
+		long position= offset;
+		for (int i= 0; i < 3; i++) {
+			fAccess.seek(position);
+			int length= fAccess.readInt();
+			position+= 4 + (length != NULL_LENGTH ? length : 0);
+		}
+		return position - offset;
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(NULL_LENGTH);
+		} else {
+			byte[] bytes= string.getBytes("UTF-8"); //$NON-NLS-1$
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private String readString() throws IOException {
+		int length= fAccess.readInt();
+		if (length == NULL_LENGTH)
+			return null;
+		byte[] bytes= new byte[length];
+		fAccess.readFully(bytes);
+		return new String(bytes, "UTF-8"); //$NON-NLS-1$
+	}
+
+	private static int length(String string) {
+		return string != null ? string.length() : 0;
+	}
+}
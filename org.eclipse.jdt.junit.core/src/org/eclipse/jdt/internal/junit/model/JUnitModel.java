@@ -15,6 +15,7 @@ package org.eclipse.jdt.internal.junit.model;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
@@ -68,6 +69,12 @@ import org.eclipse.jdt.internal.junit.model.TestElement.Status;
  */
 public final class JUnitModel {
 
+	/**
+	 * Size of test run files in bytes above which the children of top-level suites are only
+	 * loaded when they are requested, see {@link TestRunHandler#setLazyLoading(boolean)}.
+	 */
+	public static final long LAZY_LOADING_FILE_SIZE= 4 * 1024 * 1024;
+
 	private final class JUnitLaunchListener implements ILaunchListener {
 
 		/**
@@ -370,6 +377,7 @@ public final class JUnitModel {
 //			parserFactory.setValidating(true); // TODO: add DTD and debug flag
 			SAXParser parser= parserFactory.newSAXParser();
 			TestRunHandler handler= new TestRunHandler();
+			handler.setLazyLoading(file.length() > LAZY_LOADING_FILE_SIZE);
 			parser.parse(file, handler);
 			TestRunSession session= handler.getTestRunSession();
 			JUnitCorePlugin.getModel().addTestRunSession(session);
@@ -401,6 +409,7 @@ public final class JUnitModel {
 		monitor.beginTask(ModelMessages.JUnitModel_importing_from_url, IProgressMonitor.UNKNOWN);
 		final String trimmedUrl= url.trim().replaceAll("\r\n?|\n", ""); //$NON-NLS-1$ //$NON-NLS-2$
 		final TestRunHandler handler= new TestRunHandler(monitor);
+		handler.setLazyLoading(true); // size is not known in advance
 		
 		final CoreException[] exception= { null };
 		final TestRunSession[] session= { null };
@@ -460,6 +469,7 @@ public final class JUnitModel {
 //			parserFactory.setValidating(true); // TODO: add DTD and debug flag
 			SAXParser parser= parserFactory.newSAXParser();
 			TestRunHandler handler= new TestRunHandler(testRunSession);
+			handler.setLazyLoading(swapFile.length() > LAZY_LOADING_FILE_SIZE);
 			parser.parse(swapFile, handler);
 		} catch (ParserConfigurationException e) {
 			throwImportError(swapFile, e);
@@ -473,6 +483,29 @@ public final class JUnitModel {
 		}
 	}
 
+	/**
+	 * Imports the children of a test suite that have been unloaded.
+	 *
+	 * @param in the stored children, see {@link TestSuiteStore#load(Object)}
+	 * @param testRunSession the test run session of the suite
+	 * @param suite the suite
+	 * @throws CoreException if the import failed
+	 */
+	static void importIntoTestSuite(InputStream in, TestRunSession testRunSession, TestSuiteElement suite) throws CoreException {
+		try {
+			SAXParserFactory parserFactory= SAXParserFactory.newInstance();
+			SAXParser parser= parserFactory.newSAXParser();
+			TestRunHandler handler= new TestRunHandler(testRunSession, suite);
+			parser.parse(in, handler);
+		} catch (ParserConfigurationException e) {
+			throwImportError(e);
+		} catch (SAXException e) {
+			throwImportError(e);
+		} catch (IOException e) {
+			throwImportError(e);
+		}
+	}
+
 	/**
 	 * Exports the given test run session.
 	 *
@@ -503,6 +536,16 @@ public final class JUnitModel {
 		}
 	}
 
+	/**
+	 * Exports the given test run session. The document is written while the test elements are
+	 * visited, it is never built in memory. Children of suites that are not loaded are copied
+	 * from their store without loading them.
+	 *
+	 * @param testRunSession the test run session
+	 * @param out the destination
+	 * @throws TransformerFactoryConfigurationError if no transformer is available
+	 * @throws TransformerException if an error occurred
+	 */
 	public static void exportTestRunSession(TestRunSession testRunSession, OutputStream out)
 			throws TransformerFactoryConfigurationError, TransformerException {
 
@@ -534,6 +577,11 @@ public final class JUnitModel {
 				e));
 	}
 
+	private static void throwImportError(Exception e) throws CoreException {
+		throw new CoreException(new org.eclipse.core.runtime.Status(IStatus.ERROR,
+				JUnitCorePlugin.getPluginId(), ModelMessages.JUnitModel_could_not_import, e));
+	}
+
 	private static void throwImportError(File file, Exception e) throws CoreException {
 		throw new CoreException(new org.eclipse.core.runtime.Status(IStatus.ERROR,
 				JUnitCorePlugin.getPluginId(),
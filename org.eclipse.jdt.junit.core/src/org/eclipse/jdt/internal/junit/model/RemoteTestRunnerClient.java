@@ -12,8 +12,11 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -27,6 +30,7 @@ import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.SafeRunner;
 
 import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageReader;
 import org.eclipse.jdt.internal.junit.runner.MessageIds;
 
 /**
@@ -219,6 +223,7 @@ public class RemoteTestRunnerClient {
 	private int fPort= -1;
 	private PrintWriter fWriter;
 	private PushbackReader fPushbackReader;
+	private BinaryMessageReader fBinaryReader;
 	private String fLastLineDelimiter;
 	/**
 	 * The protocol version
@@ -256,19 +261,29 @@ public class RemoteTestRunnerClient {
 					System.out.println("Creating server socket "+fServerPort); //$NON-NLS-1$
 				fServerSocket= new ServerSocket(fServerPort);
 				fSocket= fServerSocket.accept();
-				try {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream(), "UTF-8"))); //$NON-NLS-1$
-				} catch (UnsupportedEncodingException e) {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream())));
-				}
 				try {
 				    fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream(), "UTF-8"), true); //$NON-NLS-1$
 	            } catch (UnsupportedEncodingException e1) {
 	                fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream()), true);
 	            }
-				String message;
-				while(fPushbackReader != null && (message= readMessage(fPushbackReader)) != null)
-					receiveMessage(message);
+				InputStream in= new BufferedInputStream(fSocket.getInputStream());
+				String message= readFirstMessage(in);
+				if (message != null && message.equals(MessageIds.BINARY_PROTOCOL + MessageIds.BINARY_PROTOCOL_VERSION)) {
+					fBinaryReader= new BinaryMessageReader(in);
+					fLastLineDelimiter= "\n"; //$NON-NLS-1$
+					while (fBinaryReader != null && fBinaryReader.readMessage())
+						receiveBinaryMessage(fBinaryReader.getHeader(), fBinaryReader.getArgument());
+				} else {
+					try {
+						fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(in, "UTF-8"))); //$NON-NLS-1$
+					} catch (UnsupportedEncodingException e) {
+						fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(in)));
+					}
+					if (message != null)
+						receiveMessage(message);
+					while(fPushbackReader != null && (message= readMessage(fPushbackReader)) != null)
+						receiveMessage(message);
+				}
 			} catch (SocketException e) {
 				notifyTestRunTerminated();
 			} catch (IOException e) {
@@ -324,6 +339,13 @@ public class RemoteTestRunnerClient {
 			}
 		} catch(IOException e) {
 		}
+		try {
+			if (fBinaryReader != null) {
+				fBinaryReader.close();
+				fBinaryReader= null;
+			}
+		} catch(IOException e) {
+		}
 		try {
 			if (fSocket != null) {
 				fSocket.close();
@@ -370,10 +392,59 @@ public class RemoteTestRunnerClient {
 		return buf.toString();
 	}
 
+	/*
+	 * Reads the first message byte by byte, so that the rest of the stream can be read
+	 * in the binary format if the RemoteTestRunner switches to it.
+	 */
+	private String readFirstMessage(InputStream in) throws IOException {
+		ByteArrayOutputStream buf= new ByteArrayOutputStream(128);
+		int b;
+		while ((b= in.read()) != -1) {
+			if (b == '\n') {
+				fLastLineDelimiter= "\n"; //$NON-NLS-1$
+				return buf.toString("UTF-8"); //$NON-NLS-1$
+			} else if (b == '\r') {
+				in.mark(1);
+				if (in.read() == '\n') {
+					fLastLineDelimiter= "\r\n"; //$NON-NLS-1$
+				} else {
+					in.reset();
+					fLastLineDelimiter= "\r"; //$NON-NLS-1$
+				}
+				return buf.toString("UTF-8"); //$NON-NLS-1$
+			} else {
+				buf.write(b);
+			}
+		}
+		fLastLineDelimiter= null;
+		if (buf.size() == 0)
+			return null;
+		return buf.toString("UTF-8"); //$NON-NLS-1$
+	}
+
 	private void receiveMessage(String message) {
 	    fCurrentState= fCurrentState.readMessage(message);
 	}
 
+	private void receiveBinaryMessage(String header, String arg) {
+		if (fCurrentState == fDefaultState) {
+			// the most frequent messages don't need to be parsed
+			if (MessageIds.TEST_START.equals(header)) {
+				notifyTestStarted(arg);
+				return;
+			}
+			if (MessageIds.TEST_END.equals(header)) {
+				notifyTestEnded(arg);
+				return;
+			}
+			if (MessageIds.TEST_TREE.equals(header)) {
+				notifyTestTreeEntry(arg);
+				return;
+			}
+		}
+		receiveMessage(header != null ? header + arg : arg);
+	}
+
 	private void scanOldReranMessage(String arg) {
 		// OLD V1 format
 		// format: className" "testName" "status
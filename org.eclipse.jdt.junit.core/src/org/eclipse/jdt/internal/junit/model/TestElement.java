@@ -164,13 +164,30 @@ public abstract class TestElement implements ITestElement {
 	}
 
 	private final TestSuiteElement fParent;
+	/**
+	 * The test id if it is a number as assigned by the test runner, or <code>-1</code>.
+	 */
+	private final int fIndex;
+	/**
+	 * The test id, or <code>null</code> if the id is {@link #fIndex}.
+	 */
 	private final String fId;
+	/**
+	 * The test name, without the {@link #fNameQualifier}.
+	 */
 	private String fTestName;
+	/**
+	 * The part of the test name that is shared by many test elements and pooled in the
+	 * {@link TestRoot}, like <code>"(p.TestClass)"</code> for test methods, or <code>null</code>.
+	 */
+	private String fNameQualifier;
 
 	private Status fStatus;
-	private String fTrace;
-	private String fExpected;
-	private String fActual;
+	/**
+	 * The failure trace as returned by {@link FailureTraceStore#store(Object, String, String, String)}, or
+	 * <code>null</code>.
+	 */
+	private Object fFailure;
 
 	/**
 	 * Running time in seconds. Contents depend on the current {@link #getProgressState()}:
@@ -192,8 +209,9 @@ public abstract class TestElement implements ITestElement {
 		Assert.isNotNull(id);
 		Assert.isNotNull(testName);
 		fParent= parent;
-		fId= id;
-		fTestName= testName;
+		fIndex= toIndex(id);
+		fId= fIndex == -1 ? id : null;
+		initName(testName);
 		fStatus= Status.NOT_RUN;
 		if (parent != null)
 			parent.addChild(this);
@@ -236,11 +254,18 @@ public abstract class TestElement implements ITestElement {
 	public FailureTrace getFailureTrace() {
 		Result testResult= getTestResult(false);
 		if (testResult == Result.ERROR || testResult == Result.FAILURE) {
-			return new FailureTrace(fTrace, fExpected, fActual);
+			FailureTrace failure= getFailure();
+			return failure != null ? failure : new FailureTrace(null, null, null);
 		}
 		return null;
 	}
 
+	private FailureTrace getFailure() {
+		if (fFailure == null)
+			return null;
+		return getRoot().getFailureTraceStore().load(fFailure);
+	}
+
 	/**
 	 * @return the parent suite, or <code>null</code> for the root
 	 */
@@ -249,15 +274,62 @@ public abstract class TestElement implements ITestElement {
 	}
 
 	public String getId() {
-		return fId;
+		return fId != null ? fId : Integer.toString(fIndex);
+	}
+
+	/**
+	 * @return the test id if it is a number as assigned by the test runner, or <code>-1</code>
+	 * @see #toIndex(String)
+	 */
+	public int getIndex() {
+		return fIndex;
+	}
+
+	/**
+	 * Returns the number represented by a test id. The test runner assigns ids that are
+	 * non-negative numbers.
+	 *
+	 * @param id the test id
+	 * @return the number, or <code>-1</code> if the id is not the canonical representation of a
+	 *         non-negative number
+	 */
+	public static int toIndex(String id) {
+		int length= id.length();
+		if (length == 0 || length > 9 || (id.charAt(0) == '0' && length > 1))
+			return -1;
+		int index= 0;
+		for (int i= 0; i < length; i++) {
+			char ch= id.charAt(i);
+			if (ch < '0' || ch > '9')
+				return -1;
+			index= index * 10 + ch - '0';
+		}
+		return index;
 	}
 
 	public String getTestName() {
-		return fTestName;
+		if (fNameQualifier == null)
+			return fTestName;
+		return fTestName + fNameQualifier;
 	}
 
 	public void setName(String name) {
-		fTestName= name;
+		initName(name);
+	}
+
+	/*
+	 * Splits off the qualifier of names like "testMethod(p.TestClass)", so that the elements of
+	 * the test methods of a class share the qualifier.
+	 */
+	private void initName(String name) {
+		int index= name.indexOf('(');
+		if (fParent != null && index > 0 && name.charAt(name.length() - 1) == ')') {
+			fTestName= new String(name.substring(0, index)); // don't keep the characters of the qualifier alive
+			fNameQualifier= fParent.getRoot().intern(name.substring(index));
+		} else {
+			fTestName= name;
+			fNameQualifier= null;
+		}
 	}
 
 	public void setStatus(Status status) {
@@ -277,35 +349,48 @@ public abstract class TestElement implements ITestElement {
 	}
 
 	public void setStatus(Status status, String trace, String expected, String actual) {
-		if (trace != null && fTrace != null) {
+		FailureTrace failure= getFailure();
+		if (trace != null && failure != null && failure.getTrace() != null) {
 			//don't overwrite first trace if same test run logs multiple errors
-			fTrace= fTrace + trace;
+			setFailure(failure.getTrace() + trace, failure.getExpected(), failure.getActual());
 		} else {
-			fTrace= trace;
-			fExpected= expected;
-			fActual= actual;
+			setFailure(trace, expected, actual);
 		}
 		setStatus(status);
 	}
 
+	private void setFailure(String trace, String expected, String actual) {
+		FailureTraceStore store= getRoot().getFailureTraceStore();
+		if (trace == null && expected == null && actual == null) {
+			store.release(fFailure);
+			fFailure= null;
+		} else {
+			fFailure= store.store(fFailure, trace, expected, actual);
+		}
+	}
+
 	public Status getStatus() {
 		return fStatus;
 	}
 
 	public String getTrace() {
-		return fTrace;
+		FailureTrace failure= getFailure();
+		return failure != null ? failure.getTrace() : null;
 	}
 
 	public String getExpected() {
-		return fExpected;
+		FailureTrace failure= getFailure();
+		return failure != null ? failure.getExpected() : null;
 	}
 
 	public String getActual() {
-		return fActual;
+		FailureTrace failure= getFailure();
+		return failure != null ? failure.getActual() : null;
 	}
 
 	public boolean isComparisonFailure() {
-		return fExpected != null && fActual != null;
+		FailureTrace failure= getFailure();
+		return failure != null && failure.getExpected() != null && failure.getActual() != null;
 	}
 
 	/**
@@ -314,6 +399,8 @@ public abstract class TestElement implements ITestElement {
 	 * @see org.eclipse.jdt.internal.junit.runner.MessageIds#TEST_IDENTIFIER_MESSAGE_FORMAT
 	 */
 	public String getClassName() {
+		if (fNameQualifier != null)
+			return extractClassName(fNameQualifier);
 		return extractClassName(getTestName());
 	}
 
@@ -10,12 +10,23 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.junit.model;
 
+import java.util.HashMap;
+
 import org.eclipse.jdt.junit.model.ITestRunSession;
 
 public class TestRoot extends TestSuiteElement {
 
 	private final ITestRunSession fSession;
 
+	/**
+	 * Pool of the name parts shared by the test elements, see {@link #intern(String)}.
+	 */
+	private final HashMap/*<String, String>*/ fNamePool= new HashMap();
+
+	private final FailureTraceStore fFailureTraceStore= new FailureTraceStore();
+
+	private final TestSuiteStore fTestSuiteStore= new TestSuiteStore();
+
 	public TestRoot(ITestRunSession session) {
 		super(null, "-1", session.getTestRunName(), 1); //$NON-NLS-1$
 		fSession= session;
@@ -28,4 +39,47 @@ public class TestRoot extends TestSuiteElement {
 	public ITestRunSession getTestRunSession() {
 		return fSession;
 	}
+
+	/**
+	 * Returns the pooled copy of a string, for name parts that many test elements share, like
+	 * the class names of test methods.
+	 *
+	 * @param string the string
+	 * @return the pooled string, equal to <code>string</code>
+	 */
+	String intern(String string) {
+		String pooled= (String) fNamePool.get(string);
+		if (pooled == null) {
+			pooled= new String(string); // don't keep the characters of a larger string alive
+			fNamePool.put(pooled, pooled);
+		}
+		return pooled;
+	}
+
+	FailureTraceStore getFailureTraceStore() {
+		return fFailureTraceStore;
+	}
+
+	/**
+	 * Sets the number of characters of failure traces kept in memory, further traces are
+	 * spilled to a file. For tests.
+	 *
+	 * @param budget the number of characters
+	 */
+	public void setFailureTraceMemoryBudget(int budget) {
+		fFailureTraceStore.setMemoryBudget(budget);
+	}
+
+	TestSuiteStore getTestSuiteStore() {
+		return fTestSuiteStore;
+	}
+
+	/**
+	 * Releases the failure traces and the unloaded test suites of the test elements. Must be
+	 * called when the root is not used anymore.
+	 */
+	public void dispose() {
+		fFailureTraceStore.dispose();
+		fTestSuiteStore.dispose();
+	}
 }
@@ -61,6 +61,12 @@ public class TestRunHandler extends DefaultHandler {
 	private IProgressMonitor fMonitor;
 	private int fLastReportedLine;
 
+	/**
+	 * The suite whose children are loaded, or <code>null</code> if a test run is imported.
+	 */
+	private TestSuiteElement fLoadedSuite;
+	private boolean fLazyLoading;
+
 	public TestRunHandler() {
 
 	}
@@ -73,6 +79,29 @@ public class TestRunHandler extends DefaultHandler {
 		fTestRunSession= testRunSession;
 	}
 
+	/**
+	 * Creates a handler that loads the children of a test suite that have been stored by
+	 * {@link TestRunSession#unloadChildren(TestSuiteElement)}.
+	 *
+	 * @param testRunSession the test run session
+	 * @param suite the test suite whose children are read
+	 */
+	public TestRunHandler(TestRunSession testRunSession, TestSuiteElement suite) {
+		fTestRunSession= testRunSession;
+		fLoadedSuite= suite;
+	}
+
+	/**
+	 * Sets whether the children of top-level suites are unloaded after they have been read, so
+	 * that large test runs don't have to be kept in memory completely. The children are loaded
+	 * again when {@link TestSuiteElement#getChildren()} is called.
+	 *
+	 * @param lazyLoading <code>true</code> to unload the children of top-level suites
+	 */
+	public void setLazyLoading(boolean lazyLoading) {
+		fLazyLoading= lazyLoading;
+	}
+
 	public void setDocumentLocator(Locator locator) {
 		fLocator= locator;
 	}
@@ -93,6 +122,12 @@ public class TestRunHandler extends DefaultHandler {
 			throw new OperationCanceledException();
 		
 		if (qName.equals(IXMLTags.NODE_TESTRUN)) {
+			if (fLoadedSuite != null) {
+				// the ids of the children follow the id of the suite, see TestRunSessionSerializer
+				fTestSuite= fLoadedSuite;
+				fId= fLoadedSuite.getIndex() + 1;
+				return;
+			}
 			if (fTestRunSession == null) {
 				String name= attributes.getValue(IXMLTags.ATTR_NAME);
 				String project= attributes.getValue(IXMLTags.ATTR_PROJECT);
@@ -201,6 +236,8 @@ public class TestRunHandler extends DefaultHandler {
 
 		} else if (qName.equals(IXMLTags.NODE_TESTSUITE)) {
 			handleTestElementEnd(fTestSuite);
+			if (fLazyLoading && fTestSuite.getParent() instanceof TestRoot)
+				fTestRunSession.unloadChildren(fTestSuite);
 			fTestSuite= fTestSuite.getParent();
 			//TODO: end suite: compare counters?
 
@@ -12,6 +12,7 @@
 package org.eclipse.jdt.internal.junit.model;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -84,7 +85,13 @@ public class TestRunSession implements ITestRunSession {
 	private Result fTestResult;
 
 	/**
-	 * Map from testId to testElement.
+	 * Test elements by index, see {@link TestElement#getIndex()}. Grows with the number of tests,
+	 * <code>null</code> entries are unused.
+	 */
+	private TestElement[] fIndexToTest;
+
+	/**
+	 * Map from testId to testElement, for the test elements that are not in {@link #fIndexToTest}.
 	 */
 	private HashMap/*<String, TestElement>*/ fIdToTest;
 
@@ -149,7 +156,7 @@ public class TestRunSession implements ITestRunSession {
 		fTestRunnerKind= ITestKind.NULL; //TODO
 
 		fTestRoot= new TestRoot(this);
-		fIdToTest= new HashMap();
+		clearTestElements();
 
 		fTestRunnerClient= null;
 
@@ -173,7 +180,7 @@ public class TestRunSession implements ITestRunSession {
 		}
 
 		fTestRoot= new TestRoot(this);
-		fIdToTest= new HashMap();
+		clearTestElements();
 
 		fTestRunnerClient= new RemoteTestRunnerClient();
 		fTestRunnerClient.startListening(new ITestRunListener2[] { new TestSessionNotifier() }, port);
@@ -213,9 +220,11 @@ public class TestRunSession implements ITestRunSession {
 		fIgnoredCount= 0;
 		fTotalCount= 0;
 
+		if (fTestRoot != null)
+			fTestRoot.dispose();
 		fTestRoot= new TestRoot(this);
 		fTestResult= null;
-		fIdToTest= new HashMap();
+		clearTestElements();
 	}
 
 	/* (non-Javadoc)
@@ -357,9 +366,10 @@ public class TestRunSession implements ITestRunSession {
 
 			JUnitModel.exportTestRunSession(this, swapFile);
 			fTestResult= fTestRoot.getTestResult(true);
+			fTestRoot.dispose();
 			fTestRoot= null;
 			fTestRunnerClient= null;
-			fIdToTest= new HashMap();
+			clearTestElements();
 			fIncompleteTestSuites= null;
 			fUnrootedSuite= null;
 
@@ -376,6 +386,8 @@ public class TestRunSession implements ITestRunSession {
 
 
 	public void removeSwapFile() {
+		if (fTestRoot != null)
+			fTestRoot.dispose();
 		File swapFile= getSwapFile();
 		if (swapFile.exists())
 			swapFile.delete();
@@ -491,9 +503,94 @@ public class TestRunSession implements ITestRunSession {
 	}
 
 	public TestElement getTestElement(String id) {
+		int index= TestElement.toIndex(id);
+		if (index != -1 && index < fIndexToTest.length && fIndexToTest[index] != null)
+			return fIndexToTest[index];
 		return (TestElement) fIdToTest.get(id);
 	}
 
+	private void putTestElement(String id, TestElement testElement) {
+		int index= testElement.getIndex();
+		// ids are assigned in ascending order, don't allocate for unexpected gaps
+		if (index == -1 || index > 2 * fIndexToTest.length + 1024) {
+			fIdToTest.put(id, testElement);
+			return;
+		}
+		if (index >= fIndexToTest.length) {
+			TestElement[] grown= new TestElement[Math.max(index + 1, 2 * fIndexToTest.length)];
+			System.arraycopy(fIndexToTest, 0, grown, 0, fIndexToTest.length);
+			fIndexToTest= grown;
+		}
+		fIndexToTest[index]= testElement;
+	}
+
+	private void removeTestElements(ITestElement[] testElements) {
+		for (int i= 0; i < testElements.length; i++) {
+			TestElement testElement= (TestElement) testElements[i];
+			int index= testElement.getIndex();
+			if (index != -1 && index < fIndexToTest.length && fIndexToTest[index] == testElement)
+				fIndexToTest[index]= null;
+			else
+				fIdToTest.remove(testElement.getId());
+			if (testElement instanceof TestSuiteElement)
+				removeTestElements(((TestSuiteElement) testElement).getChildren());
+		}
+	}
+
+	/**
+	 * Moves the children of an imported test suite to the {@link TestSuiteStore} of the test root.
+	 * The children are loaded again when they are requested.
+	 *
+	 * @param suite the test suite, whose children have been imported completely
+	 * @see TestRunHandler#setLazyLoading(boolean)
+	 */
+	synchronized void unloadChildren(TestSuiteElement suite) {
+		if (! suite.isLoaded() || ! suite.hasChildren() || suite.getIndex() == -1)
+			return;
+		Object handle= fTestRoot.getTestSuiteStore().store(this, suite);
+		if (handle == null)
+			return;
+		removeTestElements(suite.getChildren());
+		suite.setUnloadedChildren(handle);
+	}
+
+	/**
+	 * Loads the children of a test suite from the {@link TestSuiteStore} of the test root. The
+	 * counters of this session are not changed, since they already include the children.
+	 *
+	 * @param suite the test suite
+	 */
+	synchronized void loadChildren(TestSuiteElement suite) {
+		Object handle= suite.getUnloadedChildren();
+		if (handle == null)
+			return; // loaded concurrently
+
+		int startedCount= fStartedCount;
+		int ignoredCount= fIgnoredCount;
+		int errorCount= fErrorCount;
+		int failureCount= fFailureCount;
+		int totalCount= fTotalCount;
+		suite.setUnloadedChildren(null);
+		try {
+			JUnitModel.importIntoTestSuite(fTestRoot.getTestSuiteStore().load(handle), this, suite);
+		} catch (IOException e) {
+			JUnitCorePlugin.log(e);
+		} catch (CoreException e) {
+			JUnitCorePlugin.log(e);
+		} finally {
+			fStartedCount= startedCount;
+			fIgnoredCount= ignoredCount;
+			fErrorCount= errorCount;
+			fFailureCount= failureCount;
+			fTotalCount= totalCount;
+		}
+	}
+
+	private void clearTestElements() {
+		fIndexToTest= new TestElement[0];
+		fIdToTest= new HashMap();
+	}
+
 	private TestElement addTreeEntry(String treeEntry) {
 		// format: testId","testName","isSuite","testcount
 		int index0= treeEntry.indexOf(',');
@@ -530,7 +627,7 @@ public class TestRunSession implements ITestRunSession {
 		} else {
 			testElement= new TestCaseElement(parent, id, testName);
 		}
-		fIdToTest.put(id, testElement);
+		putTestElement(id, testElement);
 		return testElement;
 	}
 
@@ -793,6 +890,8 @@ public class TestRunSession implements ITestRunSession {
 		}
 		if (testElement instanceof TestSuiteElement) {
 			TestSuiteElement testSuiteElement= (TestSuiteElement) testElement;
+			if (! testSuiteElement.isLoaded() && testResult != Result.ERROR && testResult != Result.FAILURE)
+				return; // don't load children that cannot have failed
 			ITestElement[] children= testSuiteElement.getChildren();
 			for (int i= 0; i < children.length; i++) {
 				addFailures(failures, children[i]);
@@ -14,11 +14,15 @@
 package org.eclipse.jdt.internal.junit.model;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.util.Locale;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
@@ -28,6 +32,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
 
 import org.eclipse.jdt.junit.model.ITestElement;
 import org.eclipse.jdt.junit.model.ITestElement.FailureTrace;
@@ -46,6 +51,10 @@ public class TestRunSessionSerializer implements XMLReader {
 
 
 	private final TestRunSession fTestRunSession;
+	/**
+	 * The suite whose children are serialized, or <code>null</code> to serialize the test run.
+	 */
+	private final TestSuiteElement fSuite;
 	private ContentHandler fHandler;
 	private ErrorHandler fErrorHandler;
 
@@ -55,8 +64,22 @@ public class TestRunSessionSerializer implements XMLReader {
 	 * @param testRunSession the test run session to serialize
 	 */
 	public TestRunSessionSerializer(TestRunSession testRunSession) {
+		this(testRunSession, null);
+	}
+
+	/**
+	 * Creates a serializer for the children of a test suite. The children are wrapped in a
+	 * {@link IXMLTags#NODE_TESTRUN} node without attributes, see
+	 * {@link TestRunHandler#TestRunHandler(TestRunSession, TestSuiteElement)}.
+	 *
+	 * @param testRunSession the test run session of the suite
+	 * @param suite the suite whose children are serialized, or <code>null</code> to serialize
+	 *            the test run session
+	 */
+	public TestRunSessionSerializer(TestRunSession testRunSession, TestSuiteElement suite) {
 		Assert.isNotNull(testRunSession);
 		fTestRunSession= testRunSession;
+		fSuite= suite;
 	}
 
 	public void parse(InputSource input) throws IOException, SAXException {
@@ -64,11 +87,17 @@ public class TestRunSessionSerializer implements XMLReader {
 			throw new SAXException("ContentHandler missing"); //$NON-NLS-1$
 
 		fHandler.startDocument();
-		handleTestRun();
+		if (fSuite != null) {
+			startElement(IXMLTags.NODE_TESTRUN, NO_ATTS);
+			handleChildren(fSuite);
+			endElement(IXMLTags.NODE_TESTRUN);
+		} else {
+			handleTestRun();
+		}
 		fHandler.endDocument();
 	}
 
-	private void handleTestRun() throws SAXException {
+	private void handleTestRun() throws IOException, SAXException {
 		AttributesImpl atts= new AttributesImpl();
 		addCDATA(atts, IXMLTags.ATTR_NAME, fTestRunSession.getTestRunName());
 		IJavaProject project= fTestRunSession.getLaunchedProject();
@@ -90,7 +119,7 @@ public class TestRunSessionSerializer implements XMLReader {
 		endElement(IXMLTags.NODE_TESTRUN);
 	}
 
-	private void handleTestElement(ITestElement testElement) throws SAXException {
+	private void handleTestElement(ITestElement testElement) throws IOException, SAXException {
 		if (testElement instanceof TestSuiteElement) {
 			TestSuiteElement testSuiteElement= (TestSuiteElement) testElement;
 
@@ -103,11 +132,7 @@ public class TestRunSessionSerializer implements XMLReader {
 
 			startElement(IXMLTags.NODE_TESTSUITE, atts);
 			addFailure(testElement);
-
-			ITestElement[] children= testSuiteElement.getChildren();
-			for (int i= 0; i < children.length; i++) {
-				handleTestElement(children[i]);
-			}
+			handleChildren(testSuiteElement);
 			endElement(IXMLTags.NODE_TESTSUITE);
 
 		} else if (testElement instanceof TestCaseElement) {
@@ -134,6 +159,45 @@ public class TestRunSessionSerializer implements XMLReader {
 
 	}
 
+	private void handleChildren(TestSuiteElement testSuiteElement) throws IOException, SAXException {
+		Object unloadedChildren= testSuiteElement.getUnloadedChildren();
+		if (unloadedChildren != null) {
+			// copy the stored children instead of loading them
+			InputStream in= testSuiteElement.getRoot().getTestSuiteStore().load(unloadedChildren);
+			try {
+				SAXParserFactory.newInstance().newSAXParser().parse(in, new StoredChildrenCopier());
+			} catch (ParserConfigurationException e) {
+				throw new SAXException(e);
+			}
+			return;
+		}
+
+		ITestElement[] children= testSuiteElement.getChildren();
+		for (int i= 0; i < children.length; i++) {
+			handleTestElement(children[i]);
+		}
+	}
+
+	/**
+	 * Forwards the nodes of stored children to the content handler, without the document and
+	 * the enclosing {@link IXMLTags#NODE_TESTRUN} node.
+	 */
+	private class StoredChildrenCopier extends DefaultHandler {
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			if (! qName.equals(IXMLTags.NODE_TESTRUN))
+				fHandler.startElement(uri, localName, qName, attributes);
+		}
+
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if (! qName.equals(IXMLTags.NODE_TESTRUN))
+				fHandler.endElement(uri, localName, qName);
+		}
+
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			fHandler.characters(ch, start, length);
+		}
+	}
+
 	private void addFailure(ITestElement testElement) throws SAXException {
 		FailureTrace failureTrace= testElement.getFailureTrace();
 		if (failureTrace != null) {
@@ -22,6 +22,11 @@ public class TestSuiteElement extends TestElement implements ITestSuiteElement {
 
 	private List/*<TestElement>*/ fChildren;
 	private Status fChildrenStatus;
+	/**
+	 * The handle of the children in the {@link TestSuiteStore}, or <code>null</code> if the
+	 * children are loaded.
+	 */
+	private Object fUnloadedChildren;
 
 	public TestSuiteElement(TestSuiteElement parent, String id, String testName, int childrenCount) {
 		super(parent, id, testName);
@@ -50,9 +55,45 @@ public class TestSuiteElement extends TestElement implements ITestSuiteElement {
 	 * @see org.eclipse.jdt.junit.model.ITestSuiteElement#getChildren()
 	 */
 	public ITestElement[] getChildren() {
+		if (fUnloadedChildren != null)
+			((TestRunSession) getTestRunSession()).loadChildren(this);
 		return (ITestElement[]) fChildren.toArray(new ITestElement[fChildren.size()]);
 	}
 
+	/**
+	 * Returns whether this suite has children. Unlike {@link #getChildren()}, this does not load
+	 * the children.
+	 *
+	 * @return <code>true</code> iff this suite has children
+	 */
+	public boolean hasChildren() {
+		return fUnloadedChildren != null || ! fChildren.isEmpty();
+	}
+
+	/**
+	 * @return <code>true</code> iff the children of this suite are in memory
+	 * @see TestRunSession#loadChildren(TestSuiteElement)
+	 */
+	public boolean isLoaded() {
+		return fUnloadedChildren == null;
+	}
+
+	Object getUnloadedChildren() {
+		return fUnloadedChildren;
+	}
+
+	/**
+	 * Sets the children as unloaded, or as loaded.
+	 *
+	 * @param handle the handle of the children in the {@link TestSuiteStore}, or
+	 *            <code>null</code> if the children are about to be loaded
+	 */
+	void setUnloadedChildren(Object handle) {
+		if (handle != null)
+			fChildren= new ArrayList(0);
+		fUnloadedChildren= handle;
+	}
+
 	public void addChild(TestElement child) {
 		fChildren.add(child);
 	}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.TransformerFactoryConfigurationError;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.xml.sax.InputSource;
+
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+
+/**
+ * Holds the children of test suites that are not loaded. The children of a suite are written as
+ * an XML fragment to a temporary file, see
+ * {@link TestRunSessionSerializer#TestRunSessionSerializer(TestRunSession, TestSuiteElement)}, and
+ * are read back by a {@link TestRunHandler} when the suite is expanded.
+ * <p>
+ * A store is owned by a {@link TestRoot} and is disposed with it. Left over files are deleted
+ * together with the swap files of the test run history.
+ * </p>
+ */
+final class TestSuiteStore {
+
+	private File fFile;
+	private RandomAccessFile fAccess;
+
+	private Transformer fTransformer;
+
+	/**
+	 * <code>true</code> iff the file cannot be used, because it could not be written or because
+	 * the store has been disposed
+	 */
+	private boolean fFileUnusable;
+
+	/**
+	 * Stores the children of a test suite.
+	 *
+	 * @param testRunSession the test run session of the suite
+	 * @param suite the test suite
+	 * @return a handle to pass to {@link #load(Object)}, or <code>null</code> if the children
+	 *         could not be stored
+	 */
+	public synchronized Object store(TestRunSession testRunSession, TestSuiteElement suite) {
+		if (fFileUnusable)
+			return null;
+		try {
+			return new Long(write(testRunSession, suite));
+		} catch (IOException e) {
+			JUnitCorePlugin.log(e);
+		} catch (TransformerException e) {
+			JUnitCorePlugin.log(e);
+		} catch (TransformerFactoryConfigurationError e) {
+			JUnitCorePlugin.log(e);
+		} catch (IllegalStateException e) {
+			// no history directory
+		}
+		fFileUnusable= true;
+		return null;
+	}
+
+	/**
+	 * Returns the stored children of a test suite.
+	 *
+	 * @param handle the handle returned by {@link #store(TestRunSession, TestSuiteElement)}
+	 * @return the XML fragment with the children
+	 * @throws IOException if the children cannot be read, e.g. because the store has been
+	 *             disposed
+	 */
+	public synchronized InputStream load(Object handle) throws IOException {
+		if (fAccess == null)
+			throw new IOException("Test suite store has been disposed"); //$NON-NLS-1$
+
+		fAccess.seek(((Long) handle).longValue());
+		byte[] bytes= new byte[fAccess.readInt()];
+		fAccess.readFully(bytes);
+		return new ByteArrayInputStream(bytes);
+	}
+
+	/**
+	 * Deletes the file of the store. Children that have been stored cannot be loaded anymore.
+	 */
+	public synchronized void dispose() {
+		fFileUnusable= true;
+		fTransformer= null;
+		if (fAccess != null) {
+			try {
+				fAccess.close();
+			} catch (IOException e) {
+				// the file is deleted anyway
+			}
+			fAccess= null;
+		}
+		if (fFile != null) {
+			fFile.delete();
+			fFile= null;
+		}
+	}
+
+	private long write(TestRunSession testRunSession, TestSuiteElement suite) throws IOException, TransformerException {
+		if (fAccess == null) {
+			fFile= File.createTempFile("suites", ".xml", JUnitCorePlugin.getHistoryDirectory()); //$NON-NLS-1$ //$NON-NLS-2$
+			fAccess= new RandomAccessFile(fFile, "rw"); //$NON-NLS-1$
+		}
+		if (fTransformer == null) {
+			fTransformer= TransformerFactory.newInstance().newTransformer();
+			fTransformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8"); //$NON-NLS-1$
+			// no indentation: the fragments are copied into exported test runs as they are
+			fTransformer.setOutputProperty(OutputKeys.INDENT, "no"); //$NON-NLS-1$
+		}
+
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+		SAXSource source= new SAXSource(new TestRunSessionSerializer(testRunSession, suite), new InputSource());
+		fTransformer.transform(source, new StreamResult(bytes));
+
+		long offset= fAccess.length();
+		fAccess.seek(offset);
+		fAccess.writeInt(bytes.size());
+		fAccess.write(bytes.toByteArray());
+		return offset;
+	}
+}
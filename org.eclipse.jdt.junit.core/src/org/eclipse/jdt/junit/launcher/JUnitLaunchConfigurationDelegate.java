@@ -57,6 +57,7 @@ import org.eclipse.jdt.internal.junit.launcher.ITestKind;
 import org.eclipse.jdt.internal.junit.launcher.JUnitLaunchConfigurationConstants;
 import org.eclipse.jdt.internal.junit.launcher.JUnitRuntimeClasspathEntry;
 import org.eclipse.jdt.internal.junit.launcher.TestKindRegistry;
+import org.eclipse.jdt.internal.junit.runner.MessageIds;
 import org.eclipse.jdt.internal.junit.util.CoreTestSearchEngine;
 import org.eclipse.jdt.internal.junit.util.IJUnitStatusConstants;
 
@@ -290,9 +291,19 @@ public class JUnitLaunchConfigurationDelegate extends AbstractJavaLaunchConfigur
 		programArguments.add("-port"); //$NON-NLS-1$
 		programArguments.add(String.valueOf(fPort));
 
+		// runners that don't know the binary format ignore the offer and send text
+		programArguments.add("-binaryprotocol"); //$NON-NLS-1$
+		programArguments.add(MessageIds.BINARY_PROTOCOL_VERSION);
+
 		if (fKeepAlive)
 			programArguments.add(0, "-keepalive"); //$NON-NLS-1$
 
+		int threads= configuration.getAttribute(JUnitLaunchConfigurationConstants.ATTR_TEST_THREADS, 1);
+		if (threads > 1) {
+			programArguments.add("-threads"); //$NON-NLS-1$
+			programArguments.add(String.valueOf(threads));
+		}
+
 		ITestKind testRunnerKind= getTestRunnerKind(configuration);
 
 		programArguments.add("-testLoaderClass"); //$NON-NLS-1$
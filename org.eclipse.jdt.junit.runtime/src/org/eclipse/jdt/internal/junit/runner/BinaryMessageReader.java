@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.runner;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads messages in the binary format of the protocol, one frame at a time.
+ *
+ * @see BinaryMessageWriter
+ */
+public class BinaryMessageReader {
+
+	private final DataInputStream fIn;
+	private byte[] fFrame= new byte[8 * 1024];
+	private int fFrameLength= 0;
+	private int fPosition= 0;
+
+	private String fHeader;
+	private String fArgument;
+
+	public BinaryMessageReader(InputStream in) {
+		fIn= new DataInputStream(in);
+	}
+
+	/**
+	 * Reads the next message.
+	 *
+	 * @return <code>false</code> if the end of the stream has been reached
+	 * @throws IOException if the stream cannot be read or is corrupt
+	 */
+	public boolean readMessage() throws IOException {
+		while (fPosition == fFrameLength) {
+			int length;
+			try {
+				length= fIn.readInt();
+			} catch (EOFException e) {
+				return false;
+			}
+			if (length > fFrame.length)
+				fFrame= new byte[Math.max(length, 2 * fFrame.length)];
+			fIn.readFully(fFrame, 0, length);
+			fFrameLength= length;
+			fPosition= 0;
+		}
+
+		int index= fFrame[fPosition++];
+		if (index == MessageIds.BINARY_NO_HEADER)
+			fHeader= null;
+		else if (index >= 0 && index < MessageIds.BINARY_HEADERS.length)
+			fHeader= MessageIds.BINARY_HEADERS[index];
+		else
+			throw new IOException("Unknown message header: " + index); //$NON-NLS-1$
+
+		int length= readInt();
+		if (length < 0 || fPosition + length > fFrameLength)
+			throw new IOException("Invalid message length: " + length); //$NON-NLS-1$
+		fArgument= new String(fFrame, fPosition, length, "UTF-8"); //$NON-NLS-1$
+		fPosition+= length;
+		return true;
+	}
+
+	private int readInt() throws IOException {
+		if (fPosition + 4 > fFrameLength)
+			throw new IOException("Truncated message"); //$NON-NLS-1$
+		int value= ((fFrame[fPosition] & 0xFF) << 24) | ((fFrame[fPosition + 1] & 0xFF) << 16) | ((fFrame[fPosition + 2] & 0xFF) << 8) | (fFrame[fPosition + 3] & 0xFF);
+		fPosition+= 4;
+		return value;
+	}
+
+	/**
+	 * Returns the header of the message read last.
+	 *
+	 * @return one of the {@link MessageIds#BINARY_HEADERS}, or <code>null</code> if the message has no header
+	 */
+	public String getHeader() {
+		return fHeader;
+	}
+
+	/**
+	 * Returns the message read last without its header.
+	 *
+	 * @return the argument of the message, or the whole message if it has no header
+	 */
+	public String getArgument() {
+		return fArgument;
+	}
+
+	public void close() throws IOException {
+		fIn.close();
+	}
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.runner;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Sends messages in the binary format of the protocol.
+ * <p>
+ * The messages are collected in frames. A frame is the number of bytes that follow
+ * (int) and the messages. A message is the index of its header in
+ * {@link MessageIds#BINARY_HEADERS} or {@link MessageIds#BINARY_NO_HEADER} (byte),
+ * followed by the rest of the message as the number of bytes (int) and the UTF-8
+ * encoded characters.
+ * </p>
+ * <p>
+ * A frame is sent when it is full and at most {@link #BATCH_INTERVAL} milliseconds
+ * after the writer has been flushed, so that messages of fast tests are batched.
+ * </p>
+ *
+ * @see BinaryMessageReader
+ * @see MessageIds#BINARY_PROTOCOL
+ */
+public class BinaryMessageWriter implements MessageSender {
+
+	/**
+	 * The maximal time in milliseconds between flushing the writer and sending the
+	 * messages.
+	 */
+	public static final int BATCH_INTERVAL= 20;
+
+	private static final int MAX_FRAME_SIZE= 32 * 1024;
+
+	private static final Hashtable fgHeaderIndices= new Hashtable();
+	static {
+		for (int i= 0; i < MessageIds.BINARY_HEADERS.length; i++)
+			fgHeaderIndices.put(MessageIds.BINARY_HEADERS[i], new Integer(i));
+	}
+
+	private final DataOutputStream fOut;
+	private final ByteArrayOutputStream fFrame= new ByteArrayOutputStream(MAX_FRAME_SIZE + 1024);
+	private final DataOutputStream fFrameOut= new DataOutputStream(fFrame);
+	private final Timer fTimer;
+	private boolean fFlushRequested= false;
+	private boolean fError= false;
+
+	public BinaryMessageWriter(OutputStream out) {
+		fOut= new DataOutputStream(new BufferedOutputStream(out, MAX_FRAME_SIZE + 1024));
+		fTimer= new Timer(true);
+		fTimer.schedule(new TimerTask() {
+			public void run() {
+				synchronized (BinaryMessageWriter.this) {
+					if (fFlushRequested)
+						sendFrame();
+				}
+			}
+		}, BATCH_INTERVAL, BATCH_INTERVAL);
+	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.junit.runner.MessageSender#sendMessage(java.lang.String)
+	 */
+	public synchronized void sendMessage(String msg) {
+		if (fError)
+			return;
+		try {
+			Integer index= null;
+			if (msg.length() >= MessageIds.MSG_HEADER_LENGTH)
+				index= (Integer) fgHeaderIndices.get(msg.substring(0, MessageIds.MSG_HEADER_LENGTH));
+			if (index != null) {
+				fFrameOut.writeByte(index.intValue());
+				writeString(msg.substring(MessageIds.MSG_HEADER_LENGTH));
+			} else {
+				fFrameOut.writeByte(MessageIds.BINARY_NO_HEADER);
+				writeString(msg);
+			}
+		} catch (IOException e) {
+			fError= true;
+			return;
+		}
+		if (fFrame.size() >= MAX_FRAME_SIZE)
+			sendFrame();
+	}
+
+	private void writeString(String string) throws IOException {
+		byte[] bytes= string.getBytes("UTF-8"); //$NON-NLS-1$
+		fFrameOut.writeInt(bytes.length);
+		fFrameOut.write(bytes);
+	}
+
+	/**
+	 * Requests to send the messages. The messages are sent by a timer thread, at
+	 * most {@link #BATCH_INTERVAL} milliseconds later.
+	 *
+	 * @see org.eclipse.jdt.internal.junit.runner.MessageSender#flush()
+	 */
+	public synchronized void flush() {
+		fFlushRequested= true;
+	}
+
+	/**
+	 * Sends the remaining messages and closes the stream.
+	 */
+	public synchronized void close() {
+		fTimer.cancel();
+		sendFrame();
+		try {
+			fOut.close();
+		} catch (IOException e) {
+			fError= true;
+		}
+	}
+
+	private void sendFrame() {
+		fFlushRequested= false;
+		if (fError || fFrame.size() == 0)
+			return;
+		try {
+			fOut.writeInt(fFrame.size());
+			fFrame.writeTo(fOut);
+			fOut.flush();
+		} catch (IOException e) {
+			fError= true;
+		}
+		fFrame.reset();
+	}
+}
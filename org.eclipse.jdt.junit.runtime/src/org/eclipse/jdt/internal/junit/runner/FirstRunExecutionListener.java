@@ -13,6 +13,10 @@
 
 package org.eclipse.jdt.internal.junit.runner;
 
+/**
+ * Sends the messages of a test run. The notifications are synchronized, so
+ * that the messages of tests that run concurrently are not interleaved.
+ */
 public class FirstRunExecutionListener implements IListensToTestExecutions {
 	protected MessageSender fSender;
 
@@ -25,16 +29,16 @@ public class FirstRunExecutionListener implements IListensToTestExecutions {
 		fIds = ids;
 	}
 
-	public void notifyTestEnded(ITestIdentifier test) {
+	public synchronized void notifyTestEnded(ITestIdentifier test) {
 		sendMessage(test, MessageIds.TEST_END);
 	}
 
-	public void notifyTestFailed(TestReferenceFailure failure) {
+	public synchronized void notifyTestFailed(TestReferenceFailure failure) {
 		sendMessage(failure.getTest(), failure.getStatus());
 		sendFailure(failure, MessageIds.TRACE_START, MessageIds.TRACE_END);
 	}
 
-	public void notifyTestStarted(ITestIdentifier test) {
+	public synchronized void notifyTestStarted(ITestIdentifier test) {
 		sendMessage(test, MessageIds.TEST_START);
 		fSender.flush();
 	}
@@ -120,6 +120,33 @@ public class MessageIds {
 	 */
 	public static final String TEST_RERUN=	">RERUN  "; //$NON-NLS-1$
 
+	/**
+	 * Notification that all further messages are sent in the binary format. The client
+	 * offers the binary format with the <code>-binaryprotocol</code> argument followed by
+	 * the offered version. The notification is the first message.
+	 * BINARY_PROTOCOL + version
+	 *
+	 * @see BinaryMessageWriter
+	 */
+	public static final String BINARY_PROTOCOL= "%BINARY "; //$NON-NLS-1$
+	/**
+	 * The version of the binary format.
+	 */
+	public static final String BINARY_PROTOCOL_VERSION= "1"; //$NON-NLS-1$
+	/**
+	 * The headers of the messages in the binary format. A message with one
+	 * of these headers is encoded with the index of its header.
+	 */
+	public static final String[] BINARY_HEADERS= {
+		TRACE_START, TRACE_END, EXPECTED_START, EXPECTED_END, ACTUAL_START, ACTUAL_END,
+		RTRACE_START, RTRACE_END, TEST_RUN_START, TEST_START, TEST_END, TEST_ERROR,
+		TEST_FAILED, TEST_RUN_END, TEST_STOPPED, TEST_RERAN, TEST_TREE
+	};
+	/**
+	 * Index of messages in the binary format that have none of the {@link #BINARY_HEADERS}.
+	 */
+	public static final int BINARY_NO_HEADER= -1;
+
 	/**
 	 * MessageFormat to encode test method identifiers:
 	 * testMethod(testClass)
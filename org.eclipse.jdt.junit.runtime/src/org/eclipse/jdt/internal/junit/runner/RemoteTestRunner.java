@@ -79,6 +79,19 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Print writer for sending messages
 	 */
 	private PrintWriter fWriter;
+	/**
+	 * Writer for sending messages in the binary format, or <code>null</code>
+	 * if messages are sent as text
+	 */
+	private BinaryMessageWriter fBinaryWriter;
+	/**
+	 * The version of the binary format offered by the client, or <code>null</code>
+	 */
+	private String fBinaryProtocol;
+	/**
+	 * The number of threads that run the test classes
+	 */
+	private int fThreadCount= 1;
 	/**
 	 * Reader for incoming messages
 	 */
@@ -188,6 +201,8 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * -host: the host to connect to default local host
 	 * -port: the port to connect to, mandatory argument
 	 * -keepalive: keep the process alive after a test run
+	 * -binaryprotocol: the version of the binary format supported by the client
+	 * -threads: the number of threads that run the test classes concurrently, default is 1
      * </pre>
      */
 	public static void main(String[] args) {
@@ -278,6 +293,14 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 			else if(args[i].toLowerCase().equals("-keepalive")) { //$NON-NLS-1$
 				fKeepAlive= true;
 			}
+			else if(args[i].toLowerCase().equals("-binaryprotocol")) { //$NON-NLS-1$
+				fBinaryProtocol= args[i+1];
+				i++;
+			}
+			else if(args[i].toLowerCase().equals("-threads")) { //$NON-NLS-1$
+				fThreadCount= Math.max(1, Integer.parseInt(args[i+1]));
+				i++;
+			}
 			else if(args[i].toLowerCase().equals("-debugging") || args[i].toLowerCase().equals("-debug")){ //$NON-NLS-1$ //$NON-NLS-2$
 			    fDebugMode= true;
 			}
@@ -387,6 +410,7 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 
 		FirstRunExecutionListener listener= firstRunExecutionListener();
 		fExecution= new TestExecution(listener, getClassifier());
+		fExecution.setThreadCount(fThreadCount);
 		runTests(fExecution);
 		if (fKeepAlive)
 			waitForReruns();
@@ -578,6 +602,12 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
                 } catch (UnsupportedEncodingException e1) {
                     fReader= new BufferedReader(new InputStreamReader(fClientSocket.getInputStream()));
                 }
+				if (MessageIds.BINARY_PROTOCOL_VERSION.equals(fBinaryProtocol)) {
+					// the client switches to the binary format after this message
+					fWriter.println(MessageIds.BINARY_PROTOCOL + MessageIds.BINARY_PROTOCOL_VERSION);
+					fWriter.flush();
+					fBinaryWriter= new BinaryMessageWriter(fClientSocket.getOutputStream());
+				}
 				fReaderThread= new ReaderThread();
 				fReaderThread.start();
 				return true;
@@ -597,6 +627,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Shutsdown the connection to the remote test listener.
 	 */
 	private void shutDown() {
+		if (fBinaryWriter != null) {
+			fBinaryWriter.close();
+			fBinaryWriter= null;
+		}
 		if (fWriter != null) {
 			fWriter.close();
 			fWriter= null;
@@ -631,9 +665,13 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	/*
 	 * @see org.eclipse.jdt.internal.junit.runner.MessageSender#sendMessage(java.lang.String)
 	 */
-	public void sendMessage(String msg) {
+	public synchronized void sendMessage(String msg) {
 		if(fWriter == null)
 			return;
+		if (fBinaryWriter != null) {
+			fBinaryWriter.sendMessage(msg);
+			return;
+		}
 		fWriter.println(msg);
 //		if (!fConsoleMode)
 //			System.out.println(msg);
@@ -670,8 +708,11 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 		}
 	}
 
-	public void flush() {
-	    fWriter.flush();
+	public synchronized void flush() {
+		if (fBinaryWriter != null)
+			fBinaryWriter.flush();
+		else
+			fWriter.flush();
 	}
 
 	/*
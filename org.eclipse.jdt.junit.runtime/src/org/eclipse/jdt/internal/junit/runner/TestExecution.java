@@ -14,10 +14,9 @@
 package org.eclipse.jdt.internal.junit.runner;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 
 public class TestExecution {
-	private boolean fShouldStop = false;
+	private volatile boolean fShouldStop = false;
 
 	private IListensToTestExecutions fExecutionListener;
 
@@ -25,13 +24,33 @@ public class TestExecution {
 
 	private ArrayList fStopListeners = new ArrayList();
 
+	private int fThreadCount = 1;
+
 	public TestExecution(IListensToTestExecutions listener,
 			IClassifiesThrowables classifier) {
 		fClassifier = classifier;
 		fExecutionListener = listener;
 	}
 
+	/**
+	 * Sets the number of threads that run the test references. With more
+	 * than one thread, the references are run concurrently, so the listener
+	 * must be thread-safe.
+	 *
+	 * @param threadCount the number of threads, 1 to run the references one
+	 *            after the other
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException(String.valueOf(threadCount));
+		fThreadCount = threadCount;
+	}
+
 	public void run(ITestReference[] suites) {
+		if (fThreadCount > 1 && suites.length > 1) {
+			runConcurrently(suites);
+			return;
+		}
 		for (int i = 0; i < suites.length; i++) {
 			if (fShouldStop)
 				return;
@@ -39,15 +58,66 @@ public class TestExecution {
 		}
 	}
 
+	/*
+	 * Runs the references on worker threads, each taking the next reference
+	 * that has not been started yet. Returns when all workers are done.
+	 */
+	private void runConcurrently(final ITestReference[] suites) {
+		final int[] next = { 0 };
+		final Throwable[] failure = { null };
+		Thread[] workers = new Thread[Math.min(fThreadCount, suites.length)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread("TestExecution-" + i) { //$NON-NLS-1$
+				public void run() {
+					try {
+						while (true) {
+							ITestReference suite;
+							synchronized (next) {
+								if (fShouldStop || failure[0] != null || next[0] == suites.length)
+									return;
+								suite = suites[next[0]++];
+							}
+							suite.run(TestExecution.this);
+						}
+					} catch (Throwable e) {
+						synchronized (next) {
+							if (failure[0] == null)
+								failure[0] = e;
+						}
+					}
+				}
+			};
+			workers[i].start();
+		}
+
+		for (int i = 0; i < workers.length; i++) {
+			while (workers[i].isAlive()) {
+				try {
+					workers[i].join();
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+
+		// rethrow like a sequential run would
+		if (failure[0] instanceof RuntimeException)
+			throw (RuntimeException) failure[0];
+		if (failure[0] instanceof Error)
+			throw (Error) failure[0];
+	}
+
 	public boolean shouldStop() {
 		return fShouldStop;
 	}
 
 	public void stop() {
 		fShouldStop = true;
-		for (Iterator iter = fStopListeners.iterator(); iter.hasNext();) {
-			IStopListener listener = (IStopListener) iter.next();
-			listener.stop();
+		IStopListener[] listeners;
+		synchronized (fStopListeners) {
+			listeners = (IStopListener[]) fStopListeners.toArray(new IStopListener[fStopListeners.size()]);
+		}
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].stop();
 		}
 	}
 
@@ -60,6 +130,8 @@ public class TestExecution {
 	}
 
 	public void addStopListener(IStopListener listener) {
-		fStopListeners.add(listener);
+		synchronized (fStopListeners) {
+			fStopListeners.add(listener);
+		}
 	}
 }
@@ -30,6 +30,7 @@ import java.text.MessageFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -191,6 +192,15 @@ public class TestRunnerViewPart extends ViewPart {
 	protected boolean fShowOnErrorOnly= false;
 	protected Clipboard fClipboard;
 	protected volatile String fInfoMessage;
+	/**
+	 * The last started test, whose info message is formatted on the next UI update, or
+	 * <code>null</code>.
+	 */
+	private volatile TestCaseElement fStartedTestCase;
+	/**
+	 * The values last shown in the counter panel and progress bar, or <code>null</code>.
+	 */
+	private int[] fShownCounters;
 
 	private FailureTrace fFailureTrace;
 
@@ -760,10 +770,9 @@ public class TestRunnerViewPart extends ViewPart {
 			fTestViewer.registerAutoScrollTarget(testCaseElement);
 			fTestViewer.registerViewerUpdate(testCaseElement);
 
-			String className= BasicElementLabels.getJavaElementName(testCaseElement.getClassName());
-			String method= BasicElementLabels.getJavaElementName(testCaseElement.getTestMethodName());
-			String status= Messages.format(JUnitMessages.TestRunnerViewPart_message_started, new String[] { className, method });
-			registerInfoMessage(status);
+			// only the last started test of an update interval is shown, see doShowInfoMessage()
+			fInfoMessage= null;
+			fStartedTestCase= testCaseElement;
 		}
 
 		public void testFailed(TestElement testElement, TestElement.Status status, String trace, String expected, String actual) {
@@ -1585,10 +1594,6 @@ action enablement
 	}
 
 	private void refreshCounters() {
-		 // TODO: Inefficient. Either
-		// - keep a boolean fHasTestRun and update only on changes, or
-		// - improve components to only redraw on changes (once!).
-
 		int startedCount;
 		int ignoredCount;
 		int totalCount;
@@ -1615,11 +1620,6 @@ action enablement
 			stopped= false;
 		}
 
-		fCounterPanel.setTotal(totalCount);
-		fCounterPanel.setRunValue(startedCount, ignoredCount);
-		fCounterPanel.setErrorValue(errorCount);
-		fCounterPanel.setFailureValue(failureCount);
-
 		int ticksDone;
 		if (startedCount == 0)
 			ticksDone= 0;
@@ -1628,6 +1628,17 @@ action enablement
 		else
 			ticksDone= startedCount - 1;
 
+		// only redraw on changes, this is called in every update interval
+		int[] counters= { startedCount, ignoredCount, totalCount, errorCount, failureCount, ticksDone, stopped ? 1 : 0 };
+		if (Arrays.equals(counters, fShownCounters))
+			return;
+		fShownCounters= counters;
+
+		fCounterPanel.setTotal(totalCount);
+		fCounterPanel.setRunValue(startedCount, ignoredCount);
+		fCounterPanel.setErrorValue(errorCount);
+		fCounterPanel.setFailureValue(failureCount);
+
 		fProgressBar.reset(hasErrorsOrFailures, stopped, ticksDone, totalCount);
 	}
 
@@ -1664,6 +1675,13 @@ action enablement
 	}
 
 	protected void doShowInfoMessage() {
+		TestCaseElement startedTestCase= fStartedTestCase;
+		if (startedTestCase != null) {
+			fStartedTestCase= null;
+			String className= BasicElementLabels.getJavaElementName(startedTestCase.getClassName());
+			String method= BasicElementLabels.getJavaElementName(startedTestCase.getTestMethodName());
+			setContentDescription(Messages.format(JUnitMessages.TestRunnerViewPart_message_started, new String[] { className, method }));
+		}
 		if (fInfoMessage != null) {
 			setContentDescription(fInfoMessage);
 			fInfoMessage= null;
@@ -1671,6 +1689,7 @@ action enablement
 	}
 
 	protected void registerInfoMessage(String message) {
+		fStartedTestCase= null;
 		fInfoMessage= message;
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2011 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,41 +12,147 @@
 package org.eclipse.jdt.internal.junit.ui;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import org.eclipse.jdt.junit.model.ITestElement;
 
-import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.swt.widgets.Table;
+
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerFilter;
 
 import org.eclipse.jdt.internal.junit.model.TestCaseElement;
+import org.eclipse.jdt.internal.junit.model.TestElement;
 import org.eclipse.jdt.internal.junit.model.TestRoot;
 import org.eclipse.jdt.internal.junit.model.TestSuiteElement;
 
 
-public class TestSessionTableContentProvider implements IStructuredContentProvider {
+/**
+ * Content provider for the flat layout. The table is virtual, so table items are only created
+ * for the rows that are shown.
+ * <p>
+ * Lazy content providers don't support viewer filters, so the provider applies the filter
+ * itself, see {@link #setFilter(ViewerFilter)}.
+ * </p>
+ */
+public class TestSessionTableContentProvider implements ILazyContentProvider {
+
+	private TableViewer fViewer;
+	private TestRoot fRoot;
+	private ViewerFilter fFilter;
+
+	private final ArrayList<TestElement> fElements= new ArrayList<TestElement>();
+	private final HashMap<TestElement, Integer> fIndexes= new HashMap<TestElement, Integer>();
 
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		fViewer= (TableViewer) viewer;
+		fRoot= (TestRoot) newInput;
+		collectElements();
+	}
+
+	public void updateElement(int index) {
+		if (index < fElements.size())
+			fViewer.replace(fElements.get(index), index);
+	}
+
+	/**
+	 * @param filter the filter for the shown elements, or <code>null</code> to show all elements
+	 */
+	public void setFilter(ViewerFilter filter) {
+		fFilter= filter;
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int getElementCount() {
+		return fElements.size();
+	}
+
+	/**
+	 * @param element a test element
+	 * @return <code>true</code> iff the element is shown in a row
+	 */
+	public boolean contains(TestElement element) {
+		return fIndexes.containsKey(element);
+	}
+
+	/**
+	 * Collects the rows again, e.g. after the filter or the status of a filtered element has
+	 * changed. Only the rows that are shown are updated in the table.
+	 */
+	public void refresh() {
+		collectElements();
+		fViewer.setItemCount(fElements.size());
+		fViewer.getTable().clearAll();
+	}
+
+	/**
+	 * Appends added test cases to the rows. Tests are added in the order of the tree, so they
+	 * belong to the end of the table.
+	 *
+	 * @param added the added test elements
+	 */
+	public void add(TestElement[] added) {
+		int count= fElements.size();
+		for (int i= 0; i < added.length; i++) {
+			TestElement element= added[i];
+			if (element instanceof TestCaseElement && ! contains(element) && select(element))
+				addElement(element);
+		}
+		if (fElements.size() != count)
+			fViewer.setItemCount(fElements.size());
+	}
+
+	/**
+	 * Shows the row of an element.
+	 *
+	 * @param element a test element
+	 */
+	public void reveal(TestElement element) {
+		Integer index= fIndexes.get(element);
+		if (index != null) {
+			Table table= fViewer.getTable();
+			table.showItem(table.getItem(index.intValue()));
+		}
 	}
 
-	public Object[] getElements(Object inputElement) {
-		ArrayList<ITestElement> all= new ArrayList<ITestElement>();
-		addAll(all, (TestRoot) inputElement);
-		return all.toArray();
+	private void collectElements() {
+		fElements.clear();
+		fIndexes.clear();
+		if (fRoot != null)
+			addAll(fRoot);
 	}
 
-	private void addAll(ArrayList<ITestElement> all, TestSuiteElement suite) {
+	private void addAll(TestSuiteElement suite) {
+		if (fFilter != null && ! suite.isLoaded() && ! suite.getStatus().isErrorOrFailure())
+			return; // don't load children that are filtered anyway
+
 		ITestElement[] children= suite.getChildren();
 		for (ITestElement element : children) {
 			if (element instanceof TestSuiteElement) {
-				if (((TestSuiteElement) element).getSuiteStatus().isErrorOrFailure())
-					all.add(element); // add failed suite to flat list too
-				addAll(all, (TestSuiteElement) element);
+				TestSuiteElement childSuite= (TestSuiteElement) element;
+				if (childSuite.getSuiteStatus().isErrorOrFailure() && select(childSuite))
+					addElement(childSuite); // add failed suite to flat list too
+				addAll(childSuite);
 			} else if (element instanceof TestCaseElement) {
-				all.add(element);
+				if (select((TestElement) element))
+					addElement((TestElement) element);
 			}
 		}
 	}
 
+	private boolean select(TestElement element) {
+		return fFilter == null || fFilter.select(fViewer, fRoot, element);
+	}
+
+	private void addElement(TestElement element) {
+		fIndexes.put(element, Integer.valueOf(fElements.size()));
+		fElements.add(element);
+	}
+
 	public void dispose() {
 	}
 }
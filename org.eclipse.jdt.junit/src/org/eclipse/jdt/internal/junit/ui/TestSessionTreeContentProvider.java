@@ -43,7 +43,7 @@ public class TestSessionTreeContentProvider implements ITreeContentProvider {
 
 	public boolean hasChildren(Object element) {
 		if (element instanceof TestSuiteElement)
-			return ((TestSuiteElement) element).getChildren().length != 0;
+			return ((TestSuiteElement) element).hasChildren(); // don't load unloaded children
 		else
 			return false;
 	}
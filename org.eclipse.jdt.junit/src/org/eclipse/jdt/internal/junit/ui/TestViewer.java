@@ -14,6 +14,7 @@
 package org.eclipse.jdt.internal.junit.ui;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -30,7 +31,6 @@ import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Menu;
-import org.eclipse.swt.widgets.TableItem;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IMenuListener;
@@ -147,6 +147,10 @@ public class TestViewer {
 	private boolean fTreeNeedsRefresh;
 	private boolean fTableNeedsRefresh;
 	private HashSet<TestElement> fNeedUpdate;
+	/**
+	 * Test elements added since the last update, in the order of the tree.
+	 */
+	private ArrayList<TestElement> fNeedAdd;
 	private TestCaseElement fAutoScrollTarget;
 
 	private LinkedList<TestSuiteElement> fAutoClose;
@@ -176,7 +180,7 @@ public class TestViewer {
 		fTreeLabelProvider= new TestSessionLabelProvider(fTestRunnerPart, TestRunnerViewPart.LAYOUT_HIERARCHICAL);
 		fTreeViewer.setLabelProvider(new ColoringLabelProvider(fTreeLabelProvider));
 
-		fTableViewer= new TableViewer(fViewerbook, SWT.V_SCROLL | SWT.H_SCROLL | SWT.SINGLE);
+		fTableViewer= new TableViewer(fViewerbook, SWT.V_SCROLL | SWT.H_SCROLL | SWT.SINGLE | SWT.VIRTUAL);
 		fTableViewer.setUseHashlookup(true);
 		fTableContentProvider= new TestSessionTableContentProvider();
 		fTableViewer.setContentProvider(fTableContentProvider);
@@ -350,7 +354,10 @@ public class TestViewer {
 					setActiveViewerNeedsRefresh(true);
 					setActiveViewerHasFilter(true);
 					viewer.setInput(null);
-					viewer.addFilter(fFailuresOnlyFilter);
+					if (viewer == fTableViewer)
+						fTableContentProvider.setFilter(fFailuresOnlyFilter);
+					else
+						viewer.addFilter(fFailuresOnlyFilter);
 				}
 
 			} else {
@@ -358,7 +365,10 @@ public class TestViewer {
 					setActiveViewerNeedsRefresh(true);
 					setActiveViewerHasFilter(false);
 					viewer.setInput(null);
-					viewer.removeFilter(fFailuresOnlyFilter);
+					if (viewer == fTableViewer)
+						fTableContentProvider.setFilter(null);
+					else
+						viewer.removeFilter(fFailuresOnlyFilter);
 				}
 			}
 			processChangesInUI();
@@ -411,7 +421,9 @@ public class TestViewer {
 	}
 
 	/**
-	 * To be called periodically by the TestRunnerViewPart (in the UI thread).
+	 * To be called periodically by the TestRunnerViewPart (in the UI thread). Applies the
+	 * changes since the last call as one delta, so that the cost of an update depends on the
+	 * number of changes and shown rows, but not on the number of tests.
 	 */
 	public void processChangesInUI() {
 		TestRoot testRoot;
@@ -421,6 +433,7 @@ public class TestViewer {
 			fTableNeedsRefresh= false;
 			fTreeViewer.setInput(null);
 			fTableViewer.setInput(null);
+			fTableViewer.setItemCount(0);
 			return;
 		}
 
@@ -428,16 +441,33 @@ public class TestViewer {
 
 		StructuredViewer viewer= getActiveViewer();
 		if (getActiveViewerNeedsRefresh()) {
-			clearUpdateAndExpansion();
+			synchronized (this) {
+				if (! fNeedAdd.isEmpty()) {
+					// the inactive viewer would miss the pending additions
+					fTreeNeedsRefresh= true;
+					fTableNeedsRefresh= true;
+				}
+				clearUpdateAndExpansion();
+			}
 			setActiveViewerNeedsRefresh(false);
 			viewer.setInput(testRoot);
+			if (viewer == fTableViewer)
+				fTableViewer.setItemCount(fTableContentProvider.getElementCount());
 
 		} else {
 			Object[] toUpdate;
+			TestElement[] toAdd;
 			synchronized (this) {
 				toUpdate= fNeedUpdate.toArray();
 				fNeedUpdate.clear();
+				toAdd= fNeedAdd.toArray(new TestElement[fNeedAdd.size()]);
+				fNeedAdd.clear();
 			}
+			if (! fTreeNeedsRefresh && toAdd.length > 0)
+				addElementsToTree(toAdd);
+			if (! fTableNeedsRefresh && toAdd.length > 0)
+				fTableContentProvider.add(toAdd);
+
 			if (! fTreeNeedsRefresh && toUpdate.length > 0) {
 				if (fTreeHasFilter)
 					for (Object element : toUpdate)
@@ -457,8 +487,7 @@ public class TestViewer {
 			}
 			if (! fTableNeedsRefresh && toUpdate.length > 0) {
 				if (fTableHasFilter)
-					for (Object element : toUpdate)
-						updateElementInTable((TestElement) element);
+					updateElementsInTable(toUpdate);
 				else
 					fTableViewer.update(toUpdate, null);
 			}
@@ -466,6 +495,25 @@ public class TestViewer {
 		autoScrollInUI();
 	}
 
+	/*
+	 * Adds the children of a parent with one call, elements whose parent is not shown yet are
+	 * ignored by the viewer and are created with their parent.
+	 */
+	private void addElementsToTree(TestElement[] added) {
+		ArrayList<TestElement> children= new ArrayList<TestElement>();
+		for (int i= 0; i < added.length; i++) {
+			TestElement element= added[i];
+			if (fTreeViewer.testFindItem(element) == null) // already created with its parent
+				children.add(element);
+			TestSuiteElement parent= element.getParent();
+			if (i + 1 == added.length || added[i + 1].getParent() != parent) {
+				if (! children.isEmpty())
+					fTreeViewer.add(parent, children.toArray());
+				children.clear();
+			}
+		}
+	}
+
 	private void updateElementInTree(final TestElement testElement) {
 		if (isShown(testElement)) {
 			updateShownElementInTree(testElement);
@@ -498,23 +546,14 @@ public class TestViewer {
 		}
 	}
 
-	private void updateElementInTable(TestElement element) {
-		if (isShown(element)) {
-			if (fTableViewer.testFindItem(element) == null) {
-				TestElement previous= getNextFailure(element, false);
-				int insertionIndex= -1;
-				if (previous != null) {
-					TableItem item= (TableItem) fTableViewer.testFindItem(previous);
-					if (item != null)
-						insertionIndex= fTableViewer.getTable().indexOf(item);
-				}
-				fTableViewer.insert(element, insertionIndex);
-			} else  {
-				fTableViewer.update(element, null);
+	private void updateElementsInTable(Object[] toUpdate) {
+		for (Object element : toUpdate) {
+			if (isShown((TestElement) element) != fTableContentProvider.contains((TestElement) element)) {
+				fTableContentProvider.refresh(); // only realizes the shown rows
+				return;
 			}
-		} else {
-			fTableViewer.remove(element);
 		}
+		fTableViewer.update(toUpdate, null);
 	}
 
 	private boolean isShown(TestElement current) {
@@ -530,7 +569,7 @@ public class TestViewer {
 
 		if (fLayoutMode == TestRunnerViewPart.LAYOUT_FLAT) {
 			if (fAutoScrollTarget != null)
-				fTableViewer.reveal(fAutoScrollTarget);
+				fTableContentProvider.reveal(fAutoScrollTarget);
 			return;
 		}
 
@@ -646,6 +685,7 @@ public class TestViewer {
 
 	private void clearUpdateAndExpansion() {
 		fNeedUpdate= new LinkedHashSet<TestElement>();
+		fNeedAdd= new ArrayList<TestElement>();
 		fAutoClose= new LinkedList<TestSuiteElement>();
 		fAutoExpand= new HashSet<TestSuiteElement>();
 	}
@@ -654,9 +694,7 @@ public class TestViewer {
 	 * @param testElement the added test
 	 */
 	public synchronized void registerTestAdded(TestElement testElement) {
-		//TODO: performance: would only need to refresh parent of added element
-		fTreeNeedsRefresh= true;
-		fTableNeedsRefresh= true;
+		fNeedAdd.add(testElement);
 	}
 
 	public synchronized void registerViewerUpdate(final TestElement testElement) {
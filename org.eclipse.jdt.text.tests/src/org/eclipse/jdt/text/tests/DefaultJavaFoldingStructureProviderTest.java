@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.text.tests;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotation;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotationModel;
+import org.eclipse.jface.text.source.projection.ProjectionViewer;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+
+
+/**
+ * Tests that the folding structure the
+ * {@link org.eclipse.jdt.ui.text.folding.DefaultJavaFoldingStructureProvider} updates after an
+ * edit is the folding structure it computes for the edited file from scratch.
+ *
+ * @since 3.8
+ */
+public class DefaultJavaFoldingStructureProviderTest extends TestCase {
+
+	private static final String SOURCE=
+		"/*\n" +
+		" * Header comment.\n" +
+		" */\n" +
+		"package folding;\n" +
+		"\n" +
+		"import java.util.List;\n" +
+		"import java.util.Map;\n" +
+		"\n" +
+		"/**\n" +
+		" * Javadoc of A.\n" +
+		" */\n" +
+		"public class A {\n" +
+		"    /**\n" +
+		"     * Javadoc of a.\n" +
+		"     */\n" +
+		"    public void a() {\n" +
+		"        int i= 0;\n" +
+		"        i++;\n" +
+		"    }\n" +
+		"\n" +
+		"    public void b() {\n" +
+		"        int j= 0;\n" +
+		"        j++;\n" +
+		"    }\n" +
+		"\n" +
+		"    class Inner {\n" +
+		"        void c() {\n" +
+		"            int k= 0;\n" +
+		"            k++;\n" +
+		"        }\n" +
+		"    }\n" +
+		"\n" +
+		"    List l;\n" +
+		"    Map m;\n" +
+		"}\n";
+
+	private ICompilationUnit fCompilationUnit;
+
+	private JavaEditor fEditor;
+
+	private boolean fWasFoldingEnabled;
+
+
+	public static Test setUpTest(Test someTest) {
+		return new JUnitProjectTestSetup(someTest);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(DefaultJavaFoldingStructureProviderTest.class));
+	}
+
+	protected void setUp() throws Exception {
+		fWasFoldingEnabled= EditorTestHelper.enableFolding(true);
+		IPackageFragmentRoot root= JUnitProjectTestSetup.getProject().getPackageFragmentRoot(JUnitProjectTestSetup.getProject().getProject().getFolder("src"));
+		IPackageFragment pack= root.createPackageFragment("folding", true, null);
+		fCompilationUnit= pack.createCompilationUnit("A.java", SOURCE, true, null);
+		openEditor();
+	}
+
+	protected void tearDown() throws Exception {
+		EditorTestHelper.closeAllEditors();
+		fEditor= null;
+		fCompilationUnit.delete(true, null);
+		EditorTestHelper.enableFolding(fWasFoldingEnabled);
+	}
+
+	private void openEditor() throws Exception {
+		fEditor= (JavaEditor) EditorTestHelper.openInEditor((IFile) fCompilationUnit.getResource(), true);
+		assertNotNull(fEditor);
+		joinReconciler();
+	}
+
+	private void joinReconciler() {
+		assertTrue(EditorTestHelper.joinReconciler(EditorTestHelper.getSourceViewer(fEditor), 100, 10000, 100));
+	}
+
+	private IDocument getDocument() {
+		return EditorTestHelper.getDocument(fEditor);
+	}
+
+	private ProjectionAnnotationModel getModel() {
+		return ((ProjectionViewer) fEditor.getViewer()).getProjectionAnnotationModel();
+	}
+
+	/**
+	 * Replaces the first occurrence of a string and waits until the edit has been reconciled.
+	 *
+	 * @param find the string to replace
+	 * @param replacement the replacement
+	 * @throws BadLocationException if the document changed concurrently
+	 */
+	private void replace(String find, String replacement) throws BadLocationException {
+		int offset= getDocument().get().indexOf(find);
+		assertTrue(find, offset >= 0);
+		getDocument().replace(offset, find.length(), replacement);
+		joinReconciler();
+	}
+
+	/**
+	 * Returns the folding regions of the editor, each with the first line of the folded text
+	 * and its collapsed state.
+	 *
+	 * @param withCollapsedState <code>true</code> to include the collapsed state
+	 * @return the folding regions, sorted by offset
+	 * @throws BadLocationException if the positions do not match the document
+	 */
+	private List<String> getFoldingRegions(boolean withCollapsedState) throws BadLocationException {
+		IDocument document= getDocument();
+		SortedMap<Long, String> regions= new TreeMap<Long, String>(); // sorted by offset and length
+		for (Iterator<?> iter= getModel().getAnnotationIterator(); iter.hasNext();) {
+			ProjectionAnnotation annotation= (ProjectionAnnotation) iter.next();
+			Position position= getModel().getPosition(annotation);
+			if (position == null || position.isDeleted())
+				continue;
+			String firstLine= document.get(position.getOffset(), document.getLineLength(document.getLineOfOffset(position.getOffset()))).trim();
+			String region= position.getOffset() + ":" + position.getLength() + " " + firstLine;
+			if (withCollapsedState && annotation.isCollapsed())
+				region+= " (collapsed)";
+			regions.put(new Long(((long) position.getOffset() << 32) + position.getLength()), region);
+		}
+		return new ArrayList<String>(regions.values());
+	}
+
+	/**
+	 * Returns the annotation of the smallest folding region that contains the given text.
+	 *
+	 * @param text the text
+	 * @return the annotation
+	 */
+	private ProjectionAnnotation getAnnotation(String text) {
+		int offset= getDocument().get().indexOf(text);
+		assertTrue(text, offset >= 0);
+		ProjectionAnnotation result= null;
+		int length= Integer.MAX_VALUE;
+		for (Iterator<?> iter= getModel().getAnnotationIterator(); iter.hasNext();) {
+			ProjectionAnnotation annotation= (ProjectionAnnotation) iter.next();
+			Position position= getModel().getPosition(annotation);
+			if (position != null && position.includes(offset) && position.getLength() < length) {
+				result= annotation;
+				length= position.getLength();
+			}
+		}
+		assertNotNull("no folding region for " + text, result);
+		return result;
+	}
+
+	/**
+	 * Saves the editor, opens it again and compares the folding structure computed from scratch
+	 * with the folding structure after the edits. The collapsed states are not compared, they
+	 * are initialized from the preferences when the editor opens.
+	 *
+	 * @throws Exception if the editor cannot be opened again
+	 */
+	private void assertSameAsFullComputation() throws Exception {
+		List<String> updated= getFoldingRegions(false);
+		fEditor.doSave(null);
+		EditorTestHelper.closeEditor(fEditor);
+		openEditor();
+		List<String> computed= getFoldingRegions(false);
+		assertEquals(computed.toString(), updated.toString());
+	}
+
+	public void testEditInsideMethodBody() throws Exception {
+		replace("        i++;\n", "        i++;\n        i--;\n        i++;\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testJoinLinesInsideMethodBody() throws Exception {
+		replace("        int i= 0;\n        i++;\n", "        int i= 0; i++;\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testSeveralEditsBeforeReconcile() throws Exception {
+		int offset= getDocument().get().indexOf("        j++;\n");
+		getDocument().replace(offset, 0, "        j--;\n");
+		offset= getDocument().get().indexOf("        i++;\n");
+		getDocument().replace(offset, 0, "        i--;\n");
+		joinReconciler();
+		assertSameAsFullComputation();
+	}
+
+	public void testInsertMethod() throws Exception {
+		replace("    public void b() {\n", "    void inserted() {\n        b();\n    }\n\n    public void b() {\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testRemoveMethod() throws Exception {
+		replace("    public void b() {\n        int j= 0;\n        j++;\n    }\n\n", "");
+		assertSameAsFullComputation();
+	}
+
+	public void testEditInsideNestedType() throws Exception {
+		replace("            k++;\n", "            k++;\n            k++;\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testInsertMethodInNestedType() throws Exception {
+		replace("    class Inner {\n", "    class Inner {\n        void d() {\n            c();\n        }\n\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testInsertNestedType() throws Exception {
+		replace("    List l;\n", "    static class Nested {\n        int n;\n    }\n\n    List l;\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testEditJavadoc() throws Exception {
+		replace("     * Javadoc of a.\n", "     * Javadoc of a.\n     * More Javadoc of a.\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testAddJavadoc() throws Exception {
+		replace("    public void b() {\n", "    /**\n     * Javadoc of b.\n     */\n    public void b() {\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testRemoveJavadoc() throws Exception {
+		replace("    /**\n     * Javadoc of a.\n     */\n", "");
+		assertSameAsFullComputation();
+	}
+
+	public void testAddCommentInsideMethodBody() throws Exception {
+		replace("        j++;\n", "        /*\n         * Comment.\n         */\n        j++;\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testEditHeaderComment() throws Exception {
+		replace(" * Header comment.\n", " * Header comment.\n * More header comment.\n");
+		assertSameAsFullComputation();
+	}
+
+	public void testCollapsedStatePreserved() throws Exception {
+		getModel().collapse(getAnnotation("int j= 0;"));
+		getModel().collapse(getAnnotation("int k= 0;"));
+		getModel().collapse(getAnnotation("Javadoc of a."));
+		assertTrue(getAnnotation("int j= 0;").isCollapsed());
+		List<String> before= getFoldingRegions(true);
+
+		// an edit inside a, which is updated incrementally, and a new field before b
+		replace("        i++;\n", "        i++;\n        i++;\n");
+		replace("    public void b() {\n", "    int f;\n\n    public void b() {\n");
+
+		assertTrue(getAnnotation("int j= 0;").isCollapsed());
+		assertTrue(getAnnotation("int k= 0;").isCollapsed());
+		assertTrue(getAnnotation("Javadoc of a.").isCollapsed());
+		assertFalse(getAnnotation("int i= 0;").isCollapsed());
+		assertEquals(before.size(), getFoldingRegions(true).size());
+	}
+}
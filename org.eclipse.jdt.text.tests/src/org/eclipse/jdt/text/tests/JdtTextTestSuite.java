@@ -57,6 +57,7 @@ public class JdtTextTestSuite {
 		suite.addTest(NewForLoopJavaContextTest.suite());
 		suite.addTest(JavaDoubleClickSelectorTest.suite());
 		suite.addTest(BreakContinueTargetFinderTest.suite());
+		suite.addTest(DefaultJavaFoldingStructureProviderTest.suite());
 		suite.addTest(ContentAssistTestSuite.suite());
 		suite.addTest(IndentActionTest.suite());
 		suite.addTest(TemplatesTestSuite.suite());
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.text.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
+
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.ui.SharedASTProvider;
+
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+
+
+/**
+ * Requests the shared AST from many threads while the reconciler keeps creating new ASTs.
+ * <p>
+ * Not part of {@link JdtTextTestSuite} because it runs long, run it on its own.
+ * </p>
+ *
+ * @since 3.8
+ */
+public class SharedASTProviderStressTest extends TestCase {
+
+	private static final int REQUESTERS= 16;
+
+	private static final int REQUESTS_PER_THREAD= 200;
+
+	private static final int EDITS= 20;
+
+	private JavaEditor fEditor;
+
+	private ITypeRoot fTypeRoot;
+
+
+	public static Test setUpTest(Test someTest) {
+		return new JUnitProjectTestSetup(someTest);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(SharedASTProviderStressTest.class));
+	}
+
+	protected void setUp() throws Exception {
+		IFile file= ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/" + JUnitProjectTestSetup.getProject().getElementName() + "/src/junit/framework/TestCase.java"));
+		assertTrue(file.exists());
+		fEditor= (JavaEditor)EditorTestHelper.openInEditor(file, true);
+		assertNotNull(fEditor);
+		fTypeRoot= EditorUtility.getEditorInputJavaElement(fEditor, false);
+		assertNotNull(fTypeRoot);
+	}
+
+	protected void tearDown() throws Exception {
+		EditorTestHelper.closeAllEditors();
+	}
+
+	private static int getSourceLength(CompilationUnit ast) {
+		return ast.getStartPosition() + ast.getLength();
+	}
+
+	public void testConcurrentRequests() throws Exception {
+		final List<CompilationUnit> asts= Collections.synchronizedList(new ArrayList<CompilationUnit>());
+		final List<Throwable> failures= Collections.synchronizedList(new ArrayList<Throwable>());
+
+		// every edit changes the length of the document, an AST matches one of these lengths
+		IDocument document= EditorTestHelper.getDocument(fEditor);
+		final Set<Integer> documentLengths= Collections.synchronizedSet(new HashSet<Integer>());
+		documentLengths.add(Integer.valueOf(document.getLength()));
+
+		Thread[] requesters= new Thread[REQUESTERS];
+		for (int i= 0; i < requesters.length; i++) {
+			requesters[i]= new Thread("SharedASTProviderStressTest requester " + i) {
+				public void run() {
+					try {
+						for (int j= 0; j < REQUESTS_PER_THREAD; j++)
+							asts.add(SharedASTProvider.getAST(fTypeRoot, SharedASTProvider.WAIT_YES, null));
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			};
+			requesters[i].start();
+		}
+
+		for (int i= 0; i < EDITS; i++) {
+			String edit= "/* edit " + i + " */";
+			documentLengths.add(Integer.valueOf(document.getLength() + edit.length()));
+			document.replace(0, 0, edit);
+			EditorTestHelper.runEventQueue(fEditor, 50);
+		}
+
+		for (int i= 0; i < requesters.length; i++) {
+			while (requesters[i].isAlive()) {
+				EditorTestHelper.runEventQueue(fEditor);
+				requesters[i].join(10);
+			}
+		}
+
+		if (!failures.isEmpty())
+			throw new Exception(failures.get(0));
+
+		assertEquals(REQUESTERS * REQUESTS_PER_THREAD, asts.size());
+		for (int i= 0; i < asts.size(); i++) {
+			CompilationUnit ast= asts.get(i);
+			assertNotNull(ast);
+			assertTrue("AST does not match any state of the document", documentLengths.contains(Integer.valueOf(getSourceLength(ast))));
+		}
+
+		// once the edits are reconciled, the shared AST matches the final document
+		CompilationUnit ast= SharedASTProvider.getAST(fTypeRoot, SharedASTProvider.WAIT_YES, null);
+		assertNotNull(ast);
+		assertEquals(document.getLength(), getSourceLength(ast));
+		assertEquals(document.get(), fTypeRoot.getBuffer().getContents());
+	}
+}
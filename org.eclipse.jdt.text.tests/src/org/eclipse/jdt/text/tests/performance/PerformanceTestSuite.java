@@ -49,6 +49,8 @@ public class PerformanceTestSuite extends TestSuite {
 		addTest(SynchronizedLineDifferInitializationTest.suite());
 		addTest(DocumentLineDifferModificationTest.suite());
 		addTest(SpellCheckingTest.suite());
+		addTest(SpellDictionaryPerformanceTest.suite());
+		addTest(SemanticHighlightingTest.suite());
 
 
 		/* !!! IMPORTANT NOTE: The following test must be the last one !!! */
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.source.SourceViewer;
+
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.ui.JavaUI;
+import org.eclipse.jdt.ui.SharedASTProvider;
+
+import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitEditor;
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingManager;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingReconciler;
+import org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener;
+
+
+/**
+ * Measures the time to update the semantic highlighting of a large compilation unit after
+ * an edit inside a method body, which only requires to reconcile the method body, and after an
+ * edit outside of any method body, which requires to reconcile the whole compilation unit.
+ *
+ * @since 3.8
+ */
+public class SemanticHighlightingTest extends TextPerformanceTestCase {
+
+	private static final Class THIS= SemanticHighlightingTest.class;
+
+	private static final String FILE= PerformanceTestSetup.STYLED_TEXT;
+
+	private static final String METHOD= "public void setText(String text) {"; //$NON-NLS-1$
+
+	private static final String TYPE= "public class StyledText extends Canvas {"; //$NON-NLS-1$
+
+	private static final int WARM_UP_RUNS= 3;
+
+	private static final int MEASURED_RUNS= 20;
+
+	private CompilationUnitEditor fEditor;
+
+	private SourceViewer fSourceViewer;
+
+	private IDocument fDocument;
+
+	private SemanticHighlightingReconciler fReconciler;
+
+
+	public static Test suite() {
+		return new PerformanceTestSetup(new TestSuite(THIS));
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+
+		fEditor= (CompilationUnitEditor) EditorTestHelper.openInEditor(ResourceTestHelper.findFile(FILE), JavaUI.ID_CU_EDITOR, true);
+		fSourceViewer= EditorTestHelper.getSourceViewer(fEditor);
+		fDocument= EditorTestHelper.getDocument(fEditor);
+		EditorTestHelper.joinBackgroundActivities(fEditor);
+
+		// drive the semantic highlighting reconciler from the test to measure only its work
+		SemanticHighlightingManager manager= (SemanticHighlightingManager) new Accessor(fEditor, JavaEditor.class).get("fSemanticManager"); //$NON-NLS-1$
+		fReconciler= manager.getReconciler();
+		assertNotNull(fReconciler);
+		invokeEditor("removeReconcileListener"); //$NON-NLS-1$
+	}
+
+	protected void tearDown() throws Exception {
+		invokeEditor("addReconcileListener"); //$NON-NLS-1$
+		EditorTestHelper.revertEditor(fEditor, true);
+		EditorTestHelper.closeAllEditors();
+		super.tearDown();
+	}
+
+	private void invokeEditor(String method) {
+		new Accessor(fEditor, CompilationUnitEditor.class).invoke(method, new Class[] { IJavaReconcilingListener.class }, new Object[] { fReconciler });
+	}
+
+	public void testEditInMethodBody() throws Exception {
+		int offset= getOffsetAfter(METHOD);
+		measure(getNullPerformanceMeter(), offset, getWarmUpRuns());
+		PerformanceMeter performanceMeter= createPerformanceMeter("Java Editor: Semantic highlighting after edit in method body"); //$NON-NLS-1$
+		measure(performanceMeter, offset, getMeasuredRuns());
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	public void testEditInTypeBody() throws Exception {
+		int offset= getOffsetAfter(TYPE);
+		measure(getNullPerformanceMeter(), offset, getWarmUpRuns());
+		PerformanceMeter performanceMeter= createPerformanceMeter("Java Editor: Semantic highlighting after edit in type body"); //$NON-NLS-1$
+		measure(performanceMeter, offset, getMeasuredRuns());
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private int getOffsetAfter(String text) {
+		int offset= fDocument.get().indexOf(text);
+		assertTrue(offset != -1);
+		return offset + text.length();
+	}
+
+	private void measure(PerformanceMeter performanceMeter, int offset, int runs) throws Exception {
+		// reconcile once so that the next reconcile only has to consider the edits
+		reconcile(getNullPerformanceMeter());
+		for (int i= 0; i < runs; i++) {
+			fDocument.replace(offset, 0, "\n int x" + i + "= " + i + ";"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			reconcile(performanceMeter);
+		}
+	}
+
+	private void reconcile(PerformanceMeter performanceMeter) throws Exception {
+		EditorTestHelper.joinReconciler(fSourceViewer, 500, 0, 50);
+		ITypeRoot input= EditorUtility.getEditorInputJavaElement(fEditor, false);
+		CompilationUnit ast= SharedASTProvider.getAST(input, SharedASTProvider.WAIT_YES, null);
+		assertNotNull(ast);
+
+		performanceMeter.start();
+		fReconciler.aboutToBeReconciled();
+		fReconciler.reconciled(ast, false, new NullProgressMonitor());
+		EditorTestHelper.runEventQueue();
+		performanceMeter.stop();
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import java.net.URL;
+import java.util.Locale;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.text.spelling.SpellCheckEngine;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.LocaleSensitiveSpellDictionary;
+
+
+/**
+ * Measures loading the bundled English dictionary and looking up words in it.
+ *
+ * @since 3.8
+ */
+public class SpellDictionaryPerformanceTest extends TextPerformanceTestCase {
+
+	private static final Class THIS= SpellDictionaryPerformanceTest.class;
+
+	private static final int WARM_UP_RUNS= 3;
+
+	private static final int MEASURED_RUNS= 10;
+
+	private static final int LOOKUPS= 20;
+
+	private static final String[] WORDS= new String[] { "the", "dictionary", "Sentence", "performance", "hash", "quickly", "misspeled", "tehre", "recieve", "occurrence" };
+
+	private URL fLocation;
+
+
+	public static Test suite() {
+		return new PerformanceTestSetup(new TestSuite(THIS));
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+		fLocation= JavaPlugin.getDefault().getBundle().getEntry("/" + SpellCheckEngine.DICTIONARY_LOCATION);
+		assertNotNull(fLocation);
+	}
+
+	public void testLoad() {
+		measureLoad(getNullPerformanceMeter(), getWarmUpRuns());
+		PerformanceMeter performanceMeter= createPerformanceMeterForSummary("Spelling: load dictionary", Dimension.ELAPSED_PROCESS);
+		measureLoad(performanceMeter, getMeasuredRuns());
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	public void testIsCorrect() {
+		LocaleSensitiveSpellDictionary dictionary= createLoadedDictionary();
+		measureIsCorrect(dictionary, getNullPerformanceMeter(), getWarmUpRuns());
+		measureIsCorrect(dictionary, createPerformanceMeter(), getMeasuredRuns());
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	public void testGetProposals() {
+		LocaleSensitiveSpellDictionary dictionary= createLoadedDictionary();
+		measureGetProposals(dictionary, getNullPerformanceMeter(), getWarmUpRuns());
+		measureGetProposals(dictionary, createPerformanceMeter(), getMeasuredRuns());
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private void measureLoad(PerformanceMeter performanceMeter, int runs) {
+		for (int i= 0; i < runs; i++) {
+			LocaleSensitiveSpellDictionary dictionary= new LocaleSensitiveSpellDictionary(Locale.US, fLocation);
+			performanceMeter.start();
+			dictionary.isCorrect(WORDS[0]);
+			performanceMeter.stop();
+			dictionary.unload();
+		}
+	}
+
+	private void measureIsCorrect(LocaleSensitiveSpellDictionary dictionary, PerformanceMeter performanceMeter, int runs) {
+		for (int i= 0; i < runs; i++) {
+			performanceMeter.start();
+			for (int j= 0; j < LOOKUPS * 1000; j++)
+				dictionary.isCorrect(WORDS[j % WORDS.length]);
+			performanceMeter.stop();
+		}
+	}
+
+	private void measureGetProposals(LocaleSensitiveSpellDictionary dictionary, PerformanceMeter performanceMeter, int runs) {
+		for (int i= 0; i < runs; i++) {
+			performanceMeter.start();
+			for (int j= 0; j < LOOKUPS; j++)
+				dictionary.getProposals(WORDS[j % WORDS.length], false);
+			performanceMeter.stop();
+		}
+	}
+
+	private LocaleSensitiveSpellDictionary createLoadedDictionary() {
+		LocaleSensitiveSpellDictionary dictionary= new LocaleSensitiveSpellDictionary(Locale.US, fLocation);
+		assertTrue(dictionary.isCorrect(WORDS[0]));
+		assertTrue(dictionary.isLoaded());
+		return dictionary;
+	}
+}
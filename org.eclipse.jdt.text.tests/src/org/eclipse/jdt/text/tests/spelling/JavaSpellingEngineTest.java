@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.spelling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+import org.eclipse.ui.texteditor.spelling.ISpellingProblemCollector;
+import org.eclipse.ui.texteditor.spelling.SpellingProblem;
+
+import org.eclipse.jdt.ui.PreferenceConstants;
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.text.spelling.JavaSpellingEngine;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.DefaultSpellChecker;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellChecker;
+
+/**
+ * Tests that checking partitions in parallel and reusing the results of unchanged partitions
+ * reports the same problems as checking the whole document.
+ *
+ * @since 3.8
+ */
+public class JavaSpellingEngineTest extends TestCase {
+
+	private static class TestSpellingEngine extends JavaSpellingEngine {
+		public List<String> check(IDocument document, ISpellChecker checker) {
+			final List<String> problems= new ArrayList<String>();
+			ISpellingProblemCollector collector= new ISpellingProblemCollector() {
+				public void accept(SpellingProblem problem) {
+					problems.add(problem.getOffset() + ":" + problem.getLength());
+				}
+				public void beginCollecting() {
+				}
+				public void endCollecting() {
+				}
+			};
+			check(document, new IRegion[] { new Region(0, document.getLength()) }, checker, collector, null);
+			return problems;
+		}
+	}
+
+	private static class CountingDictionary extends SpellCheckEngineTestCase.TestDictionary {
+		private int fLookups;
+
+		public boolean isCorrect(String word) {
+			synchronized (this) {
+				fLookups++;
+			}
+			return super.isCorrect(word);
+		}
+
+		public synchronized int getLookups() {
+			int lookups= fLookups;
+			fLookups= 0;
+			return lookups;
+		}
+	}
+
+	private static final String SENTENCE= "The quick brown fox jumps over the lazy dog. ";
+
+	private static final String[] WORDS= { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog" };
+
+	private static final int COMMENTS= 80;
+
+	public static Test suite() {
+		return new TestSuite(JavaSpellingEngineTest.class);
+	}
+
+	public JavaSpellingEngineTest(String name) {
+		super(name);
+	}
+
+	private ISpellChecker fChecker;
+
+	private CountingDictionary fDictionary;
+
+	private TestSpellingEngine fEngine;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDictionary= new CountingDictionary();
+		for (int i= 0; i < WORDS.length; i++)
+			fDictionary.addWord(WORDS[i]);
+		fChecker= new DefaultSpellChecker(PreferenceConstants.getPreferenceStore(), Locale.US);
+		fChecker.addDictionary(fDictionary);
+		fEngine= new TestSpellingEngine();
+	}
+
+	protected void tearDown() throws Exception {
+		fDictionary.unload();
+		super.tearDown();
+	}
+
+	private static IDocument createDocument(String prefix) {
+		StringBuffer buffer= new StringBuffer(prefix);
+		for (int i= 0; i < COMMENTS; i++) {
+			buffer.append("/**\n * ");
+			buffer.append(SENTENCE).append(SENTENCE).append(SENTENCE);
+			buffer.append("Qqz").append(toLetters(i)).append(".\n */\nclass C").append(i).append(" {}\n");
+		}
+		IDocument document= new Document(buffer.toString());
+		JavaPlugin.getDefault().getJavaTextTools().setupJavaDocumentPartitioner(document, IJavaPartitions.JAVA_PARTITIONING);
+		return document;
+	}
+
+	private static String toLetters(int number) {
+		StringBuffer buffer= new StringBuffer();
+		do {
+			buffer.append((char) ('a' + number % 26));
+			number/= 26;
+		} while (number > 0);
+		return buffer.toString();
+	}
+
+	private static List<String> shift(List<String> problems, int delta) {
+		List<String> result= new ArrayList<String>();
+		for (int i= 0; i < problems.size(); i++) {
+			String problem= problems.get(i);
+			int colon= problem.indexOf(':');
+			result.add((Integer.parseInt(problem.substring(0, colon)) + delta) + problem.substring(colon));
+		}
+		return result;
+	}
+
+	public void testAllPartitionsChecked() {
+		IDocument document= createDocument("");
+		List<String> problems= fEngine.check(document, fChecker);
+		assertEquals(COMMENTS, problems.size());
+		for (int i= 0; i < problems.size(); i++) {
+			String problem= problems.get(i);
+			int offset= Integer.parseInt(problem.substring(0, problem.indexOf(':')));
+			assertTrue(document.get().startsWith("Qqz", offset));
+		}
+	}
+
+	public void testUnchangedPartitionsReused() {
+		fDictionary.getLookups();
+		List<String> problems= fEngine.check(createDocument(""), fChecker);
+		int lookups= fDictionary.getLookups();
+		assertTrue(lookups >= COMMENTS);
+
+		assertEquals(problems, fEngine.check(createDocument(""), fChecker));
+		assertEquals(0, fDictionary.getLookups());
+
+		String prefix= "/* Qqzprefix */\n";
+		List<String> shifted= fEngine.check(createDocument(prefix), fChecker);
+		assertEquals(COMMENTS + 1, shifted.size());
+		assertEquals(shift(problems, prefix.length()), shifted.subList(1, shifted.size()));
+		int prefixLookups= fDictionary.getLookups();
+		assertTrue(prefixLookups > 0);
+		assertTrue(prefixLookups < lookups / COMMENTS);
+	}
+
+	public void testCheckingStopsAtProblemsThreshold() {
+		IPreferenceStore store= PreferenceConstants.getPreferenceStore();
+		store.setValue(PreferenceConstants.SPELLING_PROBLEMS_THRESHOLD, 5);
+		try {
+			fDictionary.getLookups();
+			List<String> problems= fEngine.check(createDocument(""), fChecker);
+			assertEquals(5, problems.size());
+			int lookups= fDictionary.getLookups();
+
+			store.setToDefault(PreferenceConstants.SPELLING_PROBLEMS_THRESHOLD);
+			List<String> all= fEngine.check(createDocument(""), fChecker);
+			assertEquals(COMMENTS, all.size());
+			assertEquals(all.subList(0, 5), problems);
+			// most partitions have not been checked before
+			assertTrue(lookups < fDictionary.getLookups());
+		} finally {
+			store.setToDefault(PreferenceConstants.SPELLING_PROBLEMS_THRESHOLD);
+		}
+	}
+
+	public void testAddedWordInvalidatesResults() {
+		assertEquals(COMMENTS, fEngine.check(createDocument(""), fChecker).size());
+		fChecker.ignoreWord("Qqza");
+		assertEquals(COMMENTS - 1, fEngine.check(createDocument(""), fChecker).size());
+	}
+}
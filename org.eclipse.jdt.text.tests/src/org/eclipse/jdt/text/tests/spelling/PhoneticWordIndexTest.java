@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.spelling;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.internal.ui.text.spelling.engine.PhoneticWordIndex;
+
+public class PhoneticWordIndexTest extends TestCase {
+
+	public static Test suite() {
+		return new TestSuite(PhoneticWordIndexTest.class);
+	}
+
+	public PhoneticWordIndexTest(String name) {
+		super(name);
+	}
+
+	private static List<String> getWords(PhoneticWordIndex index, String hash) {
+		List<String> result= new ArrayList<String>();
+		int bucket= index.getBucket(hash);
+		if (bucket == PhoneticWordIndex.NONE)
+			return result;
+		for (int word= index.getFirstWord(bucket); word != PhoneticWordIndex.NONE; word= index.getNextWord(word))
+			result.add(index.getWord(word));
+		assertEquals(result.size(), index.getBucketSize(bucket));
+		return result;
+	}
+
+	public void testEmpty() {
+		PhoneticWordIndex index= new PhoneticWordIndex(4, 0.85f);
+		assertEquals(0, index.getBucketCount());
+		assertEquals(PhoneticWordIndex.NONE, index.getBucket("TRK"));
+	}
+
+	public void testAddAndLookup() {
+		PhoneticWordIndex index= new PhoneticWordIndex(4, 0.85f);
+		index.add("TRK", "truck");
+		index.add("LR", "lorry");
+		index.add("TRK", "Truck");
+
+		assertEquals(2, index.getBucketCount());
+		assertEquals(3, index.getWordCount());
+
+		List<String> words= getWords(index, "TRK");
+		assertEquals(2, words.size());
+		assertEquals("truck", words.get(0));
+		assertEquals("Truck", words.get(1));
+
+		int bucket= index.getBucket("LR");
+		int word= index.getFirstWord(bucket);
+		assertTrue(index.wordEquals(word, "lorry"));
+		assertFalse(index.wordEquals(word, "lorr"));
+		assertFalse(index.wordEquals(word, "lorrys"));
+		assertEquals(PhoneticWordIndex.NONE, index.getNextWord(word));
+	}
+
+	public void testNonAscii() {
+		PhoneticWordIndex index= new PhoneticWordIndex(4, 0.85f);
+		String umlaut= "M\u00FCller";
+		String cjk= "\u6F22\u5B57";
+		String supplementary= "a\uD834\uDD1Eb";
+		index.add("MLR", umlaut);
+		index.add("\u00C4", cjk);
+		index.add("A", supplementary);
+
+		assertEquals(umlaut, getWords(index, "MLR").get(0));
+		assertEquals(cjk, getWords(index, "\u00C4").get(0));
+		assertEquals(supplementary, getWords(index, "A").get(0));
+		assertTrue(index.wordEquals(index.getFirstWord(index.getBucket("A")), supplementary));
+		assertFalse(index.wordEquals(index.getFirstWord(index.getBucket("MLR")), "Muller"));
+	}
+
+	public void testGrowCompactAndClear() {
+		PhoneticWordIndex index= new PhoneticWordIndex(4, 0.85f);
+		for (int i= 0; i < 10000; i++)
+			index.add("H" + (i % 3000), "word" + i);
+		assertEquals(3000, index.getBucketCount());
+		assertEquals(10000, index.getWordCount());
+
+		index.compact();
+		List<String> words= getWords(index, "H42");
+		assertEquals(4, words.size());
+		assertEquals("word42", words.get(0));
+		assertEquals("word9042", words.get(3));
+
+		index.add("H42", "added");
+		assertEquals("added", getWords(index, "H42").get(4));
+
+		index.clear();
+		assertEquals(0, index.getBucketCount());
+		assertEquals(PhoneticWordIndex.NONE, index.getBucket("H42"));
+		index.add("H42", "again");
+		assertEquals("again", getWords(index, "H42").get(0));
+	}
+
+	public void testWriteAndMap() throws Exception {
+		PhoneticWordIndex index= new PhoneticWordIndex(4, 0.85f);
+		for (int i= 0; i < 1000; i++)
+			index.add("H" + (i % 300), "w\u00F6rd" + i);
+
+		File file= File.createTempFile("PhoneticWordIndexTest", ".idx");
+		try {
+			index.write(file, 42);
+			assertNull(PhoneticWordIndex.map(file, 43, 0.85f));
+
+			PhoneticWordIndex mapped= PhoneticWordIndex.map(file, 42, 0.85f);
+			assertNotNull(mapped);
+			assertTrue(mapped.isMapped());
+			assertEquals(300, mapped.getBucketCount());
+			assertEquals(1000, mapped.getWordCount());
+			List<String> words= getWords(mapped, "H42");
+			assertEquals(4, words.size());
+			assertEquals("w\u00F6rd42", words.get(0));
+			assertTrue(mapped.wordEquals(mapped.getFirstWord(mapped.getBucket("H42")), "w\u00F6rd42"));
+
+			mapped.add("H42", "added");
+			mapped.add("NEW", "new");
+			assertFalse(mapped.isMapped());
+			assertEquals("added", getWords(mapped, "H42").get(4));
+			assertEquals("new", getWords(mapped, "NEW").get(0));
+			assertEquals(301, mapped.getBucketCount());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testWriteReplacesFile() throws Exception {
+		File directory= File.createTempFile("PhoneticWordIndexTest", "");
+		directory.delete();
+		assertTrue(directory.mkdir());
+		File file= new File(directory, "index.idx");
+		try {
+			PhoneticWordIndex index= new PhoneticWordIndex(4, 0.85f);
+			index.add("H1", "one");
+			index.write(file, 1);
+			index.add("H2", "two");
+			index.write(file, 2);
+
+			// no temporary files are left behind
+			assertEquals(1, directory.listFiles().length);
+			PhoneticWordIndex mapped= PhoneticWordIndex.map(file, 2, 0.85f);
+			assertNotNull(mapped);
+			assertEquals(2, mapped.getWordCount());
+		} finally {
+			file.delete();
+			directory.delete();
+		}
+	}
+
+	public void testMapInvalidFile() throws Exception {
+		PhoneticWordIndex index= new PhoneticWordIndex(4, 0.85f);
+		for (int i= 0; i < 100; i++)
+			index.add("H" + (i % 30), "word" + i);
+
+		File file= File.createTempFile("PhoneticWordIndexTest", ".idx");
+		try {
+			// header: magic, version, stamp (2), arena size, table length, bucket count, word count
+			index.write(file, 42);
+			assertNotNull(PhoneticWordIndex.map(file, 42, 0.85f));
+
+			assertNull(mapWithHeader(index, file, 4, -4));
+			assertNull(mapWithHeader(index, file, 5, 0));
+			assertNull(mapWithHeader(index, file, 5, 48));
+			assertNull(mapWithHeader(index, file, 6, -1));
+			assertNull(mapWithHeader(index, file, 6, 1 << 28));
+			assertNull(mapWithHeader(index, file, 7, -2));
+			assertNull(mapWithHeader(index, file, 7, Integer.MAX_VALUE));
+
+			// truncated file
+			index.write(file, 42);
+			RandomAccessFile randomAccessFile= new RandomAccessFile(file, "rw");
+			try {
+				randomAccessFile.setLength(randomAccessFile.length() - 4);
+			} finally {
+				randomAccessFile.close();
+			}
+			assertNull(PhoneticWordIndex.map(file, 42, 0.85f));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static PhoneticWordIndex mapWithHeader(PhoneticWordIndex index, File file, int position, int value) throws Exception {
+		index.write(file, 42);
+		writeHeader(file, position, value);
+		return PhoneticWordIndex.map(file, 42, 0.85f);
+	}
+
+	private static void writeHeader(File file, int position, int value) throws Exception {
+		RandomAccessFile randomAccessFile= new RandomAccessFile(file, "rw");
+		try {
+			ByteBuffer buffer= ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+			buffer.putInt(0, value);
+			randomAccessFile.getChannel().write(buffer, position * 4);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+}
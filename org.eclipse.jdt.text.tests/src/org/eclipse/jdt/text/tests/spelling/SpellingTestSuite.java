@@ -26,6 +26,8 @@ public class SpellingTestSuite {
 		TestSuite suite = new TestSuite("Test Suite org.eclipse.jdt.text.tests.spelling"); //$NON-NLS-1$
 		//$JUnit-BEGIN$
 		suite.addTest(SpellCheckEngineTestCase.suite());
+		suite.addTest(PhoneticWordIndexTest.suite());
+		suite.addTest(JavaSpellingEngineTest.suite());
 		//$JUnit-END$
 		return suite;
 	}
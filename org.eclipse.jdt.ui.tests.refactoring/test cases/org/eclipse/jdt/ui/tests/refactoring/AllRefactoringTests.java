@@ -43,6 +43,7 @@ public class AllRefactoringTests {
 
 		//-- structure
 		suite.addTest(ChangeSignatureTests.suite());
+		suite.addTest(RefactoringSearchCacheTests.suite());
 		suite.addTest(IntroduceParameterObjectTests.suite());
 		suite.addTest(PullUpTests.suite());
 		suite.addTest(PushDownTests.suite());
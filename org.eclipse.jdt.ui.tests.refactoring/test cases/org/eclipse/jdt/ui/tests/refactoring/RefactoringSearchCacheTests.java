@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.ltk.core.refactoring.Refactoring;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.participants.ProcessorBasedRefactoring;
+import org.eclipse.ltk.core.refactoring.participants.RenameRefactoring;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IMethod;
+
+import org.eclipse.jdt.internal.corext.refactoring.rename.RenameVirtualMethodProcessor;
+import org.eclipse.jdt.internal.corext.refactoring.structure.ChangeSignatureProcessor;
+
+/**
+ * Checks the final conditions of refactorings which cache their searches twice, so that the
+ * second check replays the cached matches into new requestors.
+ */
+public class RefactoringSearchCacheTests extends RefactoringTest {
+
+	private static final Class clazz= RefactoringSearchCacheTests.class;
+
+	private static final String SOURCE=
+		"package p;\n" +
+		"class A {\n" +
+		"    void m(int i) { }\n" +
+		"    void f() {\n" +
+		"        m(1);\n" +
+		"        this.m(2);\n" +
+		"        new A().m(m2());\n" +
+		"    }\n" +
+		"    int m2() { return 0; }\n" +
+		"}\n" +
+		"class B extends A {\n" +
+		"    void m(int i) {\n" +
+		"        super.m(i);\n" +
+		"    }\n" +
+		"}\n";
+
+	private static final String EXPECTED=
+		"package p;\n" +
+		"class A {\n" +
+		"    void k(int i) { }\n" +
+		"    void f() {\n" +
+		"        k(1);\n" +
+		"        this.k(2);\n" +
+		"        new A().k(m2());\n" +
+		"    }\n" +
+		"    int m2() { return 0; }\n" +
+		"}\n" +
+		"class B extends A {\n" +
+		"    void k(int i) {\n" +
+		"        super.k(i);\n" +
+		"    }\n" +
+		"}\n";
+
+	public RefactoringSearchCacheTests(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new RefactoringTestSetup(new TestSuite(clazz));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new RefactoringTestSetup(test);
+	}
+
+	private void performCheckedTwice(Refactoring refactoring, ICompilationUnit cu) throws Exception {
+		RefactoringStatus status= refactoring.checkInitialConditions(new NullProgressMonitor());
+		assertTrue(status.toString(), status.isOK());
+		status= refactoring.checkFinalConditions(new NullProgressMonitor());
+		assertFalse(status.toString(), status.hasError());
+		// the requestors of the first check have narrowed the cached matches
+		status= refactoring.checkFinalConditions(new NullProgressMonitor());
+		assertFalse(status.toString(), status.hasError());
+
+		performChange(refactoring, false);
+		assertEqualLines(EXPECTED, cu.getSource());
+	}
+
+	public void testRenameVirtualMethod() throws Exception {
+		ICompilationUnit cu= createCU(getPackageP(), "A.java", SOURCE);
+		IMethod method= getType(cu, "A").getMethod("m", new String[] { "I" });
+		RenameVirtualMethodProcessor processor= new RenameVirtualMethodProcessor(method);
+		processor.setNewElementName("k");
+		performCheckedTwice(new RenameRefactoring(processor), cu);
+	}
+
+	public void testChangeSignature() throws Exception {
+		ICompilationUnit cu= createCU(getPackageP(), "A.java", SOURCE);
+		IMethod method= getType(cu, "A").getMethod("m", new String[] { "I" });
+		ChangeSignatureProcessor processor= new ChangeSignatureProcessor(method);
+		processor.setNewMethodName("k");
+		performCheckedTwice(new ProcessorBasedRefactoring(processor), cu);
+	}
+}
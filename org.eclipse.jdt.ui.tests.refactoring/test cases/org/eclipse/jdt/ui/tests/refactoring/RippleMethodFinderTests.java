@@ -13,6 +13,8 @@ package org.eclipse.jdt.ui.tests.refactoring;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.Test;
@@ -25,6 +27,8 @@ import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IPackageFragment;
 
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchCache;
+import org.eclipse.jdt.internal.corext.refactoring.base.ReferencesInBinaryContext;
 import org.eclipse.jdt.internal.corext.refactoring.rename.RippleMethodFinder2;
 
 import org.eclipse.jdt.ui.tests.refactoring.infra.AbstractCUTestCase;
@@ -91,6 +95,13 @@ public class RippleMethodFinderTests extends AbstractCUTestCase {
 				assertTrue("method not found: " + method, rippleMethods.remove(method));
 			}
 			assertEquals("found wrong ripple methods: " + rippleMethods, 0, rippleMethods.size());
+
+			RefactoringSearchCache cache= new RefactoringSearchCache();
+			for (int i= 0; i < 2; i++) {
+				IMethod[] cached= RippleMethodFinder2.getRelatedMethods(target, new ReferencesInBinaryContext(""), new NullProgressMonitor(), null, cache);
+				assertEquals(new HashSet(Arrays.asList(result)), new HashSet(Arrays.asList(cached)));
+			}
+			assertEquals(cache.getQueryCount(), cache.getSavedQueryCount());
 		} finally {
 			if (cu != null)
 				cu.delete(true, null);
@@ -134,4 +145,45 @@ public class RippleMethodFinderTests extends AbstractCUTestCase {
 		perform();
 	}
 
+	public void testWideHierarchy() throws Exception {
+		IPackageFragment pack= RefactoringTestSetup.getPackageP();
+		List/*<ICompilationUnit>*/ cus= new ArrayList();
+		try {
+			ICompilationUnit dao= createCU(pack, "Dao.java", "package p;\npublic interface Dao {\n    void find();\n}\n");
+			cus.add(dao);
+			cus.add(createCU(pack, "Finder.java", "package p;\npublic interface Finder {\n    void find();\n}\n"));
+			cus.add(createCU(pack, "AbstractDao.java", "package p;\npublic abstract class AbstractDao implements Dao {\n    public void find() {\n    }\n}\n"));
+			cus.add(createCU(pack, "FindingDao.java", "package p;\npublic class FindingDao extends AbstractDao implements Finder {\n}\n"));
+			cus.add(createCU(pack, "Other.java", "package p;\npublic interface Other {\n    void find();\n}\n"));
+			cus.add(createCU(pack, "OtherImpl.java", "package p;\npublic class OtherImpl implements Other {\n    public void find() {\n    }\n}\n"));
+			for (int i= 0; i < 64; i++) {
+				String superType= i % 2 == 0 ? "extends AbstractDao" : "implements Dao";
+				cus.add(createCU(pack, "Dao" + i + ".java", "package p;\npublic class Dao" + i + " " + superType + " {\n    public void find() {\n    }\n}\n"));
+			}
+
+			HashSet expected= new HashSet();
+			for (int i= 0; i < cus.size(); i++) {
+				IMethod method= ((ICompilationUnit) cus.get(i)).findPrimaryType().getMethod("find", new String[0]);
+				if (method.exists() && ! method.getDeclaringType().getElementName().startsWith("Other"))
+					expected.add(method);
+			}
+			assertEquals(3 + 64, expected.size());
+
+			IMethod target= dao.findPrimaryType().getMethod("find", new String[0]);
+			IMethod[] sequential= RippleMethodFinder2.getRelatedMethods(target, new NullProgressMonitor(), null);
+			assertEquals(expected, new HashSet(Arrays.asList(sequential)));
+
+			RippleMethodFinder2.setMinTypesPerThread(1);
+			try {
+				IMethod[] concurrent= RippleMethodFinder2.getRelatedMethods(target, new NullProgressMonitor(), null);
+				assertEquals(expected, new HashSet(Arrays.asList(concurrent)));
+			} finally {
+				RippleMethodFinder2.setMinTypesPerThread(-1);
+			}
+		} finally {
+			for (int i= 0; i < cus.size(); i++)
+				((ICompilationUnit) cus.get(i)).delete(true, null);
+		}
+	}
+
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.reorg;
+
+import junit.framework.Test;
+
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.ltk.core.refactoring.participants.RenameRefactoring;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
+
+import org.eclipse.jdt.internal.corext.refactoring.rename.RenameVirtualMethodProcessor;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Renames an interface method that is implemented by many classes. One of the classes inherits
+ * the method from its superclass and also implements a second interface declaring the method, so
+ * that the ripple method finder has to look for types inheriting the method from two ancestors.
+ */
+public class RenameMethodInWideHierarchyPerfTests extends RepeatingRefactoringPerformanceTestCase {
+
+	public static Test suite() {
+		// we must make sure that cold is executed before warm
+		OrderedTestSuite suite= new OrderedTestSuite(RenameMethodInWideHierarchyPerfTests.class, new String[] {
+			"testCold_10_1",
+			"test_10_1",
+			"test_100_1",
+			"test_1000_1",
+			"test_5000_1",
+		});
+		return new RefactoringPerformanceTestSetup(suite);
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public RenameMethodInWideHierarchyPerfTests(String name) {
+		super(name);
+	}
+
+	public void testCold_10_1() throws Exception {
+		executeRefactoring(10, 1, false, 10);
+	}
+
+	public void test_10_1() throws Exception {
+		executeRefactoring(10, 1, true, 10);
+	}
+
+	public void test_100_1() throws Exception {
+		executeRefactoring(100, 1, true, 10);
+	}
+
+	public void test_1000_1() throws Exception {
+		tagAsSummary("Rename method in wide hierarchy", Dimension.ELAPSED_PROCESS);
+		executeRefactoring(1000, 1, true, 10);
+	}
+
+	public void test_5000_1() throws Exception {
+		executeRefactoring(5000, 1, true, 3);
+	}
+
+	protected void doExecuteRefactoring(int numberOfCus, int numberOfRefs, boolean measure) throws Exception {
+		ICompilationUnit cunit= generateSources(numberOfCus, numberOfRefs);
+		IMethod method= cunit.findPrimaryType().getMethod("find", new String[0]);
+		RenameVirtualMethodProcessor processor= new RenameVirtualMethodProcessor(method);
+		processor.setNewElementName("load");
+		executeRefactoring(new RenameRefactoring(processor), measure);
+		assertRenamed(numberOfCus);
+	}
+
+	private void assertRenamed(int numberOfCus) throws Exception {
+		IPackageFragment definition= getTestProject().getSourceFolder().getPackageFragment("def");
+		assertRenamed(definition.getCompilationUnit("Dao.java").getType("Dao"));
+		assertRenamed(definition.getCompilationUnit("Finder.java").getType("Finder"));
+		assertRenamed(definition.getCompilationUnit("AbstractDao.java").getType("AbstractDao"));
+		IPackageFragment implementations= getTestProject().getSourceFolder().getPackageFragment("impl");
+		for (int i= 0; i < numberOfCus; i++) {
+			IType type= implementations.getCompilationUnit("Dao" + i + ".java").getType("Dao" + i);
+			assertRenamed(type);
+			assertEquals(-1, type.getCompilationUnit().getSource().indexOf("find"));
+		}
+	}
+
+	private void assertRenamed(IType type) {
+		assertFalse(type.getMethod("find", new String[0]).exists());
+		assertTrue(type.getMethod("load", new String[0]).exists());
+	}
+
+	private ICompilationUnit generateSources(int numberOfCus, int numberOfRefs) throws Exception {
+		IPackageFragment definition= getTestProject().getSourceFolder().createPackageFragment("def", false, null);
+		ICompilationUnit result= definition.createCompilationUnit("Dao.java",
+				"package def;\npublic interface Dao {\n    void find();\n}\n", false, null);
+		definition.createCompilationUnit("Finder.java",
+				"package def;\npublic interface Finder {\n    void find();\n}\n", false, null);
+		definition.createCompilationUnit("AbstractDao.java",
+				"package def;\npublic abstract class AbstractDao implements Dao {\n    public void find() {\n    }\n}\n", false, null);
+		definition.createCompilationUnit("FindingDao.java",
+				"package def;\npublic class FindingDao extends AbstractDao implements Finder {\n}\n", false, null);
+
+		IPackageFragment implementations= getTestProject().getSourceFolder().createPackageFragment("impl", false, null);
+		for (int i= 0; i < numberOfCus; i++) {
+			createImplementationCu(implementations, i, numberOfRefs);
+		}
+		return result;
+	}
+
+	private void createImplementationCu(IPackageFragment pack, int index, int numberOfRefs) throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package " + pack.getElementName() + ";\n");
+		buf.append("import def.AbstractDao;\n");
+		buf.append("import def.Dao;\n");
+		buf.append("public class Dao" + index + (index % 2 == 0 ? " extends AbstractDao" : " implements Dao") + " {\n");
+		buf.append("    public void find() {\n");
+		buf.append("    }\n");
+		buf.append("    public void ref(Dao dao) {\n");
+		for (int i= 0; i < numberOfRefs; i++) {
+			buf.append("        dao.find();\n");
+		}
+		buf.append("    }\n");
+		buf.append("}\n");
+		pack.createCompilationUnit("Dao" + index + ".java", buf.toString(), false, null);
+	}
+}
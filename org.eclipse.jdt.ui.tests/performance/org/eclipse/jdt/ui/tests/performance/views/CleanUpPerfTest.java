@@ -111,9 +111,16 @@ public class CleanUpPerfTest extends JdtPerformanceTestCase {
 			"testVariableDeclarationCleanUp",
 			"testCodeFormatCleanUp",
 			"testOrganizeImports",
+			"testCodeStyleCleanUpSequentialProjects",
+			"testCodeStyleCleanUpParallelProjects",
 		}));
 	}
 
+	/**
+	 * The number of projects cleaned up by the multi-project tests.
+	 */
+	private static final int PROJECTS= 4;
+
 	public static Test setUpTest(Test someTest) {
 		return new MyTestSetup(someTest);
 	}
@@ -439,6 +446,50 @@ public class CleanUpPerfTest extends JdtPerformanceTestCase {
 		doCleanUp(cleanUpRefactoring);
 	}
 
+	public void testCodeStyleCleanUpSequentialProjects() throws Exception {
+		doCodeStyleCleanUpProjects(1);
+	}
+
+	public void testCodeStyleCleanUpParallelProjects() throws Exception {
+		doCodeStyleCleanUpProjects(PROJECTS);
+	}
+
+	private void doCodeStyleCleanUpProjects(int maxParallelProjects) throws Exception {
+		IJavaProject[] projects= new IJavaProject[PROJECTS - 1];
+		try {
+			File junitSrcArchive= JavaTestPlugin.getDefault().getFileInPlugin(JavaProjectHelper.JUNIT_SRC_381);
+			for (int i= 0; i < projects.length; i++) {
+				projects[i]= JavaProjectHelper.createJavaProject("TestProject" + (i + 2), "bin");
+				assertTrue("rt not found", JavaProjectHelper.addRTJar(projects[i]) != null);
+				JavaProjectHelper.addSourceContainerWithImport(projects[i], MyTestSetup.SRC_CONTAINER, junitSrcArchive, JavaProjectHelper.JUNIT_SRC_ENCODING);
+			}
+
+			CleanUpRefactoring cleanUpRefactoring= new CleanUpRefactoring();
+			cleanUpRefactoring.setMaxParallelProjects(maxParallelProjects);
+			addAllCUs(cleanUpRefactoring, MyTestSetup.fJProject1.getChildren());
+			for (int i= 0; i < projects.length; i++)
+				addAllCUs(cleanUpRefactoring, projects[i].getChildren());
+
+			Map node= getNullSettings();
+
+			node.put(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_FIELD_USE_THIS, CleanUpOptions.TRUE);
+			node.put(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_FIELD_USE_THIS_ALWAYS, CleanUpOptions.TRUE);
+			node.put(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_METHOD_USE_THIS, CleanUpOptions.TRUE);
+			node.put(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_METHOD_USE_THIS_ALWAYS, CleanUpOptions.TRUE);
+
+			storeSettings(node);
+
+			cleanUpRefactoring.addCleanUp(new CodeStyleCleanUp());
+
+			doCleanUp(cleanUpRefactoring);
+		} finally {
+			for (int i= 0; i < projects.length; i++) {
+				if (projects[i] != null && projects[i].exists())
+					JavaProjectHelper.delete(projects[i]);
+			}
+		}
+	}
+
 	private void doCleanUp(CleanUpRefactoring refactoring) throws CoreException {
 		refactoring.setUseOptionsFromProfile(true);
 
@@ -26,18 +26,24 @@ import org.eclipse.test.performance.PerformanceMeter;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IImportContainer;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation;
+import org.eclipse.jdt.internal.corext.codemanipulation.TypeNameMatchCache;
 
 import org.eclipse.jdt.ui.SharedASTProvider;
 import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
 
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+
 public class OrganizeImportsPerfTest extends JdtPerformanceTestCase {
 
 	private static class MyTestSetup extends TestSetup {
@@ -64,7 +70,9 @@ public class OrganizeImportsPerfTest extends JdtPerformanceTestCase {
 
 	public static Test suite() {
 		return new MyTestSetup(new OrderedTestSuite(OrganizeImportsPerfTest.class, new String[] {
-			"testOrganizeImport"
+			"testOrganizeImport",
+			"testOrganizeImportMissingImports",
+			"testOrganizeImportMissingImportsCached"
 		}));
 	}
 
@@ -106,6 +114,73 @@ public class OrganizeImportsPerfTest extends JdtPerformanceTestCase {
 		Performance.getDefault().assertPerformance(fPerformanceMeter);
 	}
 
+	public void testOrganizeImportMissingImports() throws Exception {
+		measureMissingImports(Performance.getDefault().getNullPerformanceMeter(), 2, false);
+		measureMissingImports(fPerformanceMeter, 5, false);
+
+		commitMeasurements();
+		Performance.getDefault().assertPerformance(fPerformanceMeter);
+	}
+
+	public void testOrganizeImportMissingImportsCached() throws Exception {
+		measureMissingImports(Performance.getDefault().getNullPerformanceMeter(), 2, true);
+		measureMissingImports(fPerformanceMeter, 5, true);
+
+		commitMeasurements();
+		Performance.getDefault().assertPerformance(fPerformanceMeter);
+	}
+
+	/**
+	 * Organizes the imports of all compilation units after their imports have been removed, so
+	 * that the type names have to be searched.
+	 *
+	 * @param performanceMeter the performance meter
+	 * @param runs the number of runs
+	 * @param useCache <code>true</code> if the compilation units share a type name cache
+	 * @throws Exception if organizing the imports fails
+	 */
+	private void measureMissingImports(PerformanceMeter performanceMeter, int runs, boolean useCache) throws Exception {
+		List cusList= new ArrayList();
+		addAllCUs(MyTestSetup.fJProject1.getChildren(), cusList);
+		ICompilationUnit[] cus= (ICompilationUnit[])cusList.toArray(new ICompilationUnit[cusList.size()]);
+
+		for (int j= 0; j < runs; j++) {
+			ICompilationUnit[] workingCopies= new ICompilationUnit[cus.length];
+			CompilationUnit[] roots= new CompilationUnit[cus.length];
+			for (int i= 0; i < cus.length; i++) {
+				workingCopies[i]= cus[i].getWorkingCopy(new WorkingCopyOwner() {}, null);
+				IImportContainer container= workingCopies[i].getImportContainer();
+				if (container.exists())
+					container.delete(true, null);
+
+				ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
+				parser.setSource(workingCopies[i]);
+				parser.setResolveBindings(true);
+				roots[i]= (CompilationUnit)parser.createAST(null);
+			}
+
+			joinBackgroudActivities();
+
+			performanceMeter.start();
+			TypeNameMatchCache cache= useCache ? new TypeNameMatchCache() : null;
+			try {
+				for (int i= 0; i < roots.length; i++) {
+					OrganizeImportsOperation op= new OrganizeImportsOperation(workingCopies[i], roots[i], true, false, true, null);
+					op.setTypeNameMatchCache(cache);
+					op.createTextEdit(null);
+				}
+			} finally {
+				if (cache != null)
+					cache.dispose();
+			}
+			performanceMeter.stop();
+
+			for (int i= 0; i < workingCopies.length; i++) {
+				workingCopies[i].discardWorkingCopy();
+			}
+		}
+	}
+
 	private void measure(PerformanceMeter performanceMeter, int runs) throws Exception {
 		for (int j= 0; j < runs; j++) {
 			List cusList= new ArrayList();
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.jdt.internal.junit.model.ITestRunListener2;
+import org.eclipse.jdt.internal.junit.model.RemoteTestRunnerClient;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageWriter;
+import org.eclipse.jdt.internal.junit.runner.MessageIds;
+import org.eclipse.jdt.internal.junit.runner.MessageSender;
+
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+/**
+ * Measures the throughput of the protocol between the RemoteTestRunner and the
+ * RemoteTestRunnerClient with a synthetic run of a million tests.
+ */
+public class TestRunProtocolPerfTest extends JdtPerformanceTestCase {
+
+	private static final int TEST_COUNT= 1000000;
+
+	private static class CountingListener implements ITestRunListener2 {
+		private int fTreeEntries;
+		private int fEndedTests;
+		private boolean fDone;
+
+		public void testRunStarted(int testCount) {
+		}
+
+		public void testTreeEntry(String description) {
+			fTreeEntries++;
+		}
+
+		public void testStarted(String testId, String testName) {
+		}
+
+		public void testEnded(String testId, String testName) {
+			fEndedTests++;
+		}
+
+		public void testFailed(int status, String testId, String testName, String trace, String expected, String actual) {
+		}
+
+		public void testReran(String testId, String testClass, String testName, int status, String trace, String expected, String actual) {
+		}
+
+		public synchronized void testRunEnded(long elapsedTime) {
+			fDone= true;
+			notifyAll();
+		}
+
+		public synchronized void testRunStopped(long elapsedTime) {
+			testRunEnded(elapsedTime);
+		}
+
+		public synchronized void testRunTerminated() {
+			testRunEnded(0);
+		}
+
+		public synchronized void waitForEnd() throws InterruptedException {
+			while (!fDone)
+				wait();
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(TestRunProtocolPerfTest.class);
+	}
+
+	public TestRunProtocolPerfTest(String name) {
+		super(name);
+	}
+
+	public void testTextProtocol() throws Exception {
+		measureTestRun(false);
+	}
+
+	public void testBinaryProtocol() throws Exception {
+		tagAsSummary("Report a million tests to the JUnit view", Dimension.ELAPSED_PROCESS);
+		measureTestRun(true);
+	}
+
+	private void measureTestRun(boolean binary) throws Exception {
+		int port= findFreePort();
+		CountingListener listener= new CountingListener();
+		RemoteTestRunnerClient client= new RemoteTestRunnerClient();
+		client.startListening(new ITestRunListener2[] { listener }, port);
+
+		Socket socket= connect(port);
+		BinaryMessageWriter binaryWriter= null;
+		try {
+			final PrintWriter writer= new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8")), false);
+			startMeasuring();
+			if (binary) {
+				writer.println(MessageIds.BINARY_PROTOCOL + MessageIds.BINARY_PROTOCOL_VERSION);
+				writer.flush();
+				binaryWriter= new BinaryMessageWriter(socket.getOutputStream());
+				sendTestRun(binaryWriter);
+				binaryWriter.flush();
+			} else {
+				sendTestRun(new MessageSender() {
+					public void sendMessage(String msg) {
+						writer.println(msg);
+					}
+
+					public void flush() {
+						writer.flush();
+					}
+				});
+			}
+			listener.waitForEnd();
+			stopMeasuring();
+		} finally {
+			if (binaryWriter != null)
+				binaryWriter.close();
+			socket.close();
+		}
+
+		assertEquals(TEST_COUNT, listener.fTreeEntries);
+		assertEquals(TEST_COUNT, listener.fEndedTests);
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/*
+	 * Sends the messages of the RemoteTestRunner for a run of passing tests.
+	 */
+	private static void sendTestRun(MessageSender sender) {
+		sender.sendMessage(MessageIds.TEST_RUN_START + TEST_COUNT + " v2");
+		for (int i= 0; i < TEST_COUNT; i++)
+			sender.sendMessage(MessageIds.TEST_TREE + i + ",test" + i + "(p.Test" + i / 100 + "),false,1");
+		for (int i= 0; i < TEST_COUNT; i++) {
+			String test= i + ",test" + i + "(p.Test" + i / 100 + ")";
+			sender.sendMessage(MessageIds.TEST_START + test);
+			sender.flush();
+			sender.sendMessage(MessageIds.TEST_END + test);
+		}
+		sender.sendMessage(MessageIds.TEST_RUN_END + 0);
+		sender.flush();
+	}
+
+	private static int findFreePort() throws IOException {
+		ServerSocket socket= new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static Socket connect(int port) throws Exception {
+		for (int i= 0; i < 50; i++) {
+			try {
+				return new Socket("localhost", port);
+			} catch (IOException e) {
+				Thread.sleep(100);
+			}
+		}
+		throw new IOException("Cannot connect to port " + port);
+	}
+}
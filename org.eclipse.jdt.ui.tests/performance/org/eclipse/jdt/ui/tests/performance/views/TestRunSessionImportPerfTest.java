@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.jdt.junit.model.ITestElement;
+
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+import org.eclipse.jdt.internal.junit.model.JUnitModel;
+import org.eclipse.jdt.internal.junit.model.TestRunSession;
+import org.eclipse.jdt.internal.junit.model.TestSuiteElement;
+
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+/**
+ * Measures the import and export of a large JUnit result file, like the ones written by the Ant
+ * 'junitreport' task on a build server.
+ */
+public class TestRunSessionImportPerfTest extends JdtPerformanceTestCase {
+
+	private static final int SUITE_COUNT= 2000;
+	private static final int TESTS_PER_SUITE= 100;
+	private static final int FAILURE_INTERVAL= 50;
+
+	private File fResultFile;
+	private TestRunSession fSession;
+
+	public static Test suite() {
+		return new TestSuite(TestRunSessionImportPerfTest.class);
+	}
+
+	public TestRunSessionImportPerfTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fResultFile= File.createTempFile("junitreport", ".xml");
+		writeResultFile(fResultFile);
+		assertTrue(fResultFile.length() > JUnitModel.LAZY_LOADING_FILE_SIZE);
+	}
+
+	protected void tearDown() throws Exception {
+		if (fSession != null)
+			JUnitCorePlugin.getModel().removeTestRunSession(fSession);
+		fResultFile.delete();
+		super.tearDown();
+	}
+
+	public void testImport() throws Exception {
+		tagAsSummary("Import a JUnit result file with 200'000 tests", Dimension.ELAPSED_PROCESS);
+		startMeasuring();
+		fSession= JUnitModel.importTestRunSession(fResultFile);
+		stopMeasuring();
+
+		assertEquals(SUITE_COUNT * TESTS_PER_SUITE, fSession.getTotalCount());
+		assertEquals(SUITE_COUNT * TESTS_PER_SUITE / FAILURE_INTERVAL, fSession.getFailureCount());
+		ITestElement[] suites= fSession.getTestRoot().getChildren();
+		assertEquals(SUITE_COUNT, suites.length);
+		for (int i= 0; i < suites.length; i++)
+			assertFalse(((TestSuiteElement) suites[i]).isLoaded());
+
+		// expanding a suite only loads its own tests
+		assertEquals(TESTS_PER_SUITE, ((TestSuiteElement) suites[1]).getChildren().length);
+		assertTrue(((TestSuiteElement) suites[1]).isLoaded());
+		assertFalse(((TestSuiteElement) suites[2]).isLoaded());
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testExport() throws Exception {
+		fSession= JUnitModel.importTestRunSession(fResultFile);
+		File exportFile= File.createTempFile("testrun", ".xml");
+		try {
+			startMeasuring();
+			JUnitModel.exportTestRunSession(fSession, exportFile);
+			stopMeasuring();
+
+			ITestElement[] suites= fSession.getTestRoot().getChildren();
+			for (int i= 0; i < suites.length; i++)
+				assertFalse(((TestSuiteElement) suites[i]).isLoaded());
+
+			TestRunSession reimported= JUnitModel.importTestRunSession(exportFile);
+			try {
+				assertEquals(fSession.getTotalCount(), reimported.getTotalCount());
+				assertEquals(fSession.getStartedCount(), reimported.getStartedCount());
+				assertEquals(fSession.getFailureCount(), reimported.getFailureCount());
+			} finally {
+				JUnitCorePlugin.getModel().removeTestRunSession(reimported);
+			}
+		} finally {
+			exportFile.delete();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private static void writeResultFile(File file) throws IOException {
+		Writer writer= new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites>\n");
+			for (int i= 0; i < SUITE_COUNT; i++) {
+				writer.write("  <testsuite name=\"Test" + i + "\" package=\"p\" time=\"1.0\">\n");
+				for (int j= 0; j < TESTS_PER_SUITE; j++) {
+					writer.write("    <testcase name=\"test" + j + "\" classname=\"p.Test" + i + "\" time=\"0.01\"");
+					if (j % FAILURE_INTERVAL == 0) {
+						writer.write(">\n      <failure>junit.framework.AssertionFailedError: test" + j + "\n");
+						for (int k= 0; k < 10; k++)
+							writer.write("\tat p.Test" + i + ".test" + j + "(Test" + i + ".java:" + (k + 10) + ")\n");
+						writer.write("      </failure>\n    </testcase>\n");
+					} else {
+						writer.write("/>\n");
+					}
+				}
+				writer.write("  </testsuite>\n");
+			}
+			writer.write("</testsuites>\n");
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -92,8 +92,10 @@ public class AbstractTestRunListenerTest extends TestCase {
 	}
 
 	private static class TestJUnitLaunchShortcut extends JUnitLaunchShortcut {
-		public static ILaunchConfiguration createConfiguration(IJavaElement element) throws CoreException {
+		public static ILaunchConfiguration createConfiguration(IJavaElement element, int threads) throws CoreException {
 			ILaunchConfigurationWorkingCopy copy= new TestJUnitLaunchShortcut().createLaunchConfiguration(element);
+			if (threads > 1)
+				copy.setAttribute(JUnitLaunchConfigurationConstants.ATTR_TEST_THREADS, threads);
 			return copy.doSave();
 		}
 	}
@@ -107,6 +109,11 @@ public class AbstractTestRunListenerTest extends TestCase {
 	}
 
 	protected void launchJUnit(IJavaElement aTest) throws CoreException {
+		launchJUnit(aTest, 1);
+	}
+
+	protected void launchJUnit(IJavaElement aTest, int threads) throws CoreException {
+		fLaunchHasTerminated= false;
 		ResourcesPlugin.getWorkspace().build(IncrementalProjectBuilder.FULL_BUILD, null);
 
 		ILaunchManager lm = DebugPlugin.getDefault().getLaunchManager();
@@ -151,7 +158,7 @@ public class AbstractTestRunListenerTest extends TestCase {
 		};
 		lm.addLaunchListener(launchesListener);
 
-		ILaunchConfiguration configuration= TestJUnitLaunchShortcut.createConfiguration(aTest);
+		ILaunchConfiguration configuration= TestJUnitLaunchShortcut.createConfiguration(aTest, threads);
 		try {
 			configuration.launch(ILaunchManager.RUN_MODE, null);
 			new DisplayHelper() {
@@ -169,7 +176,11 @@ public class AbstractTestRunListenerTest extends TestCase {
 	}
 
 	protected String[] launchJUnit(IJavaElement aTest, final TestRunLog log) throws CoreException {
-		launchJUnit(aTest);
+		return launchJUnit(aTest, 1, log);
+	}
+
+	protected String[] launchJUnit(IJavaElement aTest, int threads, final TestRunLog log) throws CoreException {
+		launchJUnit(aTest, threads);
 
 		boolean success= new DisplayHelper(){
 			protected boolean condition() {
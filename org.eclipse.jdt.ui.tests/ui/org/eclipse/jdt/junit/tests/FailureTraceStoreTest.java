@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.junit.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jdt.internal.junit.model.TestCaseElement;
+import org.eclipse.jdt.internal.junit.model.TestElement.Status;
+import org.eclipse.jdt.internal.junit.model.TestRoot;
+import org.eclipse.jdt.internal.junit.model.TestRunSession;
+
+/**
+ * Tests the failure traces of test elements that are spilled to a file once the traces in memory
+ * exceed their budget.
+ */
+public class FailureTraceStoreTest extends TestCase {
+
+	private static final int BUDGET= 100;
+
+	private TestRoot fRoot;
+	private int fNextId;
+
+	protected void setUp() throws Exception {
+		fRoot= new TestRunSession("FailureTraceStoreTest", null).getTestRoot();
+		fRoot.setFailureTraceMemoryBudget(BUDGET);
+		fNextId= 1;
+	}
+
+	protected void tearDown() throws Exception {
+		fRoot.dispose();
+	}
+
+	private TestCaseElement createTestCase() {
+		String id= String.valueOf(fNextId++);
+		return new TestCaseElement(fRoot, id, "test" + id + "(p.ATestCase)");
+	}
+
+	private static String trace(String name) {
+		StringBuffer buf= new StringBuffer("junit.framework.AssertionFailedError: ").append(name);
+		while (buf.length() < 60)
+			buf.append('.');
+		return buf.toString();
+	}
+
+	public void testSpillAndLoad() throws Exception {
+		TestCaseElement[] elements= new TestCaseElement[10];
+		for (int i= 0; i < elements.length; i++) {
+			elements[i]= createTestCase();
+			elements[i].setStatus(Status.FAILURE, trace("test" + i), "expected" + i, "actual" + i);
+		}
+		for (int i= 0; i < elements.length; i++) {
+			assertEquals(trace("test" + i), elements[i].getTrace());
+			assertEquals("expected" + i, elements[i].getExpected());
+			assertEquals("actual" + i, elements[i].getActual());
+		}
+	}
+
+	public void testReplaceSpilledTrace() throws Exception {
+		TestCaseElement inMemory= createTestCase();
+		inMemory.setStatus(Status.FAILURE, trace("inMemory"), null, null);
+		TestCaseElement first= createTestCase();
+		first.setStatus(Status.FAILURE, trace("first"), null, null);
+		TestCaseElement second= createTestCase();
+		second.setStatus(Status.ERROR, trace("second"), null, null);
+
+		// a test that logs several errors gets the traces appended
+		first.setStatus(Status.ERROR, trace("again"), null, null);
+		second.setStatus(Status.ERROR, trace("again"), null, null);
+		second.setStatus(Status.ERROR, "x", null, null);
+
+		assertEquals(trace("inMemory"), inMemory.getTrace());
+		assertEquals(trace("first") + trace("again"), first.getTrace());
+		assertEquals(trace("second") + trace("again") + "x", second.getTrace());
+	}
+
+	public void testReleaseTrace() throws Exception {
+		TestCaseElement first= createTestCase();
+		first.setStatus(Status.FAILURE, trace("first"), null, null);
+		// rerun without failure releases the trace
+		first.setStatus(Status.OK, null, null, null);
+		assertNull(first.getTrace());
+
+		TestCaseElement second= createTestCase();
+		second.setStatus(Status.FAILURE, trace("second"), null, null);
+		TestCaseElement third= createTestCase();
+		third.setStatus(Status.FAILURE, trace("third"), null, null);
+
+		fRoot.dispose();
+
+		// only spilled traces are gone
+		assertEquals(trace("second"), second.getTrace());
+		assertNull(third.getTrace());
+	}
+
+	public void testDispose() throws Exception {
+		TestCaseElement first= createTestCase();
+		first.setStatus(Status.FAILURE, trace("first"), null, null);
+		TestCaseElement second= createTestCase();
+		second.setStatus(Status.FAILURE, trace("second"), null, null);
+		assertEquals(trace("second"), second.getTrace());
+
+		fRoot.dispose();
+
+		assertEquals(trace("first"), first.getTrace());
+		assertNull(second.getTrace());
+
+		// traces are kept in memory after the store has been disposed
+		TestCaseElement third= createTestCase();
+		third.setStatus(Status.FAILURE, trace("third"), null, null);
+		assertEquals(trace("third"), third.getTrace());
+	}
+}
@@ -31,6 +31,9 @@ public class JUnitJUnitTests {
 		addDeprecatedTests(suite);
 
 		suite.addTestSuite(TestRunListenerTest.class);
+		suite.addTestSuite(ParallelTestRunTest.class);
+		suite.addTestSuite(FailureTraceStoreTest.class);
+		suite.addTest(TestRunSessionLazyLoadingTest.suite());
 
 		suite.addTest(TestRunSessionSerializationTests3.suite());
 		suite.addTest(TestRunSessionSerializationTests4.suite());
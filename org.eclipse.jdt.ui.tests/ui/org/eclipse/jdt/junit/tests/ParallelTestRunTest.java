@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.junit.tests;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.eclipse.jdt.junit.JUnitCore;
+import org.eclipse.jdt.junit.TestRunListener;
+import org.eclipse.jdt.junit.model.ITestCaseElement;
+import org.eclipse.jdt.junit.model.ITestElement;
+import org.eclipse.jdt.junit.model.ITestElementContainer;
+import org.eclipse.jdt.junit.model.ITestRunSession;
+import org.eclipse.jdt.junit.model.ITestElement.FailureTrace;
+
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
+
+import org.eclipse.jdt.internal.junit.launcher.JUnitLaunchConfigurationConstants;
+import org.eclipse.jdt.internal.junit.model.TestRunSession;
+
+/**
+ * Runs several test classes with {@link JUnitLaunchConfigurationConstants#ATTR_TEST_THREADS}
+ * and compares the result with a sequential run. The runs are told apart by the number of test
+ * cases that have been started but not finished at the same time.
+ */
+public class ParallelTestRunTest extends AbstractTestRunListenerTest {
+
+	private static final int CLASS_COUNT= 4;
+
+	/**
+	 * Logs the tree, the failure traces and the counters of the session when it is finished.
+	 */
+	private static class ResultTest extends TestRunListener {
+		private TestRunLog fLog;
+		public ResultTest(TestRunLog log) {
+			fLog= log;
+		}
+		public void sessionFinished(ITestRunSession session) {
+			logElement(session, 0);
+			TestRunSession testRunSession= (TestRunSession) session;
+			fLog.add("total: " + testRunSession.getTotalCount());
+			fLog.add("started: " + testRunSession.getStartedCount());
+			fLog.add("failures: " + testRunSession.getFailureCount());
+			fLog.add("errors: " + testRunSession.getErrorCount());
+			fLog.add("ignored: " + testRunSession.getIgnoredCount());
+			fLog.setDone();
+		}
+		private void logElement(ITestElement elem, int indent) {
+			fLog.add(TestRunListeners.asString(elem, indent));
+			if (elem instanceof ITestCaseElement && elem.getFailureTrace() != null)
+				fLog.add(getTestFrames(elem.getFailureTrace()));
+			if (elem instanceof ITestElementContainer) {
+				ITestElement[] children= ((ITestElementContainer) elem).getChildren();
+				for (int i= 0; i < children.length; i++) {
+					logElement(children[i], indent + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the test cases that are running at the same time.
+	 */
+	private static class ConcurrencyTest extends TestRunListener {
+		private int fRunning;
+		private int fMaxRunning;
+		public synchronized void testCaseStarted(ITestCaseElement testCaseElement) {
+			fRunning++;
+			fMaxRunning= Math.max(fMaxRunning, fRunning);
+		}
+		public synchronized void testCaseFinished(ITestCaseElement testCaseElement) {
+			fRunning--;
+		}
+		public synchronized int getMaxRunning() {
+			return fMaxRunning;
+		}
+	}
+
+	/**
+	 * Returns the first line of the trace and the frames of the test classes. The other frames
+	 * depend on the thread that ran the test.
+	 *
+	 * @param trace the failure trace
+	 * @return the lines of the trace that do not depend on the thread
+	 */
+	private static String getTestFrames(FailureTrace trace) {
+		StringBuffer buf= new StringBuffer();
+		BufferedReader reader= new BufferedReader(new StringReader(trace.getTrace()));
+		try {
+			String line= reader.readLine();
+			buf.append(line).append('\n');
+			while ((line= reader.readLine()) != null) {
+				if (line.trim().startsWith("at pack."))
+					buf.append(line).append('\n');
+			}
+		} catch (IOException e) {
+			fail(e.getMessage());
+		}
+		return buf.toString();
+	}
+
+	private String[] runResultTest(IPackageFragment pack, int threads, ConcurrencyTest concurrencyTest) throws Exception {
+		TestRunLog log= new TestRunLog();
+		final TestRunListener testRunListener= new ResultTest(log);
+		JUnitCore.addTestRunListener(testRunListener);
+		JUnitCore.addTestRunListener(concurrencyTest);
+		try {
+			return launchJUnit(pack, threads, log);
+		} finally {
+			JUnitCore.removeTestRunListener(testRunListener);
+			JUnitCore.removeTestRunListener(concurrencyTest);
+		}
+	}
+
+	private IPackageFragment createTestClasses() throws Exception {
+		IType first= createType(getSource(0), "pack", "ATestCase0.java");
+		IPackageFragment pack= first.getPackageFragment();
+		for (int i= 1; i < CLASS_COUNT; i++)
+			pack.createCompilationUnit("ATestCase" + i + ".java", getSource(i), true, null);
+		return pack;
+	}
+
+	private static String getSource(int i) {
+		return
+			"package pack;\n" +
+			"import junit.framework.TestCase;\n" +
+			"public class ATestCase" + i + " extends TestCase {\n" +
+			"    protected void setUp() throws Exception {\n" +
+			"        // give the other threads a chance to interleave\n" +
+			"        Thread.sleep(50);\n" +
+			"    }\n" +
+			"    public void testSucceed() { }\n" +
+			"    public void testFail() {\n" +
+			"        fail(\"failed in " + i + "\");\n" +
+			"    }\n" +
+			"    public void testCompare() {\n" +
+			"        assertEquals(\"expected" + i + "\", \"actual" + i + "\");\n" +
+			"    }\n" +
+			"    public void testError() {\n" +
+			"        throw new IllegalStateException(\"error in " + i + "\");\n" +
+			"    }\n" +
+			"    public void testSucceedAgain() { }\n" +
+			"}";
+	}
+
+	public void testParallelRunMatchesSequentialRun() throws Exception {
+		IPackageFragment pack= createTestClasses();
+
+		ConcurrencyTest sequentialConcurrency= new ConcurrencyTest();
+		String[] sequential= runResultTest(pack, 1, sequentialConcurrency);
+		ConcurrencyTest parallelConcurrency= new ConcurrencyTest();
+		String[] parallel= runResultTest(pack, CLASS_COUNT, parallelConcurrency);
+
+		assertEquals(1, sequentialConcurrency.getMaxRunning());
+		// the setUp of each test sleeps, so the test classes overlap
+		assertTrue("tests did not overlap", parallelConcurrency.getMaxRunning() > 1);
+
+		assertEquals("total: " + CLASS_COUNT * 5, sequential[sequential.length - 5]);
+		assertEquals("failures: " + CLASS_COUNT * 2, sequential[sequential.length - 3]);
+		assertEquals("errors: " + CLASS_COUNT, sequential[sequential.length - 2]);
+		assertEqualLog(sequential, parallel);
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.junit.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.junit.model.ITestElement;
+import org.eclipse.jdt.testplugin.JavaTestPlugin;
+
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.jdt.internal.junit.model.JUnitModel;
+import org.eclipse.jdt.internal.junit.model.TestElement;
+import org.eclipse.jdt.internal.junit.model.TestRunHandler;
+import org.eclipse.jdt.internal.junit.model.TestRunSession;
+import org.eclipse.jdt.internal.junit.model.TestSuiteElement;
+
+/**
+ * Imports test run files with and without lazy loading of the top-level suites and compares the
+ * results.
+ */
+public class TestRunSessionLazyLoadingTest extends TestCase {
+
+	private TestRunSession fEager;
+	private TestRunSession fLazy;
+
+	public static Test setUpTest(Test test) {
+		return new JUnitWorkspaceTestSetup(test, false);
+	}
+
+	public static Test suite() {
+		return new JUnitWorkspaceTestSetup(new TestSuite(TestRunSessionLazyLoadingTest.class), false);
+	}
+
+	protected void tearDown() throws Exception {
+		if (fEager != null)
+			fEager.getTestRoot().dispose();
+		if (fLazy != null)
+			fLazy.getTestRoot().dispose();
+	}
+
+	private static TestRunSession importTestRun(File file, boolean lazyLoading) throws Exception {
+		TestRunHandler handler= new TestRunHandler();
+		handler.setLazyLoading(lazyLoading);
+		SAXParserFactory.newInstance().newSAXParser().parse(file, handler);
+		return handler.getTestRunSession();
+	}
+
+	private static String export(TestRunSession session) throws Exception {
+		ByteArrayOutputStream out= new ByteArrayOutputStream();
+		JUnitModel.exportTestRunSession(session, out);
+		// the indentation of copied fragments may differ
+		return out.toString("UTF-8").replaceAll(">\\s+<", "><").trim();
+	}
+
+	private void runImport(String path) throws Exception {
+		File file= JavaTestPlugin.getDefault().getFileInPlugin(new Path(JUnitWorkspaceTestSetup.getProjectPath() + path));
+		fEager= importTestRun(file, false);
+		fLazy= importTestRun(file, true);
+
+		assertEquals(fEager.getTestRunName(), fLazy.getTestRunName());
+		assertEquals(fEager.getStartedCount(), fLazy.getStartedCount());
+		assertEquals(fEager.getTotalCount(), fLazy.getTotalCount());
+		assertEquals(fEager.getErrorCount(), fLazy.getErrorCount());
+		assertEquals(fEager.getFailureCount(), fLazy.getFailureCount());
+		assertEquals(fEager.getIgnoredCount(), fLazy.getIgnoredCount());
+
+		TestSuiteElement[] suites= getTopLevelSuites(fLazy);
+		assertTrue(suites.length > 0);
+		for (int i= 0; i < suites.length; i++)
+			assertFalse(suites[i].getTestName(), suites[i].isLoaded());
+
+		// exporting copies the stored children
+		String expectedXML= export(fEager);
+		assertEquals(expectedXML, export(fLazy));
+		for (int i= 0; i < suites.length; i++)
+			assertFalse(suites[i].getTestName(), suites[i].isLoaded());
+
+		assertEquals(getIds(fEager.getAllFailedTestElements()), getIds(fLazy.getAllFailedTestElements()));
+
+		assertEqualElements(fEager, fEager.getTestRoot(), fLazy, fLazy.getTestRoot());
+		for (int i= 0; i < suites.length; i++)
+			assertTrue(suites[i].getTestName(), suites[i].isLoaded());
+
+		// exporting the loaded children
+		assertEquals(expectedXML, export(fLazy));
+	}
+
+	private static TestSuiteElement[] getTopLevelSuites(TestRunSession session) {
+		List suites= new ArrayList();
+		ITestElement[] children= session.getTestRoot().getChildren();
+		for (int i= 0; i < children.length; i++) {
+			TestSuiteElement suite= (TestSuiteElement) children[i];
+			if (suite.hasChildren())
+				suites.add(suite);
+		}
+		return (TestSuiteElement[]) suites.toArray(new TestSuiteElement[suites.size()]);
+	}
+
+	private static List getIds(TestElement[] elements) {
+		List ids= new ArrayList();
+		for (int i= 0; i < elements.length; i++)
+			ids.add(elements[i].getId());
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private static void assertEqualElements(TestRunSession expectedSession, TestElement expected, TestRunSession actualSession, TestElement actual) {
+		String name= expected.getTestName();
+		assertEquals(name, expected.getId(), actual.getId());
+		assertEquals(name, expected.getTestName(), actual.getTestName());
+		assertEquals(name, expected.getStatus(), actual.getStatus());
+		assertEquals(name, expected.getProgressState(), actual.getProgressState());
+		assertEquals(name, expected.getTestResult(true), actual.getTestResult(true));
+		assertEquals(name, expected.getTrace(), actual.getTrace());
+		assertEquals(name, expected.getExpected(), actual.getExpected());
+		assertEquals(name, expected.getActual(), actual.getActual());
+		assertEquals(name, expected.getElapsedTimeInSeconds(), actual.getElapsedTimeInSeconds(), 0);
+		if (expected.getParent() != null) {
+			assertSame(name, expected, expectedSession.getTestElement(expected.getId()));
+			assertSame(name, actual, actualSession.getTestElement(actual.getId()));
+		}
+
+		assertEquals(name, expected instanceof TestSuiteElement, actual instanceof TestSuiteElement);
+		if (expected instanceof TestSuiteElement) {
+			ITestElement[] expectedChildren= ((TestSuiteElement) expected).getChildren();
+			ITestElement[] actualChildren= ((TestSuiteElement) actual).getChildren();
+			assertEquals(name, expectedChildren.length, actualChildren.length);
+			for (int i= 0; i < expectedChildren.length; i++)
+				assertEqualElements(expectedSession, (TestElement) expectedChildren[i], actualSession, (TestElement) actualChildren[i]);
+		}
+	}
+
+	public void testAllTests() throws Exception {
+		runImport("xml/AllTests.xml");
+	}
+
+	public void testFailures() throws Exception {
+		runImport("xml/Failures.xml");
+	}
+
+	public void testFailingSuite() throws Exception {
+		runImport("xml/FailingSuite.xml");
+	}
+
+	public void testAntTestSuites() throws Exception {
+		runImport("ant/result/TESTS-TestSuites.xml");
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
+
+public class ASTBatchParserTest extends CoreTests {
+
+	private static final Class THIS= ASTBatchParserTest.class;
+
+	private static final long BYTES_PER_UNIT= 1024 * 1024;
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	/**
+	 * Records the subsets instead of parsing them. The heap budget is given in compilation
+	 * units per subset.
+	 */
+	private static class RecordingParser extends ASTBatchParser {
+
+		private final List fBatches= new ArrayList();
+		private final int[] fBudgets;
+
+		public RecordingParser(int[] budgets) {
+			fBudgets= budgets;
+			setBytesPerUnit(BYTES_PER_UNIT);
+		}
+
+		protected long getHeapBudget() {
+			int index= Math.min(fBatches.size(), fBudgets.length - 1);
+			return fBudgets[index] * BYTES_PER_UNIT;
+		}
+
+		protected void parse(ICompilationUnit[] units, String[] bindingKeys, ASTRequestor requestor, IProgressMonitor monitor) {
+			fBatches.add(units);
+		}
+
+		public int[] getBatchSizes() {
+			int[] result= new int[fBatches.size()];
+			for (int i= 0; i < result.length; i++)
+				result[i]= ((ICompilationUnit[]) fBatches.get(i)).length;
+			return result;
+		}
+
+		public List getUnits() {
+			List result= new ArrayList();
+			for (int i= 0; i < fBatches.size(); i++)
+				result.addAll(Arrays.asList((ICompilationUnit[]) fBatches.get(i)));
+			return result;
+		}
+	}
+
+	private IJavaProject fJProject1;
+
+	private IPackageFragmentRoot fSourceFolder;
+
+	public ASTBatchParserTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		fJProject1= ProjectTestSetup.getProject();
+		fSourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+	}
+
+	protected void tearDown() throws Exception {
+		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private ICompilationUnit[] getUnits(String packageName, int count) {
+		IPackageFragment pack= fSourceFolder.getPackageFragment(packageName);
+		ICompilationUnit[] result= new ICompilationUnit[count];
+		for (int i= 0; i < count; i++)
+			result[i]= pack.getCompilationUnit("A" + i + ".java");
+		return result;
+	}
+
+	private static void assertBatchSizes(int[] expected, int[] actual) {
+		assertEquals(Arrays.asList(toIntegers(expected)).toString(), Arrays.asList(toIntegers(actual)).toString());
+	}
+
+	private static Integer[] toIntegers(int[] ints) {
+		Integer[] result= new Integer[ints.length];
+		for (int i= 0; i < ints.length; i++)
+			result[i]= new Integer(ints[i]);
+		return result;
+	}
+
+	public void testBatchSizeFromBudget() throws Exception {
+		RecordingParser parser= new RecordingParser(new int[] { 20 });
+		ICompilationUnit[] units= getUnits("test1", 50);
+		parser.createASTs(units, new String[0], null, null);
+
+		assertBatchSizes(new int[] { 20, 20, 10 }, parser.getBatchSizes());
+		assertEquals(Arrays.asList(units), parser.getUnits());
+	}
+
+	public void testBatchSizeAtLeastMinimum() throws Exception {
+		RecordingParser parser= new RecordingParser(new int[] { 0 });
+		parser.createASTs(getUnits("test1", 25), new String[0], null, null);
+
+		assertBatchSizes(new int[] { 10, 10, 5 }, parser.getBatchSizes());
+	}
+
+	public void testBatchSizeGrowsAtMostByTwo() throws Exception {
+		RecordingParser parser= new RecordingParser(new int[] { 15, 1000, 1000, 20 });
+		parser.createASTs(getUnits("test1", 200), new String[0], null, null);
+
+		assertBatchSizes(new int[] { 15, 30, 60, 20, 20, 20, 20, 15 }, parser.getBatchSizes());
+	}
+
+	public void testBatchSizeWithBytesPerUnit() throws Exception {
+		RecordingParser parser= new RecordingParser(new int[] { 12 });
+		parser.setBytesPerUnit(BYTES_PER_UNIT / 2);
+		parser.createASTs(getUnits("test1", 50), new String[0], null, null);
+
+		assertBatchSizes(new int[] { 24, 24, 2 }, parser.getBatchSizes());
+	}
+
+	public void testSortByPackage() throws Exception {
+		ICompilationUnit[] a= getUnits("a", 3);
+		ICompilationUnit[] b= getUnits("b", 3);
+		ICompilationUnit[] units= new ICompilationUnit[] { b[0], a[0], b[1], a[1], b[2], a[2] };
+
+		RecordingParser parser= new RecordingParser(new int[] { 1000 });
+		parser.setGroupByPackage(true);
+		parser.createASTs(units, new String[0], null, null);
+
+		// grouped by package, the order within a package is kept
+		List expected= new ArrayList();
+		expected.addAll(Arrays.asList(a));
+		expected.addAll(Arrays.asList(b));
+		assertEquals(expected, parser.getUnits());
+	}
+
+	public void testNotSortedByDefault() throws Exception {
+		ICompilationUnit[] a= getUnits("a", 2);
+		ICompilationUnit[] b= getUnits("b", 2);
+		ICompilationUnit[] units= new ICompilationUnit[] { b[0], a[0], b[1], a[1] };
+
+		RecordingParser parser= new RecordingParser(new int[] { 1000 });
+		parser.createASTs(units, new String[0], null, null);
+
+		assertEquals(Arrays.asList(units), parser.getUnits());
+	}
+
+	public void testAllUnitsParsed() throws Exception {
+		IPackageFragment pack= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit[] units= new ICompilationUnit[25];
+		for (int i= 0; i < units.length; i++) {
+			String superClass= i == 0 ? "" : " extends A" + (i - 1);
+			units[i]= pack.createCompilationUnit("A" + i + ".java", "package test1;\npublic class A" + i + superClass + " {\n}\n", false, null);
+		}
+
+		final Set parsed= new HashSet();
+		ASTBatchParser parser= new ASTBatchParser();
+		parser.setBytesPerUnit(Long.MAX_VALUE); // minimal subsets
+		parser.createASTs(units, new String[0], new ASTRequestor() {
+			public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+				assertTrue(source.getElementName(), parsed.add(source));
+				assertEquals(0, ast.getProblems().length);
+			}
+		}, null);
+
+		assertEquals(new HashSet(Arrays.asList(units)), parsed);
+	}
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.ui.javaeditor.ASTCache;
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+
+/**
+ * Tests the cache of the ASTs of recently active editors.
+ *
+ * @since 3.8
+ */
+public class ASTCacheTest extends CoreTests {
+
+	private static final Class THIS= ASTCacheTest.class;
+
+	private IJavaProject fJProject1;
+	private IPackageFragment fPack;
+
+	public ASTCacheTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	protected void setUp() throws Exception {
+		fJProject1= ProjectTestSetup.getProject();
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		fPack= sourceFolder.createPackageFragment("test1", false, null);
+	}
+
+	protected void tearDown() throws Exception {
+		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private ICompilationUnit createCU(String name) throws Exception {
+		return fPack.createCompilationUnit(name + ".java", getSource(name, ""), false, null);
+	}
+
+	private static String getSource(String name, String body) {
+		return "package test1;\npublic class " + name + " {\n" + body + "}\n";
+	}
+
+	private static CompilationUnit createAST(ICompilationUnit cu) {
+		ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
+		parser.setSource(cu);
+		return (CompilationUnit) parser.createAST(null);
+	}
+
+	private static ASTCache createCache(int maxEntries) {
+		return new ASTCache(maxEntries, Long.MAX_VALUE);
+	}
+
+	public void testHit() throws Exception {
+		ICompilationUnit cu= createCU("E1");
+		CompilationUnit ast= createAST(cu);
+
+		ASTCache cache= createCache(8);
+		assertNull(cache.get(cu));
+		cache.put(cu, ast);
+		assertSame(ast, cache.get(cu));
+		assertSame(ast, cache.get(cu));
+	}
+
+	public void testReplace() throws Exception {
+		ICompilationUnit cu= createCU("E1");
+		CompilationUnit ast1= createAST(cu);
+		CompilationUnit ast2= createAST(cu);
+
+		ASTCache cache= createCache(8);
+		cache.put(cu, ast1);
+		cache.put(cu, ast2);
+		assertSame(ast2, cache.get(cu));
+	}
+
+	public void testRemoveAndClear() throws Exception {
+		ICompilationUnit cu1= createCU("E1");
+		ICompilationUnit cu2= createCU("E2");
+
+		ASTCache cache= createCache(8);
+		cache.put(cu1, createAST(cu1));
+		cache.put(cu2, createAST(cu2));
+		cache.remove(cu1);
+		assertNull(cache.get(cu1));
+		assertNotNull(cache.get(cu2));
+
+		cache.clear();
+		assertNull(cache.get(cu2));
+	}
+
+	public void testMissAfterFileModification() throws Exception {
+		ICompilationUnit cu= createCU("E1");
+
+		ASTCache cache= createCache(8);
+		cache.put(cu, createAST(cu));
+
+		IFile file= (IFile) cu.getResource();
+		file.setContents(new ByteArrayInputStream(getSource("E1", "int x;\n").getBytes()), true, false, null);
+		assertNull(cache.get(cu));
+	}
+
+	public void testMissAfterWorkingCopyModification() throws Exception {
+		ICompilationUnit cu= createCU("E1");
+		cu.becomeWorkingCopy(null);
+		try {
+			ASTCache cache= createCache(8);
+			cache.put(cu, createAST(cu));
+			assertNotNull(cache.get(cu));
+
+			cu.getBuffer().setContents(getSource("E1", "int x;\n"));
+			assertNull(cache.get(cu));
+
+			// a new AST of the modified working copy is cached again
+			CompilationUnit ast= createAST(cu);
+			cache.put(cu, ast);
+			assertSame(ast, cache.get(cu));
+		} finally {
+			cu.discardWorkingCopy();
+		}
+	}
+
+	public void testEvictionByCount() throws Exception {
+		ICompilationUnit cu1= createCU("E1");
+		ICompilationUnit cu2= createCU("E2");
+		ICompilationUnit cu3= createCU("E3");
+
+		ASTCache cache= createCache(2);
+		cache.put(cu1, createAST(cu1));
+		cache.put(cu2, createAST(cu2));
+		cache.put(cu3, createAST(cu3));
+
+		assertNull(cache.get(cu1));
+		assertNotNull(cache.get(cu2));
+		assertNotNull(cache.get(cu3));
+	}
+
+	public void testEvictionLeastRecentlyUsed() throws Exception {
+		ICompilationUnit cu1= createCU("E1");
+		ICompilationUnit cu2= createCU("E2");
+		ICompilationUnit cu3= createCU("E3");
+
+		ASTCache cache= createCache(2);
+		cache.put(cu1, createAST(cu1));
+		cache.put(cu2, createAST(cu2));
+		assertNotNull(cache.get(cu1)); // cu2 is now the least recently used
+		cache.put(cu3, createAST(cu3));
+
+		assertNotNull(cache.get(cu1));
+		assertNull(cache.get(cu2));
+		assertNotNull(cache.get(cu3));
+	}
+
+	public void testEvictionByMemory() throws Exception {
+		ICompilationUnit cu1= createCU("E1");
+		ICompilationUnit cu2= createCU("E2");
+		ICompilationUnit cu3= createCU("E3");
+		CompilationUnit ast1= createAST(cu1);
+		CompilationUnit ast2= createAST(cu2);
+		CompilationUnit ast3= createAST(cu3);
+
+		// room for two of the equally sized ASTs
+		long budget= ASTCache.estimateSize(ast1) + ASTCache.estimateSize(ast2);
+		ASTCache cache= new ASTCache(8, budget);
+		cache.put(cu1, ast1);
+		cache.put(cu2, ast2);
+		assertSame(ast1, cache.get(cu1));
+		assertSame(ast2, cache.get(cu2));
+
+		cache.put(cu3, ast3);
+		assertNull(cache.get(cu1));
+		assertSame(ast2, cache.get(cu2));
+		assertSame(ast3, cache.get(cu3));
+	}
+
+	public void testTooLargeNotCached() throws Exception {
+		ICompilationUnit cu1= createCU("E1");
+		ICompilationUnit cu2= createCU("E2");
+		CompilationUnit ast1= createAST(cu1);
+
+		ASTCache cache= new ASTCache(8, ASTCache.estimateSize(ast1));
+		cache.put(cu1, ast1);
+		assertSame(ast1, cache.get(cu1));
+
+		fPack.createCompilationUnit("E2.java", getSource("E2", "int x;\n"), true, null);
+		cache.put(cu2, createAST(cu2));
+		assertNull(cache.get(cu2));
+		// the cached AST is kept
+		assertSame(ast1, cache.get(cu1));
+	}
+}
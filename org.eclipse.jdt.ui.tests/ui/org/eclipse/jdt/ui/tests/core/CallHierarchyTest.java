@@ -12,20 +12,31 @@
 package org.eclipse.jdt.ui.tests.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jdt.core.IInitializer;
 import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IType;
 
 import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
+import org.eclipse.jdt.internal.corext.callhierarchy.CallerIndex;
+import org.eclipse.jdt.internal.corext.callhierarchy.CallerMethodWrapper;
+import org.eclipse.jdt.internal.corext.callhierarchy.ICallsCollector;
+import org.eclipse.jdt.internal.corext.callhierarchy.MethodCall;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
 
 import org.eclipse.jdt.ui.tests.callhierarchy.CallHierarchyTestHelper;
@@ -90,6 +101,96 @@ public class CallHierarchyTest extends TestCase {
         helper.assertCalls(expectedSecondLevelMethods, wrapper2.getCalls(new NullProgressMonitor()));
     }
 
+    public void testCallersCollected() throws Exception {
+        helper.createSimpleClasses();
+
+        IMethod method= helper.getMethod1();
+        Collection expectedMethods= new ArrayList();
+        expectedMethods.add(helper.getMethod2());
+        expectedMethods.add(helper.getMethod3());
+
+        // partial results are only reported if the search is split, even on a single processor
+        int maxShards= CallerMethodWrapper.getMaxShards();
+        CallerMethodWrapper.setMaxShards(2);
+        try {
+            final List<MethodWrapper> collected= Collections.synchronizedList(new ArrayList<MethodWrapper>());
+            MethodWrapper[] calls= getSingleCallerRoot(method).getCalls(new NullProgressMonitor(), new ICallsCollector() {
+                public void add(MethodWrapper[] partialCalls) {
+                    collected.addAll(Arrays.asList(partialCalls));
+                }
+            });
+            helper.assertCalls(expectedMethods, calls);
+            helper.assertCalls(expectedMethods, collected);
+        } finally {
+            CallerMethodWrapper.setMaxShards(maxShards);
+        }
+    }
+
+    public void testCallersFromIndex() throws Exception {
+        CallHierarchy.getDefault().setCallerIndexEnabled(true);
+        try {
+            helper.createSimpleClasses();
+
+            IMethod method= helper.getMethod1();
+            Collection expectedMethods= new ArrayList();
+            expectedMethods.add(helper.getMethod2());
+            expectedMethods.add(helper.getMethod3());
+            assertIndexedCallers(expectedMethods, method);
+            helper.assertCalls(expectedMethods, getSingleCallerRoot(method).getCalls(new NullProgressMonitor()));
+
+            // adding a caller updates the index
+            IMethod method5= helper.getType2().createMethod("public void method5() { method1(); }\n", null, false, null);
+            expectedMethods.add(method5);
+            assertIndexedCallers(expectedMethods, method);
+            helper.assertCalls(expectedMethods, getSingleCallerRoot(method).getCalls(new NullProgressMonitor()));
+        } finally {
+            CallHierarchy.getDefault().setCallerIndexEnabled(false);
+        }
+    }
+
+    public void testIndexedCallersAfterSupertypeChange() throws Exception {
+        CallHierarchy.getDefault().setCallerIndexEnabled(true);
+        try {
+            helper.createPackages();
+            IPackageFragment pack1= helper.getPackage1();
+            IType a= pack1.createCompilationUnit("A.java", "package pack1;\npublic class A {\n public void m() { }\n}\n", true, null).getType("A");
+            IType b= pack1.createCompilationUnit("B.java", "package pack1;\npublic class B {\n public void m() { }\n}\n", true, null).getType("B");
+            pack1.createCompilationUnit("C.java", "package pack1;\npublic class C extends A {\n}\n", true, null);
+            IType d= helper.getPackage2().createCompilationUnit("D.java", "package pack2;\npublic class D {\n public void f(pack1.C c) { c.m(); }\n}\n", true, null).getType("D");
+
+            IMethod methodA= a.getMethod("m", EMPTY);
+            IMethod methodB= b.getMethod("m", EMPTY);
+            Collection expectedMethods= new ArrayList();
+            expectedMethods.add(d.getMethod("f", new String[] { "Qpack1.C;" }));
+            assertIndexedCallers(expectedMethods, methodA);
+            assertIndexedCallers(Collections.EMPTY_LIST, methodB);
+
+            // the call in D is bound to B.m once C extends B
+            pack1.createCompilationUnit("C.java", "package pack1;\npublic class C extends B {\n}\n", true, null);
+            assertIndexedCallers(Collections.EMPTY_LIST, methodA);
+            assertIndexedCallers(expectedMethods, methodB);
+        } finally {
+            CallHierarchy.getDefault().setCallerIndexEnabled(false);
+        }
+    }
+
+    private static void assertIndexedCallers(Collection expectedMembers, IMethod method) throws Exception {
+        Map<String, MethodCall> callers= null;
+        for (int i= 0; callers == null && i < 100; i++) {
+            Job.getJobManager().join(CallerIndex.class, null);
+            callers= CallerIndex.getDefault().getCallers(method);
+            if (callers == null)
+                Thread.sleep(100);
+        }
+        assertNotNull("Index not up to date", callers);
+
+        Collection foundMembers= new ArrayList();
+        for (Iterator<MethodCall> iter= callers.values().iterator(); iter.hasNext();)
+            foundMembers.add(iter.next().getMember());
+        assertEquals("Wrong number of calls", expectedMembers.size(), foundMembers.size());
+        assertTrue("One or more members not found", foundMembers.containsAll(expectedMembers));
+    }
+
     public void testCallersNoResults() throws Exception {
         helper.createSimpleClasses();
 
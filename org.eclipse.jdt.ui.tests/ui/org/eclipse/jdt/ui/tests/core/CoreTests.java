@@ -58,9 +58,12 @@ public class CoreTests extends TestCase {
 		suite.addTest(TypeRulesTest.suite());
 		suite.addTest(TypeInfoTest.suite());
 		suite.addTest(StringsTest.suite());
+		suite.addTest(SuperTypeHierarchyCacheTest.suite());
 		suite.addTest(IndentManipulationTest.suite());
 		suite.addTest(SelectionHistoryTest.suite());
 		suite.addTest(ASTProviderTest.suite());
+		suite.addTest(ASTCacheTest.suite());
+		suite.addTest(ASTBatchParserTest.suite());
 
 		return new ProjectTestSetup(suite);
 	}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+
+import org.eclipse.jdt.internal.corext.util.MethodOverrideTester;
+import org.eclipse.jdt.internal.corext.util.SuperTypeHierarchyCache;
+
+public class SuperTypeHierarchyCacheTest extends CoreTests {
+
+	private static final Class THIS= SuperTypeHierarchyCacheTest.class;
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	private IJavaProject fJProject1;
+
+	private IPackageFragment fPack;
+
+	public SuperTypeHierarchyCacheTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		fJProject1= ProjectTestSetup.getProject();
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		fPack= sourceFolder.createPackageFragment("test1", false, null);
+		SuperTypeHierarchyCache.clear();
+	}
+
+	protected void tearDown() throws Exception {
+		SuperTypeHierarchyCache.clear();
+		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private IType createType(String name, String superName) throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class ").append(name);
+		if (superName != null)
+			buf.append(" extends ").append(superName);
+		buf.append(" {\n");
+		buf.append("    public void foo() {}\n");
+		buf.append("}\n");
+		ICompilationUnit cu= fPack.createCompilationUnit(name + ".java", buf.toString(), false, null);
+		return cu.getType(name);
+	}
+
+	public void testHitsAndMisses() throws Exception {
+		IType a= createType("A", null);
+		IType b= createType("B", "A");
+
+		ITypeHierarchy hierarchy= SuperTypeHierarchyCache.getTypeHierarchy(b);
+		assertEquals(1, SuperTypeHierarchyCache.getCacheMisses());
+		assertEquals(0, SuperTypeHierarchyCache.getCacheHits());
+
+		// the hierarchy of B contains A
+		assertTrue(SuperTypeHierarchyCache.hasInCache(a));
+		assertSame(hierarchy, SuperTypeHierarchyCache.getTypeHierarchy(a));
+		assertSame(hierarchy, SuperTypeHierarchyCache.getTypeHierarchy(b));
+		assertEquals(1, SuperTypeHierarchyCache.getCacheMisses());
+		assertEquals(2, SuperTypeHierarchyCache.getCacheHits());
+		assertEquals(2.0 / 3, SuperTypeHierarchyCache.getHitRate(), 0.001);
+		assertEquals(1, SuperTypeHierarchyCache.getCacheSize());
+	}
+
+	public void testSubsumedHierarchyRemoved() throws Exception {
+		createType("A", null);
+		IType b= createType("B", "A");
+		IType c= createType("C", "B");
+
+		ITypeHierarchy hierarchyB= SuperTypeHierarchyCache.getTypeHierarchy(b);
+		ITypeHierarchy hierarchyC= SuperTypeHierarchyCache.getTypeHierarchy(c);
+		assertNotSame(hierarchyB, hierarchyC);
+		assertEquals(1, SuperTypeHierarchyCache.getCacheSize());
+		assertSame(hierarchyC, SuperTypeHierarchyCache.getTypeHierarchy(b));
+		assertEquals(0, SuperTypeHierarchyCache.getEvictions());
+	}
+
+	public void testSharedTypeStaysIndexed() throws Exception {
+		IType a= createType("A", null);
+		IType b= createType("B", "A");
+		IType c= createType("C", "A");
+
+		ITypeHierarchy hierarchyB= SuperTypeHierarchyCache.getTypeHierarchy(b);
+		ITypeHierarchy hierarchyC= SuperTypeHierarchyCache.getTypeHierarchy(c);
+		assertNotSame(hierarchyB, hierarchyC);
+		assertEquals(2, SuperTypeHierarchyCache.getCacheSize());
+
+		// A was indexed with the hierarchy of C last, it must be found in the hierarchy of B
+		c.getCompilationUnit().delete(true, null);
+		assertTrue(SuperTypeHierarchyCache.hasInCache(a));
+		assertSame(hierarchyB, SuperTypeHierarchyCache.getTypeHierarchy(a));
+		assertEquals(1, SuperTypeHierarchyCache.getCacheSize());
+		assertEquals(2, SuperTypeHierarchyCache.getCacheMisses());
+	}
+
+	public void testMethodOverrideTester() throws Exception {
+		createType("A", null);
+		IType b= createType("B", "A");
+
+		MethodOverrideTester tester= SuperTypeHierarchyCache.getMethodOverrideTester(b);
+		assertSame(tester, SuperTypeHierarchyCache.getMethodOverrideTester(b));
+		assertSame(SuperTypeHierarchyCache.getTypeHierarchy(b), tester.getTypeHierarchy());
+		assertNotNull(tester.findOverriddenMethod(b.getMethod("foo", new String[0]), false));
+	}
+
+	public void testConcurrentRequests() throws Exception {
+		final IType[] types= new IType[10];
+		types[0]= createType("T0", null);
+		for (int i= 1; i < types.length; i++)
+			types[i]= createType("T" + i, "T" + (i - 1));
+
+		final List<Throwable> failures= Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads= new Thread[8];
+		for (int i= 0; i < threads.length; i++) {
+			final int offset= i;
+			threads[i]= new Thread() {
+				public void run() {
+					try {
+						for (int j= 0; j < 100; j++) {
+							IType type= types[(offset + j) % types.length];
+							ITypeHierarchy hierarchy= SuperTypeHierarchyCache.getTypeHierarchy(type);
+							if (!hierarchy.contains(type))
+								throw new AssertionError("Hierarchy does not contain " + type.getElementName());
+							SuperTypeHierarchyCache.getMethodOverrideTester(type);
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i= 0; i < threads.length; i++)
+			threads[i].join();
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(8 * 100 * 2, SuperTypeHierarchyCache.getCacheHits() + SuperTypeHierarchyCache.getCacheMisses());
+	}
+}
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.ui.tests.quickfix;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -23,10 +24,14 @@ import junit.framework.TestSuite;
 import org.eclipse.jdt.testplugin.JavaProjectHelper;
 import org.eclipse.jdt.testplugin.TestOptions;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 
+import org.eclipse.ltk.core.refactoring.RefactoringCore;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
 import org.eclipse.ltk.core.refactoring.RefactoringStatusEntry;
 
@@ -41,7 +46,9 @@ import org.eclipse.jdt.core.dom.ASTRequestor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
 
+import org.eclipse.jdt.internal.corext.fix.BatchCleanUpRunner;
 import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring;
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
 
 import org.eclipse.jdt.ui.PreferenceConstants;
@@ -49,6 +56,7 @@ import org.eclipse.jdt.ui.cleanup.CleanUpOptions;
 import org.eclipse.jdt.ui.tests.core.ProjectTestSetup;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.fix.AbstractCleanUp;
 import org.eclipse.jdt.internal.ui.fix.Java50CleanUp;
 import org.eclipse.jdt.internal.ui.fix.UnimplementedCodeCleanUp;
 import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
@@ -270,6 +278,136 @@ public class CleanUpTest extends CleanUpTestCase {
 		assertRefactoringResultAsExpected(new ICompilationUnit[] {cu1, cu2, cu3}, new String[] {expected1, expected2, expected3});
 	}
 
+	public void testUnusedCodeStreaming() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit[] cus= new ICompilationUnit[5];
+		String[] originals= new String[cus.length];
+		String[] expected= new String[cus.length];
+		for (int i= 0; i < cus.length; i++) {
+			StringBuffer buf= new StringBuffer();
+			buf.append("package test1;\n");
+			buf.append("import java.util.List;\n");
+			buf.append("public class E" + i + " {\n");
+			buf.append("}\n");
+			originals[i]= buf.toString();
+			cus[i]= pack1.createCompilationUnit("E" + i + ".java", originals[i], false, null);
+
+			buf= new StringBuffer();
+			buf.append("package test1;\n");
+			buf.append("public class E" + i + " {\n");
+			buf.append("}\n");
+			expected[i]= buf.toString();
+		}
+
+		enable(CleanUpConstants.REMOVE_UNUSED_CODE_IMPORTS);
+
+		CleanUpRefactoring ref= new CleanUpRefactoring();
+		ref.setUseOptionsFromProfile(true);
+		ref.setStreamingBatchSize(2);
+		performRefactoring(ref, cus, JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps());
+
+		String[] previews= new String[cus.length];
+		for (int i= 0; i < cus.length; i++) {
+			previews[i]= cus[i].getBuffer().getContents();
+		}
+		assertEqualStringsIgnoreOrder(previews, expected);
+
+		RefactoringCore.getUndoManager().performUndo(null, new NullProgressMonitor());
+
+		for (int i= 0; i < cus.length; i++) {
+			previews[i]= cus[i].getBuffer().getContents();
+		}
+		assertEqualStringsIgnoreOrder(previews, originals);
+	}
+
+	public void testUnusedCodeBatch() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit[] cus= new ICompilationUnit[3];
+		String[] expected= new String[cus.length];
+		for (int i= 0; i < cus.length; i++) {
+			StringBuffer buf= new StringBuffer();
+			buf.append("package test1;\n");
+			if (i != 1)
+				buf.append("import java.util.List;\n");
+			buf.append("public class E" + i + " {\n");
+			buf.append("}\n");
+			cus[i]= pack1.createCompilationUnit("E" + i + ".java", buf.toString(), false, null);
+
+			buf= new StringBuffer();
+			buf.append("package test1;\n");
+			buf.append("public class E" + i + " {\n");
+			buf.append("}\n");
+			expected[i]= buf.toString();
+		}
+
+		enable(CleanUpConstants.REMOVE_UNUSED_CODE_IMPORTS);
+
+		final Map changed= Collections.synchronizedMap(new HashMap());
+		BatchCleanUpRunner runner= new BatchCleanUpRunner(null, 2, new BatchCleanUpRunner.ICleanUpListener() {
+			public void unitCleanedUp(ICompilationUnit unit, boolean unitChanged, long time) {
+				changed.put(unit.getElementName(), Boolean.valueOf(unitChanged));
+			}
+		});
+		IStatus status= runner.run(new IJavaProject[] { fJProject1 }, null);
+		assertTrue(status.toString(), status.isOK());
+
+		String[] previews= new String[cus.length];
+		for (int i= 0; i < cus.length; i++) {
+			previews[i]= cus[i].getBuffer().getContents();
+		}
+		assertEqualStringsIgnoreOrder(previews, expected);
+
+		assertEquals(cus.length, changed.size());
+		assertEquals(Boolean.TRUE, changed.get("E0.java"));
+		assertEquals(Boolean.FALSE, changed.get("E1.java"));
+		assertEquals(Boolean.TRUE, changed.get("E2.java"));
+	}
+
+	/**
+	 * Records whether its conditions have been checked.
+	 */
+	private static class RecordingCleanUp extends AbstractCleanUp {
+		private final boolean fFatal;
+		boolean fPreChecked;
+		boolean fPostChecked;
+
+		public RecordingCleanUp(boolean fatal) {
+			fFatal= fatal;
+		}
+
+		public RefactoringStatus checkPreConditions(IJavaProject project, ICompilationUnit[] compilationUnits, IProgressMonitor monitor) throws CoreException {
+			fPreChecked= true;
+			return fFatal ? RefactoringStatus.createFatalErrorStatus("fatal") : new RefactoringStatus();
+		}
+
+		public RefactoringStatus checkPostConditions(IProgressMonitor monitor) throws CoreException {
+			fPostChecked= true;
+			return new RefactoringStatus();
+		}
+	}
+
+	public void testPostConditionsAfterFatalPreCondition() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit cu1= pack1.createCompilationUnit("E1.java", "package test1;\npublic class E1 {\n}\n", false, null);
+
+		RecordingCleanUp first= new RecordingCleanUp(false);
+		RecordingCleanUp fatal= new RecordingCleanUp(true);
+		RecordingCleanUp last= new RecordingCleanUp(false);
+
+		CleanUpRefactoring ref= new CleanUpRefactoring();
+		ref.addCompilationUnit(cu1);
+		ref.addCleanUp(first);
+		ref.addCleanUp(fatal);
+		ref.addCleanUp(last);
+		assertTrue(ref.checkAllConditions(new NullProgressMonitor()).hasFatalError());
+
+		// the clean ups whose pre-conditions have been checked are released
+		assertTrue(first.fPostChecked);
+		assertTrue(fatal.fPostChecked);
+		assertFalse(last.fPreChecked);
+		assertFalse(last.fPostChecked);
+	}
+
 	public void testUnusedCode02() throws Exception {
 		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
 		StringBuffer buf= new StringBuffer();
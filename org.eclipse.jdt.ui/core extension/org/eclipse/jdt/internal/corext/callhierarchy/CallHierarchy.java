@@ -44,6 +44,7 @@ import org.eclipse.jdt.internal.ui.util.StringMatcher;
 public class CallHierarchy {
     private static final String PREF_USE_IMPLEMENTORS= "PREF_USE_IMPLEMENTORS"; //$NON-NLS-1$
     private static final String PREF_USE_FILTERS = "PREF_USE_FILTERS"; //$NON-NLS-1$
+    private static final String PREF_USE_CALLER_INDEX= "PREF_USE_CALLER_INDEX"; //$NON-NLS-1$
     private static final String PREF_FILTERS_LIST = "PREF_FILTERS_LIST"; //$NON-NLS-1$
 
     private static final String DEFAULT_IGNORE_FILTERS = "java.*,javax.*"; //$NON-NLS-1$
@@ -71,6 +72,34 @@ public class CallHierarchy {
         settings.setValue(PREF_USE_IMPLEMENTORS, enabled);
     }
 
+    /**
+     * Tells whether the callers of source methods are looked up in the {@link CallerIndex}
+     * instead of being searched, when the index is up to date.
+     *
+     * @return <code>true</code> if the caller index is used
+     * @since 3.8
+     */
+    public boolean isCallerIndexEnabled() {
+        IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
+
+        return settings.getBoolean(PREF_USE_CALLER_INDEX);
+    }
+
+    /**
+     * Sets whether the callers of source methods are looked up in the {@link CallerIndex}.
+     * Disabling the index stops it.
+     *
+     * @param enabled <code>true</code> to use the caller index
+     * @since 3.8
+     */
+    public void setCallerIndexEnabled(boolean enabled) {
+        IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
+
+        settings.setValue(PREF_USE_CALLER_INDEX, enabled);
+        if (!enabled)
+            CallerIndex.shutdownInstance();
+    }
+
     public Collection<IJavaElement> getImplementingMethods(IMethod method) {
         if (isSearchUsingImplementorsEnabled()) {
             IJavaElement[] result = Implementors.getInstance().searchForImplementors(new IJavaElement[] {
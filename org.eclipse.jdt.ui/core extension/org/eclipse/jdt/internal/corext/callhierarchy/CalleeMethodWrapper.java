@@ -49,11 +49,11 @@ class CalleeMethodWrapper extends MethodWrapper {
     }
 
 	/* Returns the calls sorted after the call location
-	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#getCalls()
+	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#getCalls(org.eclipse.core.runtime.IProgressMonitor, org.eclipse.jdt.internal.corext.callhierarchy.ICallsCollector)
      */
     @Override
-	public MethodWrapper[] getCalls(IProgressMonitor progressMonitor) {
-        MethodWrapper[] result = super.getCalls(progressMonitor);
+	public MethodWrapper[] getCalls(IProgressMonitor progressMonitor, ICallsCollector collector) {
+        MethodWrapper[] result = super.getCalls(progressMonitor, collector);
         Arrays.sort(result, fMethodWrapperComparator);
 
         return result;
@@ -0,0 +1,1001 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.callhierarchy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.IFileBufferListener;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
+
+import org.eclipse.jdt.ui.JavaUI;
+
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * A persistent index of the method calls in the source compilation units of the workspace, used
+ * to find the callers of a source method without searching.
+ * <p>
+ * The calls of each compilation unit are collected from its AST in a background job and stored
+ * per project in the project's working location. The index is updated incrementally from the
+ * Java element deltas: changed compilation units are indexed again. If the declared methods of a
+ * compilation unit changed, the compilation units calling methods with the same names are indexed
+ * again as well, and if the super types of its types changed, the compilation units calling
+ * methods on these types or their subtypes, since their bindings may have changed.
+ * </p>
+ * <p>
+ * The index only answers queries while it is up to date and no Java file buffer has unsaved
+ * changes. Clients have to search for the callers otherwise.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class CallerIndex implements IElementChangedListener {
+
+	/**
+	 * A call of a source method.
+	 */
+	private static final class Call {
+		/** The handle identifier of the called method */
+		final String fCallee;
+		/** The handle identifier of the calling member */
+		final String fCaller;
+		final int fStart;
+		final int fEnd;
+
+		Call(String callee, String caller, int start, int end) {
+			fCallee= callee;
+			fCaller= caller;
+			fStart= start;
+			fEnd= end;
+		}
+	}
+
+	/**
+	 * The indexed state of a compilation unit.
+	 */
+	private static final class UnitEntry {
+		final String fHandle;
+		final String fProject;
+		/** The modification stamp of the underlying resource */
+		final long fStamp;
+		/** Hash of the keys of the declared methods */
+		final long fMethodsHash;
+		/** Hash of the keys of the declared types and their super types */
+		final long fSupertypesHash;
+		/** The names of the declared methods */
+		final String[] fDeclaredSelectors;
+		/** The names of all called methods, including binary ones */
+		final String[] fCalledSelectors;
+		/** The keys of the declared types */
+		final String[] fDeclaredTypes;
+		/**
+		 * The keys of the source types methods are called on, including the declared types, and
+		 * of their source super types
+		 */
+		final String[] fReferencedTypes;
+		/** The calls of source methods */
+		final Call[] fCalls;
+
+		UnitEntry(String handle, String project, long stamp, long methodsHash, long supertypesHash, String[] declaredSelectors, String[] calledSelectors, String[] declaredTypes,
+				String[] referencedTypes, Call[] calls) {
+			fHandle= handle;
+			fProject= project;
+			fStamp= stamp;
+			fMethodsHash= methodsHash;
+			fSupertypesHash= supertypesHash;
+			fDeclaredSelectors= declaredSelectors;
+			fCalledSelectors= calledSelectors;
+			fDeclaredTypes= declaredTypes;
+			fReferencedTypes= referencedTypes;
+			fCalls= calls;
+		}
+	}
+
+	/**
+	 * Collects the calls and declarations of a compilation unit.
+	 */
+	private static final class CallCollector extends ASTVisitor {
+		private final ICompilationUnit fUnit;
+		private final List<Call> fCalls= new ArrayList<Call>();
+		private final Set<String> fCalledSelectors= new HashSet<String>();
+		private final Set<String> fDeclaredSelectors= new HashSet<String>();
+		private final Set<String> fDeclaredTypes= new HashSet<String>();
+		private final Set<String> fReferencedTypes= new HashSet<String>();
+		private final Map<String, String> fCallees= new HashMap<String, String>();
+		private final StringBuffer fMethods= new StringBuffer();
+		private final StringBuffer fSupertypes= new StringBuffer();
+
+		CallCollector(ICompilationUnit unit) {
+			fUnit= unit;
+		}
+
+		@Override
+		public boolean visit(MethodInvocation node) {
+			Expression expression= node.getExpression();
+			if (expression != null)
+				addReferencedType(expression.resolveTypeBinding());
+			addCall(node.resolveMethodBinding(), node.getName(), node);
+			return true;
+		}
+
+		@Override
+		public boolean visit(SuperMethodInvocation node) {
+			addCall(node.resolveMethodBinding(), node.getName(), node);
+			return true;
+		}
+
+		@Override
+		public boolean visit(MethodDeclaration node) {
+			IMethodBinding binding= node.resolveBinding();
+			if (binding != null)
+				fMethods.append(binding.getKey()).append(';');
+			if (!node.isConstructor())
+				fDeclaredSelectors.add(node.getName().getIdentifier());
+			return true;
+		}
+
+		@Override
+		public boolean visit(AnonymousClassDeclaration node) {
+			addSupertypes(node.resolveBinding());
+			return true;
+		}
+
+		@Override
+		public void preVisit(ASTNode node) {
+			if (node instanceof AbstractTypeDeclaration)
+				addSupertypes(((AbstractTypeDeclaration) node).resolveBinding());
+		}
+
+		private void addSupertypes(ITypeBinding binding) {
+			if (binding == null)
+				return;
+			fDeclaredTypes.add(binding.getErasure().getKey());
+			// unqualified calls are resolved in the declared types
+			addReferencedType(binding);
+			fSupertypes.append(binding.getKey()).append(':');
+			ITypeBinding superclass= binding.getSuperclass();
+			if (superclass != null)
+				fSupertypes.append(superclass.getKey());
+			ITypeBinding[] interfaces= binding.getInterfaces();
+			for (int i= 0; i < interfaces.length; i++)
+				fSupertypes.append(',').append(interfaces[i].getKey());
+			fSupertypes.append(';');
+		}
+
+		private void addReferencedType(ITypeBinding binding) {
+			if (binding == null || binding.isArray() || binding.isPrimitive())
+				return;
+			binding= binding.getErasure();
+			// binary types have no source super types
+			if (!binding.isFromSource() || !fReferencedTypes.add(binding.getKey()))
+				return;
+			addReferencedType(binding.getSuperclass());
+			ITypeBinding[] interfaces= binding.getInterfaces();
+			for (int i= 0; i < interfaces.length; i++)
+				addReferencedType(interfaces[i]);
+		}
+
+		private void addCall(IMethodBinding binding, SimpleName name, ASTNode node) {
+			if (binding == null)
+				return;
+			binding= binding.getMethodDeclaration();
+			fCalledSelectors.add(binding.getName());
+			if (binding.isConstructor() || !binding.getDeclaringClass().isFromSource())
+				return;
+
+			String key= binding.getKey();
+			String callee= fCallees.get(key);
+			if (callee == null) {
+				IJavaElement element= binding.getJavaElement();
+				callee= element instanceof IMethod ? element.getHandleIdentifier() : ""; //$NON-NLS-1$
+				fCallees.put(key, callee);
+			}
+			if (callee.length() == 0)
+				return;
+
+			try {
+				IJavaElement caller= fUnit.getElementAt(node.getStartPosition());
+				if (caller instanceof IMember)
+					fCalls.add(new Call(callee, caller.getHandleIdentifier(), name.getStartPosition(), node.getStartPosition() + node.getLength()));
+			} catch (JavaModelException e) {
+				// ignore the call
+			}
+		}
+
+		UnitEntry createEntry() {
+			IResource resource= fUnit.getResource();
+			if (resource == null)
+				return null;
+			return new UnitEntry(fUnit.getHandleIdentifier(), fUnit.getJavaProject().getElementName(), resource.getModificationStamp(), hash(fMethods), hash(fSupertypes),
+					fDeclaredSelectors.toArray(new String[fDeclaredSelectors.size()]), fCalledSelectors.toArray(new String[fCalledSelectors.size()]),
+					fDeclaredTypes.toArray(new String[fDeclaredTypes.size()]), fReferencedTypes.toArray(new String[fReferencedTypes.size()]), fCalls.toArray(new Call[fCalls.size()]));
+		}
+
+		private static long hash(CharSequence sequence) {
+			long hash= 0xcbf29ce484222325L; // FNV-1a
+			for (int i= 0, n= sequence.length(); i < n; i++) {
+				hash^= sequence.charAt(i);
+				hash*= 0x100000001b3L;
+			}
+			return hash;
+		}
+	}
+
+	private static final String INDEX_FILE= "callers.index"; //$NON-NLS-1$
+
+	private static final int MAGIC= 0x4A444349;
+
+	private static final int VERSION= 2;
+
+	/** The number of compilation units parsed at once */
+	private static final int BATCH_SIZE= 100;
+
+	/** The delay before changes are indexed, in milliseconds */
+	private static final long INDEX_DELAY= 500;
+
+	/** The delay before the index is saved, in milliseconds */
+	private static final long SAVE_DELAY= 5000;
+
+	private static CallerIndex fgInstance;
+
+	/**
+	 * Returns the caller index and starts it if necessary.
+	 *
+	 * @return the caller index
+	 */
+	public static synchronized CallerIndex getDefault() {
+		if (fgInstance == null) {
+			fgInstance= new CallerIndex();
+			JavaCore.addElementChangedListener(fgInstance, ElementChangedEvent.POST_CHANGE);
+			FileBuffers.getTextFileBufferManager().addFileBufferListener(fgInstance.fBufferListener);
+			fgInstance.initDirtyBuffers();
+			fgInstance.fIndexJob.schedule();
+		}
+		return fgInstance;
+	}
+
+	/**
+	 * Stops the caller index, if it has been started, and saves it.
+	 */
+	public static synchronized void shutdownInstance() {
+		if (fgInstance != null) {
+			JavaCore.removeElementChangedListener(fgInstance);
+			FileBuffers.getTextFileBufferManager().removeFileBufferListener(fgInstance.fBufferListener);
+			fgInstance.fIndexJob.cancel();
+			fgInstance.fSaveJob.cancel();
+			try {
+				fgInstance.fIndexJob.join();
+			} catch (InterruptedException e) {
+				// save what has been indexed so far
+			}
+			fgInstance.save();
+			fgInstance= null;
+		}
+	}
+
+	/** The indexed compilation units by handle identifier */
+	private final Map<String, UnitEntry> fUnits= new HashMap<String, UnitEntry>();
+	/** The calls by callee handle identifier and calling compilation unit */
+	private final Map<String, Map<String, List<Call>>> fCalls= new HashMap<String, Map<String, List<Call>>>();
+	/** The handle identifiers of the compilation units calling a method, by method name */
+	private final Map<String, Set<String>> fCallingUnits= new HashMap<String, Set<String>>();
+	/** The handle identifiers of the compilation units calling methods on a type, by type key */
+	private final Map<String, Set<String>> fReferencingUnits= new HashMap<String, Set<String>>();
+	/**
+	 * The compilation units to index, with a flag telling whether the unit itself changed, in
+	 * which case the units depending on its declarations may have to be indexed as well
+	 */
+	private final LinkedHashMap<String, Boolean> fQueue= new LinkedHashMap<String, Boolean>();
+	/** The compilation units that could not be indexed since they have unsaved changes */
+	private final Set<String> fPending= new HashSet<String>();
+	/** The locations of the Java file buffers with unsaved changes */
+	private final Set<IPath> fDirtyBuffers= new HashSet<IPath>();
+	/** The names of the projects whose compilation units have to be enumerated */
+	private final Set<String> fProjectsToLoad= new HashSet<String>();
+	/** The names of the projects whose index has to be saved */
+	private final Set<String> fDirtyProjects= new HashSet<String>();
+	/** Tells whether the indices of all projects have been loaded */
+	private boolean fLoaded;
+
+	private final Job fIndexJob;
+
+	private final Job fSaveJob;
+
+	private final IFileBufferListener fBufferListener= new IFileBufferListener() {
+		public void dirtyStateChanged(IFileBuffer buffer, boolean isDirty) {
+			setDirty(buffer.getLocation(), isDirty);
+		}
+		public void bufferDisposed(IFileBuffer buffer) {
+			setDirty(buffer.getLocation(), false);
+		}
+		public void underlyingFileMoved(IFileBuffer buffer, IPath path) {
+			if (buffer.isDirty()) {
+				setDirty(buffer.getLocation(), false);
+				setDirty(path, true);
+			}
+		}
+		public void bufferCreated(IFileBuffer buffer) {
+		}
+		public void bufferContentAboutToBeReplaced(IFileBuffer buffer) {
+		}
+		public void bufferContentReplaced(IFileBuffer buffer) {
+		}
+		public void stateChanging(IFileBuffer buffer) {
+		}
+		public void stateValidationChanged(IFileBuffer buffer, boolean isStateValidated) {
+		}
+		public void underlyingFileDeleted(IFileBuffer buffer) {
+		}
+		public void stateChangeFailed(IFileBuffer buffer) {
+		}
+	};
+
+	private CallerIndex() {
+		fIndexJob= new Job(CallHierarchyMessages.CallerIndex_index_job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				return index(monitor);
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				return family == CallerIndex.class;
+			}
+		};
+		fIndexJob.setSystem(true);
+		fIndexJob.setPriority(Job.DECORATE);
+
+		fSaveJob= new Job(CallHierarchyMessages.CallerIndex_save_job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				save();
+				return Status.OK_STATUS;
+			}
+		};
+		fSaveJob.setSystem(true);
+		fSaveJob.setPriority(Job.DECORATE);
+	}
+
+	/**
+	 * Returns the callers of the given method.
+	 *
+	 * @param method the method
+	 * @return a map from handle identifier ({@link String}) to {@link MethodCall}, or
+	 *         <code>null</code> if the index cannot tell the callers of the method, e.g. since it
+	 *         is not up to date
+	 */
+	public Map<String, MethodCall> getCallers(IMethod method) {
+		try {
+			if (method.getCompilationUnit() == null || method.isConstructor())
+				return null;
+		} catch (JavaModelException e) {
+			return null;
+		}
+
+		List<Call> calls= new ArrayList<Call>();
+		synchronized (this) {
+			if (!fLoaded || !fQueue.isEmpty() || !fPending.isEmpty() || !fProjectsToLoad.isEmpty()) {
+				fIndexJob.schedule();
+				return null;
+			}
+			if (!fDirtyBuffers.isEmpty())
+				return null;
+
+			Map<String, List<Call>> callsByUnit= fCalls.get(method.getHandleIdentifier());
+			if (callsByUnit != null) {
+				for (Iterator<List<Call>> iter= callsByUnit.values().iterator(); iter.hasNext();)
+					calls.addAll(iter.next());
+			}
+		}
+
+		CallSearchResultCollector collector= new CallSearchResultCollector();
+		for (int i= 0, n= calls.size(); i < n; i++) {
+			Call call= calls.get(i);
+			IJavaElement caller= JavaCore.create(call.fCaller);
+			if (caller instanceof IMember)
+				collector.addMember((IMember) caller, (IMember) caller, call.fStart, call.fEnd);
+		}
+		return collector.getCallers();
+	}
+
+	/**
+	 * Initializes the dirty buffers from the primary working copies with unsaved changes, the
+	 * buffer listener tracks them from then on.
+	 */
+	private synchronized void initDirtyBuffers() {
+		ICompilationUnit[] workingCopies= JavaCore.getWorkingCopies(null);
+		for (int i= 0; i < workingCopies.length; i++) {
+			if (hasUnsavedChanges(workingCopies[i]))
+				setDirty(workingCopies[i].getPath(), true);
+		}
+	}
+
+	private synchronized void setDirty(IPath location, boolean dirty) {
+		if (location == null || !JavaCore.isJavaLikeFileName(location.lastSegment()))
+			return;
+		if (dirty) {
+			fDirtyBuffers.add(location);
+		} else if (fDirtyBuffers.remove(location) && !fPending.isEmpty()) {
+			// saved or reverted, the index job checks the pending units again
+			for (Iterator<String> iter= fPending.iterator(); iter.hasNext();)
+				enqueue(iter.next(), true);
+			fPending.clear();
+			fIndexJob.schedule(INDEX_DELAY);
+		}
+	}
+
+	private static boolean hasUnsavedChanges(ICompilationUnit unit) {
+		try {
+			return unit.hasUnsavedChanges();
+		} catch (JavaModelException e) {
+			return true;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+	 */
+	public void elementChanged(ElementChangedEvent event) {
+		synchronized (this) {
+			processDelta(event.getDelta());
+			if (!fQueue.isEmpty() || !fProjectsToLoad.isEmpty())
+				fIndexJob.schedule(INDEX_DELAY);
+		}
+	}
+
+	private void processDelta(IJavaElementDelta delta) {
+		IJavaElement element= delta.getElement();
+		int flags= delta.getFlags();
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+				processChildren(delta);
+				break;
+			case IJavaElement.JAVA_PROJECT:
+				String project= element.getElementName();
+				if (delta.getKind() == IJavaElementDelta.REMOVED || (flags & IJavaElementDelta.F_CLOSED) != 0) {
+					removeProject(project);
+				} else if (delta.getKind() == IJavaElementDelta.ADDED || (flags & IJavaElementDelta.F_OPENED) != 0) {
+					fProjectsToLoad.add(project);
+				} else if ((flags & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+					// bindings may have changed everywhere in the project
+					for (Iterator<UnitEntry> iter= fUnits.values().iterator(); iter.hasNext();) {
+						UnitEntry entry= iter.next();
+						if (entry.fProject.equals(project))
+							enqueue(entry.fHandle, false);
+					}
+					fProjectsToLoad.add(project);
+				} else {
+					processChildren(delta);
+				}
+				break;
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			case IJavaElement.PACKAGE_FRAGMENT:
+				if (delta.getKind() == IJavaElementDelta.ADDED) {
+					fProjectsToLoad.add(element.getJavaProject().getElementName());
+				} else if (delta.getKind() == IJavaElementDelta.REMOVED) {
+					String prefix= element.getHandleIdentifier();
+					for (Iterator<String> iter= fUnits.keySet().iterator(); iter.hasNext();) {
+						String handle= iter.next();
+						if (handle.startsWith(prefix))
+							enqueue(handle, true);
+					}
+				} else {
+					processChildren(delta);
+				}
+				break;
+			case IJavaElement.COMPILATION_UNIT:
+				ICompilationUnit unit= (ICompilationUnit) element;
+				if (unit.getOwner() != null)
+					break;
+				if (delta.getKind() != IJavaElementDelta.CHANGED || (flags & (IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_PRIMARY_RESOURCE | IJavaElementDelta.F_PRIMARY_WORKING_COPY)) != 0) {
+					fPending.remove(unit.getHandleIdentifier());
+					enqueue(unit.getHandleIdentifier(), true);
+				}
+				break;
+		}
+	}
+
+	private void processChildren(IJavaElementDelta delta) {
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++)
+			processDelta(children[i]);
+	}
+
+	private synchronized void requeue(Map<String, Boolean> batch) {
+		for (Iterator<Map.Entry<String, Boolean>> iter= batch.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<String, Boolean> entry= iter.next();
+			enqueue(entry.getKey(), entry.getValue().booleanValue());
+		}
+	}
+
+	private void enqueue(String handle, boolean changed) {
+		Boolean queued= fQueue.get(handle);
+		if (queued == null || changed && !queued.booleanValue())
+			fQueue.put(handle, Boolean.valueOf(changed));
+	}
+
+	private IStatus index(IProgressMonitor monitor) {
+		synchronized (this) {
+			if (!fLoaded) {
+				IJavaProject[] projects;
+				try {
+					projects= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects();
+				} catch (JavaModelException e) {
+					JavaPlugin.log(e);
+					return Status.OK_STATUS;
+				}
+				for (int i= 0; i < projects.length; i++) {
+					load(projects[i]);
+					fProjectsToLoad.add(projects[i].getElementName());
+				}
+				fLoaded= true;
+			}
+		}
+
+		boolean indexed= false;
+		while (true) {
+			if (monitor.isCanceled()) {
+				if (indexed)
+					fSaveJob.schedule(SAVE_DELAY);
+				return Status.CANCEL_STATUS;
+			}
+
+			final Map<String, Boolean> batch= new HashMap<String, Boolean>();
+			String[] projects;
+			synchronized (this) {
+				projects= fProjectsToLoad.toArray(new String[fProjectsToLoad.size()]);
+				fProjectsToLoad.clear();
+			}
+			for (int i= 0; i < projects.length; i++)
+				enumerate(JavaCore.create(ResourcesPlugin.getWorkspace().getRoot().getProject(projects[i])));
+
+			List<ICompilationUnit> units= new ArrayList<ICompilationUnit>();
+			synchronized (this) {
+				for (Iterator<Map.Entry<String, Boolean>> iter= fQueue.entrySet().iterator(); iter.hasNext() && batch.size() < BATCH_SIZE;) {
+					Map.Entry<String, Boolean> entry= iter.next();
+					iter.remove();
+					String handle= entry.getKey();
+					IJavaElement element= JavaCore.create(handle);
+					if (!(element instanceof ICompilationUnit) || !element.exists()) {
+						removeUnit(handle, entry.getValue().booleanValue());
+					} else if (hasUnsavedChanges((ICompilationUnit) element)) {
+						fPending.add(handle);
+					} else {
+						batch.put(handle, entry.getValue());
+						units.add((ICompilationUnit) element);
+					}
+				}
+				if (batch.isEmpty() && fQueue.isEmpty())
+					break;
+			}
+
+			try {
+				new ASTBatchParser().createASTs(units.toArray(new ICompilationUnit[units.size()]), new String[0], new ASTRequestor() {
+					@Override
+					public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+						Boolean changed= batch.remove(source.getHandleIdentifier());
+						CallCollector collector= new CallCollector(source);
+						ast.accept(collector);
+						UnitEntry entry= collector.createEntry();
+						if (entry != null)
+							putUnit(entry, changed.booleanValue());
+					}
+				}, monitor);
+			} catch (OperationCanceledException e) {
+				if (indexed || batch.size() < units.size())
+					fSaveJob.schedule(SAVE_DELAY);
+				return Status.CANCEL_STATUS;
+			} finally {
+				// the units that have not been indexed are indexed by the next run
+				requeue(batch);
+			}
+			indexed= true;
+		}
+
+		if (indexed)
+			fSaveJob.schedule(SAVE_DELAY);
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Enqueues the compilation units of the given project that have not been indexed.
+	 *
+	 * @param project the project
+	 */
+	private void enumerate(IJavaProject project) {
+		if (!project.exists())
+			return;
+		List<String> handles= new ArrayList<String>();
+		try {
+			IPackageFragmentRoot[] roots= project.getPackageFragmentRoots();
+			for (int i= 0; i < roots.length; i++) {
+				if (roots[i].getKind() != IPackageFragmentRoot.K_SOURCE || !project.equals(roots[i].getJavaProject()))
+					continue;
+				IJavaElement[] fragments= roots[i].getChildren();
+				for (int j= 0; j < fragments.length; j++) {
+					ICompilationUnit[] units= ((IPackageFragment) fragments[j]).getCompilationUnits();
+					for (int k= 0; k < units.length; k++)
+						handles.add(units[k].getHandleIdentifier());
+				}
+			}
+		} catch (JavaModelException e) {
+			JavaPlugin.log(e);
+		}
+		synchronized (this) {
+			for (int i= 0, n= handles.size(); i < n; i++) {
+				String handle= handles.get(i);
+				if (!fUnits.containsKey(handle))
+					enqueue(handle, false);
+			}
+		}
+	}
+
+	private synchronized void putUnit(UnitEntry entry, boolean changed) {
+		UnitEntry old= removeCalls(entry.fHandle);
+		addCalls(entry);
+		fDirtyProjects.add(entry.fProject);
+		if (changed)
+			enqueueDependents(old, entry);
+	}
+
+	private synchronized void removeUnit(String handle, boolean changed) {
+		UnitEntry old= removeCalls(handle);
+		if (old != null) {
+			fDirtyProjects.add(old.fProject);
+			if (changed)
+				enqueueDependents(old, null);
+		}
+	}
+
+	/**
+	 * Enqueues the compilation units whose bindings may have changed due to a change of the
+	 * declarations in a compilation unit.
+	 *
+	 * @param old the previous entry of the changed compilation unit, or <code>null</code>
+	 * @param entry the new entry of the changed compilation unit, or <code>null</code>
+	 */
+	private void enqueueDependents(UnitEntry old, UnitEntry entry) {
+		String self= old != null ? old.fHandle : entry.fHandle;
+		if (old != null && entry != null) {
+			if (old.fSupertypesHash != entry.fSupertypesHash) {
+				// the inherited methods of the declared types and their subtypes may have changed
+				Set<String> types= new HashSet<String>(Arrays.asList(old.fDeclaredTypes));
+				types.addAll(Arrays.asList(entry.fDeclaredTypes));
+				enqueueUnits(fReferencingUnits, types, self);
+			}
+			if (old.fMethodsHash == entry.fMethodsHash)
+				return;
+		}
+
+		Set<String> selectors= new HashSet<String>();
+		if (old != null)
+			selectors.addAll(Arrays.asList(old.fDeclaredSelectors));
+		if (entry != null)
+			selectors.addAll(Arrays.asList(entry.fDeclaredSelectors));
+		enqueueUnits(fCallingUnits, selectors, self);
+	}
+
+	/**
+	 * Enqueues the compilation units found under the given keys.
+	 *
+	 * @param unitsByKey the compilation units by key
+	 * @param keys the keys
+	 * @param self the handle identifier of the changed compilation unit, which is not enqueued
+	 */
+	private void enqueueUnits(Map<String, Set<String>> unitsByKey, Set<String> keys, String self) {
+		for (Iterator<String> iter= keys.iterator(); iter.hasNext();) {
+			Set<String> units= unitsByKey.get(iter.next());
+			if (units == null)
+				continue;
+			for (Iterator<String> unitIter= units.iterator(); unitIter.hasNext();) {
+				String handle= unitIter.next();
+				if (!handle.equals(self))
+					enqueue(handle, false);
+			}
+		}
+	}
+
+	private void addCalls(UnitEntry entry) {
+		fUnits.put(entry.fHandle, entry);
+		for (int i= 0; i < entry.fCalls.length; i++) {
+			Call call= entry.fCalls[i];
+			Map<String, List<Call>> callsByUnit= fCalls.get(call.fCallee);
+			if (callsByUnit == null) {
+				callsByUnit= new HashMap<String, List<Call>>(4);
+				fCalls.put(call.fCallee, callsByUnit);
+			}
+			List<Call> calls= callsByUnit.get(entry.fHandle);
+			if (calls == null) {
+				calls= new ArrayList<Call>(2);
+				callsByUnit.put(entry.fHandle, calls);
+			}
+			calls.add(call);
+		}
+		addHandle(fCallingUnits, entry.fCalledSelectors, entry.fHandle);
+		addHandle(fReferencingUnits, entry.fReferencedTypes, entry.fHandle);
+	}
+
+	private static void addHandle(Map<String, Set<String>> unitsByKey, String[] keys, String handle) {
+		for (int i= 0; i < keys.length; i++) {
+			Set<String> units= unitsByKey.get(keys[i]);
+			if (units == null) {
+				units= new HashSet<String>(4);
+				unitsByKey.put(keys[i], units);
+			}
+			units.add(handle);
+		}
+	}
+
+	private UnitEntry removeCalls(String handle) {
+		UnitEntry entry= fUnits.remove(handle);
+		if (entry == null)
+			return null;
+		for (int i= 0; i < entry.fCalls.length; i++) {
+			Map<String, List<Call>> callsByUnit= fCalls.get(entry.fCalls[i].fCallee);
+			if (callsByUnit != null && callsByUnit.remove(handle) != null && callsByUnit.isEmpty())
+				fCalls.remove(entry.fCalls[i].fCallee);
+		}
+		removeHandle(fCallingUnits, entry.fCalledSelectors, handle);
+		removeHandle(fReferencingUnits, entry.fReferencedTypes, handle);
+		return entry;
+	}
+
+	private static void removeHandle(Map<String, Set<String>> unitsByKey, String[] keys, String handle) {
+		for (int i= 0; i < keys.length; i++) {
+			Set<String> units= unitsByKey.get(keys[i]);
+			if (units != null && units.remove(handle) && units.isEmpty())
+				unitsByKey.remove(keys[i]);
+		}
+	}
+
+	private void removeProject(String project) {
+		List<String> handles= new ArrayList<String>();
+		for (Iterator<UnitEntry> iter= fUnits.values().iterator(); iter.hasNext();) {
+			UnitEntry entry= iter.next();
+			if (entry.fProject.equals(project))
+				handles.add(entry.fHandle);
+		}
+		for (int i= 0, n= handles.size(); i < n; i++) {
+			removeCalls(handles.get(i));
+			fQueue.remove(handles.get(i));
+			fPending.remove(handles.get(i));
+		}
+		fProjectsToLoad.remove(project);
+		fDirtyProjects.remove(project);
+	}
+
+	private static File getIndexFile(IProject project) {
+		return project.getWorkingLocation(JavaUI.ID_PLUGIN).append(INDEX_FILE).toFile();
+	}
+
+	/**
+	 * Loads the stored index of a project. Compilation units that have been modified since the
+	 * index was saved are enqueued.
+	 *
+	 * @param project the project
+	 */
+	private void load(IJavaProject project) {
+		if (!project.getProject().isAccessible())
+			return;
+		File file= getIndexFile(project.getProject());
+		if (!file.isFile())
+			return;
+
+		DataInputStream in= null;
+		try {
+			in= new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return;
+			String[] strings= new String[in.readInt()];
+			for (int i= 0; i < strings.length; i++)
+				strings[i]= in.readUTF();
+
+			String projectName= project.getElementName();
+			for (int i= 0, units= in.readInt(); i < units; i++) {
+				String handle= strings[in.readInt()];
+				long stamp= in.readLong();
+				long methodsHash= in.readLong();
+				long supertypesHash= in.readLong();
+				String[] declared= readStrings(in, strings);
+				String[] called= readStrings(in, strings);
+				String[] declaredTypes= readStrings(in, strings);
+				String[] referencedTypes= readStrings(in, strings);
+				Call[] calls= new Call[in.readInt()];
+				for (int j= 0; j < calls.length; j++)
+					calls[j]= new Call(strings[in.readInt()], strings[in.readInt()], in.readInt(), in.readInt());
+
+				UnitEntry entry= new UnitEntry(handle, projectName, stamp, methodsHash, supertypesHash, declared, called, declaredTypes, referencedTypes, calls);
+				addCalls(entry);
+				IJavaElement element= JavaCore.create(handle);
+				IResource resource= element instanceof ICompilationUnit ? ((ICompilationUnit) element).getResource() : null;
+				if (resource == null || resource.getModificationStamp() != stamp)
+					enqueue(handle, true);
+			}
+		} catch (IOException e) {
+			// the index is only a cache, the compilation units will be indexed again
+		} catch (RuntimeException e) {
+			// corrupt index, see above
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static String[] readStrings(DataInputStream in, String[] strings) throws IOException {
+		String[] result= new String[in.readInt()];
+		for (int i= 0; i < result.length; i++)
+			result[i]= strings[in.readInt()];
+		return result;
+	}
+
+	/**
+	 * Saves the indices of the modified projects.
+	 */
+	private void save() {
+		Map<String, List<UnitEntry>> entriesByProject= new HashMap<String, List<UnitEntry>>();
+		synchronized (this) {
+			for (Iterator<String> iter= fDirtyProjects.iterator(); iter.hasNext();)
+				entriesByProject.put(iter.next(), new ArrayList<UnitEntry>());
+			fDirtyProjects.clear();
+			for (Iterator<UnitEntry> iter= fUnits.values().iterator(); iter.hasNext();) {
+				UnitEntry entry= iter.next();
+				List<UnitEntry> entries= entriesByProject.get(entry.fProject);
+				if (entries != null)
+					entries.add(entry);
+			}
+		}
+
+		for (Iterator<Map.Entry<String, List<UnitEntry>>> iter= entriesByProject.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<String, List<UnitEntry>> entry= iter.next();
+			IProject project= ResourcesPlugin.getWorkspace().getRoot().getProject(entry.getKey());
+			if (!project.isAccessible())
+				continue;
+			try {
+				save(getIndexFile(project), entry.getValue());
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+			} catch (CoreException e) {
+				JavaPlugin.log(e);
+			}
+		}
+	}
+
+	private static void save(File file, List<UnitEntry> entries) throws IOException, CoreException {
+		Map<String, Integer> indices= new LinkedHashMap<String, Integer>();
+		for (int i= 0, n= entries.size(); i < n; i++) {
+			UnitEntry entry= entries.get(i);
+			addString(indices, entry.fHandle);
+			for (int j= 0; j < entry.fDeclaredSelectors.length; j++)
+				addString(indices, entry.fDeclaredSelectors[j]);
+			for (int j= 0; j < entry.fCalledSelectors.length; j++)
+				addString(indices, entry.fCalledSelectors[j]);
+			for (int j= 0; j < entry.fDeclaredTypes.length; j++)
+				addString(indices, entry.fDeclaredTypes[j]);
+			for (int j= 0; j < entry.fReferencedTypes.length; j++)
+				addString(indices, entry.fReferencedTypes[j]);
+			for (int j= 0; j < entry.fCalls.length; j++) {
+				addString(indices, entry.fCalls[j].fCallee);
+				addString(indices, entry.fCalls[j].fCaller);
+			}
+		}
+
+		File tmp= new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(indices.size());
+			for (Iterator<String> iter= indices.keySet().iterator(); iter.hasNext();)
+				out.writeUTF(iter.next());
+
+			out.writeInt(entries.size());
+			for (int i= 0, n= entries.size(); i < n; i++) {
+				UnitEntry entry= entries.get(i);
+				out.writeInt(indices.get(entry.fHandle).intValue());
+				out.writeLong(entry.fStamp);
+				out.writeLong(entry.fMethodsHash);
+				out.writeLong(entry.fSupertypesHash);
+				writeStrings(out, indices, entry.fDeclaredSelectors);
+				writeStrings(out, indices, entry.fCalledSelectors);
+				writeStrings(out, indices, entry.fDeclaredTypes);
+				writeStrings(out, indices, entry.fReferencedTypes);
+				out.writeInt(entry.fCalls.length);
+				for (int j= 0; j < entry.fCalls.length; j++) {
+					Call call= entry.fCalls[j];
+					out.writeInt(indices.get(call.fCallee).intValue());
+					out.writeInt(indices.get(call.fCaller).intValue());
+					out.writeInt(call.fStart);
+					out.writeInt(call.fEnd);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Cannot write " + file); //$NON-NLS-1$
+		}
+	}
+
+	private static void addString(Map<String, Integer> indices, String string) {
+		if (!indices.containsKey(string))
+			indices.put(string, new Integer(indices.size()));
+	}
+
+	private static void writeStrings(DataOutputStream out, Map<String, Integer> indices, String[] strings) throws IOException {
+		out.writeInt(strings.length);
+		for (int i= 0; i < strings.length; i++)
+			out.writeInt(indices.get(strings[i]).intValue());
+	}
+}
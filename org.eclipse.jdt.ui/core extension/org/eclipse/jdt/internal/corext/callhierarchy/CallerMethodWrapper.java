@@ -13,21 +13,42 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.callhierarchy;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
+import org.eclipse.core.resources.ResourcesPlugin;
+
 import org.eclipse.jdt.core.Flags;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IInitializer;
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
@@ -35,12 +56,63 @@ import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.search.SearchParticipant;
 import org.eclipse.jdt.core.search.SearchPattern;
 
+import org.eclipse.jdt.internal.corext.util.FutureUtil;
 import org.eclipse.jdt.internal.corext.util.JdtFlags;
 import org.eclipse.jdt.internal.corext.util.SearchUtils;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 
 public class CallerMethodWrapper extends MethodWrapper {
+
+	/**
+	 * Progress monitor of the search in one scope. It is canceled when the search of the parent
+	 * monitor is canceled or when the search in another scope has failed.
+	 *
+	 * @since 3.8
+	 */
+	private static class ShardProgressMonitor extends NullProgressMonitor {
+
+		private final IProgressMonitor fParent;
+
+		private volatile boolean fCanceled;
+
+		public ShardProgressMonitor(IProgressMonitor parent) {
+			fParent= parent;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return fCanceled || fParent.isCanceled();
+		}
+
+		@Override
+		public void setCanceled(boolean canceled) {
+			fCanceled= canceled;
+		}
+	}
+
+	/**
+	 * The maximal number of searches run in parallel.
+	 *
+	 * @since 3.8
+	 */
+	private static final int MAX_THREADS= Math.min(8, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The maximal number of search scopes the workspace is split into, see
+	 * {@link #setMaxShards(int)}.
+	 *
+	 * @since 3.8
+	 */
+	private static volatile int fgMaxShards= MAX_THREADS;
+
+	/**
+	 * The executor running the searches in parallel, created on demand.
+	 *
+	 * @since 3.8
+	 */
+	private static ExecutorService fgExecutor;
+
 	/**
 	 * Value of the expand with constructors mode.
 	 * 
@@ -98,6 +170,20 @@ public class CallerMethodWrapper extends MethodWrapper {
 	 */
 	@Override
 	protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor) {
+		return findChildren(progressMonitor, null);
+	}
+
+	/**
+	 * Searches the callers, in parallel in different package fragment roots if the search scope
+	 * is the workspace. The callers found in a package fragment root are passed to the collector
+	 * as soon as its search has finished.
+	 * 
+	 * @return The result of the search for children
+	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#findChildren(org.eclipse.core.runtime.IProgressMonitor, org.eclipse.jdt.internal.corext.callhierarchy.ICallsCollector)
+	 * @since 3.8
+	 */
+	@Override
+	protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor, ICallsCollector collector) {
 		try {
 
 			IProgressMonitor monitor= new SubProgressMonitor(progressMonitor, 95, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL);
@@ -105,53 +191,41 @@ public class CallerMethodWrapper extends MethodWrapper {
 			checkCanceled(progressMonitor);
 
 			IMember member= getMember();
-			SearchPattern pattern= null;
-			IType type= null;
-			if (member instanceof IType) {
-				type= (IType) member;
-			} else if (member instanceof IInitializer && ! Flags.isStatic(member.getFlags())) {
-				type= (IType) member.getParent();
-			}
-			if (type != null) {
-				if (type.isAnonymous()) {
-					// search engine does not find reference to anonymous, see https://bugs.eclipse.org/bugs/show_bug.cgi?id=207774
-					CallSearchResultCollector resultCollector= new CallSearchResultCollector();
-					IJavaElement parent= type.getParent();
-					if (parent instanceof IMember) {
-						IMember parentMember= (IMember) parent;
-						ISourceRange nameRange= type.getNameRange();
-						int start= nameRange != null ? nameRange.getOffset() : -1;
-						int len= nameRange != null ? nameRange.getLength() : 0;
-						resultCollector.addMember(type, parentMember, start, start + len);
-						return resultCollector.getCallers();
-					}
-				} else if (type.getParent() instanceof IMethod) {
-					// good enough for local types (does not find super(..) references in subtype constructors):
-					pattern= SearchPattern.createPattern(type,
-							IJavaSearchConstants.CLASS_INSTANCE_CREATION_TYPE_REFERENCE,
-							SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
-				} else {
-					pattern= SearchPattern.createPattern(type.getFullyQualifiedName('.'),
-							IJavaSearchConstants.CONSTRUCTOR,
-							IJavaSearchConstants.REFERENCES,
-							SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
+			if (member instanceof IType && ((IType) member).isAnonymous()) {
+				// search engine does not find reference to anonymous, see https://bugs.eclipse.org/bugs/show_bug.cgi?id=207774
+				IType type= (IType) member;
+				CallSearchResultCollector resultCollector= new CallSearchResultCollector();
+				IJavaElement parent= type.getParent();
+				if (parent instanceof IMember) {
+					IMember parentMember= (IMember) parent;
+					ISourceRange nameRange= type.getNameRange();
+					int start= nameRange != null ? nameRange.getOffset() : -1;
+					int len= nameRange != null ? nameRange.getLength() : 0;
+					resultCollector.addMember(type, parentMember, start, start + len);
+					return resultCollector.getCallers();
 				}
 			}
-			if (pattern == null) {
-				int limitTo= IJavaSearchConstants.REFERENCES;
-				if (member.getElementType() == IJavaElement.FIELD)
-					limitTo= getFieldSearchMode();
-				pattern= SearchPattern.createPattern(member, limitTo, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
-			}
+			SearchPattern pattern= createSearchPattern(member);
 			if (pattern == null) { // e.g. for initializers
 				return new HashMap<String, MethodCall>(0);
 			}
 
-			SearchEngine searchEngine= new SearchEngine();
-			MethodReferencesSearchRequestor searchRequestor= new MethodReferencesSearchRequestor();
 			IJavaSearchScope defaultSearchScope= getSearchScope();
 			boolean isWorkspaceScope= SearchEngine.createWorkspaceScope().equals(defaultSearchScope);
+			if (isWorkspaceScope && member instanceof IMethod && CallHierarchy.getDefault().isCallerIndexEnabled()) {
+				Map<String, MethodCall> callers= CallerIndex.getDefault().getCallers((IMethod) member);
+				if (callers != null)
+					return callers;
+			}
 			IJavaSearchScope searchScope= isWorkspaceScope ? getAccurateSearchScope(defaultSearchScope, member) : defaultSearchScope;
+			if (searchScope == defaultSearchScope && isWorkspaceScope) {
+				IJavaSearchScope[] shardScopes= getShardScopes();
+				if (shardScopes.length > 1)
+					return searchInParallel(pattern, shardScopes, collector, monitor);
+			}
+
+			SearchEngine searchEngine= new SearchEngine();
+			MethodReferencesSearchRequestor searchRequestor= new MethodReferencesSearchRequestor();
 			searchEngine.search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() }, searchScope, searchRequestor,
 					monitor);
 			return searchRequestor.getCallers();
@@ -162,6 +236,198 @@ public class CallerMethodWrapper extends MethodWrapper {
 		}
 	}
 
+	private SearchPattern createSearchPattern(IMember member) throws JavaModelException {
+		IType type= null;
+		if (member instanceof IType) {
+			type= (IType) member;
+		} else if (member instanceof IInitializer && ! Flags.isStatic(member.getFlags())) {
+			type= (IType) member.getParent();
+		}
+		if (type != null) {
+			if (type.isAnonymous()) {
+				return null;
+			} else if (type.getParent() instanceof IMethod) {
+				// good enough for local types (does not find super(..) references in subtype constructors):
+				return SearchPattern.createPattern(type,
+						IJavaSearchConstants.CLASS_INSTANCE_CREATION_TYPE_REFERENCE,
+						SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
+			} else {
+				return SearchPattern.createPattern(type.getFullyQualifiedName('.'),
+						IJavaSearchConstants.CONSTRUCTOR,
+						IJavaSearchConstants.REFERENCES,
+						SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
+			}
+		}
+		int limitTo= IJavaSearchConstants.REFERENCES;
+		if (member.getElementType() == IJavaElement.FIELD)
+			limitTo= getFieldSearchMode();
+		return SearchPattern.createPattern(member, limitTo, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
+	}
+
+	/**
+	 * Returns the maximal number of search scopes the workspace is split into.
+	 *
+	 * @return the maximal number of search scopes
+	 * @since 3.8
+	 */
+	public static int getMaxShards() {
+		return fgMaxShards;
+	}
+
+	/**
+	 * Sets the maximal number of search scopes the workspace is split into, e.g. to force or to
+	 * prevent parallel searches in tests. Scopes beyond the number of threads are searched in
+	 * the calling thread.
+	 *
+	 * @param maxShards the maximal number of search scopes, <code>1</code> to search the
+	 *            workspace in one scope
+	 * @since 3.8
+	 */
+	public static void setMaxShards(int maxShards) {
+		fgMaxShards= maxShards;
+	}
+
+	/**
+	 * Splits the workspace into search scopes of package fragment roots, one for each thread
+	 * that can search in parallel.
+	 * 
+	 * @return the search scopes, or an empty array if the workspace should not be split
+	 * @throws JavaModelException if the package fragment roots cannot be determined
+	 * @since 3.8
+	 */
+	private static IJavaSearchScope[] getShardScopes() throws JavaModelException {
+		int maxShards= fgMaxShards;
+		if (maxShards < 2)
+			return new IJavaSearchScope[0];
+
+		// libraries are on the classpath of several projects, search each of them once
+		Map<IPath, IPackageFragmentRoot> roots= new LinkedHashMap<IPath, IPackageFragmentRoot>();
+		IJavaProject[] projects= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects();
+		for (int i= 0; i < projects.length; i++) {
+			IPackageFragmentRoot[] projectRoots= projects[i].getPackageFragmentRoots();
+			for (int j= 0; j < projectRoots.length; j++) {
+				if (!roots.containsKey(projectRoots[j].getPath()))
+					roots.put(projectRoots[j].getPath(), projectRoots[j]);
+			}
+		}
+
+		int shards= Math.min(roots.size(), maxShards);
+		if (shards < 2)
+			return new IJavaSearchScope[0];
+		List<List<IJavaElement>> elements= new ArrayList<List<IJavaElement>>(shards);
+		for (int i= 0; i < shards; i++)
+			elements.add(new ArrayList<IJavaElement>());
+		int i= 0;
+		for (Iterator<IPackageFragmentRoot> iter= roots.values().iterator(); iter.hasNext(); i++)
+			elements.get(i % shards).add(iter.next());
+
+		IJavaSearchScope[] scopes= new IJavaSearchScope[shards];
+		for (int j= 0; j < shards; j++) {
+			List<IJavaElement> shard= elements.get(j);
+			scopes[j]= SearchEngine.createJavaSearchScope(shard.toArray(new IJavaElement[shard.size()]));
+		}
+		return scopes;
+	}
+
+	/**
+	 * Searches the callers in the given scopes in parallel.
+	 * 
+	 * @param pattern the search pattern
+	 * @param scopes the disjoint search scopes
+	 * @param collector the collector to receive the callers found in a scope, or
+	 *            <code>null</code>
+	 * @param monitor the progress monitor
+	 * @return a map from handle identifier ({@link String}) to {@link MethodCall}
+	 * @throws CoreException if a search fails
+	 * @since 3.8
+	 */
+	private Map<String, MethodCall> searchInParallel(SearchPattern pattern, IJavaSearchScope[] scopes, final ICallsCollector collector, IProgressMonitor monitor) throws CoreException {
+		monitor.beginTask("", scopes.length); //$NON-NLS-1$
+		final ShardProgressMonitor[] monitors= new ShardProgressMonitor[scopes.length];
+		CompletionService<Map<String, MethodCall>> completionService= new ExecutorCompletionService<Map<String, MethodCall>>(getExecutor());
+		try {
+			for (int i= 0; i < scopes.length; i++) {
+				// search patterns are not thread-safe, each search gets its own
+				final SearchPattern shardPattern= i == 0 ? pattern : createSearchPattern(getMember());
+				final IJavaSearchScope scope= scopes[i];
+				final ShardProgressMonitor shardMonitor= new ShardProgressMonitor(monitor);
+				monitors[i]= shardMonitor;
+				completionService.submit(new Callable<Map<String, MethodCall>>() {
+					public Map<String, MethodCall> call() throws CoreException {
+						if (shardMonitor.isCanceled())
+							throw new OperationCanceledException();
+						MethodReferencesSearchRequestor searchRequestor= new MethodReferencesSearchRequestor();
+						new SearchEngine().search(shardPattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() }, scope, searchRequestor, shardMonitor);
+						Map<String, MethodCall> callers= searchRequestor.getCallers();
+						if (collector != null && !callers.isEmpty() && !shardMonitor.isCanceled())
+							collector.add(createMethodWrappers(callers));
+						return callers;
+					}
+				});
+			}
+
+			Map<String, MethodCall> result= new HashMap<String, MethodCall>();
+			for (int remaining= scopes.length; remaining > 0;) {
+				Future<Map<String, MethodCall>> future;
+				try {
+					future= completionService.poll(100, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					throw new OperationCanceledException();
+				}
+				checkCanceled(monitor);
+				if (future == null)
+					continue;
+				remaining--;
+				monitor.worked(1);
+				addCallers(result, FutureUtil.getResult(future, monitor));
+			}
+			return result;
+		} finally {
+			// stops the remaining searches if one has failed or has been canceled
+			for (int i= 0; i < monitors.length; i++) {
+				if (monitors[i] != null)
+					monitors[i].setCanceled(true);
+			}
+			monitor.done();
+		}
+	}
+
+	private MethodWrapper[] createMethodWrappers(Map<String, MethodCall> callers) {
+		MethodWrapper[] wrappers= new MethodWrapper[callers.size()];
+		int i= 0;
+		for (Iterator<MethodCall> iter= callers.values().iterator(); iter.hasNext();)
+			wrappers[i++]= createMethodWrapper(iter.next());
+		return wrappers;
+	}
+
+	private static void addCallers(Map<String, MethodCall> result, Map<String, MethodCall> callers) {
+		for (Iterator<Map.Entry<String, MethodCall>> iter= callers.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<String, MethodCall> entry= iter.next();
+			MethodCall methodCall= result.get(entry.getKey());
+			if (methodCall == null) {
+				result.put(entry.getKey(), entry.getValue());
+			} else if (entry.getValue().hasCallLocations()) {
+				for (Iterator<CallLocation> locations= entry.getValue().getCallLocations().iterator(); locations.hasNext();)
+					methodCall.addCallLocation(locations.next());
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (fgExecutor == null) {
+			ThreadFactory threadFactory= new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "Call Hierarchy Search"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+			// runs the search in the calling thread if all threads are busy
+			fgExecutor= new ThreadPoolExecutor(0, MAX_THREADS, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		return fgExecutor;
+	}
+
 	private IJavaSearchScope getAccurateSearchScope(IJavaSearchScope defaultSearchScope, IMember member) throws JavaModelException {
 		if (! JdtFlags.isPrivate(member))
 			return defaultSearchScope;
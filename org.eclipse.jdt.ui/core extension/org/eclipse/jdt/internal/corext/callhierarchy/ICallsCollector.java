@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.callhierarchy;
+
+/**
+ * Receives the calls of a {@link MethodWrapper} while they are being searched.
+ *
+ * @see MethodWrapper#getCalls(org.eclipse.core.runtime.IProgressMonitor, ICallsCollector)
+ * @since 3.8
+ */
+public interface ICallsCollector {
+
+	/**
+	 * Adds calls found so far. The calls passed to different invocations are distinct. This
+	 * method may be called concurrently from different threads.
+	 *
+	 * @param calls the calls
+	 */
+	public void add(MethodWrapper[] calls);
+}
@@ -80,8 +80,21 @@ public abstract class MethodWrapper extends PlatformObject {
 	}
 
     public MethodWrapper[] getCalls(IProgressMonitor progressMonitor) {
+        return getCalls(progressMonitor, null);
+    }
+
+    /**
+     * Returns the calls of this method wrapper. If the calls have to be searched, the calls found
+     * so far may be passed to the given collector while the search is in progress.
+     *
+     * @param progressMonitor the progress monitor
+     * @param collector the collector to receive partial results, or <code>null</code>
+     * @return the calls
+     * @since 3.8
+     */
+    public MethodWrapper[] getCalls(IProgressMonitor progressMonitor, ICallsCollector collector) {
         if (fElements == null) {
-            doFindChildren(progressMonitor);
+            doFindChildren(progressMonitor, collector);
         }
 
         MethodWrapper[] result = new MethodWrapper[fElements.size()];
@@ -215,7 +228,7 @@ public abstract class MethodWrapper extends PlatformObject {
 	 */
     protected abstract MethodWrapper createMethodWrapper(MethodCall methodCall);
 
-    private void doFindChildren(IProgressMonitor progressMonitor) {
+    private void doFindChildren(IProgressMonitor progressMonitor, ICallsCollector collector) {
         Map<String, MethodCall> existingResults = lookupMethod(getMethodCall());
 
         if (existingResults != null && !existingResults.isEmpty()) {
@@ -229,7 +242,7 @@ public abstract class MethodWrapper extends PlatformObject {
             }
 
             try {
-                performSearch(progressMonitor);
+                performSearch(progressMonitor, collector);
             } catch (OperationCanceledException e){
             	fElements= null;
             	throw e;
@@ -278,6 +291,19 @@ public abstract class MethodWrapper extends PlatformObject {
      */
     protected abstract Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor);
 
+    /**
+     * This method finds the children of the current IMember and may pass the children found so
+     * far to the given collector. The default implementation does not report partial results.
+     *
+     * @param progressMonitor a progress monitor
+     * @param collector the collector to receive partial results, or <code>null</code>
+     * @return a map from handle identifier ({@link String}) to {@link MethodCall}
+     * @since 3.8
+     */
+    protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor, ICallsCollector collector) {
+        return findChildren(progressMonitor);
+    }
+
     private Map<String, Map<String, MethodCall>> getMethodCache() {
         return fMethodCache;
     }
@@ -297,8 +323,8 @@ public abstract class MethodWrapper extends PlatformObject {
         return getMethodCache().get(methodCall.getKey());
     }
 
-    private void performSearch(IProgressMonitor progressMonitor) {
-        fElements = findChildren(progressMonitor);
+    private void performSearch(IProgressMonitor progressMonitor, ICallsCollector collector) {
+        fElements = findChildren(progressMonitor, collector);
 
         for (Iterator<String> iter = fElements.keySet().iterator(); iter.hasNext();) {
             checkCanceled(progressMonitor);
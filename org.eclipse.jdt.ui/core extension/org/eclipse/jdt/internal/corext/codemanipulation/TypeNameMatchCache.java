@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.codemanipulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+
+import org.eclipse.jdt.internal.corext.util.TypeNameMatchCollector;
+
+/**
+ * Caches the types found for simple type names, so that organizing the imports of many
+ * compilation units does not search the same names over and over again. The types are cached
+ * per resolved class path, projects with the same class path share the types. The cache is
+ * cleared when types or class paths change.
+ * <p>
+ * A cache is typically created for a run over many compilation units and disposed afterwards.
+ * It can be used from several threads.
+ * </p>
+ *
+ * @see OrganizeImportsOperation#setTypeNameMatchCache(TypeNameMatchCache)
+ * @since 3.8
+ */
+public class TypeNameMatchCache implements IElementChangedListener {
+
+	private static final int INVALIDATING_FLAGS= IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+			| IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED
+			| IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED;
+
+	/**
+	 * Maps the resolved class path of a project to the types found for simple names. Names
+	 * without types map to an empty list.
+	 */
+	private final Map<List<IClasspathEntry>, Map<String, List<TypeNameMatch>>> fTypes;
+
+	/**
+	 * Creates a cache. The cache must be disposed.
+	 */
+	public TypeNameMatchCache() {
+		fTypes= new HashMap<List<IClasspathEntry>, Map<String, List<TypeNameMatch>>>();
+		JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+	}
+
+	/**
+	 * Disposes the cache.
+	 */
+	public void dispose() {
+		JavaCore.removeElementChangedListener(this);
+		clear();
+	}
+
+	/**
+	 * Finds the types with the given simple names in the class path of a project. Only the names
+	 * that are not cached yet are searched for.
+	 *
+	 * @param project the project
+	 * @param simpleNames the simple type names
+	 * @param monitor the progress monitor
+	 * @return the types found, in no particular order
+	 * @throws JavaModelException if the class path of the project cannot be resolved
+	 */
+	public List<TypeNameMatch> findTypes(IJavaProject project, String[] simpleNames, IProgressMonitor monitor) throws JavaModelException {
+		List<IClasspathEntry> key= Arrays.asList(project.getResolvedClasspath(true));
+		List<TypeNameMatch> result= new ArrayList<TypeNameMatch>();
+		List<String> missing= new ArrayList<String>();
+		Map<String, List<TypeNameMatch>> types;
+		synchronized (fTypes) {
+			types= fTypes.get(key);
+			if (types == null) {
+				types= new HashMap<String, List<TypeNameMatch>>();
+				fTypes.put(key, types);
+			}
+			for (int i= 0; i < simpleNames.length; i++) {
+				List<TypeNameMatch> cached= types.get(simpleNames[i]);
+				if (cached != null) {
+					result.addAll(cached);
+				} else {
+					missing.add(simpleNames[i]);
+				}
+			}
+		}
+		if (missing.isEmpty())
+			return result;
+
+		char[][] names= new char[missing.size()][];
+		Map<String, List<TypeNameMatch>> found= new HashMap<String, List<TypeNameMatch>>();
+		for (int i= 0; i < names.length; i++) {
+			String name= missing.get(i);
+			names[i]= name.toCharArray();
+			found.put(name, new ArrayList<TypeNameMatch>(1));
+		}
+
+		ArrayList<TypeNameMatch> typesFound= new ArrayList<TypeNameMatch>();
+		IJavaSearchScope scope= SearchEngine.createJavaSearchScope(new IJavaElement[] { project });
+		new SearchEngine().searchAllTypeNames(null, names, scope, new TypeNameMatchCollector(typesFound), IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+
+		for (int i= 0; i < typesFound.size(); i++) {
+			TypeNameMatch curr= typesFound.get(i);
+			List<TypeNameMatch> list= found.get(curr.getSimpleTypeName());
+			if (list != null)
+				list.add(curr);
+		}
+		result.addAll(typesFound);
+
+		synchronized (fTypes) {
+			// the types are not cached if the cache has been cleared during the search
+			if (fTypes.get(key) == types)
+				types.putAll(found);
+		}
+		return result;
+	}
+
+	/**
+	 * Clears the cache.
+	 */
+	public void clear() {
+		synchronized (fTypes) {
+			fTypes.clear();
+		}
+	}
+
+	/*
+	 * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+	 */
+	public void elementChanged(ElementChangedEvent event) {
+		if (isInvalidating(event.getDelta()))
+			clear();
+	}
+
+	private static boolean isInvalidating(IJavaElementDelta delta) {
+		int flags= delta.getFlags();
+		switch (delta.getElement().getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+			case IJavaElement.JAVA_PROJECT:
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			case IJavaElement.PACKAGE_FRAGMENT:
+				if (delta.getKind() != IJavaElementDelta.CHANGED || (flags & INVALIDATING_FLAGS) != 0)
+					return true;
+				break;
+			case IJavaElement.COMPILATION_UNIT:
+				if (delta.getKind() != IJavaElementDelta.CHANGED)
+					return true;
+				// without a fine grained delta it is unknown whether types have changed
+				if ((flags & IJavaElementDelta.F_CONTENT) != 0 && (flags & IJavaElementDelta.F_FINE_GRAINED) == 0)
+					return true;
+				break;
+			case IJavaElement.CLASS_FILE:
+				return true;
+			case IJavaElement.TYPE:
+				if (delta.getKind() != IJavaElementDelta.CHANGED || (flags & IJavaElementDelta.F_MODIFIERS) != 0)
+					return true;
+				break;
+			default:
+				return false;
+		}
+
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (isInvalidating(children[i]))
+				return true;
+		}
+		return false;
+	}
+}
@@ -13,10 +13,12 @@ package org.eclipse.jdt.internal.corext.dom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 
+import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
@@ -33,11 +35,19 @@ import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
  * Creates AST from a set of compilation units. Uses the
  * batch parser. Splits the set of compilation units in subsets
  * such that it is unlikely that a out of memory exception will occur.
+ * <p>
+ * The size of the subsets adapts to the heap: the free heap shared by the parsers running
+ * at the same time is divided by a fixed budget per compilation unit, see
+ * {@link #setBytesPerUnit(long)}.
+ * </p>
  *
  * @since 3.4
  */
 public class ASTBatchParser {
 
+	/**
+	 * The maximal number of compilation units parsed in the first subset.
+	 */
 	private static final int MAX_AT_ONCE;
 	static {
 		long maxMemory= Runtime.getRuntime().maxMemory();
@@ -64,6 +74,87 @@ public class ASTBatchParser {
 		}
 	}
 
+	/**
+	 * The minimal number of compilation units parsed at once.
+	 *
+	 * @since 3.8
+	 */
+	private static final int MIN_AT_ONCE= 10;
+
+	/**
+	 * The maximal number of compilation units parsed at once.
+	 *
+	 * @since 3.8
+	 */
+	private static final int MAX_AT_ONCE_LIMIT= 2000;
+
+	/**
+	 * The fraction of the free heap a subset may use.
+	 *
+	 * @since 3.8
+	 */
+	private static final double HEAP_FRACTION= 0.5;
+
+	/**
+	 * The default heap budget per compilation unit, in bytes.
+	 *
+	 * @since 3.8
+	 */
+	public static final long DEFAULT_BYTES_PER_UNIT= 512 * 1024;
+
+	/**
+	 * Guards the number of active parsers.
+	 *
+	 * @since 3.8
+	 */
+	private static final Object fgLock= new Object();
+
+	/**
+	 * The number of parsers currently parsing, which share the free heap.
+	 *
+	 * @since 3.8
+	 */
+	private static int fgActiveParsers;
+
+	/**
+	 * The heap budget per compilation unit, in bytes.
+	 *
+	 * @since 3.8
+	 */
+	private long fBytesPerUnit= DEFAULT_BYTES_PER_UNIT;
+
+	/**
+	 * Tells whether compilation units of the same package are parsed together.
+	 *
+	 * @since 3.8
+	 */
+	private boolean fGroupByPackage;
+
+	/**
+	 * Sets whether the compilation units of the same package are parsed in the same subset
+	 * where possible. Compilation units of a package typically depend on each other and on
+	 * the same types, which are then resolved only once.
+	 *
+	 * @param groupByPackage <code>true</code> to group the compilation units by package
+	 * @since 3.8
+	 */
+	public void setGroupByPackage(boolean groupByPackage) {
+		fGroupByPackage= groupByPackage;
+	}
+
+	/**
+	 * Sets the heap budget per compilation unit. The number of compilation units parsed at
+	 * once is the heap available to this parser divided by this budget. The default is
+	 * {@link #DEFAULT_BYTES_PER_UNIT}.
+	 *
+	 * @param bytesPerUnit the heap budget per compilation unit, in bytes, must be positive
+	 * @since 3.8
+	 */
+	public void setBytesPerUnit(long bytesPerUnit) {
+		Assert.isLegal(bytesPerUnit > 0);
+		fBytesPerUnit= bytesPerUnit;
+	}
+
 	/**
 	 * Creates ASTs for each compilation unit in <code>units</code>.
 	 * <p>
@@ -90,33 +181,103 @@ public class ASTBatchParser {
 			monitor= new NullProgressMonitor();
 
 		monitor.beginTask("", compilationUnits.length); //$NON-NLS-1$
+		synchronized (fgLock) {
+			fgActiveParsers++;
+		}
 		try {
 
 			ICompilationUnit[][] splited= splitByProject(compilationUnits);
+			int batchSize= getBatchSize(MAX_AT_ONCE);
 			for (int i= 0; i < splited.length; i++) {
 				ICompilationUnit[] units= splited[i];
+				if (fGroupByPackage)
+					units= sortByPackage(units);
+
+				List<ICompilationUnit> list= Arrays.asList(units);
+				int cursor= 0;
+				while (cursor < units.length) {
+					int end= Math.min(cursor + batchSize, units.length);
+					List<ICompilationUnit> toParse= list.subList(cursor, end);
 
-				if (units.length <= MAX_AT_ONCE) {
-					createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, requestor, new SubProgressMonitor(monitor, units.length));
-				} else {
-					List<ICompilationUnit> list= Arrays.asList(units);
-					int end= 0;
-					int cursor= 0;
-					while (cursor < units.length) {
-						end= Math.min(end + MAX_AT_ONCE, units.length);
-						List<ICompilationUnit> toParse= list.subList(cursor, end);
-
-						createParser(units[0].getJavaProject()).createASTs(toParse.toArray(new ICompilationUnit[toParse.size()]), bindingKeys, requestor,
-								new SubProgressMonitor(monitor, toParse.size()));
-						cursor= end;
-					}
+					parse(toParse.toArray(new ICompilationUnit[toParse.size()]), bindingKeys, requestor, new SubProgressMonitor(monitor, toParse.size()));
+					cursor= end;
+					// grow at most by a factor of two to stay safe if the estimate is too low
+					batchSize= getBatchSize(2 * batchSize);
 				}
 			}
 		} finally {
+			synchronized (fgLock) {
+				fgActiveParsers--;
+			}
 			monitor.done();
 		}
 	}
 
+	/**
+	 * Parses a subset of compilation units.
+	 * <p>
+	 * Subclasses may override
+	 * </p>
+	 *
+	 * @param units the compilation units of one project
+	 * @param bindingKeys the binding keys to create bindings for
+	 * @param requestor the AST requestor
+	 * @param monitor the progress monitor
+	 * @since 3.8
+	 */
+	protected void parse(ICompilationUnit[] units, String[] bindingKeys, ASTRequestor requestor, IProgressMonitor monitor) {
+		createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, requestor, monitor);
+	}
+
+	/**
+	 * Returns the number of compilation units to parse at once.
+	 *
+	 * @param max the maximal number
+	 * @return the number of compilation units that are expected to fit into the heap budget
+	 * @since 3.8
+	 */
+	private int getBatchSize(int max) {
+		long size= Math.min(Math.min(max, MAX_AT_ONCE_LIMIT), getHeapBudget() / fBytesPerUnit);
+		return (int) Math.max(MIN_AT_ONCE, size);
+	}
+
+	/**
+	 * Returns the heap this parser may use for the next subset: a fraction of the free heap,
+	 * shared with the other parsers running at the same time.
+	 * <p>
+	 * Subclasses may override
+	 * </p>
+	 *
+	 * @return the heap budget, in bytes
+	 * @since 3.8
+	 */
+	protected long getHeapBudget() {
+		int activeParsers;
+		synchronized (fgLock) {
+			activeParsers= fgActiveParsers;
+		}
+		Runtime runtime= Runtime.getRuntime();
+		long free= runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		return (long) (free * HEAP_FRACTION / Math.max(1, activeParsers));
+	}
+
+	/**
+	 * Sorts the compilation units by package, keeping the order within a package.
+	 *
+	 * @param units the compilation units to sort
+	 * @return a sorted copy of the compilation units
+	 * @since 3.8
+	 */
+	private static ICompilationUnit[] sortByPackage(ICompilationUnit[] units) {
+		ICompilationUnit[] result= units.clone();
+		Arrays.sort(result, new Comparator<ICompilationUnit>() {
+			public int compare(ICompilationUnit unit1, ICompilationUnit unit2) {
+				return unit1.getParent().getHandleIdentifier().compareTo(unit2.getParent().getHandleIdentifier());
+			}
+		});
+		return result;
+	}
+
 	/**
 	 * Creates a new parser which can be used to create ASTs
 	 * for compilation units in <code>project</code>
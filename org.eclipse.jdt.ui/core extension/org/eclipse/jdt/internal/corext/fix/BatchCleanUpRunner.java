@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.fix;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubProgressMonitor;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.CreateChangeOperation;
+import org.eclipse.ltk.core.refactoring.PerformChangeOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.RefactoringStatusEntry;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
+
+import org.eclipse.jdt.internal.corext.refactoring.changes.MultiStateCompilationUnitChange;
+
+import org.eclipse.jdt.ui.cleanup.ICleanUp;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.fix.MapCleanUpOptions;
+
+/**
+ * Cleans up all compilation units of Java projects without a workbench. The clean up is a
+ * {@link CleanUpRefactoring} that cleans up the projects in parallel and parses the compilation
+ * units of a project in batches. The changes are written through the file buffers, no undo is
+ * recorded.
+ *
+ * @since 3.8
+ */
+public class BatchCleanUpRunner {
+
+	/**
+	 * Receives the results of the compilation units once the clean up is done.
+	 */
+	public interface ICleanUpListener {
+
+		/**
+		 * Called after a compilation unit has been cleaned up.
+		 *
+		 * @param unit the compilation unit
+		 * @param changed <code>true</code> if the compilation unit has been changed
+		 * @param time the time spent on parsing and cleaning up the compilation unit, in
+		 *            milliseconds
+		 */
+		void unitCleanedUp(ICompilationUnit unit, boolean changed, long time);
+	}
+
+	private final Map<String, String> fOptions;
+	private final int fThreads;
+	private final ICleanUpListener fListener;
+	private final Map<String, String> fOverriddenOptions;
+
+	/**
+	 * Creates a runner.
+	 *
+	 * @param options the clean up options, or <code>null</code> to use the clean up profile of
+	 *            each project
+	 * @param threads the maximal number of projects cleaned up in parallel
+	 * @param listener the listener to report the compilation units to
+	 */
+	public BatchCleanUpRunner(Map<String, String> options, int threads, ICleanUpListener listener) {
+		fOptions= options;
+		fThreads= Math.max(1, threads);
+		fListener= listener;
+		fOverriddenOptions= new Hashtable<String, String>();
+	}
+
+	/**
+	 * Sets a clean up option that overrides the option of the clean up options or profiles.
+	 *
+	 * @param key the key of the option, see {@link CleanUpConstants}
+	 * @param value the value of the option
+	 */
+	public void setOption(String key, String value) {
+		fOverriddenOptions.put(key, value);
+	}
+
+	/**
+	 * Cleans up the given projects.
+	 *
+	 * @param projects the projects to clean up
+	 * @param pm the progress monitor, or <code>null</code>
+	 * @return the problems that occurred, the compilation units are not changed if there is a
+	 *         fatal problem
+	 * @throws CoreException if the clean up could not be run
+	 * @throws OperationCanceledException if the clean up has been canceled
+	 */
+	public IStatus run(IJavaProject[] projects, IProgressMonitor pm) throws CoreException, OperationCanceledException {
+		IProgressMonitor monitor= pm != null ? pm : new NullProgressMonitor();
+		MultiStatus result= new MultiStatus(JavaPlugin.getPluginId(), IStatus.OK, FixMessages.BatchCleanUpRunner_problems, null);
+
+		CleanUpRefactoring refactoring= new CleanUpRefactoring();
+		List<ICompilationUnit> units= new ArrayList<ICompilationUnit>();
+		for (int i= 0; i < projects.length; i++)
+			addCompilationUnits(projects[i], units);
+		if (units.isEmpty())
+			return result;
+		for (int i= 0; i < units.size(); i++)
+			refactoring.addCompilationUnit(units.get(i));
+
+		ICleanUp[] cleanUps= JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps();
+		if (fOptions == null) {
+			refactoring.setUseOptionsFromProfile(true);
+			refactoring.setOverriddenOptions(fOverriddenOptions);
+		} else {
+			Map<String, String> options= new Hashtable<String, String>(fOptions);
+			options.putAll(fOverriddenOptions);
+			MapCleanUpOptions cleanUpOptions= new MapCleanUpOptions(options);
+			for (int i= 0; i < cleanUps.length; i++)
+				cleanUps[i].setOptions(cleanUpOptions);
+		}
+		for (int i= 0; i < cleanUps.length; i++)
+			refactoring.addCleanUp(cleanUps[i]);
+		refactoring.setMaxParallelProjects(fThreads);
+		refactoring.setRecordCleanUpTimes(true);
+
+		monitor.beginTask("", 10); //$NON-NLS-1$
+		try {
+			CreateChangeOperation create= new CreateChangeOperation(new CheckConditionsOperation(refactoring, CheckConditionsOperation.ALL_CONDITIONS), RefactoringStatus.FATAL);
+			create.run(new SubProgressMonitor(monitor, 8));
+			addProblems(create.getConditionCheckingStatus(), result);
+			Change change= create.getChange();
+			if (change == null)
+				return result;
+
+			Set<ICompilationUnit> changed= new HashSet<ICompilationUnit>();
+			collectChangedUnits(change, changed);
+
+			PerformChangeOperation perform= new PerformChangeOperation(change);
+			perform.run(new SubProgressMonitor(monitor, 2));
+			addProblems(perform.getValidationStatus(), result);
+			if (!perform.changeExecuted()) {
+				change.dispose();
+				return result;
+			}
+			if (perform.getUndoChange() != null)
+				perform.getUndoChange().dispose();
+
+			for (int i= 0; i < units.size(); i++) {
+				ICompilationUnit unit= units.get(i);
+				fListener.unitCleanedUp(unit, changed.contains(unit), refactoring.getCleanUpTime(unit));
+			}
+			return result;
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private static void addProblems(RefactoringStatus status, MultiStatus result) {
+		if (status == null)
+			return;
+
+		RefactoringStatusEntry[] entries= status.getEntries();
+		for (int i= 0; i < entries.length; i++) {
+			if (entries[i].getSeverity() >= RefactoringStatus.ERROR)
+				result.add(entries[i].toStatus());
+		}
+	}
+
+	private static void collectChangedUnits(Change change, Set<ICompilationUnit> result) {
+		if (change instanceof CompositeChange) {
+			Change[] children= ((CompositeChange) change).getChildren();
+			for (int i= 0; i < children.length; i++)
+				collectChangedUnits(children[i], result);
+		} else if (change instanceof MultiStateCompilationUnitChange) {
+			result.add(((MultiStateCompilationUnitChange) change).getCompilationUnit());
+		} else if (change instanceof CompilationUnitChange) {
+			result.add(((CompilationUnitChange) change).getCompilationUnit());
+		}
+	}
+
+	private static void addCompilationUnits(IJavaProject project, List<ICompilationUnit> result) throws CoreException {
+		IPackageFragmentRoot[] roots= project.getPackageFragmentRoots();
+		for (int i= 0; i < roots.length; i++) {
+			if (roots[i].getKind() != IPackageFragmentRoot.K_SOURCE)
+				continue;
+
+			IJavaElement[] fragments= roots[i].getChildren();
+			for (int j= 0; j < fragments.length; j++) {
+				ICompilationUnit[] units= ((IPackageFragment) fragments[j]).getCompilationUnits();
+				for (int k= 0; k < units.length; k++)
+					result.add(units[k]);
+			}
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.fix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.text.edits.ReplaceEdit;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextFileChange;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
+
+import org.eclipse.jdt.internal.corext.util.Messages;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
+
+/**
+ * A change that restores the contents of compilation units from a journal on disk. The undo of
+ * a streaming clean up is such a change, so that the contents of the cleaned up compilation
+ * units do not have to be kept in memory. Performing the change writes a new journal with the
+ * replaced contents, which is the redo of the change.
+ *
+ * @see CleanUpRefactoring#setStreamingBatchSize(int)
+ * @since 3.8
+ */
+public class CleanUpJournalChange extends Change {
+
+	/**
+	 * Writes the contents of compilation units to a journal.
+	 */
+	public static final class Writer {
+
+		private final File fFile;
+		private final DataOutputStream fOutput;
+		private int fCount;
+
+		/**
+		 * Creates a writer for a new journal in the state location of the plug-in.
+		 *
+		 * @throws CoreException if the journal cannot be created
+		 */
+		public Writer() throws CoreException {
+			try {
+				File directory= JavaPlugin.getDefault().getStateLocation().append(JOURNAL_DIRECTORY).toFile();
+				directory.mkdirs();
+				fFile= File.createTempFile("undo", ".journal", directory); //$NON-NLS-1$ //$NON-NLS-2$
+				// the undo manager does not survive a restart, neither must the journal
+				fFile.deleteOnExit();
+				fOutput= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fFile)));
+			} catch (IOException e) {
+				throw createException(e);
+			}
+		}
+
+		/**
+		 * Adds the contents a compilation unit had before it was changed. Must be called after the
+		 * compilation unit has been changed.
+		 *
+		 * @param unit the changed compilation unit
+		 * @param contents the contents before the change
+		 * @throws CoreException if the journal cannot be written
+		 */
+		public void add(ICompilationUnit unit, String contents) throws CoreException {
+			try {
+				fOutput.writeUTF(unit.getHandleIdentifier());
+				fOutput.writeLong(getModificationStamp(unit));
+				byte[] bytes= contents.getBytes(ENCODING);
+				fOutput.writeInt(bytes.length);
+				fOutput.write(bytes);
+				fCount++;
+			} catch (IOException e) {
+				throw createException(e);
+			}
+		}
+
+		/**
+		 * Closes the journal.
+		 *
+		 * @param name the name of the change
+		 * @return the change restoring the contents in the journal
+		 * @throws CoreException if the journal cannot be written
+		 */
+		public CleanUpJournalChange close(String name) throws CoreException {
+			try {
+				fOutput.close();
+			} catch (IOException e) {
+				throw createException(e);
+			}
+			return new CleanUpJournalChange(name, fFile, fCount);
+		}
+
+		/**
+		 * Closes and deletes the journal.
+		 */
+		public void discard() {
+			try {
+				fOutput.close();
+			} catch (IOException e) {
+				// the journal is deleted anyway
+			}
+			fFile.delete();
+		}
+	}
+
+	private static final String JOURNAL_DIRECTORY= "cleanUpJournals"; //$NON-NLS-1$
+	private static final String ENCODING= "UTF-8"; //$NON-NLS-1$
+
+	private final String fName;
+	private final File fFile;
+	private final int fCount;
+
+	private CleanUpJournalChange(String name, File file, int count) {
+		fName= name;
+		fFile= file;
+		fCount= count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return fName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initializeValidationData(IProgressMonitor pm) {
+		// the modification stamps are in the journal
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RefactoringStatus isValid(IProgressMonitor pm) throws CoreException {
+		if (pm == null)
+			pm= new NullProgressMonitor();
+
+		RefactoringStatus result= new RefactoringStatus();
+		pm.beginTask("", fCount); //$NON-NLS-1$
+		try {
+			DataInputStream input= open();
+			try {
+				for (int i= 0; i < fCount; i++) {
+					ICompilationUnit unit= getCompilationUnit(input.readUTF());
+					long stamp= input.readLong();
+					input.readFully(new byte[input.readInt()]);
+					if (!unit.exists()) {
+						result.addFatalError(Messages.format(FixMessages.CleanUpJournalChange_unit_does_not_exist, BasicElementLabels.getFileName(unit)));
+					} else if (stamp != getModificationStamp(unit)) {
+						result.addFatalError(Messages.format(FixMessages.CleanUpJournalChange_unit_modified, BasicElementLabels.getFileName(unit)));
+					}
+					pm.worked(1);
+				}
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			throw createException(e);
+		} finally {
+			pm.done();
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Change perform(IProgressMonitor pm) throws CoreException {
+		if (pm == null)
+			pm= new NullProgressMonitor();
+
+		pm.beginTask("", fCount); //$NON-NLS-1$
+		Writer redo= new Writer();
+		try {
+			DataInputStream input= open();
+			try {
+				for (int i= 0; i < fCount; i++) {
+					ICompilationUnit unit= getCompilationUnit(input.readUTF());
+					input.readLong();
+					byte[] bytes= new byte[input.readInt()];
+					input.readFully(bytes);
+
+					String contents= unit.getSource();
+					restore(unit, new String(bytes, ENCODING), pm);
+					redo.add(unit, contents);
+					pm.worked(1);
+				}
+			} finally {
+				input.close();
+			}
+			CleanUpJournalChange result= redo.close(fName);
+			redo= null;
+			return result;
+		} catch (IOException e) {
+			throw createException(e);
+		} finally {
+			if (redo != null)
+				redo.discard();
+			pm.done();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object getModifiedElement() {
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void dispose() {
+		fFile.delete();
+	}
+
+	private DataInputStream open() throws CoreException {
+		if (!fFile.exists())
+			throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), FixMessages.CleanUpJournalChange_journal_missing));
+		try {
+			return new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)));
+		} catch (IOException e) {
+			throw createException(e);
+		}
+	}
+
+	private static void restore(ICompilationUnit unit, String contents, IProgressMonitor pm) throws CoreException {
+		if (pm.isCanceled())
+			throw new OperationCanceledException();
+
+		CompilationUnitChange change= new CompilationUnitChange(unit.getElementName(), unit);
+		change.setEdit(new ReplaceEdit(0, unit.getBuffer().getLength(), contents));
+		change.setSaveMode(TextFileChange.KEEP_SAVE_STATE);
+		change.initializeValidationData(new NullProgressMonitor());
+		try {
+			change.perform(new NullProgressMonitor());
+		} finally {
+			change.dispose();
+		}
+	}
+
+	private static ICompilationUnit getCompilationUnit(String handleIdentifier) throws IOException {
+		IJavaElement element= JavaCore.create(handleIdentifier);
+		if (!(element instanceof ICompilationUnit))
+			throw new IOException(handleIdentifier);
+		return (ICompilationUnit) element;
+	}
+
+	private static long getModificationStamp(ICompilationUnit unit) {
+		IResource resource= unit.getResource();
+		return resource != null ? resource.getModificationStamp() : IResource.NULL_STAMP;
+	}
+
+	private static CoreException createException(IOException e) {
+		return new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), e.getMessage(), e));
+	}
+}
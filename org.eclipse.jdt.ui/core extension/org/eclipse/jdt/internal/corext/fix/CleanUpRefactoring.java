@@ -17,6 +17,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.swt.widgets.Display;
 
@@ -24,6 +30,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
@@ -71,6 +78,7 @@ import org.eclipse.jdt.internal.corext.refactoring.changes.DynamicValidationStat
 import org.eclipse.jdt.internal.corext.refactoring.changes.MultiStateCompilationUnitChange;
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextEditUtil;
+import org.eclipse.jdt.internal.corext.util.FutureUtil;
 import org.eclipse.jdt.internal.corext.util.Messages;
 
 import org.eclipse.jdt.ui.JavaElementLabels;
@@ -81,6 +89,7 @@ import org.eclipse.jdt.ui.cleanup.ICleanUpFix;
 import org.eclipse.jdt.ui.text.java.IProblemLocation;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.fix.AbstractCleanUp;
 import org.eclipse.jdt.internal.ui.fix.IMultiFix.MultiFixContext;
 import org.eclipse.jdt.internal.ui.fix.MapCleanUpOptions;
 import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
@@ -199,6 +208,77 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
+	/**
+	 * The result of cleaning up a project.
+	 *
+	 * @since 3.8
+	 */
+	private static class ProjectResult {
+
+		private final RefactoringStatus fStatus;
+		private final List<Change> fChanges;
+
+		public ProjectResult(RefactoringStatus status, List<Change> changes) {
+			fStatus= status;
+			fChanges= changes;
+		}
+	}
+
+	/**
+	 * Progress monitor shared by the projects cleaned up in parallel. The progress is reported
+	 * to the wrapped monitor one at a time.
+	 *
+	 * @since 3.8
+	 */
+	private static final class ConcurrentProgressMonitor extends ProgressMonitorWrapper {
+
+		private volatile boolean fCanceled;
+
+		public ConcurrentProgressMonitor(IProgressMonitor monitor) {
+			super(monitor);
+		}
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			super.beginTask(name, totalWork);
+		}
+
+		@Override
+		public synchronized void done() {
+			super.done();
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			super.internalWorked(work);
+		}
+
+		@Override
+		public synchronized void setTaskName(String name) {
+			super.setTaskName(name);
+		}
+
+		@Override
+		public synchronized void subTask(String name) {
+			super.subTask(name);
+		}
+
+		@Override
+		public synchronized void worked(int work) {
+			super.worked(work);
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return fCanceled || super.isCanceled();
+		}
+
+		@Override
+		public void setCanceled(boolean canceled) {
+			fCanceled= canceled;
+		}
+	}
+
 	private final class CleanUpRefactoringProgressMonitor extends SubProgressMonitor {
 
 		private double fRealWork;
@@ -250,10 +330,14 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		private final Hashtable<ICompilationUnit, List<CleanUpChange>> fSolutions;
 		private final Hashtable<ICompilationUnit, ParseListElement> fCompilationUnitParseElementMap;
 		private final CleanUpRefactoringProgressMonitor fMonitor;
+		private final Map<ICompilationUnit, Long> fCleanUpTimes;
+		private long fLastTime;
 
-		public CleanUpASTRequestor(List<ParseListElement> parseList, Hashtable<ICompilationUnit, List<CleanUpChange>> solutions, CleanUpRefactoringProgressMonitor monitor) {
+		public CleanUpASTRequestor(List<ParseListElement> parseList, Hashtable<ICompilationUnit, List<CleanUpChange>> solutions, CleanUpRefactoringProgressMonitor monitor, Map<ICompilationUnit, Long> cleanUpTimes) {
 			fSolutions= solutions;
 			fMonitor= monitor;
+			fCleanUpTimes= cleanUpTimes;
+			fLastTime= System.currentTimeMillis();
 			fUndoneElements= new ArrayList<ParseListElement>();
 			fCompilationUnitParseElementMap= new Hashtable<ICompilationUnit, ParseListElement>(parseList.size());
 			for (Iterator<ParseListElement> iter= parseList.iterator(); iter.hasNext();) {
@@ -288,6 +372,14 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 			} else {
 				fMonitor.flush();
 			}
+
+			if (fCleanUpTimes != null) {
+				// the batch parser resolves a compilation unit right before its AST is accepted
+				long time= System.currentTimeMillis();
+				Long previous= fCleanUpTimes.get(primary);
+				fCleanUpTimes.put(primary, new Long(time - fLastTime + (previous != null ? previous.longValue() : 0)));
+				fLastTime= time;
+			}
 		}
 
 		public void acceptSource(ICompilationUnit source) {
@@ -387,7 +479,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 				}
 
 				CleanUpRefactoringProgressMonitor cuMonitor= new CleanUpRefactoringProgressMonitor(monitor, parseList.size() + sourceList.size(), fSize, fIndex);
-				CleanUpASTRequestor requestor= new CleanUpASTRequestor(fParseList, fSolutions, cuMonitor);
+				CleanUpASTRequestor requestor= new CleanUpASTRequestor(fParseList, fSolutions, cuMonitor, fCleanUpTimes);
 				if (parseList.size() > 0) {
 					ASTBatchParser parser= new ASTBatchParser() {
 						@Override
@@ -401,6 +493,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 							return result;
 						}
 					};
+					parser.setGroupByPackage(true);
 					try {
 						ICompilationUnit[] units= parseList.toArray(new ICompilationUnit[parseList.size()]);
 						parser.createASTs(units, new String[0], requestor, cuMonitor);
@@ -507,6 +600,55 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
+	/**
+	 * Cleans up and changes the compilation units in batches when performed. The undo is a
+	 * {@link CleanUpJournalChange}.
+	 *
+	 * @since 3.8
+	 */
+	private final class StreamingCleanUpChange extends Change {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getName() {
+			return CleanUpRefactoring.this.getName();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void initializeValidationData(IProgressMonitor pm) {
+			// the changes are validated when they are created
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public RefactoringStatus isValid(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			return new RefactoringStatus();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Change perform(IProgressMonitor pm) throws CoreException {
+			return performStreaming(pm);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Object getModifiedElement() {
+			return null;
+		}
+	}
+
 	private static final RefactoringTickProvider CLEAN_UP_REFACTORING_TICK_PROVIDER= new RefactoringTickProvider(0, 1, 0, 0);
 
 	/**
@@ -523,6 +665,37 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 
 	private boolean fUseOptionsFromProfile;
 
+	/**
+	 * The maximal number of projects cleaned up in parallel.
+	 *
+	 * @since 3.8
+	 */
+	private int fMaxParallelProjects= 1;
+
+	/**
+	 * The number of compilation units changed at once in streaming mode, or <code>0</code> if
+	 * the changes are not streamed.
+	 *
+	 * @since 3.8
+	 */
+	private int fStreamingBatchSize;
+
+	/**
+	 * The options that override the options of the clean up profiles, see
+	 * {@link #setUseOptionsFromProfile(boolean)}.
+	 *
+	 * @since 3.8
+	 */
+	private Map<String, String> fOverriddenOptions;
+
+	/**
+	 * The time in milliseconds spent on each compilation unit, or <code>null</code> if the
+	 * times are not recorded.
+	 *
+	 * @since 3.8
+	 */
+	private Map<ICompilationUnit, Long> fCleanUpTimes;
+
 	public CleanUpRefactoring() {
 		this(FixMessages.CleanUpRefactoring_Refactoring_name);
 	}
@@ -538,6 +711,81 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		fUseOptionsFromProfile= enabled;
 	}
 
+	/**
+	 * Sets options that override the options of the clean up profiles of the projects. Only used
+	 * if the options are taken from the profiles.
+	 *
+	 * @param options the overriding options, see {@link CleanUpConstants}
+	 * @since 3.8
+	 */
+	void setOverriddenOptions(Map<String, String> options) {
+		fOverriddenOptions= options;
+	}
+
+	/**
+	 * Sets whether the time spent on each compilation unit is recorded, see
+	 * {@link #getCleanUpTime(ICompilationUnit)}.
+	 *
+	 * @param record <code>true</code> to record the times
+	 * @since 3.8
+	 */
+	void setRecordCleanUpTimes(boolean record) {
+		fCleanUpTimes= record ? new ConcurrentHashMap<ICompilationUnit, Long>() : null;
+	}
+
+	/**
+	 * Returns the time spent on parsing and cleaning up a compilation unit in
+	 * {@link #checkFinalConditions(IProgressMonitor)}.
+	 *
+	 * @param unit the compilation unit
+	 * @return the time in milliseconds, or <code>0</code> if the time has not been recorded
+	 * @since 3.8
+	 */
+	long getCleanUpTime(ICompilationUnit unit) {
+		if (fCleanUpTimes == null)
+			return 0;
+		Long time= fCleanUpTimes.get(unit);
+		return time != null ? time.longValue() : 0;
+	}
+
+	/**
+	 * Sets the maximal number of projects that are cleaned up in parallel. The default is
+	 * <code>1</code>.
+	 * <p>
+	 * Each project cleaned up in parallel gets its own instances of the clean ups, which must
+	 * have a public default constructor. If the options are not taken from the profile, they
+	 * are copied from the clean ups, which must be {@link AbstractCleanUp}s. The projects are
+	 * cleaned up one after the other if the clean ups cannot be copied.
+	 * </p>
+	 *
+	 * @param maxParallelProjects the maximal number of projects cleaned up in parallel
+	 * @since 3.8
+	 */
+	public void setMaxParallelProjects(int maxParallelProjects) {
+		fMaxParallelProjects= Math.max(1, maxParallelProjects);
+	}
+
+	/**
+	 * Sets whether the compilation units are changed in batches of the given size while the
+	 * change of this refactoring is performed, instead of computing all changes in
+	 * {@link #checkFinalConditions(IProgressMonitor)}. The default is <code>0</code>, which
+	 * does not stream the changes.
+	 * <p>
+	 * In streaming mode, the changes of a batch are applied and released as soon as the clean
+	 * ups of the batch are done, and the undo of the change restores the compilation units from a
+	 * journal on disk. The memory needed is proportional to the batch size rather than to the
+	 * number of compilation units. The change of this refactoring cannot be previewed and all
+	 * compilation units to clean up are validated for modification. If the clean up of a batch
+	 * fails, the compilation units already changed are restored.
+	 * </p>
+	 *
+	 * @param batchSize the number of compilation units changed at once, or <code>0</code>
+	 * @since 3.8
+	 */
+	public void setStreamingBatchSize(int batchSize) {
+		fStreamingBatchSize= Math.max(0, batchSize);
+	}
+
 	public void addCompilationUnit(ICompilationUnit unit) {
 		addCleanUpTarget(new CleanUpTarget(unit));
 	}
@@ -646,6 +894,9 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 			return new RefactoringStatus();
 		}
 
+		if (fStreamingBatchSize > 0)
+			return createStreamingChange(pm);
+
 		int cuCount= getCleanUpTargetsSize();
 
 		RefactoringStatus result= new RefactoringStatus();
@@ -655,30 +906,26 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		try {
 			DynamicValidationStateChange change= new DynamicValidationStateChange(getName());
 			change.setSchedulingRule(getSchedulingRule());
-			for (Iterator<Entry<IJavaProject, List<CleanUpTarget>>> projectIter= fProjects.entrySet().iterator(); projectIter.hasNext();) {
-				Entry<IJavaProject, List<CleanUpTarget>> entry= projectIter.next();
-				IJavaProject project= entry.getKey();
-				List<CleanUpTarget> targetsList= entry.getValue();
-				CleanUpTarget[] targets= targetsList.toArray(new CleanUpTarget[targetsList.size()]);
+			List<Entry<IJavaProject, List<CleanUpTarget>>> projects= new ArrayList<Entry<IJavaProject, List<CleanUpTarget>>>(fProjects.entrySet());
+			ICleanUp[][] projectCleanUps= null;
+			if (fMaxParallelProjects > 1 && projects.size() > 1)
+				projectCleanUps= copyCleanUps(cleanUps, projects.size());
 
-				if (fUseOptionsFromProfile) {
-					result.merge(setOptionsFromProfile(project, cleanUps));
-					if (result.hasFatalError())
-						return result;
-				}
-
-				result.merge(checkPreConditions(project, targets, new SubProgressMonitor(pm, 3 * cleanUps.length)));
-				if (result.hasFatalError())
-					return result;
-
-				Change[] changes= cleanUpProject(project, targets, cleanUps, pm);
-
-				result.merge(checkPostConditions(new SubProgressMonitor(pm, cleanUps.length)));
+			if (projectCleanUps != null) {
+				result.merge(cleanUpProjectsInParallel(projects, projectCleanUps, change, pm));
 				if (result.hasFatalError())
 					return result;
+			} else {
+				for (Iterator<Entry<IJavaProject, List<CleanUpTarget>>> projectIter= projects.iterator(); projectIter.hasNext();) {
+					Entry<IJavaProject, List<CleanUpTarget>> entry= projectIter.next();
+					List<Change> changes= new ArrayList<Change>();
+					result.merge(cleanUpProject(entry.getKey(), entry.getValue(), cleanUps, changes, pm));
+					if (result.hasFatalError())
+						return result;
 
-				for (int i= 0; i < changes.length; i++) {
-					change.add(changes[i]);
+					for (int i= 0; i < changes.size(); i++) {
+						change.add(changes.get(i));
+					}
 				}
 			}
 			fChange= change;
@@ -693,6 +940,179 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		return result;
 	}
 
+	/**
+	 * Creates the change that cleans up the compilation units in streaming mode.
+	 *
+	 * @param pm the progress monitor
+	 * @return the result of validating the compilation units for modification
+	 * @since 3.8
+	 */
+	private RefactoringStatus createStreamingChange(IProgressMonitor pm) {
+		pm.beginTask("", 1); //$NON-NLS-1$
+		try {
+			CleanUpTarget[] targets= getCleanUpTargets();
+			List<IResource> files= new ArrayList<IResource>(targets.length);
+			for (int i= 0; i < targets.length; i++) {
+				IResource resource= targets[i].getCompilationUnit().getResource();
+				if (resource instanceof IFile)
+					files.add(resource);
+			}
+
+			DynamicValidationStateChange change= new DynamicValidationStateChange(getName());
+			change.setSchedulingRule(getSchedulingRule());
+			change.add(new StreamingCleanUpChange());
+			fChange= change;
+
+			pm.worked(1);
+			return Checks.validateModifiesFiles(files.toArray(new IFile[files.size()]), getValidationContext());
+		} finally {
+			pm.done();
+		}
+	}
+
+	/**
+	 * Cleans up the compilation units in batches and changes them right away.
+	 *
+	 * @param pm the progress monitor
+	 * @return the change that restores the compilation units
+	 * @throws CoreException if the clean up failed, in which case the compilation units are
+	 *             restored
+	 * @since 3.8
+	 */
+	private Change performStreaming(IProgressMonitor pm) throws CoreException {
+		if (pm == null)
+			pm= new NullProgressMonitor();
+
+		ICleanUp[] cleanUps= getCleanUps();
+		int cuCount= getCleanUpTargetsSize();
+		pm.beginTask("", cuCount * (2 * cleanUps.length + 1) + 4 * cleanUps.length * fProjects.size()); //$NON-NLS-1$
+		CleanUpJournalChange.Writer journal= new CleanUpJournalChange.Writer();
+		boolean done= false;
+		try {
+			for (Iterator<Entry<IJavaProject, List<CleanUpTarget>>> projectIter= fProjects.entrySet().iterator(); projectIter.hasNext();) {
+				Entry<IJavaProject, List<CleanUpTarget>> entry= projectIter.next();
+				RefactoringStatus status= streamProject(entry.getKey(), entry.getValue(), cleanUps, journal, pm);
+				if (status.hasFatalError())
+					throw new CoreException(status.getEntryWithHighestSeverity().toStatus());
+			}
+			CleanUpJournalChange result= journal.close(getName());
+			done= true;
+			return result;
+		} finally {
+			if (!done)
+				restore(journal);
+			pm.done();
+		}
+	}
+
+	/**
+	 * Cleans up the given targets of a project in batches and changes them right away.
+	 *
+	 * @param project the project
+	 * @param targetsList the targets in the project
+	 * @param cleanUps the clean ups to apply
+	 * @param journal the journal to add the contents of changed compilation units to
+	 * @param pm the progress monitor
+	 * @return the status of the clean up
+	 * @throws CoreException if the clean up failed
+	 * @since 3.8
+	 */
+	private RefactoringStatus streamProject(IJavaProject project, List<CleanUpTarget> targetsList, ICleanUp[] cleanUps, CleanUpJournalChange.Writer journal, IProgressMonitor pm) throws CoreException {
+		RefactoringStatus result= new RefactoringStatus();
+		CleanUpTarget[] targets= targetsList.toArray(new CleanUpTarget[targetsList.size()]);
+
+		if (fUseOptionsFromProfile) {
+			result.merge(setOptionsFromProfile(project, cleanUps));
+			if (result.hasFatalError())
+				return result;
+		}
+
+		List<ICleanUp> preChecked= new ArrayList<ICleanUp>(cleanUps.length);
+		boolean postConditionsChecked= false;
+		try {
+			result.merge(checkPreConditions(project, targets, cleanUps, preChecked, new SubProgressMonitor(pm, 3 * cleanUps.length)));
+			if (result.hasFatalError())
+				return result;
+
+			for (int start= 0; start < targets.length; start+= fStreamingBatchSize) {
+				CleanUpTarget[] batch= new CleanUpTarget[Math.min(fStreamingBatchSize, targets.length - start)];
+				System.arraycopy(targets, start, batch, 0, batch.length);
+
+				Change[] changes= cleanUpProject(project, batch, cleanUps, pm);
+				applyChanges(changes, journal, new SubProgressMonitor(pm, batch.length));
+			}
+
+			postConditionsChecked= true;
+			result.merge(checkPostConditions(cleanUps, new SubProgressMonitor(pm, cleanUps.length)));
+			return result;
+		} finally {
+			if (!postConditionsChecked)
+				abortCleanUps(preChecked);
+		}
+	}
+
+	/**
+	 * Performs the given changes and adds the previous contents of the changed compilation units
+	 * to the journal. The undo changes are not kept.
+	 *
+	 * @param changes the changes of a batch
+	 * @param journal the journal
+	 * @param pm the progress monitor
+	 * @throws CoreException if a change cannot be performed
+	 * @since 3.8
+	 */
+	private static void applyChanges(Change[] changes, CleanUpJournalChange.Writer journal, IProgressMonitor pm) throws CoreException {
+		pm.beginTask("", changes.length); //$NON-NLS-1$
+		try {
+			for (int i= 0; i < changes.length; i++) {
+				if (pm.isCanceled())
+					throw new OperationCanceledException();
+
+				Change change= changes[i];
+				ICompilationUnit unit;
+				if (change instanceof MultiStateCompilationUnitChange) {
+					unit= ((MultiStateCompilationUnitChange) change).getCompilationUnit();
+				} else {
+					unit= ((CompilationUnitChange) change).getCompilationUnit();
+				}
+
+				String contents= unit.getSource();
+				change.initializeValidationData(new NullProgressMonitor());
+				try {
+					RefactoringStatus status= change.isValid(new NullProgressMonitor());
+					if (status.hasFatalError())
+						throw new CoreException(status.getEntryWithHighestSeverity().toStatus());
+					change.perform(new SubProgressMonitor(pm, 1));
+				} finally {
+					changes[i]= null;
+					change.dispose();
+				}
+				journal.add(unit, contents);
+			}
+		} finally {
+			pm.done();
+		}
+	}
+
+	/**
+	 * Restores the compilation units changed so far after the streaming clean up failed.
+	 *
+	 * @param journal the journal with the contents of the changed compilation units
+	 * @since 3.8
+	 */
+	private void restore(CleanUpJournalChange.Writer journal) {
+		try {
+			CleanUpJournalChange undo= journal.close(getName());
+			try {
+				undo.perform(new NullProgressMonitor()).dispose();
+			} finally {
+				undo.dispose();
+			}
+		} catch (CoreException e) {
+			JavaPlugin.log(e);
+		}
+	}
+
 	private void findFilesToBeModified(CompositeChange change, List<IResource> result) throws JavaModelException {
 		Change[] children= change.getChildren();
 		for (int i= 0; i < children.length; i++) {
@@ -707,6 +1127,153 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
+	/**
+	 * Cleans up the given targets of a project.
+	 *
+	 * @param project the project
+	 * @param targetsList the targets in the project
+	 * @param cleanUps the clean ups to apply, not used for other projects at the same time
+	 * @param changes the list to add the changes to
+	 * @param pm the progress monitor
+	 * @return the status of the clean up
+	 * @throws CoreException if the clean up failed
+	 * @since 3.8
+	 */
+	private RefactoringStatus cleanUpProject(IJavaProject project, List<CleanUpTarget> targetsList, ICleanUp[] cleanUps, List<Change> changes, IProgressMonitor pm) throws CoreException {
+		RefactoringStatus result= new RefactoringStatus();
+		CleanUpTarget[] targets= targetsList.toArray(new CleanUpTarget[targetsList.size()]);
+
+		if (fUseOptionsFromProfile) {
+			result.merge(setOptionsFromProfile(project, cleanUps));
+			if (result.hasFatalError())
+				return result;
+		}
+
+		Change[] projectChanges;
+		List<ICleanUp> preChecked= new ArrayList<ICleanUp>(cleanUps.length);
+		boolean postConditionsChecked= false;
+		try {
+			result.merge(checkPreConditions(project, targets, cleanUps, preChecked, new SubProgressMonitor(pm, 3 * cleanUps.length)));
+			if (result.hasFatalError())
+				return result;
+
+			projectChanges= cleanUpProject(project, targets, cleanUps, pm);
+
+			postConditionsChecked= true;
+			result.merge(checkPostConditions(cleanUps, new SubProgressMonitor(pm, cleanUps.length)));
+			if (result.hasFatalError())
+				return result;
+		} finally {
+			if (!postConditionsChecked)
+				abortCleanUps(preChecked);
+		}
+
+		for (int i= 0; i < projectChanges.length; i++) {
+			changes.add(projectChanges[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Cleans up the projects in parallel, each with its own clean ups. The changes are added in
+	 * the order of the projects, like when the projects are cleaned up one after the other.
+	 *
+	 * @param projects the projects with their targets
+	 * @param projectCleanUps the clean ups for each project
+	 * @param change the change to add the changes to
+	 * @param pm the progress monitor
+	 * @return the status of the clean up
+	 * @throws CoreException if the clean up of a project failed
+	 * @since 3.8
+	 */
+	private RefactoringStatus cleanUpProjectsInParallel(List<Entry<IJavaProject, List<CleanUpTarget>>> projects, ICleanUp[][] projectCleanUps, CompositeChange change, IProgressMonitor pm) throws CoreException {
+		RefactoringStatus result= new RefactoringStatus();
+		final ConcurrentProgressMonitor monitor= new ConcurrentProgressMonitor(pm);
+		int threads= Math.min(fMaxParallelProjects, projects.size());
+		ExecutorService executor= Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread= new Thread(runnable, "Clean Up"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<ProjectResult>> futures= new ArrayList<Future<ProjectResult>>(projects.size());
+			for (int i= 0; i < projects.size(); i++) {
+				final Entry<IJavaProject, List<CleanUpTarget>> entry= projects.get(i);
+				final ICleanUp[] cleanUps= projectCleanUps[i];
+				// the ticks of the project as if it were cleaned up sequentially
+				final int ticks= 4 * cleanUps.length + 2 * entry.getValue().size() * cleanUps.length;
+				futures.add(executor.submit(new Callable<ProjectResult>() {
+					public ProjectResult call() throws CoreException {
+						if (monitor.isCanceled())
+							throw new OperationCanceledException();
+						SubProgressMonitor projectMonitor= new SubProgressMonitor(monitor, ticks);
+						projectMonitor.beginTask("", ticks); //$NON-NLS-1$
+						try {
+							List<Change> changes= new ArrayList<Change>();
+							RefactoringStatus status= cleanUpProject(entry.getKey(), entry.getValue(), cleanUps, changes, projectMonitor);
+							return new ProjectResult(status, changes);
+						} finally {
+							projectMonitor.done();
+						}
+					}
+				}));
+			}
+
+			for (int i= 0; i < futures.size(); i++) {
+				ProjectResult projectResult= FutureUtil.getResult(futures.get(i), monitor);
+				result.merge(projectResult.fStatus);
+				if (result.hasFatalError())
+					return result;
+
+				for (int j= 0; j < projectResult.fChanges.size(); j++) {
+					change.add(projectResult.fChanges.get(j));
+				}
+			}
+			return result;
+		} finally {
+			// stops the remaining projects if a project failed or the clean up was canceled
+			monitor.setCanceled(true);
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Creates copies of the clean ups for each project, so that projects can be cleaned up in
+	 * parallel without sharing the state of the clean ups.
+	 *
+	 * @param cleanUps the clean ups
+	 * @param count the number of projects
+	 * @return the copies for each project, or <code>null</code> if the clean ups cannot be copied
+	 * @since 3.8
+	 */
+	private ICleanUp[][] copyCleanUps(ICleanUp[] cleanUps, int count) {
+		ICleanUp[][] result= new ICleanUp[count][cleanUps.length];
+		for (int i= 0; i < cleanUps.length; i++) {
+			CleanUpOptions options= null;
+			if (!fUseOptionsFromProfile) {
+				if (!(cleanUps[i] instanceof AbstractCleanUp))
+					return null;
+				options= ((AbstractCleanUp) cleanUps[i]).getOptions();
+				if (options == null)
+					return null;
+			}
+			for (int j= 0; j < count; j++) {
+				try {
+					result[j][i]= cleanUps[i].getClass().newInstance();
+				} catch (InstantiationException e) {
+					return null;
+				} catch (IllegalAccessException e) {
+					return null;
+				}
+				if (options != null)
+					result[j][i].setOptions(options);
+			}
+		}
+		return result;
+	}
+
 	private Change[] cleanUpProject(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps, IProgressMonitor monitor) throws CoreException {
 		CleanUpFixpointIterator iter= new CleanUpFixpointIterator(targets, cleanUps);
 
@@ -729,6 +1296,10 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		Map<String, String> options= CleanUpPreferenceUtil.loadOptions(new ProjectScope(javaProject.getProject()));
 		if (options == null)
 			return RefactoringStatus.createFatalErrorStatus(Messages.format(FixMessages.CleanUpRefactoring_could_not_retrive_profile, BasicElementLabels.getResourceName(javaProject.getProject())));
+		if (fOverriddenOptions != null) {
+			options= new Hashtable<String, String>(options); // don't change the settings of the profile
+			options.putAll(fOverriddenOptions);
+		}
 
 		CleanUpOptions cleanUpOptions= new MapCleanUpOptions(options);
 		for (int i= 0; i < cleanUps.length; i++)
@@ -737,7 +1308,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		return new RefactoringStatus();
 	}
 
-	private RefactoringStatus checkPreConditions(IJavaProject javaProject, CleanUpTarget[] targets, IProgressMonitor monitor) throws CoreException {
+	private RefactoringStatus checkPreConditions(IJavaProject javaProject, CleanUpTarget[] targets, ICleanUp[] cleanUps, List<ICleanUp> preChecked, IProgressMonitor monitor) throws CoreException {
 		RefactoringStatus result= new RefactoringStatus();
 
 		ICompilationUnit[] compilationUnits= new ICompilationUnit[targets.length];
@@ -745,11 +1316,11 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 			compilationUnits[i]= targets[i].getCompilationUnit();
 		}
 
-		ICleanUp[] cleanUps= getCleanUps();
 		monitor.beginTask("", compilationUnits.length * cleanUps.length); //$NON-NLS-1$
 		monitor.subTask(Messages.format(FixMessages.CleanUpRefactoring_Initialize_message, BasicElementLabels.getResourceName(javaProject.getProject())));
 		try {
 			for (int j= 0; j < cleanUps.length; j++) {
+				preChecked.add(cleanUps[j]);
 				result.merge(cleanUps[j].checkPreConditions(javaProject, compilationUnits, new SubProgressMonitor(monitor, compilationUnits.length)));
 				if (result.hasFatalError())
 					return result;
@@ -761,10 +1332,9 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		return result;
 	}
 
-	private RefactoringStatus checkPostConditions(SubProgressMonitor monitor) throws CoreException {
+	private RefactoringStatus checkPostConditions(ICleanUp[] cleanUps, SubProgressMonitor monitor) throws CoreException {
 		RefactoringStatus result= new RefactoringStatus();
 
-		ICleanUp[] cleanUps= getCleanUps();
 		monitor.beginTask("", cleanUps.length); //$NON-NLS-1$
 		monitor.subTask(FixMessages.CleanUpRefactoring_checkingPostConditions_message);
 		try {
@@ -777,6 +1347,28 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		return result;
 	}
 
+	/**
+	 * Checks the post-conditions of the clean ups after the clean up of a project stopped early,
+	 * because of a fatal pre-condition, an exception or cancellation. This lets the clean ups
+	 * release what they acquired in {@link ICleanUp#checkPreConditions(IJavaProject, ICompilationUnit[], IProgressMonitor)},
+	 * e.g. listeners. The results are ignored.
+	 *
+	 * @param cleanUps the clean ups whose pre-conditions have been checked; clean ups after a
+	 *            fatal pre-condition have not been initialized and are not called
+	 * @since 3.8
+	 */
+	private static void abortCleanUps(List<ICleanUp> cleanUps) {
+		for (int i= 0, n= cleanUps.size(); i < n; i++) {
+			try {
+				cleanUps.get(i).checkPostConditions(new NullProgressMonitor());
+			} catch (CoreException e) {
+				JavaPlugin.log(e);
+			} catch (RuntimeException e) {
+				JavaPlugin.log(e);
+			}
+		}
+	}
+
 	private static String getChangeName(ICompilationUnit compilationUnit) {
 		StringBuffer buf= new StringBuffer();
 		JavaElementLabels.getCompilationUnitLabel(compilationUnit, JavaElementLabels.ALL_DEFAULT, buf);
@@ -25,6 +25,12 @@ public final class FixMessages extends NLS {
 	public static String CleanUpPostSaveListener_SlowCleanUpWarningDialog_explain;
 	public static String CleanUpPostSaveListener_unknown_profile_error_message;
 
+	public static String BatchCleanUpRunner_problems;
+
+	public static String CleanUpJournalChange_journal_missing;
+	public static String CleanUpJournalChange_unit_does_not_exist;
+	public static String CleanUpJournalChange_unit_modified;
+
 	public static String CleanUpRefactoring_checkingPostConditions_message;
 	public static String CleanUpRefactoring_clean_up_multi_chang_name;
 	public static String CleanUpRefactoring_could_not_retrive_profile;
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Waits for the results of tasks that run in other threads, see
+ * {@link java.util.concurrent.ExecutorService}.
+ *
+ * @since 3.8
+ */
+public final class FutureUtil {
+
+	/**
+	 * The time in milliseconds between two checks for cancellation while waiting for a result.
+	 */
+	private static final long CANCEL_CHECK_INTERVAL= 100;
+
+	private FutureUtil() {
+	}
+
+	/**
+	 * Waits for the result of a task and checks the progress monitor for cancellation while
+	 * waiting. Exceptions thrown by the task are thrown again in the calling thread.
+	 *
+	 * @param future the future of the task
+	 * @param monitor the progress monitor to check for cancellation
+	 * @return the result of the task
+	 * @throws CoreException if the task threw a <code>CoreException</code> or another checked
+	 *             exception
+	 * @throws OperationCanceledException if the monitor has been canceled, the waiting thread has
+	 *             been interrupted or the task threw an <code>OperationCanceledException</code>
+	 */
+	public static <T> T getResult(Future<T> future, IProgressMonitor monitor) throws CoreException {
+		while (true) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+			try {
+				return future.get(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// check for cancellation
+			} catch (InterruptedException e) {
+				throw new OperationCanceledException();
+			} catch (ExecutionException e) {
+				Throwable cause= e.getCause();
+				if (cause instanceof CoreException)
+					throw (CoreException) cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), cause.getMessage(), cause));
+			}
+		}
+	}
+}
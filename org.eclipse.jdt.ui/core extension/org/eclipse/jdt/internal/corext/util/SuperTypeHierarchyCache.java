@@ -12,7 +12,10 @@ package org.eclipse.jdt.internal.corext.util;
 
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -23,16 +26,26 @@ import org.eclipse.jdt.core.JavaModelException;
 
 /**
  * A thread-safe cache for super type hierarchies.
+ * <p>
+ * Hierarchies are found through a concurrent index from each of their types to the cache
+ * entry, so that lookups do not need a global lock. Only adding and removing hierarchies is
+ * serialized. The number of cached hierarchies is bounded by a budget derived from the
+ * maximal heap size, but at least {@link #MIN_CACHE_SIZE} hierarchies are kept.
+ * </p>
  */
 public class SuperTypeHierarchyCache {
 
 	private static class HierarchyCacheEntry implements ITypeHierarchyChangedListener {
 
-		private ITypeHierarchy fTypeHierarchy;
-		private long fLastAccess;
+		private final ITypeHierarchy fTypeHierarchy;
+		private final IType[] fTypes;
+		private final ConcurrentMap<IType, MethodOverrideTester> fMethodOverrideTesters= new ConcurrentHashMap<IType, MethodOverrideTester>(4, 0.75f, 2);
+		private volatile long fLastAccess;
+		private volatile boolean fDisposed;
 
 		public HierarchyCacheEntry(ITypeHierarchy hierarchy) {
 			fTypeHierarchy= hierarchy;
+			fTypes= hierarchy.getAllTypes();
 			fTypeHierarchy.addTypeHierarchyChangedListener(this);
 			markAsAccessed();
 		}
@@ -45,6 +58,21 @@ public class SuperTypeHierarchyCache {
 			return fTypeHierarchy;
 		}
 
+		public IType[] getTypes() {
+			return fTypes;
+		}
+
+		public MethodOverrideTester getMethodOverrideTester(IType type) {
+			MethodOverrideTester tester= fMethodOverrideTesters.get(type);
+			if (tester == null) {
+				tester= new MethodOverrideTester(type, fTypeHierarchy);
+				MethodOverrideTester existing= fMethodOverrideTesters.putIfAbsent(type, tester);
+				if (existing != null)
+					tester= existing;
+			}
+			return tester;
+		}
+
 		public void markAsAccessed() {
 			fLastAccess= System.currentTimeMillis();
 		}
@@ -53,10 +81,15 @@ public class SuperTypeHierarchyCache {
 			return fLastAccess;
 		}
 
+		public boolean isDisposed() {
+			return fDisposed;
+		}
+
 		public void dispose() {
-			if (fTypeHierarchy != null) {
+			if (!fDisposed) {
+				fDisposed= true;
 				fTypeHierarchy.removeTypeHierarchyChangedListener(this);
-				fTypeHierarchy= null;
+				fMethodOverrideTesters.clear();
 			}
 		}
 
@@ -71,13 +104,30 @@ public class SuperTypeHierarchyCache {
 	}
 
 
-	private static final int CACHE_SIZE= 8;
+	/**
+	 * The number of hierarchies that are always kept, regardless of the memory budget.
+	 */
+	private static final int MIN_CACHE_SIZE= 8;
+
+	/**
+	 * Rough estimate of the memory used by a type in a super type hierarchy, including the
+	 * hierarchy's maps and the cache index.
+	 */
+	private static final int BYTES_PER_TYPE= 400;
+
+	/**
+	 * The maximal number of types in all cached hierarchies: 1% of the maximal heap size.
+	 */
+	private static final long TYPE_BUDGET= Runtime.getRuntime().maxMemory() / 100 / BYTES_PER_TYPE;
 
-	private static ArrayList<HierarchyCacheEntry> fgHierarchyCache= new ArrayList<HierarchyCacheEntry>(CACHE_SIZE);
-	private static Map<IType, MethodOverrideTester> fgMethodOverrideTesterCache= new LRUMap<IType, MethodOverrideTester>(CACHE_SIZE);
+	private static final ArrayList<HierarchyCacheEntry> fgHierarchyCache= new ArrayList<HierarchyCacheEntry>(MIN_CACHE_SIZE);
+	private static final ConcurrentMap<IType, HierarchyCacheEntry> fgTypeIndex= new ConcurrentHashMap<IType, HierarchyCacheEntry>(256, 0.75f, 16);
+	private static int fgCachedTypes= 0;
 
-	private static int fgCacheHits= 0;
-	private static int fgCacheMisses= 0;
+	private static final AtomicInteger fgCacheHits= new AtomicInteger();
+	private static final AtomicInteger fgCacheMisses= new AtomicInteger();
+	private static final AtomicInteger fgEvictions= new AtomicInteger();
+	private static final AtomicLong fgBuildTime= new AtomicLong();
 
 	/**
 	 * Returns a super type hierarchy that contains the given type.
@@ -95,32 +145,16 @@ public class SuperTypeHierarchyCache {
 	}
 
 	public static MethodOverrideTester getMethodOverrideTester(IType type) throws JavaModelException {
-		MethodOverrideTester test= null;
-		synchronized (fgMethodOverrideTesterCache) {
-			test= fgMethodOverrideTesterCache.get(type);
-		}
-		if (test == null) {
-			ITypeHierarchy hierarchy= getTypeHierarchy(type); // don't nest the locks
-			synchronized (fgMethodOverrideTesterCache) {
-				test= fgMethodOverrideTesterCache.get(type); // test again after waiting a long time for 'getTypeHierarchy'
-				if (test == null) {
-					test= new MethodOverrideTester(type, hierarchy);
-					fgMethodOverrideTesterCache.put(type, test);
-				}
-			}
-		}
-		return test;
-	}
-
-	private static void removeMethodOverrideTester(ITypeHierarchy hierarchy) {
-		synchronized (fgMethodOverrideTesterCache) {
-			for (Iterator<MethodOverrideTester> iter= fgMethodOverrideTesterCache.values().iterator(); iter.hasNext();) {
-				MethodOverrideTester curr= iter.next();
-				if (curr.getTypeHierarchy().equals(hierarchy)) {
-					iter.remove();
-				}
-			}
+		HierarchyCacheEntry entry= findHierarchyEntryInCache(type);
+		if (entry == null) {
+			ITypeHierarchy hierarchy= getTypeHierarchy(type);
+			entry= findHierarchyEntryInCache(type);
+			if (entry == null) // removed again in the meantime
+				return new MethodOverrideTester(type, hierarchy);
+		} else {
+			fgCacheHits.incrementAndGet();
 		}
+		return entry.getMethodOverrideTester(type);
 	}
 
 	/**
@@ -136,45 +170,52 @@ public class SuperTypeHierarchyCache {
 	 * @throws JavaModelException if a problem occurs
 	 */
 	public static ITypeHierarchy getTypeHierarchy(IType type, IProgressMonitor progressMonitor) throws JavaModelException {
-		ITypeHierarchy hierarchy= findTypeHierarchyInCache(type);
-		if (hierarchy == null) {
-			fgCacheMisses++;
-			hierarchy= type.newSupertypeHierarchy(progressMonitor);
-			addTypeHierarchyToCache(hierarchy);
-		} else {
-			fgCacheHits++;
+		HierarchyCacheEntry entry= findHierarchyEntryInCache(type);
+		if (entry != null) {
+			fgCacheHits.incrementAndGet();
+			return entry.getTypeHierarchy();
 		}
+
+		fgCacheMisses.incrementAndGet();
+		long start= System.currentTimeMillis();
+		ITypeHierarchy hierarchy= type.newSupertypeHierarchy(progressMonitor);
+		fgBuildTime.addAndGet(System.currentTimeMillis() - start);
+		addTypeHierarchyToCache(hierarchy);
 		return hierarchy;
 	}
 
 	private static void addTypeHierarchyToCache(ITypeHierarchy hierarchy) {
 		synchronized (fgHierarchyCache) {
-			int nEntries= fgHierarchyCache.size();
-			if (nEntries >= CACHE_SIZE) {
-				// find obsolete entries or remove entry that was least recently accessed
+			// remove obsolete entries, and the entries that are subsumed by the new hierarchy
+			for (int i= fgHierarchyCache.size() - 1; i >= 0; i--) {
+				HierarchyCacheEntry entry= fgHierarchyCache.get(i);
+				ITypeHierarchy curr= entry.getTypeHierarchy();
+				if (!curr.exists() || hierarchy.contains(curr.getType())) {
+					removeHierarchyEntryFromCache(entry);
+				}
+			}
+
+			// remove the entries that were least recently accessed until the new entry fits into the budget
+			HierarchyCacheEntry newEntry= new HierarchyCacheEntry(hierarchy);
+			int types= newEntry.getTypes().length;
+			while (fgHierarchyCache.size() >= MIN_CACHE_SIZE && fgCachedTypes + types > TYPE_BUDGET) {
 				HierarchyCacheEntry oldest= null;
-				ArrayList<HierarchyCacheEntry> obsoleteHierarchies= new ArrayList<HierarchyCacheEntry>(CACHE_SIZE);
-				for (int i= 0; i < nEntries; i++) {
+				for (int i= 0; i < fgHierarchyCache.size(); i++) {
 					HierarchyCacheEntry entry= fgHierarchyCache.get(i);
-					ITypeHierarchy curr= entry.getTypeHierarchy();
-					if (!curr.exists() || hierarchy.contains(curr.getType())) {
-						obsoleteHierarchies.add(entry);
-					} else {
-						if (oldest == null || entry.getLastAccess() < oldest.getLastAccess()) {
-							oldest= entry;
-						}
-					}
-				}
-				if (!obsoleteHierarchies.isEmpty()) {
-					for (int i= 0; i < obsoleteHierarchies.size(); i++) {
-						removeHierarchyEntryFromCache(obsoleteHierarchies.get(i));
+					if (oldest == null || entry.getLastAccess() < oldest.getLastAccess()) {
+						oldest= entry;
 					}
-				} else if (oldest != null) {
-					removeHierarchyEntryFromCache(oldest);
 				}
+				removeHierarchyEntryFromCache(oldest);
+				fgEvictions.incrementAndGet();
 			}
-			HierarchyCacheEntry newEntry= new HierarchyCacheEntry(hierarchy);
+
 			fgHierarchyCache.add(newEntry);
+			fgCachedTypes+= types;
+			IType[] allTypes= newEntry.getTypes();
+			for (int i= 0; i < allTypes.length; i++) {
+				fgTypeIndex.put(allTypes[i], newEntry);
+			}
 		}
 	}
 
@@ -185,34 +226,72 @@ public class SuperTypeHierarchyCache {
 	 * @return <code>true</code> if a hierarchy for the given type is cached
 	 */
 	public static boolean hasInCache(IType type) {
-		return findTypeHierarchyInCache(type) != null;
+		return findHierarchyEntryInCache(type) != null;
 	}
 
 
-	private static ITypeHierarchy findTypeHierarchyInCache(IType type) {
+	private static HierarchyCacheEntry findHierarchyEntryInCache(IType type) {
+		HierarchyCacheEntry entry= fgTypeIndex.get(type);
+		if (entry == null)
+			return null;
+		if (entry.isDisposed())
+			return null;
+		if (!entry.getTypeHierarchy().exists()) {
+			removeHierarchyEntryFromCache(entry);
+			return findHierarchyEntryInCache(type); // another hierarchy may contain the type
+		}
+		entry.markAsAccessed();
+		return entry;
+	}
+
+	private static void removeHierarchyEntryFromCache(HierarchyCacheEntry entry) {
 		synchronized (fgHierarchyCache) {
-			for (int i= fgHierarchyCache.size() - 1; i>= 0; i--) {
-				HierarchyCacheEntry curr= fgHierarchyCache.get(i);
-				ITypeHierarchy hierarchy= curr.getTypeHierarchy();
-				if (!hierarchy.exists()) {
-					removeHierarchyEntryFromCache(curr);
-				} else {
-					if (hierarchy.contains(type)) {
-						curr.markAsAccessed();
-						return hierarchy;
-					}
+			if (!fgHierarchyCache.remove(entry))
+				return;
+			fgCachedTypes-= entry.getTypes().length;
+			IType[] types= entry.getTypes();
+			for (int i= 0; i < types.length; i++) {
+				if (fgTypeIndex.remove(types[i], entry)) {
+					// the type may also be in other cached hierarchies, which were indexed before
+					HierarchyCacheEntry other= findCachedEntryContaining(types[i]);
+					if (other != null)
+						fgTypeIndex.put(types[i], other);
 				}
 			}
+			entry.dispose();
 		}
-		return null;
 	}
 
-	private static void removeHierarchyEntryFromCache(HierarchyCacheEntry entry) {
+	/**
+	 * Returns the most recently accessed cached hierarchy that contains the given type. Must be
+	 * called while holding the lock on the cache.
+	 *
+	 * @param type the type
+	 * @return the cache entry or <code>null</code> if no cached hierarchy contains the type
+	 */
+	private static HierarchyCacheEntry findCachedEntryContaining(IType type) {
+		HierarchyCacheEntry result= null;
+		for (int i= 0; i < fgHierarchyCache.size(); i++) {
+			HierarchyCacheEntry entry= fgHierarchyCache.get(i);
+			if ((result == null || entry.getLastAccess() > result.getLastAccess()) && entry.getTypeHierarchy().contains(type))
+				result= entry;
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all hierarchies from the cache and resets the statistics. Used for testing.
+	 */
+	public static void clear() {
 		synchronized (fgHierarchyCache) {
-			removeMethodOverrideTester(entry.getTypeHierarchy());
-			entry.dispose();
-			fgHierarchyCache.remove(entry);
+			for (Iterator<HierarchyCacheEntry> iter= new ArrayList<HierarchyCacheEntry>(fgHierarchyCache).iterator(); iter.hasNext();) {
+				removeHierarchyEntryFromCache(iter.next());
+			}
 		}
+		fgCacheHits.set(0);
+		fgCacheMisses.set(0);
+		fgEvictions.set(0);
+		fgBuildTime.set(0);
 	}
 
 
@@ -221,7 +300,7 @@ public class SuperTypeHierarchyCache {
 	 * @return Returns a int
 	 */
 	public static int getCacheHits() {
-		return fgCacheHits;
+		return fgCacheHits.get();
 	}
 
 	/**
@@ -229,6 +308,43 @@ public class SuperTypeHierarchyCache {
 	 * @return Returns a int
 	 */
 	public static int getCacheMisses() {
-		return fgCacheMisses;
+		return fgCacheMisses.get();
+	}
+
+	/**
+	 * Gets the ratio of requests that could be answered from the cache.
+	 * @return the hit rate between 0 and 1, or 0 if there were no requests yet
+	 */
+	public static double getHitRate() {
+		int hits= fgCacheHits.get();
+		int requests= hits + fgCacheMisses.get();
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	/**
+	 * Gets the number of hierarchies that had to be removed from the cache to stay within
+	 * the memory budget.
+	 * @return the number of evictions
+	 */
+	public static int getEvictions() {
+		return fgEvictions.get();
+	}
+
+	/**
+	 * Gets the total time spent building hierarchies on cache misses.
+	 * @return the build time in milliseconds
+	 */
+	public static long getBuildTime() {
+		return fgBuildTime.get();
+	}
+
+	/**
+	 * Gets the number of hierarchies currently in the cache.
+	 * @return the number of cached hierarchies
+	 */
+	public static int getCacheSize() {
+		synchronized (fgHierarchyCache) {
+			return fgHierarchyCache.size();
+		}
 	}
 }
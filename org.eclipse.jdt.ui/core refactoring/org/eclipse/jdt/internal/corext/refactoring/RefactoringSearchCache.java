@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
+
+import org.eclipse.jdt.internal.corext.util.SearchUtils;
+
+/**
+ * Caches the matches of the searches of a refactoring, so that checking the final conditions
+ * again, for example after the user has changed the settings of the refactoring, does not query
+ * the index again. The elements to search for are combined into one OR pattern per search.
+ * <p>
+ * Matches are only shared by searches in the same scope, which is why the cache creates the
+ * search scopes as well. The matches are cached as reported by the search engine and are passed
+ * to the requestor of every search, so that requestors which filter matches or collect references
+ * in binaries behave as without the cache.
+ * </p>
+ * <p>
+ * The same match objects are reported to every requestor of a search. Requestors may narrow the
+ * offset and length of a match, as
+ * {@link org.eclipse.jdt.internal.corext.refactoring.rename.MethodOccurenceCollector} does, since
+ * these are restored before the matches are reported again, but must not modify the matches
+ * otherwise.
+ * </p>
+ * <p>
+ * The cache does not observe changes of the Java model. It lives as long as the refactoring and is
+ * cleared whenever the initial conditions of the refactoring are checked.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class RefactoringSearchCache {
+
+	private static final boolean DEBUG= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.jdt.ui/debug/RefactoringSearchCache")); //$NON-NLS-1$//$NON-NLS-2$
+
+	/**
+	 * The matches of a search, with their offsets and lengths as reported by the search engine.
+	 */
+	private static final class CachedMatches {
+		final SearchMatch[] fMatches;
+		final int[] fOffsets;
+		final int[] fLengths;
+
+		CachedMatches(List<SearchMatch> matches) {
+			fMatches= matches.toArray(new SearchMatch[matches.size()]);
+			fOffsets= new int[fMatches.length];
+			fLengths= new int[fMatches.length];
+			for (int i= 0; i < fMatches.length; i++) {
+				fOffsets[i]= fMatches[i].getOffset();
+				fLengths[i]= fMatches[i].getLength();
+			}
+		}
+
+		/**
+		 * Reports the matches to a requestor, undoing the changes of the previous requestor.
+		 *
+		 * @param requestor the requestor
+		 * @throws CoreException if the requestor fails
+		 */
+		void report(SearchRequestor requestor) throws CoreException {
+			requestor.beginReporting();
+			for (int i= 0; i < fMatches.length; i++) {
+				fMatches[i].setOffset(fOffsets[i]);
+				fMatches[i].setLength(fLengths[i]);
+				requestor.acceptSearchMatch(fMatches[i]);
+			}
+			requestor.endReporting();
+		}
+	}
+
+	/**
+	 * Maps the arguments a scope has been created from to the scope.
+	 */
+	private final Map<List<Object>, IJavaSearchScope> fScopes= new HashMap<List<Object>, IJavaSearchScope>();
+
+	/**
+	 * Maps a scope to the matches found in it, by search.
+	 */
+	private final Map<IJavaSearchScope, Map<List<Object>, CachedMatches>> fMatches= new IdentityHashMap<IJavaSearchScope, Map<List<Object>, CachedMatches>>();
+
+	private int fQueryCount;
+	private int fSavedQueryCount;
+
+	/**
+	 * Returns the refactoring scope of an element.
+	 *
+	 * @param element the element
+	 * @param considerVisibility whether the visibility of the element is considered
+	 * @param sourceReferencesOnly whether only source references are of interest
+	 * @return the scope
+	 * @throws JavaModelException if the scope cannot be created
+	 *
+	 * @see RefactoringScopeFactory#create(IJavaElement, boolean, boolean)
+	 */
+	public IJavaSearchScope getScope(IJavaElement element, boolean considerVisibility, boolean sourceReferencesOnly) throws JavaModelException {
+		List<Object> key= Arrays.<Object> asList(element, Boolean.valueOf(considerVisibility), Boolean.valueOf(sourceReferencesOnly));
+		IJavaSearchScope scope= fScopes.get(key);
+		if (scope == null) {
+			scope= RefactoringScopeFactory.create(element, considerVisibility, sourceReferencesOnly);
+			fScopes.put(key, scope);
+		}
+		return scope;
+	}
+
+	/**
+	 * Returns the scope of a project and all projects related to it.
+	 *
+	 * @param project the project
+	 * @param includeMask the include mask
+	 * @return the scope
+	 * @throws CoreException if the scope cannot be created
+	 *
+	 * @see RefactoringScopeFactory#createRelatedProjectsScope(IJavaProject, int)
+	 */
+	public IJavaSearchScope getRelatedProjectsScope(IJavaProject project, int includeMask) throws CoreException {
+		List<Object> key= Arrays.<Object> asList(project, new Integer(includeMask));
+		IJavaSearchScope scope= fScopes.get(key);
+		if (scope == null) {
+			scope= RefactoringScopeFactory.createRelatedProjectsScope(project, includeMask);
+			fScopes.put(key, scope);
+		}
+		return scope;
+	}
+
+	/**
+	 * Searches for elements and groups the matches by compilation unit.
+	 *
+	 * @param elements the elements to search for, combined into an OR pattern
+	 * @param limitTo the kind of matches to search for
+	 * @param scope the scope, as returned by this cache
+	 * @param owner the working copy owner, or <code>null</code>
+	 * @param requestor the requestor collecting the matches
+	 * @param monitor the progress monitor
+	 * @param status an error is added here if inaccurate or non-cu matches have been found
+	 * @return the matches, grouped by compilation unit
+	 * @throws JavaModelException when the search failed
+	 *
+	 * @see RefactoringSearchEngine#search(SearchPattern, WorkingCopyOwner, IJavaSearchScope, CollectingSearchRequestor, IProgressMonitor, RefactoringStatus)
+	 */
+	public SearchResultGroup[] search(IJavaElement[] elements, int limitTo, IJavaSearchScope scope, WorkingCopyOwner owner, CollectingSearchRequestor requestor, IProgressMonitor monitor, RefactoringStatus status) throws JavaModelException {
+		List<Object> key= Arrays.<Object> asList(new HashSet<IJavaElement>(Arrays.asList(elements)), new Integer(limitTo));
+		try {
+			search(key, RefactoringSearchEngine.createOrPattern(elements, limitTo), scope, owner, requestor, monitor);
+		} catch (CoreException e) {
+			throw new JavaModelException(e);
+		}
+		return RefactoringSearchEngine.groupByCu(requestor.getResults(), status);
+	}
+
+	/**
+	 * Searches for a pattern. The matches are reported to the requestor.
+	 *
+	 * @param key the key of the search, which must be equal for equal patterns
+	 * @param pattern the pattern
+	 * @param scope the scope, as returned by this cache
+	 * @param owner the working copy owner, or <code>null</code>
+	 * @param requestor the requestor
+	 * @param monitor the progress monitor
+	 * @throws CoreException when the search failed
+	 */
+	public void search(List<Object> key, SearchPattern pattern, IJavaSearchScope scope, WorkingCopyOwner owner, SearchRequestor requestor, IProgressMonitor monitor) throws CoreException {
+		Map<List<Object>, CachedMatches> matchesInScope= fMatches.get(scope);
+		if (matchesInScope == null) {
+			matchesInScope= new HashMap<List<Object>, CachedMatches>();
+			fMatches.put(scope, matchesInScope);
+		}
+		List<Object> ownerKey= Arrays.<Object> asList(key, owner);
+		CachedMatches matches= matchesInScope.get(ownerKey);
+		if (matches == null) {
+			final List<SearchMatch> found= new ArrayList<SearchMatch>();
+			SearchEngine engine= owner != null ? new SearchEngine(owner) : new SearchEngine();
+			engine.search(pattern, SearchUtils.getDefaultSearchParticipants(), scope, new SearchRequestor() {
+				@Override
+				public void acceptSearchMatch(SearchMatch match) {
+					found.add(match);
+				}
+			}, monitor);
+			matches= new CachedMatches(found);
+			matchesInScope.put(ownerKey, matches);
+			fQueryCount++;
+		} else {
+			fSavedQueryCount++;
+			if (DEBUG)
+				System.out.println("RefactoringSearchCache - reused " + matches.fMatches.length + " matches, " + fSavedQueryCount + " of " + (fQueryCount + fSavedQueryCount) + " queries saved: " + pattern); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			if (monitor != null)
+				monitor.done();
+		}
+
+		matches.report(requestor);
+	}
+
+	/**
+	 * Returns the number of searches which have queried the index.
+	 *
+	 * @return the number of queries
+	 */
+	public int getQueryCount() {
+		return fQueryCount;
+	}
+
+	/**
+	 * Returns the number of searches which have been answered from the cache.
+	 *
+	 * @return the number of saved queries
+	 */
+	public int getSavedQueryCount() {
+		return fSavedQueryCount;
+	}
+
+	/**
+	 * Clears the cache. The query counts are kept.
+	 */
+	public void clear() {
+		fScopes.clear();
+		fMatches.clear();
+	}
+}
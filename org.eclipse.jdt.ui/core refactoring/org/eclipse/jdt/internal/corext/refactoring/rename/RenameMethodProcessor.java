@@ -68,6 +68,7 @@ import org.eclipse.jdt.internal.corext.refactoring.JavaRefactoringDescriptorUtil
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringAvailabilityTester;
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringCoreMessages;
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringScopeFactory;
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchCache;
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchEngine;
 import org.eclipse.jdt.internal.corext.refactoring.SearchResultGroup;
 import org.eclipse.jdt.internal.corext.refactoring.base.JavaStatusContext;
@@ -107,6 +108,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 	private Set<IMethod> fMethodsToRename;
 	private TextChangeManager fChangeManager;
 	private WorkingCopyOwner fWorkingCopyOwner;
+	private final RefactoringSearchCache fSearchCache= new RefactoringSearchCache();
 	private boolean fIsComposite;
 	private GroupCategorySet fCategorySet;
 	private boolean fDelegateUpdating;
@@ -241,7 +243,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 
 	private void initializeMethodsToRename(IProgressMonitor pm, ReferencesInBinaryContext binaryRefs) throws CoreException {
 		if (fMethodsToRename == null) {
-			IMethod[] rippleMethods= RippleMethodFinder2.getRelatedMethods(getMethod(), binaryRefs, pm, null);
+			IMethod[] rippleMethods= RippleMethodFinder2.getRelatedMethods(getMethod(), binaryRefs, pm, null, fSearchCache);
 			fMethodsToRename= new HashSet<IMethod>(Arrays.asList(rippleMethods));
 		}
 	}
@@ -290,6 +292,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 
 	@Override
 	public RefactoringStatus checkInitialConditions(IProgressMonitor pm) throws CoreException {
+		fSearchCache.clear();
 		if (! fMethod.exists()){
 			String message= Messages.format(RefactoringCoreMessages.RenameMethodRefactoring_deleted,
 								BasicElementLabels.getFileName(fMethod.getCompilationUnit()));
@@ -452,18 +455,17 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 	}
 
 	protected final IJavaSearchScope createRefactoringScope() throws CoreException {
-		return createRefactoringScope(fMethod);
+		return fSearchCache.getScope(fMethod, true, false);
 	}
 	//TODO: shouldn't scope take all ripple methods into account?
 	protected static final IJavaSearchScope createRefactoringScope(IMethod method) throws CoreException {
 		return RefactoringScopeFactory.create(method, true, false);
 	}
 
-	private SearchPattern createOccurrenceSearchPattern() {
+	private IMethod[] getOccurrenceSearchElements() {
 		HashSet<IMethod> methods= new HashSet<IMethod>(fMethodsToRename);
 		methods.add(fMethod);
-		IMethod[] ms= methods.toArray(new IMethod[methods.size()]);
-		return RefactoringSearchEngine.createOrPattern(ms, IJavaSearchConstants.ALL_OCCURRENCES);
+		return methods.toArray(new IMethod[methods.size()]);
 	}
 
 	protected SearchResultGroup[] getOccurrences(){
@@ -471,8 +473,8 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 	}
 
 	private SearchResultGroup[] getOccurrences(IProgressMonitor pm, RefactoringStatus status, ReferencesInBinaryContext binaryRefs) throws CoreException {
-		SearchPattern pattern= createOccurrenceSearchPattern();
-		return RefactoringSearchEngine.search(pattern, createRefactoringScope(),
+		// the occurrences do not depend on the new name, they are cached when the final conditions are checked again
+		return fSearchCache.search(getOccurrenceSearchElements(), IJavaSearchConstants.ALL_OCCURRENCES, createRefactoringScope(), null,
 			new MethodOccurenceCollector(getMethod().getElementName(), binaryRefs), pm, status);
 	}
 
@@ -19,10 +19,16 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
@@ -43,23 +49,40 @@ import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.SearchRequestor;
 
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringScopeFactory;
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchCache;
 import org.eclipse.jdt.internal.corext.refactoring.base.ReferencesInBinaryContext;
+import org.eclipse.jdt.internal.corext.util.FutureUtil;
 import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
 import org.eclipse.jdt.internal.corext.util.SearchUtils;
 
 public class RippleMethodFinder2 {
 
+	/**
+	 * The minimal number of declaring types for which the overridden methods are searched in
+	 * several threads.
+	 */
+	private static final int MIN_TYPES_PER_THREAD= 256;
+
+	private static int fgMinTypesPerThread= MIN_TYPES_PER_THREAD;
+
+	private static final ThreadFactory THREAD_FACTORY= new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread= new Thread(runnable, "Ripple Method Finder"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
 	private final IMethod fMethod;
 	private List<IMethod> fDeclarations;
 	private ITypeHierarchy fHierarchy;
 	private Map<IType, IMethod> fTypeToMethod;
-	private Set<IType> fRootTypes;
-	private MultiMap<IType, IType> fRootReps;
-	private Map<IType, ITypeHierarchy> fRootHierarchies;
+	private MultiMap<IType, RootHierarchy> fRootReps;
 	private UnionFind fUnionFind;
 
 	private final boolean fExcludeBinaries;
 	private final ReferencesInBinaryContext fBinaryRefs;
+	private final RefactoringSearchCache fSearchCache;
 	private Map<IMethod, SearchMatch> fDeclarationToMatch;
 
 	private static class MultiMap<K, V> {
@@ -78,65 +101,129 @@ public class RippleMethodFinder2 {
 			return fImplementation.get(key);
 		}
 	}
+	/**
+	 * Union-find over a fixed set of types. The types are numbered and the parents are kept in
+	 * an array. Union by rank keeps the trees flat, so that {@link #find(IType)} does not need to
+	 * compress paths. Finding representatives does not modify the structure and can be done
+	 * concurrently.
+	 */
 	private static class UnionFind {
-		HashMap<IType, IType> fElementToRepresentative= new HashMap<IType, IType>();
+		private final IType[] fTypes;
+		private final Map<IType, Integer> fTypeToIndex;
+		private final int[] fParents;
+		private final byte[] fRanks;
+
+		public UnionFind(IType[] types) {
+			fTypes= types;
+			fTypeToIndex= new HashMap<IType, Integer>(types.length * 2);
+			fParents= new int[types.length];
+			fRanks= new byte[types.length];
+			for (int i= 0; i < types.length; i++) {
+				fTypeToIndex.put(types[i], new Integer(i));
+				fParents[i]= i;
+			}
+		}
 
-		public void init(IType type) {
-			fElementToRepresentative.put(type, type);
+		public int indexOf(IType type) {
+			Integer index= fTypeToIndex.get(type);
+			return index != null ? index.intValue() : -1;
 		}
 
-		//path compression:
 		public IType find(IType element) {
-			IType root= element;
-			IType rep= fElementToRepresentative.get(root);
-			while (rep != null && ! rep.equals(root)) {
-				root= rep;
-				rep= fElementToRepresentative.get(root);
-			}
-			if (rep == null)
+			int index= indexOf(element);
+			if (index == -1)
 				return null;
+			return fTypes[find(index)];
+		}
 
-			rep= fElementToRepresentative.get(element);
-			while (! rep.equals(root)) {
-				IType temp= element;
-				element= rep;
-				fElementToRepresentative.put(temp, root);
-				rep= fElementToRepresentative.get(element);
+		private int find(int index) {
+			while (fParents[index] != index)
+				index= fParents[index];
+			return index;
+		}
+
+		public void union(int index1, int index2) {
+			int root1= find(index1);
+			int root2= find(index2);
+			if (root1 == root2)
+				return;
+			if (fRanks[root1] < fRanks[root2]) {
+				fParents[root1]= root2;
+			} else if (fRanks[root1] > fRanks[root2]) {
+				fParents[root2]= root1;
+			} else {
+				fParents[root1]= root2;
+				fRanks[root2]++;
 			}
-			return root;
+		}
+	}
+
+	/**
+	 * The type hierarchy of a root type, created when first needed. The hierarchies of different
+	 * roots can be created concurrently.
+	 */
+	private static class RootHierarchy {
+		private final IType fRoot;
+		private ITypeHierarchy fHierarchy;
+
+		public RootHierarchy(IType root) {
+			fRoot= root;
 		}
 
-//		//straightforward:
-//		public IType find(IType element) {
-//			IType current= element;
-//			IType rep= (IType) fElementToRepresentative.get(current);
-//			while (rep != null && ! rep.equals(current)) {
-//				current= rep;
-//				rep= (IType) fElementToRepresentative.get(current);
-//			}
-//			if (rep == null)
-//				return null;
-//			else
-//				return current;
-//		}
-
-		public void union(IType rep1, IType rep2) {
-			fElementToRepresentative.put(rep1, rep2);
+		public synchronized ITypeHierarchy get(WorkingCopyOwner owner, IProgressMonitor monitor) throws JavaModelException {
+			if (fHierarchy == null)
+				fHierarchy= fRoot.newTypeHierarchy(owner, monitor);
+			return fHierarchy;
 		}
 	}
 
+	/**
+	 * Progress monitor of a type hierarchy created in a worker thread. It only forwards the
+	 * cancelation of the parent monitor, which is not updated from several threads.
+	 */
+	private static class CancelForwardingMonitor extends NullProgressMonitor {
+
+		private final IProgressMonitor fParent;
+
+		public CancelForwardingMonitor(IProgressMonitor parent) {
+			fParent= parent;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || fParent.isCanceled();
+		}
+	}
+
+	private interface IndexedTask {
+		void run(int index) throws CoreException;
+	}
+
 
 	private RippleMethodFinder2(IMethod method, boolean excludeBinaries){
 		fMethod= method;
 		fExcludeBinaries= excludeBinaries;
 		fBinaryRefs= null;
+		fSearchCache= null;
 	}
 
-	private RippleMethodFinder2(IMethod method, ReferencesInBinaryContext binaryRefs) {
+	private RippleMethodFinder2(IMethod method, ReferencesInBinaryContext binaryRefs, RefactoringSearchCache searchCache) {
 		fMethod= method;
 		fExcludeBinaries= true;
 		fDeclarationToMatch= new HashMap<IMethod, SearchMatch>();
 		fBinaryRefs= binaryRefs;
+		fSearchCache= searchCache;
+	}
+
+	/**
+	 * Sets the minimal number of declaring types for which the overridden methods are searched
+	 * in several threads. Used for testing.
+	 *
+	 * @param minTypesPerThread the minimal number of types per thread, or <code>-1</code> to
+	 *   restore the default
+	 */
+	public static void setMinTypesPerThread(int minTypesPerThread) {
+		fgMinTypesPerThread= minTypesPerThread == -1 ? MIN_TYPES_PER_THREAD : minTypesPerThread;
 	}
 
 	public static IMethod[] getRelatedMethods(IMethod method, boolean excludeBinaries, IProgressMonitor pm, WorkingCopyOwner owner) throws CoreException {
@@ -154,11 +241,15 @@ public class RippleMethodFinder2 {
 	}
 
 	public static IMethod[] getRelatedMethods(IMethod method, ReferencesInBinaryContext binaryRefs, IProgressMonitor pm, WorkingCopyOwner owner) throws CoreException {
+		return getRelatedMethods(method, binaryRefs, pm, owner, null);
+	}
+
+	public static IMethod[] getRelatedMethods(IMethod method, ReferencesInBinaryContext binaryRefs, IProgressMonitor pm, WorkingCopyOwner owner, RefactoringSearchCache searchCache) throws CoreException {
 		try {
 			if (! MethodChecks.isVirtual(method))
 				return new IMethod[]{ method };
 
-			return new RippleMethodFinder2(method, binaryRefs).getAllRippleMethods(pm, owner);
+			return new RippleMethodFinder2(method, binaryRefs, searchCache).getAllRippleMethods(pm, owner);
 		} finally{
 			pm.done();
 		}
@@ -181,7 +272,7 @@ public class RippleMethodFinder2 {
 		return rippleMethodsList.toArray(new IMethod[rippleMethodsList.size()]);
 	}
 
-	private IMethod[] findAllRippleMethods(IProgressMonitor pm, WorkingCopyOwner owner) throws CoreException {
+	private IMethod[] findAllRippleMethods(final IProgressMonitor pm, final WorkingCopyOwner owner) throws CoreException {
 		pm.beginTask("", 4); //$NON-NLS-1$
 
 		findAllDeclarations(new SubProgressMonitor(pm, 1), owner);
@@ -193,12 +284,11 @@ public class RippleMethodFinder2 {
 
 		createHierarchyOfDeclarations(new SubProgressMonitor(pm, 1), owner);
 		createTypeToMethod();
-		createUnionFind();
+		createUnionFind(pm);
 		if (pm.isCanceled())
 			throw new OperationCanceledException();
 
 		fHierarchy= null;
-		fRootTypes= null;
 
 		Map<IType, List<IType>> partitioning= new HashMap<IType, List<IType>>();
 		for (Iterator<IType> iter= fTypeToMethod.keySet().iterator(); iter.hasNext();) {
@@ -232,7 +322,7 @@ public class RippleMethodFinder2 {
 
 		List<IMethod> alienDeclarations= new ArrayList<IMethod>(fDeclarations);
 		fDeclarations= null;
-		alienDeclarations.removeAll(relatedMethods);
+		alienDeclarations.removeAll(new HashSet<IMethod>(relatedMethods));
 		List<IType> alienTypes= new ArrayList<IType>();
 		boolean hasAlienInterfaces= false;
 		for (Iterator<IMethod> iter= alienDeclarations.iterator(); iter.hasNext();) {
@@ -248,43 +338,42 @@ public class RippleMethodFinder2 {
 			return relatedMethods.toArray(new IMethod[relatedMethods.size()]);
 
 		//find all subtypes of related types:
-		HashSet<IType> relatedSubTypes= new HashSet<IType>();
+		final HashSet<IType> relatedSubTypes= new HashSet<IType>();
 		List<IType> relatedTypesToProcess= new ArrayList<IType>(relatedTypes);
 		while (relatedTypesToProcess.size() > 0) {
 			//TODO: would only need subtype hierarchies of all top-of-ripple relatedTypesToProcess
-			for (Iterator<IType> iter= relatedTypesToProcess.iterator(); iter.hasNext();) {
-				if (pm.isCanceled())
-					throw new OperationCanceledException();
-				IType relatedType= iter.next();
-				ITypeHierarchy hierarchy= getCachedHierarchy(relatedType, owner, new SubProgressMonitor(pm, 1));
-				if (hierarchy == null)
-					hierarchy= relatedType.newTypeHierarchy(owner, new SubProgressMonitor(pm, 1));
-				IType[] allSubTypes= hierarchy.getAllSubtypes(relatedType);
-				for (int i= 0; i < allSubTypes.length; i++)
-					relatedSubTypes.add(allSubTypes[i]);
-			}
+			//the subtypes of a known subtype are known already:
+			relatedTypesToProcess.removeAll(relatedSubTypes);
+			final IType[] typesToProcess= relatedTypesToProcess.toArray(new IType[relatedTypesToProcess.size()]);
+			final IType[][] subTypes= new IType[typesToProcess.length][];
+			runConcurrently(typesToProcess.length, 1, new IndexedTask() {
+				public void run(int index) throws CoreException {
+					subTypes[index]= getAllSubtypes(typesToProcess[index], owner, pm);
+				}
+			}, pm);
+			for (int i= 0; i < subTypes.length; i++)
+				relatedSubTypes.addAll(Arrays.asList(subTypes[i]));
 			relatedTypesToProcess.clear(); //processed; make sure loop terminates
 
-			HashSet<IType> marriedAlienTypeReps= new HashSet<IType>();
-			for (Iterator<IType> iter= alienTypes.iterator(); iter.hasNext();) {
-				if (pm.isCanceled())
-					throw new OperationCanceledException();
-				IType alienType= iter.next();
-				IMethod alienMethod= fTypeToMethod.get(alienType);
-				ITypeHierarchy hierarchy= getCachedHierarchy(alienType, owner, new SubProgressMonitor(pm, 1));
-				if (hierarchy == null)
-					hierarchy= alienType.newTypeHierarchy(owner, new SubProgressMonitor(pm, 1));
-				IType[] allSubtypes= hierarchy.getAllSubtypes(alienType);
-				for (int i= 0; i < allSubtypes.length; i++) {
-					IType subtype= allSubtypes[i];
-					if (relatedSubTypes.contains(subtype)) {
-						if (JavaModelUtil.isVisibleInHierarchy(alienMethod, subtype.getPackageFragment())) {
-							marriedAlienTypeReps.add(fUnionFind.find(alienType));
-						} else {
-							// not overridden
-						}
+			final IType[] typesToCheck= alienTypes.toArray(new IType[alienTypes.size()]);
+			final boolean[] married= new boolean[typesToCheck.length];
+			runConcurrently(typesToCheck.length, 1, new IndexedTask() {
+				public void run(int index) throws CoreException {
+					IType alienType= typesToCheck[index];
+					IMethod alienMethod= fTypeToMethod.get(alienType);
+					IType[] allSubtypes= getAllSubtypes(alienType, owner, pm);
+					for (int i= 0; i < allSubtypes.length && ! married[index]; i++) {
+						IType subtype= allSubtypes[i];
+						if (relatedSubTypes.contains(subtype))
+							married[index]= JavaModelUtil.isVisibleInHierarchy(alienMethod, subtype.getPackageFragment());
 					}
 				}
+			}, pm);
+
+			HashSet<IType> marriedAlienTypeReps= new HashSet<IType>();
+			for (int i= 0; i < typesToCheck.length; i++) {
+				if (married[i])
+					marriedAlienTypeReps.add(fUnionFind.find(typesToCheck[i]));
 			}
 
 			if (marriedAlienTypeReps.size() == 0)
@@ -297,30 +386,32 @@ public class RippleMethodFinder2 {
 					IType marriedAlienInterfaceType= iterator.next();
 					relatedMethods.add(fTypeToMethod.get(marriedAlienInterfaceType));
 				}
-				alienTypes.removeAll(marriedAlienTypes); //not alien any more
+				alienTypes.removeAll(new HashSet<IType>(marriedAlienTypes)); //not alien any more
 				relatedTypesToProcess.addAll(marriedAlienTypes); //process freshly married types again
 			}
 		}
 
 		fRootReps= null;
-		fRootHierarchies= null;
 		fTypeToMethod= null;
 		fUnionFind= null;
 
 		return relatedMethods.toArray(new IMethod[relatedMethods.size()]);
 	}
 
+	private IType[] getAllSubtypes(IType type, WorkingCopyOwner owner, IProgressMonitor pm) throws JavaModelException {
+		IProgressMonitor monitor= new CancelForwardingMonitor(pm);
+		ITypeHierarchy hierarchy= getCachedHierarchy(type, owner, monitor);
+		if (hierarchy == null)
+			hierarchy= type.newTypeHierarchy(owner, monitor);
+		return hierarchy.getAllSubtypes(type);
+	}
+
 	private ITypeHierarchy getCachedHierarchy(IType type, WorkingCopyOwner owner, IProgressMonitor monitor) throws JavaModelException {
 		IType rep= fUnionFind.find(type);
 		if (rep != null) {
-			Collection<IType> collection= fRootReps.get(rep);
-			for (Iterator<IType> iter= collection.iterator(); iter.hasNext();) {
-				IType root= iter.next();
-				ITypeHierarchy hierarchy= fRootHierarchies.get(root);
-				if (hierarchy == null) {
-					hierarchy= root.newTypeHierarchy(owner, new SubProgressMonitor(monitor, 1));
-					fRootHierarchies.put(root, hierarchy);
-				}
+			Collection<RootHierarchy> collection= fRootReps.get(rep);
+			for (Iterator<RootHierarchy> iter= collection.iterator(); iter.hasNext();) {
+				ITypeHierarchy hierarchy= iter.next().get(owner, monitor);
 				if (hierarchy.contains(type))
 					return hierarchy;
 			}
@@ -347,10 +438,17 @@ public class RippleMethodFinder2 {
 
 		int limitTo = IJavaSearchConstants.DECLARATIONS | IJavaSearchConstants.IGNORE_DECLARING_TYPE | IJavaSearchConstants.IGNORE_RETURN_TYPE;
 		int matchRule= SearchPattern.R_ERASURE_MATCH | SearchPattern.R_CASE_SENSITIVE;
+		int includeMask= IJavaSearchScope.SOURCES | IJavaSearchScope.APPLICATION_LIBRARIES | IJavaSearchScope.SYSTEM_LIBRARIES;
 		SearchPattern pattern= SearchPattern.createPattern(fMethod, limitTo, matchRule);
-		SearchParticipant[] participants= SearchUtils.getDefaultSearchParticipants();
-		IJavaSearchScope scope= RefactoringScopeFactory.createRelatedProjectsScope(fMethod.getJavaProject(), IJavaSearchScope.SOURCES | IJavaSearchScope.APPLICATION_LIBRARIES | IJavaSearchScope.SYSTEM_LIBRARIES);
 		MethodRequestor requestor= new MethodRequestor();
+		if (fSearchCache != null) {
+			IJavaSearchScope scope= fSearchCache.getRelatedProjectsScope(fMethod.getJavaProject(), includeMask);
+			fSearchCache.search(Arrays.<Object> asList(fMethod, new Integer(limitTo), new Integer(matchRule)), pattern, scope, owner, requestor, monitor);
+			return;
+		}
+
+		SearchParticipant[] participants= SearchUtils.getDefaultSearchParticipants();
+		IJavaSearchScope scope= RefactoringScopeFactory.createRelatedProjectsScope(fMethod.getJavaProject(), includeMask);
 		SearchEngine searchEngine= owner != null ? new SearchEngine(owner) : new SearchEngine();
 
 		searchEngine.search(pattern, participants, scope, requestor, monitor);
@@ -373,48 +471,92 @@ public class RippleMethodFinder2 {
 		}
 	}
 
-	private void createUnionFind() throws JavaModelException {
-		fRootTypes= new HashSet<IType>(fTypeToMethod.keySet());
-		fUnionFind= new UnionFind();
-		for (Iterator<IType> iter= fTypeToMethod.keySet().iterator(); iter.hasNext();) {
-			IType type= iter.next();
-			fUnionFind.init(type);
-		}
-		for (Iterator<IType> iter= fTypeToMethod.keySet().iterator(); iter.hasNext();) {
-			IType type= iter.next();
-			uniteWithSupertypes(type, type);
+	private void createUnionFind(IProgressMonitor pm) throws CoreException {
+		final IType[] types= fTypeToMethod.keySet().toArray(new IType[fTypeToMethod.size()]);
+		fUnionFind= new UnionFind(types);
+
+		final IType[][] overriddenTypes= new IType[types.length][];
+		runConcurrently(types.length, fgMinTypesPerThread, new IndexedTask() {
+			public void run(int index) throws CoreException {
+				List<IType> overridden= new ArrayList<IType>();
+				collectOverriddenTypes(types[index], types[index], overridden);
+				overriddenTypes[index]= overridden.toArray(new IType[overridden.size()]);
+			}
+		}, pm);
+
+		Set<IType> rootTypes= new HashSet<IType>(fTypeToMethod.keySet());
+		for (int i= 0; i < types.length; i++) {
+			for (int j= 0; j < overriddenTypes[i].length; j++) {
+				fUnionFind.union(i, fUnionFind.indexOf(overriddenTypes[i][j]));
+				// current type is no root anymore
+				rootTypes.remove(types[i]);
+			}
 		}
-		fRootReps= new MultiMap<IType, IType>();
-		for (Iterator<IType> iter= fRootTypes.iterator(); iter.hasNext();) {
+		fRootReps= new MultiMap<IType, RootHierarchy>();
+		for (Iterator<IType> iter= rootTypes.iterator(); iter.hasNext();) {
 			IType type= iter.next();
-			IType rep= fUnionFind.find(type);
-			if (rep != null)
-				fRootReps.put(rep, type);
+			fRootReps.put(fUnionFind.find(type), new RootHierarchy(type));
 		}
-		fRootHierarchies= new HashMap<IType, ITypeHierarchy>();
 	}
 
-	private void uniteWithSupertypes(IType anchor, IType type) throws JavaModelException {
+	/*
+	 * Collects the nearest supertypes of type whose method is overridden by the method in anchor.
+	 * Only reads the hierarchy, so that the types can be processed concurrently.
+	 */
+	private void collectOverriddenTypes(IType anchor, IType type, List<IType> overridden) throws JavaModelException {
 		IType[] supertypes= fHierarchy.getSupertypes(type);
 		for (int i= 0; i < supertypes.length; i++) {
 			IType supertype= supertypes[i];
-			IType superRep= fUnionFind.find(supertype);
-			if (superRep == null) {
+			IMember superMethod= fTypeToMethod.get(supertype);
+			if (superMethod == null) {
 				//Type doesn't declare method, but maybe supertypes?
-				uniteWithSupertypes(anchor, supertype);
+				collectOverriddenTypes(anchor, supertype, overridden);
 			} else {
 				//check whether method in supertype is really overridden:
-				IMember superMethod= fTypeToMethod.get(supertype);
 				if (JavaModelUtil.isVisibleInHierarchy(superMethod, anchor.getPackageFragment())) {
-					IType rep= fUnionFind.find(anchor);
-					fUnionFind.union(rep, superRep);
-					// current type is no root anymore
-					fRootTypes.remove(anchor);
-					uniteWithSupertypes(supertype, supertype);
+					overridden.add(supertype);
 				} else {
 					//Not overridden -> overriding chain ends here.
 				}
 			}
 		}
 	}
+
+	/*
+	 * Runs the task for all indices from 0 to count - 1. With at least twice minCountPerThread
+	 * indices, the task runs in several threads and must only write state of its index.
+	 */
+	private static void runConcurrently(final int count, int minCountPerThread, final IndexedTask task, final IProgressMonitor pm) throws CoreException {
+		final int threads= Math.min(Runtime.getRuntime().availableProcessors(), count / minCountPerThread);
+		if (threads <= 1) {
+			for (int i= 0; i < count; i++) {
+				if (pm.isCanceled())
+					throw new OperationCanceledException();
+				task.run(i);
+			}
+			return;
+		}
+
+		ExecutorService executor= Executors.newFixedThreadPool(threads, THREAD_FACTORY);
+		try {
+			List<Future<Object>> futures= new ArrayList<Future<Object>>(threads);
+			for (int t= 0; t < threads; t++) {
+				final int first= t;
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws CoreException {
+						for (int i= first; i < count; i+= threads) {
+							if (pm.isCanceled())
+								throw new OperationCanceledException();
+							task.run(i);
+						}
+						return null;
+					}
+				}));
+			}
+			for (int i= 0; i < futures.size(); i++)
+				FutureUtil.getResult(futures.get(i), pm);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
@@ -101,7 +101,6 @@ import org.eclipse.jdt.core.refactoring.participants.JavaParticipantManager;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
 import org.eclipse.jdt.core.search.MethodReferenceMatch;
-import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.search.SearchMatch;
 import org.eclipse.jdt.core.search.SearchPattern;
 
@@ -125,7 +124,7 @@ import org.eclipse.jdt.internal.corext.refactoring.JavaRefactoringDescriptorUtil
 import org.eclipse.jdt.internal.corext.refactoring.ParameterInfo;
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringAvailabilityTester;
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringCoreMessages;
-import org.eclipse.jdt.internal.corext.refactoring.RefactoringScopeFactory;
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchCache;
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchEngine;
 import org.eclipse.jdt.internal.corext.refactoring.ReturnTypeInfo;
 import org.eclipse.jdt.internal.corext.refactoring.SearchResultGroup;
@@ -195,6 +194,7 @@ public class ChangeSignatureProcessor extends RefactoringProcessor implements ID
 	private IDefaultValueAdvisor fDefaultValueAdvisor;
 
 	private ITypeHierarchy fCachedTypeHierarchy= null;
+	private final RefactoringSearchCache fSearchCache= new RefactoringSearchCache();
 	private boolean fDelegateUpdating;
 	private boolean fDelegateDeprecation;
 
@@ -720,6 +720,7 @@ public class ChangeSignatureProcessor extends RefactoringProcessor implements ID
 	public RefactoringStatus checkInitialConditions(IProgressMonitor monitor) throws CoreException {
 		try {
 			monitor.beginTask("", 5); //$NON-NLS-1$
+			fSearchCache.clear();
 			RefactoringStatus result= Checks.checkIfCuBroken(fMethod);
 			if (result.hasFatalError())
 				return result;
@@ -822,7 +823,7 @@ public class ChangeSignatureProcessor extends RefactoringProcessor implements ID
 			String binaryRefsDescription= Messages.format(RefactoringCoreMessages.ReferencesInBinaryContext_ref_in_binaries_description , BasicElementLabels.getJavaElementName(getMethodName()));
 			ReferencesInBinaryContext binaryRefs= new ReferencesInBinaryContext(binaryRefsDescription);
 
-			fRippleMethods= RippleMethodFinder2.getRelatedMethods(fMethod, binaryRefs, new SubProgressMonitor(pm, 1), null);
+			fRippleMethods= RippleMethodFinder2.getRelatedMethods(fMethod, binaryRefs, new SubProgressMonitor(pm, 1), null, fSearchCache);
 			result.merge(checkVarargs());
 			if (result.hasFatalError())
 				return result;
@@ -1571,7 +1572,7 @@ public class ChangeSignatureProcessor extends RefactoringProcessor implements ID
 	}
 
 	private IJavaSearchScope createRefactoringScope()  throws JavaModelException{
-		return RefactoringScopeFactory.create(fMethod, true, false);
+		return fSearchCache.getScope(fMethod, true, false);
 	}
 
 	private SearchResultGroup[] findOccurrences(IProgressMonitor pm, ReferencesInBinaryContext binaryRefs, RefactoringStatus status) throws JavaModelException{
@@ -1590,7 +1591,6 @@ public class ChangeSignatureProcessor extends RefactoringProcessor implements ID
 			}
 		};
 
-		SearchPattern pattern;
 		if (isConstructor) {
 
 //			// workaround for https://bugs.eclipse.org/bugs/show_bug.cgi?id=226151 : don't find binary refs for constructors for now
@@ -1604,18 +1604,15 @@ public class ChangeSignatureProcessor extends RefactoringProcessor implements ID
 
 			// workaround for https://bugs.eclipse.org/bugs/show_bug.cgi?id=226151 : do two searches
 			try {
-				SearchEngine engine= new SearchEngine();
-				engine.search(declPattern, SearchUtils.getDefaultSearchParticipants(), createRefactoringScope(), requestor, new NullProgressMonitor());
-				engine.search(refPattern, SearchUtils.getDefaultSearchParticipants(), createRefactoringScope(), requestor, pm);
+				fSearchCache.search(Arrays.<Object> asList(fMethod, new Integer(IJavaSearchConstants.DECLARATIONS)), declPattern, createRefactoringScope(), null, requestor, new NullProgressMonitor());
+				fSearchCache.search(Arrays.<Object> asList(fMethod, new Integer(IJavaSearchConstants.REFERENCES)), refPattern, createRefactoringScope(), null, requestor, pm);
 			} catch (CoreException e) {
 				throw new JavaModelException(e);
 			}
 			return RefactoringSearchEngine.groupByCu(requestor.getResults(), status);
 
-		} else {
-			pattern= RefactoringSearchEngine.createOrPattern(fRippleMethods, IJavaSearchConstants.ALL_OCCURRENCES);
 		}
-		return RefactoringSearchEngine.search(pattern, createRefactoringScope(), requestor, pm, status);
+		return fSearchCache.search(fRippleMethods, IJavaSearchConstants.ALL_OCCURRENCES, createRefactoringScope(), null, requestor, pm, status);
 	}
 
 	private static String createDeclarationString(ParameterInfo info) {
@@ -211,6 +211,7 @@ public final class JavaUIMessages extends NLS {
 	public static String Spelling_case_label;
 	public static String Spelling_error_case_label;
 	public static String AbstractSpellingDictionary_encodingError;
+	public static String AbstractSpellingDictionary_saveIndex_job;
 
 	public static String JavaAnnotationHover_multipleMarkersAtThisLine;
 	public static String JavaEditor_codeassist_noCompletions;
@@ -11,6 +11,11 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.callhierarchy;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -20,6 +25,7 @@ import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.ui.progress.IDeferredWorkbenchAdapter;
 import org.eclipse.ui.progress.IElementCollector;
 
+import org.eclipse.jdt.internal.corext.callhierarchy.ICallsCollector;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
@@ -61,8 +67,8 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
         this.fProvider = provider;
     }
 
-    private Object getCalls(IProgressMonitor monitor) {
-        return getMethodWrapper().getCalls(monitor);
+    private MethodWrapper[] getCalls(IProgressMonitor monitor, ICallsCollector collector) {
+        return getMethodWrapper().getCalls(monitor, collector);
     }
 
     /*
@@ -72,11 +78,22 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
      *      org.eclipse.jface.progress.IElementCollector,
      *      org.eclipse.core.runtime.IProgressMonitor)
      */
-    public void fetchDeferredChildren(Object object, IElementCollector collector, IProgressMonitor monitor) {
+    public void fetchDeferredChildren(Object object, final IElementCollector collector, final IProgressMonitor monitor) {
     	final DeferredMethodWrapper deferredMethodWrapper= (DeferredMethodWrapper)object;
     	try {
             fProvider.startFetching();
-            collector.add((Object[]) deferredMethodWrapper.getCalls(monitor), monitor);
+            // add the calls to the tree while they are being searched
+            final Set<MethodWrapper> added= new HashSet<MethodWrapper>();
+            MethodWrapper[] calls= deferredMethodWrapper.getCalls(monitor, new ICallsCollector() {
+            	public void add(MethodWrapper[] partialCalls) {
+            		synchronized (added) {
+            			collector.add(getNotAdded(partialCalls, added), monitor);
+            		}
+            	}
+            });
+            synchronized (added) {
+            	collector.add(getNotAdded(calls, added), monitor);
+            }
             collector.done();
         } catch (OperationCanceledException e) {
         	final MethodWrapper methodWrapper= deferredMethodWrapper.getMethodWrapper();
@@ -96,6 +113,23 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
         }
     }
 
+    /**
+     * Returns the calls that have not been added yet and marks them as added.
+     *
+     * @param calls the calls
+     * @param added the calls that have already been added
+     * @return the calls that have not been added
+     * @since 3.8
+     */
+    private static Object[] getNotAdded(MethodWrapper[] calls, Set<MethodWrapper> added) {
+        List<MethodWrapper> result= new ArrayList<MethodWrapper>(calls.length);
+        for (int i= 0; i < calls.length; i++) {
+            if (added.add(calls[i]))
+                result.add(calls[i]);
+        }
+        return result.toArray();
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -39,6 +39,7 @@ class FiltersDialog extends StatusDialog {
     private Button fFilterOnNames;
     private Text fNames;
     private Text fMaxCallDepth;
+    private Button fUseCallerIndex;
 
 
     protected FiltersDialog(Shell parentShell) {
@@ -73,6 +74,7 @@ class FiltersDialog extends StatusDialog {
         createNamesArea(composite);
         new Label(composite, SWT.NONE);         // Filler
         createMaxCallDepthArea(composite);
+        fUseCallerIndex= createCheckbox(composite, CallHierarchyMessages.FiltersDialog_useCallerIndex, true);
 
         updateUIFromFilter();
 
@@ -173,6 +175,7 @@ class FiltersDialog extends StatusDialog {
         CallHierarchyUI.getDefault().setMaxCallDepth(maxCallDepth);
         CallHierarchy.getDefault().setFilters(fNames.getText());
         CallHierarchy.getDefault().setFilterEnabled(fFilterOnNames.getSelection());
+        CallHierarchy.getDefault().setCallerIndexEnabled(fUseCallerIndex.getSelection());
     }
 
     /**
@@ -182,6 +185,7 @@ class FiltersDialog extends StatusDialog {
       fMaxCallDepth.setText(String.valueOf(CallHierarchyUI.getDefault().getMaxCallDepth()));
       fNames.setText(CallHierarchy.getDefault().getFilters());
       fFilterOnNames.setSelection(CallHierarchy.getDefault().isFilterEnabled());
+      fUseCallerIndex.setSelection(CallHierarchy.getDefault().isCallerIndexEnabled());
       updateEnabledState();
     }
 
@@ -47,6 +47,16 @@ public abstract class AbstractCleanUp implements ICleanUp {
 		fOptions= options;
 	}
 
+	/**
+	 * Returns the options of this clean up.
+	 *
+	 * @return the options, or <code>null</code> if they have not been set
+	 * @since 3.8
+	 */
+	public CleanUpOptions getOptions() {
+		return fOptions;
+	}
+
 
 	/*
 	 * @see org.eclipse.jdt.ui.cleanup.ICleanUp#getStepDescriptions()
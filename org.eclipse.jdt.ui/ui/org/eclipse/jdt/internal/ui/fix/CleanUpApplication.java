@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.fix;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.eclipse.jdt.internal.corext.fix.BatchCleanUpRunner;
+import org.eclipse.jdt.internal.corext.fix.BatchCleanUpRunner.ICleanUpListener;
+import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
+import org.eclipse.jdt.internal.corext.util.Messages;
+
+import org.eclipse.jdt.ui.cleanup.CleanUpOptions;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.JavaUIStatus;
+import org.eclipse.jdt.internal.ui.preferences.cleanup.CleanUpProfileVersioner;
+import org.eclipse.jdt.internal.ui.preferences.formatter.ProfileManager.CustomProfile;
+import org.eclipse.jdt.internal.ui.preferences.formatter.ProfileManager.Profile;
+import org.eclipse.jdt.internal.ui.preferences.formatter.ProfileStore;
+
+/**
+ * Application that cleans up Java projects of a workspace without a workbench, for example:
+ *
+ * <pre>
+ * eclipse -nosplash -application org.eclipse.jdt.ui.cleanUp -data &lt;workspace&gt;
+ *     [-profile &lt;file&gt;] [-projects &lt;name&gt;,&lt;name&gt;] [-threads &lt;n&gt;] [-organizeImports] [-report &lt;file&gt;]
+ * </pre>
+ *
+ * The clean up profile is read from a file exported from the Clean Up preference page. Without a
+ * profile, the clean up profile configured for each project is used. All open Java projects are
+ * cleaned up if no projects are given. The time spent on each compilation unit is reported.
+ *
+ * @see BatchCleanUpRunner
+ * @since 3.8
+ */
+public class CleanUpApplication implements IApplication {
+
+	private static final Integer EXIT_ERROR= new Integer(1);
+
+	private static final String ARG_PROFILE= "-profile"; //$NON-NLS-1$
+	private static final String ARG_PROJECTS= "-projects"; //$NON-NLS-1$
+	private static final String ARG_THREADS= "-threads"; //$NON-NLS-1$
+	private static final String ARG_ORGANIZE_IMPORTS= "-organizeImports"; //$NON-NLS-1$
+	private static final String ARG_REPORT= "-report"; //$NON-NLS-1$
+
+	private final NullProgressMonitor fMonitor= new NullProgressMonitor();
+
+	private File fProfile;
+	private String[] fProjectNames;
+	private int fThreads= Runtime.getRuntime().availableProcessors();
+	private boolean fOrganizeImports;
+	private File fReport;
+
+	private int fUnitCount;
+	private int fChangedCount;
+
+	/*
+	 * @see org.eclipse.equinox.app.IApplication#start(org.eclipse.equinox.app.IApplicationContext)
+	 */
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args= (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		if (!parseArguments(args != null ? args : new String[0])) {
+			System.err.println(MultiFixMessages.CleanUpApplication_usage);
+			return EXIT_ERROR;
+		}
+
+		try {
+			Map<String, String> options= null;
+			if (fProfile != null)
+				options= readProfile(fProfile);
+
+			IJavaProject[] projects= getProjects();
+			for (int i= 0; i < projects.length; i++)
+				projects[i].getProject().refreshLocal(IResource.DEPTH_INFINITE, fMonitor);
+
+			final PrintStream report= fReport != null ? new PrintStream(new FileOutputStream(fReport), true) : System.out;
+			try {
+				BatchCleanUpRunner runner= new BatchCleanUpRunner(options, fThreads, new ICleanUpListener() {
+					public void unitCleanedUp(ICompilationUnit unit, boolean changed, long time) {
+						synchronized (report) {
+							fUnitCount++;
+							if (changed)
+								fChangedCount++;
+							report.println(unit.getPath().toString() + '\t' + time + '\t' + (changed ? "changed" : "unchanged")); //$NON-NLS-1$ //$NON-NLS-2$
+						}
+					}
+				});
+				if (fOrganizeImports)
+					runner.setOption(CleanUpConstants.ORGANIZE_IMPORTS, CleanUpOptions.TRUE);
+
+				long start= System.currentTimeMillis();
+				IStatus status= runner.run(projects, fMonitor);
+				long time= System.currentTimeMillis() - start;
+
+				ResourcesPlugin.getWorkspace().save(true, fMonitor);
+
+				System.out.println(Messages.format(MultiFixMessages.CleanUpApplication_summary, new Object[] { new Integer(fUnitCount), new Integer(fChangedCount), new Long(time) }));
+				if (!status.isOK()) {
+					JavaPlugin.log(status);
+					printStatus(status, ""); //$NON-NLS-1$
+				}
+				return status.getSeverity() == IStatus.ERROR ? EXIT_ERROR : EXIT_OK;
+			} finally {
+				if (report != System.out)
+					report.close();
+			}
+		} catch (CoreException e) {
+			printStatus(e.getStatus(), ""); //$NON-NLS-1$
+			return EXIT_ERROR;
+		} catch (FileNotFoundException e) {
+			System.err.println(e.getMessage());
+			return EXIT_ERROR;
+		} catch (OperationCanceledException e) {
+			return EXIT_ERROR;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.equinox.app.IApplication#stop()
+	 */
+	public void stop() {
+		fMonitor.setCanceled(true);
+	}
+
+	private boolean parseArguments(String[] args) {
+		for (int i= 0; i < args.length; i++) {
+			String arg= args[i];
+			if (ARG_ORGANIZE_IMPORTS.equals(arg)) {
+				fOrganizeImports= true;
+			} else if (i + 1 < args.length) {
+				String value= args[++i];
+				if (ARG_PROFILE.equals(arg)) {
+					fProfile= new File(value);
+				} else if (ARG_PROJECTS.equals(arg)) {
+					fProjectNames= value.split(","); //$NON-NLS-1$
+				} else if (ARG_REPORT.equals(arg)) {
+					fReport= new File(value);
+				} else if (ARG_THREADS.equals(arg)) {
+					try {
+						fThreads= Integer.parseInt(value);
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				} else {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private IJavaProject[] getProjects() throws CoreException {
+		IJavaProject[] projects= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects();
+		if (fProjectNames == null)
+			return projects;
+
+		List<IJavaProject> result= new ArrayList<IJavaProject>();
+		for (int i= 0; i < fProjectNames.length; i++) {
+			String name= fProjectNames[i].trim();
+			IJavaProject project= null;
+			for (int j= 0; j < projects.length; j++) {
+				if (projects[j].getElementName().equals(name))
+					project= projects[j];
+			}
+			if (project == null)
+				throw new CoreException(JavaUIStatus.createError(IStatus.ERROR, Messages.format(MultiFixMessages.CleanUpApplication_unknown_project, name), null));
+			result.add(project);
+		}
+		return result.toArray(new IJavaProject[result.size()]);
+	}
+
+	private static Map<String, String> readProfile(File file) throws CoreException {
+		CleanUpProfileVersioner versioner= new CleanUpProfileVersioner();
+		List<Profile> profiles= new ProfileStore(CleanUpConstants.CLEANUP_PROFILES, versioner).readProfilesFromFile(file);
+		if (profiles == null || profiles.isEmpty() || !(profiles.get(0) instanceof CustomProfile))
+			throw new CoreException(JavaUIStatus.createError(IStatus.ERROR, Messages.format(MultiFixMessages.CleanUpApplication_invalid_profile, file.getPath()), null));
+
+		CustomProfile profile= (CustomProfile) profiles.get(0);
+		if (!versioner.getProfileKind().equals(profile.getKind()) || profile.getVersion() > versioner.getCurrentVersion())
+			throw new CoreException(JavaUIStatus.createError(IStatus.ERROR, Messages.format(MultiFixMessages.CleanUpApplication_invalid_profile, file.getPath()), null));
+
+		versioner.update(profile);
+		return profile.getSettings();
+	}
+
+	private static void printStatus(IStatus status, String indent) {
+		System.err.println(indent + status.getMessage());
+		IStatus[] children= status.getChildren();
+		for (int i= 0; i < children.length; i++)
+			printStatus(children[i], indent + "  "); //$NON-NLS-1$
+	}
+}
@@ -19,6 +19,10 @@ public class MultiFixMessages extends NLS {
 	private MultiFixMessages() {
 	}
 
+	public static String CleanUpApplication_invalid_profile;
+	public static String CleanUpApplication_summary;
+	public static String CleanUpApplication_unknown_project;
+	public static String CleanUpApplication_usage;
 	public static String CleanUpRefactoringWizard_CleaningUp11_Title;
 	public static String CleanUpRefactoringWizard_CleaningUpN1_Title;
 	public static String CleanUpRefactoringWizard_CleaningUpNN_Title;
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.javaeditor;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+
+/**
+ * Keeps the ASTs of recently active Java editors so that switching back to an editor
+ * does not require to re-resolve the bindings.
+ * <p>
+ * The cache is bounded by the number of entries and by an estimate of the memory
+ * consumed by the cached ASTs. The least recently used entries are evicted first. The
+ * ASTs are only softly reachable, so the garbage collector may reclaim them when memory
+ * gets low.
+ * </p>
+ * <p>
+ * Each entry remembers the modification stamp of its element at the time the AST was
+ * cached. An entry whose element has been modified since is never returned.
+ * </p>
+ * <p>
+ * This class is <code>public</code> for test purposes only.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class ASTCache {
+
+	/**
+	 * Default maximum number of cached ASTs.
+	 */
+	private static final int DEFAULT_MAX_ENTRIES= 8;
+
+	/**
+	 * Rough number of bytes occupied by a shared AST, including its bindings, per
+	 * character of source.
+	 */
+	private static final int BYTES_PER_SOURCE_CHAR= 40;
+
+	/**
+	 * Default memory budget for all cached ASTs in bytes.
+	 */
+	private static final long DEFAULT_MEMORY_BUDGET= Runtime.getRuntime().maxMemory() / 16;
+
+	/**
+	 * Stamp of elements whose modification stamp cannot be determined.
+	 */
+	private static final long UNKNOWN_STAMP= Long.MIN_VALUE;
+
+
+	private static final class Entry {
+		final SoftReference<CompilationUnit> fAST;
+		final long fModificationStamp;
+		final long fEstimatedSize;
+
+		Entry(CompilationUnit ast, long modificationStamp) {
+			fAST= new SoftReference<CompilationUnit>(ast);
+			fModificationStamp= modificationStamp;
+			fEstimatedSize= estimateSize(ast);
+		}
+	}
+
+
+	private final int fMaxEntries;
+	private final long fMemoryBudget;
+	private final LinkedHashMap<ITypeRoot, Entry> fEntries;
+	private long fEstimatedSize;
+
+
+	/**
+	 * Creates a cache with the default bounds.
+	 */
+	public ASTCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Creates a cache with the given bounds.
+	 *
+	 * @param maxEntries the maximum number of cached ASTs
+	 * @param memoryBudget the memory budget for all cached ASTs in bytes, see
+	 *            {@link #estimateSize(CompilationUnit)}
+	 */
+	public ASTCache(int maxEntries, long memoryBudget) {
+		fMaxEntries= maxEntries;
+		fMemoryBudget= memoryBudget;
+		fEntries= new LinkedHashMap<ITypeRoot, Entry>(maxEntries, 0.75f, true);
+	}
+
+
+	/**
+	 * Caches the given AST for the given Java element, replacing an existing entry. ASTs
+	 * which alone exceed the memory budget or whose element's modification stamp cannot
+	 * be determined are not cached.
+	 *
+	 * @param javaElement the Java element
+	 * @param ast the AST of <code>javaElement</code>
+	 */
+	public synchronized void put(ITypeRoot javaElement, CompilationUnit ast) {
+		remove(javaElement);
+
+		long modificationStamp= getModificationStamp(javaElement);
+		if (modificationStamp == UNKNOWN_STAMP)
+			return;
+
+		Entry entry= new Entry(ast, modificationStamp);
+		if (entry.fEstimatedSize > fMemoryBudget)
+			return;
+
+		fEntries.put(javaElement, entry);
+		fEstimatedSize+= entry.fEstimatedSize;
+
+		Iterator<Entry> iter= fEntries.values().iterator();
+		while (iter.hasNext() && (fEntries.size() > fMaxEntries || fEstimatedSize > fMemoryBudget)) {
+			Entry eldest= iter.next();
+			iter.remove();
+			fEstimatedSize-= eldest.fEstimatedSize;
+		}
+	}
+
+	/**
+	 * Returns the cached AST for the given Java element.
+	 *
+	 * @param javaElement the Java element
+	 * @return the AST or <code>null</code> if none is cached, if it has been reclaimed or if
+	 *         the element has been modified since the AST was cached
+	 */
+	public synchronized CompilationUnit get(ITypeRoot javaElement) {
+		Entry entry= fEntries.get(javaElement);
+		if (entry == null)
+			return null;
+
+		CompilationUnit ast= entry.fAST.get();
+		if (ast == null || entry.fModificationStamp != getModificationStamp(javaElement)) {
+			remove(javaElement);
+			return null;
+		}
+		return ast;
+	}
+
+	/**
+	 * Removes the AST of the given Java element from this cache.
+	 *
+	 * @param javaElement the Java element
+	 */
+	public synchronized void remove(ITypeRoot javaElement) {
+		Entry entry= fEntries.remove(javaElement);
+		if (entry != null)
+			fEstimatedSize-= entry.fEstimatedSize;
+	}
+
+	/**
+	 * Removes all entries whose AST has been reclaimed by the garbage collector.
+	 */
+	public synchronized void expungeStaleEntries() {
+		for (Iterator<Map.Entry<ITypeRoot, Entry>> iter= fEntries.entrySet().iterator(); iter.hasNext();) {
+			Entry entry= iter.next().getValue();
+			if (entry.fAST.get() == null) {
+				iter.remove();
+				fEstimatedSize-= entry.fEstimatedSize;
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public synchronized void clear() {
+		fEntries.clear();
+		fEstimatedSize= 0;
+	}
+
+	/**
+	 * Returns the number of bytes a cached AST is estimated to occupy.
+	 *
+	 * @param ast the AST
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateSize(CompilationUnit ast) {
+		return (long) ast.getLength() * BYTES_PER_SOURCE_CHAR;
+	}
+
+	/**
+	 * Returns a stamp that changes whenever the content of the given Java element changes.
+	 *
+	 * @param javaElement the Java element
+	 * @return the modification stamp or {@link #UNKNOWN_STAMP}
+	 */
+	private static long getModificationStamp(ITypeRoot javaElement) {
+		IResource resource= javaElement.getResource();
+		long stamp= resource != null ? resource.getModificationStamp() : IResource.NULL_STAMP;
+
+		if (!(javaElement instanceof ICompilationUnit) || !((ICompilationUnit) javaElement).isWorkingCopy())
+			return stamp;
+
+		try {
+			IBuffer buffer= javaElement.getBuffer();
+			if (buffer instanceof DocumentAdapter) {
+				IDocument document= ((DocumentAdapter) buffer).getDocument();
+				if (document instanceof IDocumentExtension4)
+					return 31 * stamp + ((IDocumentExtension4) document).getModificationStamp();
+			}
+			if (buffer != null) {
+				String contents= buffer.getContents();
+				if (contents != null)
+					return 31 * stamp + contents.hashCode();
+			}
+		} catch (JavaModelException e) {
+			// fall through: the stamp is unknown
+		}
+		return UNKNOWN_STAMP;
+	}
+}
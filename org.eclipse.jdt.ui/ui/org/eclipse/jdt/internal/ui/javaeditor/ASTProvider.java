@@ -11,6 +11,9 @@
 package org.eclipse.jdt.internal.ui.javaeditor;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
@@ -48,6 +51,8 @@ import org.eclipse.jdt.internal.ui.JavaPlugin;
 /**
  * Provides a shared AST for clients. The shared AST is
  * the AST of the active Java editor's input element.
+ * The ASTs of recently active editors are kept in an {@link ASTCache}
+ * as long as their input elements are not modified.
  *
  * @since 3.0
  */
@@ -108,7 +113,10 @@ public final class ASTProvider {
 				if (DEBUG)
 					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "closed active editor: " + ref.getTitle()); //$NON-NLS-1$ //$NON-NLS-2$
 
+				ITypeRoot closedJavaElement= fActiveJavaElement;
 				activeJavaEditorChanged(null);
+				if (closedJavaElement != null)
+					fASTCache.remove(closedJavaElement);
 			}
 		}
 
@@ -208,15 +216,103 @@ public final class ASTProvider {
 
 	private static final String DEBUG_PREFIX= "ASTProvider > "; //$NON-NLS-1$
 
+	/**
+	 * Interval in milliseconds in which waiting clients check their progress monitor for
+	 * cancellation.
+	 * @since 3.8
+	 */
+	private static final long WAIT_CANCEL_CHECK_INTERVAL= 100;
+
+
+	/**
+	 * An immutable pair of a Java element and its shared AST. Publishing both in a single
+	 * volatile write allows clients to read the shared AST without locking.
+	 *
+	 * @since 3.8
+	 */
+	private static final class SharedAST {
+
+		static final SharedAST NONE= new SharedAST(null, null);
+
+		final ITypeRoot fJavaElement;
+		final CompilationUnit fAST;
+
+		SharedAST(ITypeRoot javaElement, CompilationUnit ast) {
+			fJavaElement= javaElement;
+			fAST= ast;
+		}
+
+		CompilationUnit getAST(ITypeRoot javaElement) {
+			if (fAST != null && javaElement.equals(fJavaElement))
+				return fAST;
+			return null;
+		}
+	}
+
+	/**
+	 * One reconcile of a Java element. Clients waiting for the AST wait for the
+	 * generation they observed to complete, without blocking each other. A generation
+	 * completes with the reconciled AST, or with <code>null</code> if it has been
+	 * superseded or abandoned. The last generation stays registered after completion
+	 * so that a late AST for the same element is still cached.
+	 *
+	 * @since 3.8
+	 */
+	private static final class ReconcileGeneration {
+
+		final ITypeRoot fJavaElement;
+		private final CountDownLatch fDone= new CountDownLatch(1);
+		private volatile CompilationUnit fAST;
+
+		ReconcileGeneration(ITypeRoot javaElement) {
+			fJavaElement= javaElement;
+		}
+
+		boolean isReconciling(ITypeRoot javaElement) {
+			return fDone.getCount() > 0 && fJavaElement.equals(javaElement);
+		}
 
-	private ITypeRoot fReconcilingJavaElement;
-	private ITypeRoot fActiveJavaElement;
-	private CompilationUnit fAST;
+		void complete(CompilationUnit ast) {
+			fAST= ast;
+			fDone.countDown();
+		}
+
+		/**
+		 * Waits until this generation completes.
+		 *
+		 * @param progressMonitor the progress monitor or <code>null</code>
+		 * @return <code>true</code> if this generation has completed, <code>false</code> if
+		 *         the progress monitor has been canceled
+		 * @throws InterruptedException if the current thread has been interrupted
+		 */
+		boolean await(IProgressMonitor progressMonitor) throws InterruptedException {
+			if (progressMonitor == null) {
+				fDone.await();
+				return true;
+			}
+			while (!fDone.await(WAIT_CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+				if (progressMonitor.isCanceled())
+					return false;
+			}
+			return true;
+		}
+
+		CompilationUnit getAST() {
+			return fAST;
+		}
+	}
+
+
+	private volatile ITypeRoot fActiveJavaElement;
+	private volatile SharedAST fSharedAST= SharedAST.NONE;
+	private final AtomicReference<ReconcileGeneration> fReconcileGeneration= new AtomicReference<ReconcileGeneration>();
 	private ActivationListener fActivationListener;
-	private Object fReconcileLock= new Object();
-	private Object fWaitLock= new Object();
-	private volatile boolean fIsReconciling;
 	private IWorkbenchPart fActiveEditor;
+	/**
+	 * The ASTs of recently active editors.
+	 * @since 3.8
+	 */
+	private final ASTCache fASTCache= new ASTCache();
 
 
 	/**
@@ -257,22 +353,29 @@ public final class ASTProvider {
 			javaElement= ((JavaEditor)editor).getInputJavaElement();
 
 		synchronized (this) {
+			SharedAST shared= fSharedAST;
+			if (shared.fAST != null && !shared.fJavaElement.equals(javaElement))
+				fASTCache.put(shared.fJavaElement, shared.fAST);
+			fASTCache.expungeStaleEntries();
+
 			fActiveEditor= editor;
 			fActiveJavaElement= javaElement;
-			cache(null, javaElement);
+
+			CompilationUnit cachedAST= null;
+			if (javaElement != null) {
+				cachedAST= fASTCache.get(javaElement);
+				fASTCache.remove(javaElement);
+			}
+			cache(cachedAST, javaElement);
 		}
 
 		if (DEBUG)
 			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "active editor is: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$
 
-		synchronized (fReconcileLock) {
-			if (fIsReconciling && (fReconcilingJavaElement == null || !fReconcilingJavaElement.equals(javaElement))) {
-				fIsReconciling= false;
-				fReconcilingJavaElement= null;
-			} else if (javaElement == null) {
-				fIsReconciling= false;
-				fReconcilingJavaElement= null;
-			}
+		ReconcileGeneration generation= fReconcileGeneration.get();
+		if (generation != null && (javaElement == null || !generation.fJavaElement.equals(javaElement))) {
+			fReconcileGeneration.compareAndSet(generation, null);
+			generation.complete(null);
 		}
 	}
 
@@ -284,7 +387,7 @@ public final class ASTProvider {
 	 * @return <code>true</code> if the given AST is the cached one
 	 */
 	public boolean isCached(CompilationUnit ast) {
-		return ast != null && fAST == ast;
+		return ast != null && fSharedAST.fAST == ast;
 	}
 
 	/**
@@ -295,7 +398,7 @@ public final class ASTProvider {
 	 * @return <code>true</code> if the given compilation unit is the active one
 	 * @since 3.1
 	 */
-	public synchronized boolean isActive(ICompilationUnit cu) {
+	public boolean isActive(ICompilationUnit cu) {
 		return cu != null && cu.equals(fActiveJavaElement);
 	}
 
@@ -313,27 +416,52 @@ public final class ASTProvider {
 		if (DEBUG)
 			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "about to reconcile: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$
 
-		synchronized (fReconcileLock) {
-			fReconcilingJavaElement= javaElement;
-			fIsReconciling= true;
-		}
+		ReconcileGeneration previous= fReconcileGeneration.getAndSet(new ReconcileGeneration(javaElement));
+		if (previous != null)
+			previous.complete(null); // waiting clients move on to the new generation
+
+		fASTCache.remove(javaElement);
 		cache(null, javaElement);
 	}
 
+	/**
+	 * Starts a reconcile generation for the given element unless one is already running.
+	 *
+	 * @param javaElement the Java element
+	 * @param observed the generation observed by the caller, or <code>null</code>
+	 * @return the new generation or <code>null</code> if another thread started a generation
+	 *         in the meantime
+	 * @since 3.8
+	 */
+	private ReconcileGeneration startReconciling(ITypeRoot javaElement, ReconcileGeneration observed) {
+		ReconcileGeneration generation= new ReconcileGeneration(javaElement);
+		if (!fReconcileGeneration.compareAndSet(observed, generation))
+			return null;
+
+		if (observed != null)
+			observed.complete(null);
+
+		if (DEBUG)
+			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "about to reconcile: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		fASTCache.remove(javaElement);
+		cache(null, javaElement);
+		return generation;
+	}
+
 	/**
 	 * Disposes the cached AST.
 	 */
 	private synchronized void disposeAST() {
 
-		if (fAST == null)
+		SharedAST shared= fSharedAST;
+		if (shared.fAST == null)
 			return;
 
 		if (DEBUG)
-			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "disposing AST: " + toString(fAST) + " for: " + toString(fActiveJavaElement)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "disposing AST: " + toString(shared.fAST) + " for: " + toString(shared.fJavaElement)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		fAST= null;
-
-		cache(null, null);
+		fSharedAST= SharedAST.NONE;
 	}
 
 	/**
@@ -375,24 +503,20 @@ public final class ASTProvider {
 	 */
 	private synchronized void cache(CompilationUnit ast, ITypeRoot javaElement) {
 
-		if (fActiveJavaElement != null && !fActiveJavaElement.equals(javaElement)) {
-			if (DEBUG && javaElement != null) // don't report call from disposeAST()
+		ITypeRoot activeJavaElement= fActiveJavaElement;
+		if (activeJavaElement != null && !activeJavaElement.equals(javaElement)) {
+			if (DEBUG && javaElement != null)
 				System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "don't cache AST for inactive: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$
 			return;
 		}
 
-		if (DEBUG && (javaElement != null || ast != null)) // don't report call from disposeAST()
+		if (DEBUG && (javaElement != null || ast != null))
 			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "caching AST: " + toString(ast) + " for: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		if (fAST != null)
-			disposeAST();
-
-		fAST= ast;
+		disposeAST();
 
-		// Signal AST change
-		synchronized (fWaitLock) {
-			fWaitLock.notifyAll();
-		}
+		if (ast != null && javaElement != null)
+			fSharedAST= new SharedAST(javaElement, ast);
 	}
 
 	/**
@@ -400,6 +524,11 @@ public final class ASTProvider {
 	 * <p>
 	 * Clients are not allowed to modify the AST and must synchronize all access to its nodes.
 	 * </p>
+	 * <p>
+	 * A cached AST is returned without locking. Clients that have to wait for the
+	 * reconciler wait for the completion of the current reconcile generation and do not
+	 * block each other.
+	 * </p>
 	 *
 	 * @param input the Java element, must not be <code>null</code>
 	 * @param waitFlag {@link SharedASTProvider#WAIT_YES}, {@link SharedASTProvider#WAIT_NO} or
@@ -414,58 +543,61 @@ public final class ASTProvider {
 		if (progressMonitor != null && progressMonitor.isCanceled())
 			return null;
 
-		boolean isActiveElement;
-		synchronized (this) {
-			isActiveElement= input.equals(fActiveJavaElement);
-			if (isActiveElement) {
-				if (fAST != null) {
-					if (DEBUG)
-						System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "returning cached AST:" + toString(fAST) + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		boolean isActiveElement= input.equals(fActiveJavaElement);
+		CompilationUnit sharedAST= fSharedAST.getAST(input);
+		if (isActiveElement) {
+			if (sharedAST != null) {
+				if (DEBUG)
+					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "returning cached AST:" + toString(sharedAST) + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-					return fAST;
-				}
-				if (waitFlag == SharedASTProvider.WAIT_NO) {
-					if (DEBUG)
-						System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "returning null (WAIT_NO) for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
+				return sharedAST;
+			}
+			if (waitFlag == SharedASTProvider.WAIT_NO) {
+				if (DEBUG)
+					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "returning null (WAIT_NO) for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
 
-					return null;
+				return null;
 
-				}
+			}
+		} else {
+			CompilationUnit cachedAST= fASTCache.get(input);
+			if (cachedAST != null) {
+				if (DEBUG)
+					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "returning AST of recently active editor:" + toString(cachedAST) + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+				return cachedAST;
 			}
 		}
 
-		final boolean canReturnNull= waitFlag == SharedASTProvider.WAIT_NO || (waitFlag == SharedASTProvider.WAIT_ACTIVE_ONLY && !(isActiveElement && fAST == null));
-		boolean isReconciling= false;
-		final ITypeRoot activeElement;
+		final boolean canReturnNull= waitFlag == SharedASTProvider.WAIT_NO || (waitFlag == SharedASTProvider.WAIT_ACTIVE_ONLY && !isActiveElement);
+		ReconcileGeneration waitFor= null;
+		ReconcileGeneration ownGeneration= null;
 		if (isActiveElement) {
-			synchronized (fReconcileLock) {
-				activeElement= fReconcilingJavaElement;
-				isReconciling= isReconciling(input);
-				if (!isReconciling && !canReturnNull)
-					aboutToBeReconciled(input);
+			ReconcileGeneration generation= fReconcileGeneration.get();
+			if (generation != null && generation.isReconciling(input)) {
+				waitFor= generation;
+			} else if (!canReturnNull) {
+				ownGeneration= startReconciling(input, generation);
+				if (ownGeneration == null)
+					return getAST(input, waitFlag, progressMonitor); // another client started a generation, wait for that one
 			}
-		} else
-			activeElement= null;
+		}
 
-		if (isReconciling) {
+		if (waitFor != null) {
 			try {
-				// Wait for AST
-				synchronized (fWaitLock) {
-					if (isReconciling(input)) {
-						if (DEBUG)
-							System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "waiting for AST for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
-						fWaitLock.wait();
-					}
-				}
+				if (DEBUG)
+					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "waiting for AST for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
+
+				if (!waitFor.await(progressMonitor))
+					return null;
 
 				// Check whether active element is still valid
-				synchronized (this) {
-					if (activeElement == fActiveJavaElement && fAST != null) {
-						if (DEBUG)
-							System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "...got AST: " + toString(fAST) + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				CompilationUnit ast= waitFor.getAST();
+				if (ast != null && input.equals(fActiveJavaElement)) {
+					if (DEBUG)
+						System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "...got AST: " + toString(ast) + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-						return fAST;
-					}
+					return ast;
 				}
 				return getAST(input, waitFlag, progressMonitor);
 			} catch (InterruptedException e) {
@@ -484,13 +616,14 @@ public final class ASTProvider {
 					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "Ignore created AST for: " + input.getElementName() + " - operation has been cancelled"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		} finally {
-			if (isActiveElement) {
-				if (fAST != null) {
+			if (ownGeneration != null) {
+				CompilationUnit reconciledAST= fSharedAST.getAST(input);
+				if (reconciledAST != null) {
 					// in the meantime, reconcile created a new AST. Return that one
 					if (DEBUG)
 						System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "Ignore created AST for " + input.getElementName() + " - AST from reconciler is newer"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-					reconciled(fAST, input, null);
-					return fAST;
+					reconciled(reconciledAST, input, null);
+					return reconciledAST;
 				} else
 					reconciled(ast, input, null);
 			}
@@ -498,17 +631,6 @@ public final class ASTProvider {
 		return ast;
 	}
 
-	/**
-	 * Tells whether the given Java element is the one
-	 * reported as currently being reconciled.
-	 *
-	 * @param javaElement the Java element
-	 * @return <code>true</code> if reported as currently being reconciled
-	 */
-	private boolean isReconciling(ITypeRoot javaElement) {
-		return javaElement != null && javaElement.equals(fReconcilingJavaElement) && fIsReconciling;
-	}
-
 	/**
 	 * Creates a new compilation unit AST.
 	 *
@@ -587,15 +709,16 @@ public final class ASTProvider {
 		fActivationListener= null;
 
 		disposeAST();
+		fASTCache.clear();
 
-		synchronized (fWaitLock) {
-			fWaitLock.notifyAll();
-		}
+		ReconcileGeneration generation= fReconcileGeneration.getAndSet(null);
+		if (generation != null)
+			generation.complete(null);
 	}
 
 	/**
 	 * Update internal structures after reconcile.
-	 * 
+	 *
 	 * @param ast the compilation unit AST or <code>null</code> if the working copy was consistent
 	 *            or reconciliation has been cancelled
 	 * @param javaElement the Java element for which the AST was built
@@ -607,22 +730,20 @@ public final class ASTProvider {
 		if (DEBUG)
 			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "reconciled: " + toString(javaElement) + ", AST: " + toString(ast)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		synchronized (fReconcileLock) {
-			fIsReconciling= false;
-			if (javaElement == null || !javaElement.equals(fReconcilingJavaElement)) {
+		ReconcileGeneration generation= fReconcileGeneration.get();
+		if (generation == null || javaElement == null || !javaElement.equals(generation.fJavaElement)) {
 
-				if (DEBUG)
-					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "  ignoring AST of out-dated editor"); //$NON-NLS-1$ //$NON-NLS-2$
+			if (DEBUG)
+				System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "  ignoring AST of out-dated editor"); //$NON-NLS-1$ //$NON-NLS-2$
 
-				// Signal - threads might wait for wrong element
-				synchronized (fWaitLock) {
-					fWaitLock.notifyAll();
-				}
+			// Signal - threads might wait for wrong element
+			if (generation != null)
+				generation.complete(null);
 
-				return;
-			}
-			cache(ast, javaElement);
+			return;
 		}
+		cache(ast, javaElement);
+		generation.complete(ast);
 	}
 
 	private static String getThreadName() {
@@ -22,7 +22,9 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.TextPresentation;
@@ -32,12 +34,18 @@ import org.eclipse.ui.IWorkbenchPartSite;
 
 import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.BooleanLiteral;
 import org.eclipse.jdt.core.dom.CharacterLiteral;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
@@ -222,6 +230,169 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		}
 	}
 
+	/**
+	 * The ranges of the declarations of an AST outside of method and initializer bodies. Used
+	 * to verify that an edit did not change anything but the inside of a single body, since
+	 * only then the highlightings outside of that body cannot have changed.
+	 *
+	 * @since 3.8
+	 */
+	private static class DeclarationSkeleton {
+
+		/** The length of the source */
+		private final int fLength;
+		/** Offset and length of each declaration and body, in visiting order */
+		private int[] fRanges= new int[64];
+		/** The number of used elements of {@link #fRanges} */
+		private int fSize;
+		/** The method and initializer bodies */
+		private final List<Block> fBodies= new ArrayList<Block>();
+
+		public DeclarationSkeleton(CompilationUnit ast) {
+			fLength= ast.getStartPosition() + ast.getLength();
+			addDeclarations(ast.types());
+		}
+
+		private void addDeclarations(List<?> declarations) {
+			for (int i= 0, n= declarations.size(); i < n; i++) {
+				BodyDeclaration declaration= (BodyDeclaration) declarations.get(i);
+				addRange(declaration);
+				if (declaration instanceof AbstractTypeDeclaration) {
+					if (declaration instanceof EnumDeclaration)
+						addDeclarations(((EnumDeclaration) declaration).enumConstants());
+					addDeclarations(((AbstractTypeDeclaration) declaration).bodyDeclarations());
+				} else if (declaration instanceof MethodDeclaration) {
+					addBody(((MethodDeclaration) declaration).getBody());
+				} else if (declaration instanceof Initializer) {
+					addBody(((Initializer) declaration).getBody());
+				}
+			}
+		}
+
+		private void addBody(Block body) {
+			if (body != null) {
+				addRange(body);
+				fBodies.add(body);
+			}
+		}
+
+		private void addRange(ASTNode node) {
+			if (fSize + 2 > fRanges.length) {
+				int[] ranges= new int[fRanges.length * 2];
+				System.arraycopy(fRanges, 0, ranges, 0, fSize);
+				fRanges= ranges;
+			}
+			fRanges[fSize++]= node.getStartPosition();
+			fRanges[fSize++]= node.getLength();
+		}
+
+		public int getLength() {
+			return fLength;
+		}
+
+		/**
+		 * Tells whether this skeleton is the given previous skeleton after the source between
+		 * <code>start</code> and the last <code>endDistance</code> characters has been
+		 * replaced.
+		 *
+		 * @param previous the skeleton of the source before the change
+		 * @param start the start of the changed range
+		 * @param endDistance the distance of the end of the changed range to the end of the source
+		 * @return <code>true</code> iff all declarations are unchanged, apart from being moved or
+		 *         resized by the change
+		 */
+		public boolean isChangedFrom(DeclarationSkeleton previous, int start, int endDistance) {
+			int oldEnd= previous.fLength - endDistance;
+			int delta= fLength - previous.fLength;
+			if (oldEnd < start || oldEnd + delta < start || fSize != previous.fSize)
+				return false;
+
+			for (int i= 0; i < fSize; i+= 2) {
+				int offset= previous.fRanges[i];
+				int length= previous.fRanges[i + 1];
+				if (offset + length <= start) {
+					// before the change
+				} else if (offset >= oldEnd) {
+					offset+= delta;
+				} else if (offset <= start && offset + length >= oldEnd) {
+					length+= delta;
+				} else {
+					return false;
+				}
+				if (fRanges[i] != offset || fRanges[i + 1] != length)
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the method or initializer body that contains the given range without
+		 * touching its braces.
+		 *
+		 * @param start the start of the range
+		 * @param end the end of the range
+		 * @return the body or <code>null</code> if none
+		 */
+		public Block findBody(int start, int end) {
+			for (int i= 0, n= fBodies.size(); i < n; i++) {
+				Block body= fBodies.get(i);
+				int offset= body.getStartPosition();
+				if (offset < start && end < offset + body.getLength())
+					return body;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Tracks the range of the document that has been modified since the last reconcile.
+	 *
+	 * @since 3.8
+	 */
+	private class DirtyRangeTracker implements IDocumentListener, ITextInputListener {
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			int start= event.getOffset();
+			int endDistance= event.getDocument().getLength() - start - event.getLength();
+			synchronized (fDirtyLock) {
+				fDirtyStart= Math.min(fDirtyStart, start);
+				fDirtyEndDistance= Math.min(fDirtyEndDistance, endDistance);
+			}
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentChanged(DocumentEvent event) {
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentAboutToBeChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+			if (oldInput != null)
+				oldInput.removeDocumentListener(this);
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+			invalidateIncrementalState();
+			if (newInput != null)
+				newInput.addDocumentListener(this);
+		}
+	}
+
+	/**
+	 * Marks an unknown start or end distance of a dirty range.
+	 * @since 3.8
+	 */
+	private static final int NONE= Integer.MAX_VALUE;
+
 	/** Position collector */
 	private PositionCollector fCollector= new PositionCollector();
 
@@ -272,11 +443,50 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 */
 	private Highlighting fJobDeprecatedMemberHighlighting;
 
+	/**
+	 * The dirty range tracker, <code>null</code> if the editor is not editable.
+	 * @since 3.8
+	 */
+	private DirtyRangeTracker fDirtyRangeTracker;
+	/**
+	 * Lock for the dirty ranges, the base skeleton and the generation.
+	 * @since 3.8
+	 */
+	private final Object fDirtyLock= new Object();
+	/**
+	 * Start and end distance of the range modified since the last {@link #aboutToBeReconciled()}.
+	 * @since 3.8
+	 */
+	private int fDirtyStart= NONE, fDirtyEndDistance= NONE;
+	/**
+	 * Start and end distance of the range modified since the source of {@link #fBaseSkeleton}.
+	 * @since 3.8
+	 */
+	private int fUnappliedStart= NONE, fUnappliedEndDistance= NONE;
+	/**
+	 * The skeleton of the AST whose highlightings have last been applied to the presenter,
+	 * <code>null</code> if the next reconcile has to visit the whole AST.
+	 * @since 3.8
+	 */
+	private DeclarationSkeleton fBaseSkeleton;
+	/**
+	 * The generation of the current reconcile. Applied presentations of older generations do
+	 * not update the base skeleton.
+	 * @since 3.8
+	 */
+	private int fGeneration;
+
 	/*
 	 * @see org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener#aboutToBeReconciled()
 	 */
 	public void aboutToBeReconciled() {
-		// Do nothing
+		// the AST will contain all modifications so far
+		synchronized (fDirtyLock) {
+			fUnappliedStart= Math.min(fUnappliedStart, fDirtyStart);
+			fUnappliedEndDistance= Math.min(fUnappliedEndDistance, fDirtyEndDistance);
+			fDirtyStart= NONE;
+			fDirtyEndDistance= NONE;
+		}
 	}
 
 	/*
@@ -290,6 +500,14 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			else
 				fIsReconciling= true;
 		}
+		int dirtyStart, dirtyEndDistance, generation;
+		DeclarationSkeleton baseSkeleton;
+		synchronized (fDirtyLock) {
+			dirtyStart= fUnappliedStart;
+			dirtyEndDistance= fUnappliedEndDistance;
+			baseSkeleton= fBaseSkeleton;
+			generation= ++fGeneration;
+		}
 		fJobPresenter= fPresenter;
 		fJobSemanticHighlightings= fSemanticHighlightings;
 		fJobHighlightings= fHighlightings;
@@ -303,11 +521,12 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			if (ast == null || fJobPresenter.isCanceled())
 				return;
 
-			ASTNode[] subtrees= getAffectedSubtrees(ast);
+			DeclarationSkeleton skeleton= new DeclarationSkeleton(ast);
+			ASTNode[] subtrees= forced ? new ASTNode[] { ast } : getAffectedSubtrees(ast, skeleton, baseSkeleton, dirtyStart, dirtyEndDistance);
 			if (subtrees.length == 0)
 				return;
 
-			startReconcilingPositions();
+			startReconcilingPositions(subtrees);
 
 			if (!fJobPresenter.isCanceled()) {
 				fJobDeprecatedMemberHighlighting= null;
@@ -326,7 +545,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 				textPresentation= fJobPresenter.createPresentation(fAddedPositions, fRemovedPositions);
 
 			if (!fJobPresenter.isCanceled())
-				updatePresentation(textPresentation, fAddedPositions, fRemovedPositions);
+				updatePresentation(textPresentation, fAddedPositions, fRemovedPositions, skeleton, generation);
 
 			stopReconcilingPositions();
 		} finally {
@@ -341,32 +560,76 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	}
 
 	/**
-	 * @param node Root node
+	 * Returns the subtrees that may be affected by the document changes since the highlightings
+	 * were last applied.
+	 * <p>
+	 * Changes inside a single method or initializer body cannot affect the highlightings
+	 * outside of that body, so only the body has to be visited if the declarations of the AST
+	 * are unchanged apart from being moved or resized by the change. In all other cases, e.g.
+	 * if a field or a signature has been modified and bindings elsewhere may have changed, the
+	 * whole AST is visited.
+	 * </p>
+	 *
+	 * @param ast the AST
+	 * @param skeleton the skeleton of the AST
+	 * @param baseSkeleton the skeleton of the AST whose highlightings are currently applied, or
+	 *            <code>null</code> if unknown
+	 * @param dirtyStart the start of the range changed since the applied AST
+	 * @param dirtyEndDistance the distance of the end of the changed range to the end of the
+	 *            document
 	 * @return Array of subtrees that may be affected by past document changes
 	 */
-	private ASTNode[] getAffectedSubtrees(ASTNode node) {
-		// TODO: only return nodes which are affected by document changes - would require an 'anchor' concept for taking distant effects into account
-		return new ASTNode[] { node };
+	private ASTNode[] getAffectedSubtrees(CompilationUnit ast, DeclarationSkeleton skeleton, DeclarationSkeleton baseSkeleton, int dirtyStart, int dirtyEndDistance) {
+		if (baseSkeleton != null && dirtyStart != NONE && skeleton.isChangedFrom(baseSkeleton, dirtyStart, dirtyEndDistance)) {
+			Block body= skeleton.findBody(dirtyStart, skeleton.getLength() - dirtyEndDistance);
+			if (body != null)
+				return new ASTNode[] { body };
+		}
+		return new ASTNode[] { ast };
 	}
 
 	/**
 	 * Start reconciling positions.
+	 *
+	 * @param subtrees the AST subtrees, only positions covered by them are reconciled
 	 */
-	private void startReconcilingPositions() {
+	private void startReconcilingPositions(ASTNode[] subtrees) {
 		fJobPresenter.addAllPositions(fRemovedPositions);
+		if (subtrees.length != 1 || !(subtrees[0] instanceof CompilationUnit)) {
+			List<Position> coveredPositions= new ArrayList<Position>();
+			for (int i= 0, n= fRemovedPositions.size(); i < n; i++) {
+				Position position= fRemovedPositions.get(i);
+				if (isCovered(position, subtrees))
+					coveredPositions.add(position);
+			}
+			fRemovedPositions= coveredPositions;
+		}
 		fNOfRemovedPositions= fRemovedPositions.size();
 	}
 
+	/**
+	 * Tells whether the given position lies within one of the given subtrees.
+	 *
+	 * @param position the position
+	 * @param subtrees the AST subtrees
+	 * @return <code>true</code> iff the position is covered by a subtree
+	 * @since 3.8
+	 */
+	private static boolean isCovered(Position position, ASTNode[] subtrees) {
+		for (int i= 0; i < subtrees.length; i++) {
+			int offset= subtrees[i].getStartPosition();
+			if (offset <= position.getOffset() && position.getOffset() + position.getLength() <= offset + subtrees[i].getLength())
+				return true;
+		}
+		return false;
+	}
+
 	/**
 	 * Reconcile positions based on the AST subtrees
 	 *
 	 * @param subtrees the AST subtrees
 	 */
 	private void reconcilePositions(ASTNode[] subtrees) {
-		// FIXME: remove positions not covered by subtrees
-
-
-
 		for (int i= 0, n= subtrees.length; i < n; i++)
 			subtrees[i].accept(fCollector);
 		List<Position> oldPositions= fRemovedPositions;
@@ -385,11 +648,25 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @param textPresentation the text presentation
 	 * @param addedPositions the added positions
 	 * @param removedPositions the removed positions
+	 * @param skeleton the skeleton of the reconciled AST
+	 * @param generation the generation of the reconcile
 	 */
-	private void updatePresentation(TextPresentation textPresentation, List<Position> addedPositions, List<Position> removedPositions) {
-		Runnable runnable= fJobPresenter.createUpdateRunnable(textPresentation, addedPositions, removedPositions);
-		if (runnable == null)
+	private void updatePresentation(TextPresentation textPresentation, List<Position> addedPositions, List<Position> removedPositions, final DeclarationSkeleton skeleton, final int generation) {
+		final SemanticHighlightingPresenter presenter= fJobPresenter;
+		final Runnable updateRunnable= presenter.createUpdateRunnable(textPresentation, addedPositions, removedPositions);
+		if (updateRunnable == null) {
+			if (addedPositions.isEmpty() && removedPositions.isEmpty() && !presenter.isCanceled())
+				presentationApplied(skeleton, generation);
 			return;
+		}
+
+		Runnable runnable= new Runnable() {
+			public void run() {
+				updateRunnable.run();
+				if (!presenter.isCanceled())
+					presentationApplied(skeleton, generation);
+			}
+		};
 
 		JavaEditor editor= fEditor;
 		if (editor == null)
@@ -410,6 +687,40 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		display.asyncExec(runnable);
 	}
 
+	/**
+	 * Remembers that the highlightings of the given reconcile have been applied, so that the
+	 * next reconcile only has to consider the changes made since then.
+	 *
+	 * @param skeleton the skeleton of the reconciled AST
+	 * @param generation the generation of the reconcile
+	 * @since 3.8
+	 */
+	private void presentationApplied(DeclarationSkeleton skeleton, int generation) {
+		synchronized (fDirtyLock) {
+			if (generation == fGeneration) {
+				fBaseSkeleton= skeleton;
+				fUnappliedStart= NONE;
+				fUnappliedEndDistance= NONE;
+			}
+		}
+	}
+
+	/**
+	 * Forces the next reconcile to visit the whole AST.
+	 *
+	 * @since 3.8
+	 */
+	private void invalidateIncrementalState() {
+		synchronized (fDirtyLock) {
+			fBaseSkeleton= null;
+			fDirtyStart= NONE;
+			fDirtyEndDistance= NONE;
+			fUnappliedStart= NONE;
+			fUnappliedEndDistance= NONE;
+			fGeneration++;
+		}
+	}
+
 	/**
 	 * Stop reconciling positions.
 	 */
@@ -436,6 +747,11 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		fSourceViewer= sourceViewer;
 
 		if (fEditor instanceof CompilationUnitEditor) {
+			fDirtyRangeTracker= new DirtyRangeTracker();
+			fSourceViewer.addTextInputListener(fDirtyRangeTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.addDocumentListener(fDirtyRangeTracker);
 			((CompilationUnitEditor)fEditor).addReconcileListener(this);
 		} else if (fEditor == null) {
 			fSourceViewer.addTextInputListener(this);
@@ -458,6 +774,15 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			fEditor= null;
 		}
 
+		if (fDirtyRangeTracker != null) {
+			fSourceViewer.removeTextInputListener(fDirtyRangeTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.removeDocumentListener(fDirtyRangeTracker);
+			fDirtyRangeTracker= null;
+		}
+		invalidateIncrementalState();
+
 		fSourceViewer= null;
 		fSemanticHighlightings= null;
 		fHighlightings= null;
@@ -534,6 +859,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @since 3.2
 	 */
 	public void refresh() {
+		invalidateIncrementalState();
 		scheduleJob();
 	}
 }
@@ -10,13 +10,27 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.text.spelling;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.core.runtime.AssertionFailedException;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextUtilities;
 
 import org.eclipse.ui.texteditor.spelling.ISpellingProblemCollector;
@@ -25,15 +39,113 @@ import org.eclipse.jdt.ui.PreferenceConstants;
 import org.eclipse.jdt.ui.text.IJavaPartitions;
 
 import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellChecker;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellEvent;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellEventListener;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.RankedWordProposal;
 
 
 /**
  * Java spelling engine
+ * <p>
+ * The partitions are checked independently of each other, in parallel if there is enough
+ * text to check. Partitions whose content has already been checked are not checked again,
+ * their events are taken from a {@link SpellCheckResultCache}.
+ * </p>
  *
  * @since 3.1
  */
 public class JavaSpellingEngine extends SpellingEngine {
 
+	/**
+	 * Collects the spell events of a partition.
+	 *
+	 * @since 3.8
+	 */
+	private static class SpellEventCollector implements ISpellEventListener {
+
+		private final List<ISpellEvent> fEvents= new ArrayList<ISpellEvent>();
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellEventListener#handle(org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellEvent)
+		 */
+		public void handle(ISpellEvent event) {
+			fEvents.add(event);
+		}
+
+		public ISpellEvent[] getEvents() {
+			return fEvents.toArray(new ISpellEvent[fEvents.size()]);
+		}
+	}
+
+	/**
+	 * Spell event of a partition, translated to document offsets.
+	 *
+	 * @since 3.8
+	 */
+	private static class PartitionSpellEvent implements ISpellEvent {
+
+		private final ISpellEvent fEvent;
+
+		private final int fOffset;
+
+		public PartitionSpellEvent(ISpellEvent event, int offset) {
+			fEvent= event;
+			fOffset= offset;
+		}
+
+		public int getBegin() {
+			return fEvent.getBegin() + fOffset;
+		}
+
+		public int getEnd() {
+			return fEvent.getEnd() + fOffset;
+		}
+
+		public Set<RankedWordProposal> getProposals() {
+			return fEvent.getProposals();
+		}
+
+		public String getWord() {
+			return fEvent.getWord();
+		}
+
+		public boolean isMatch() {
+			return fEvent.isMatch();
+		}
+
+		public boolean isStart() {
+			return fEvent.isStart();
+		}
+	}
+
+	/**
+	 * The minimal number of characters to check before the partitions are checked in parallel.
+	 *
+	 * @since 3.8
+	 */
+	private static final int PARALLEL_THRESHOLD= 8 * 1024;
+
+	/**
+	 * The maximal number of threads checking partitions in addition to the reconciler thread.
+	 *
+	 * @since 3.8
+	 */
+	private static final int MAX_THREADS= Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+	/**
+	 * The results of already checked partitions.
+	 *
+	 * @since 3.8
+	 */
+	private static final SpellCheckResultCache fgCache= new SpellCheckResultCache();
+
+	/**
+	 * The executor checking partitions in parallel, created on demand.
+	 *
+	 * @since 3.8
+	 */
+	private static ExecutorService fgExecutor;
+
 
 	/*
 	 * @see org.eclipse.jdt.internal.ui.text.spelling.SpellingEngine#check(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IRegion[], org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellChecker, org.eclipse.ui.texteditor.spelling.ISpellingProblemCollector, org.eclipse.core.runtime.IProgressMonitor)
@@ -41,32 +153,210 @@ public class JavaSpellingEngine extends SpellingEngine {
 	@Override
 	protected void check(IDocument document, IRegion[] regions, ISpellChecker checker, ISpellingProblemCollector collector, IProgressMonitor monitor) {
 		SpellEventListener listener= new SpellEventListener(collector, document);
+		int threshold= listener.getRemainingProblems();
+		if (threshold == 0)
+			return;
+
 		boolean isIgnoringJavaStrings= PreferenceConstants.getPreferenceStore().getBoolean(PreferenceConstants.SPELLING_IGNORE_JAVA_STRINGS);
+		long stamp= checker.getStamp();
+		fgCache.validate(checker, stamp);
+
+		List<ITypedRegion> partitions= new ArrayList<ITypedRegion>();
+		List<String> contents= new ArrayList<String>();
+		String delimiter;
 		try {
 			for (int i= 0; i < regions.length; i++) {
 				IRegion region= regions[i];
-				ITypedRegion[] partitions= TextUtilities.computePartitioning(document, IJavaPartitions.JAVA_PARTITIONING, region.getOffset(), region.getLength(), false);
-				for (int index= 0; index < partitions.length; index++) {
-					if (monitor != null && monitor.isCanceled())
-						return;
-
-					if (listener.isProblemsThresholdReached())
-						return;
-
-					ITypedRegion partition= partitions[index];
+				ITypedRegion[] typedRegions= TextUtilities.computePartitioning(document, IJavaPartitions.JAVA_PARTITIONING, region.getOffset(), region.getLength(), false);
+				for (int index= 0; index < typedRegions.length; index++) {
+					ITypedRegion partition= typedRegions[index];
 					final String type= partition.getType();
 
 					if (isIgnoringJavaStrings && type.equals(IJavaPartitions.JAVA_STRING))
 						continue;
 
-					if (!type.equals(IDocument.DEFAULT_CONTENT_TYPE) && !type.equals(IJavaPartitions.JAVA_CHARACTER))
-						checker.execute(listener, new SpellCheckIterator(document, partition, checker.getLocale()));
+					if (!type.equals(IDocument.DEFAULT_CONTENT_TYPE) && !type.equals(IJavaPartitions.JAVA_CHARACTER)) {
+						partitions.add(partition);
+						contents.add(document.get(partition.getOffset(), partition.getLength()));
+					}
 				}
 			}
+			delimiter= TextUtilities.getDefaultLineDelimiter(document);
 		} catch (BadLocationException x) {
 			// ignore: the document has been changed in another thread and will be checked again
+			return;
 		} catch (AssertionFailedException x) {
 			// ignore: the document has been changed in another thread and will be checked again
+			return;
+		}
+
+		ISpellEvent[][] results= new ISpellEvent[partitions.size()][];
+		List<Integer> unchecked= new ArrayList<Integer>();
+		int uncheckedLength= 0;
+		int cachedProblems= 0;
+		for (int i= 0; i < results.length; i++) {
+			results[i]= fgCache.get(contents.get(i));
+			if (results[i] == null) {
+				unchecked.add(Integer.valueOf(i));
+				uncheckedLength+= contents.get(i).length();
+			} else if (unchecked.isEmpty() && (cachedProblems+= results[i].length) >= threshold) {
+				// the following partitions are not reported
+				break;
+			}
+		}
+
+		if (!unchecked.isEmpty() && !check(contents, unchecked, uncheckedLength, delimiter, checker, stamp, threshold, results, monitor))
+			return;
+
+		for (int i= 0; i < results.length; i++) {
+			if (monitor != null && monitor.isCanceled())
+				return;
+
+			if (listener.isProblemsThresholdReached())
+				return;
+
+			ISpellEvent[] events= results[i];
+			if (events == null)
+				return;
+
+			int offset= partitions.get(i).getOffset();
+			for (int j= 0; j < events.length; j++)
+				listener.handle(new PartitionSpellEvent(events[j], offset));
+		}
+	}
+
+	/**
+	 * Checks the given partitions, in parallel if they are large enough, and caches the results.
+	 * <p>
+	 * Since problems are reported in document order, checking stops as soon as the partitions
+	 * checked by a task contain enough problems to reach the problems threshold. The following
+	 * partitions of the task and the partitions of all following tasks are not checked then,
+	 * their results remain <code>null</code>.
+	 * </p>
+	 *
+	 * @param contents the contents of all partitions
+	 * @param unchecked the indices of the partitions to check
+	 * @param length the number of characters to check
+	 * @param delimiter the line delimiter of the document
+	 * @param checker the spell checker
+	 * @param stamp the stamp of the spell checker
+	 * @param threshold the number of problems after which no more problems are reported
+	 * @param results the array to store the events of the partitions into
+	 * @param monitor the progress monitor, can be <code>null</code>
+	 * @return <code>true</code> if the partitions have been checked up to the problems threshold,
+	 *         <code>false</code> if checking has been canceled
+	 * @since 3.8
+	 */
+	private static boolean check(final List<String> contents, final List<Integer> unchecked, int length, final String delimiter, final ISpellChecker checker, final long stamp, final int threshold, final ISpellEvent[][] results, final IProgressMonitor monitor) {
+		int tasks= length < PARALLEL_THRESHOLD ? 1 : Math.min(MAX_THREADS + 1, unchecked.size());
+		// the first task whose partitions reach the problems threshold
+		final AtomicInteger saturatedTask= new AtomicInteger(tasks + 1);
+		List<Future<?>> futures= new ArrayList<Future<?>>(tasks);
+		Runnable last= null;
+
+		// split into tasks of consecutive partitions with about the same number of characters
+		int start= 0;
+		int checked= 0;
+		for (int task= 1; task <= tasks; task++) {
+			int end= start;
+			while (end < unchecked.size() && (task == tasks || checked < (long) length * task / tasks))
+				checked+= contents.get(unchecked.get(end++).intValue()).length();
+
+			final int current= task;
+			final int from= start;
+			final int to= end;
+			Runnable runnable= new Runnable() {
+				public void run() {
+					int problems= 0;
+					for (int i= from; i < to; i++) {
+						if (monitor != null && monitor.isCanceled())
+							return;
+
+						if (saturatedTask.get() < current)
+							return;
+
+						int index= unchecked.get(i).intValue();
+						String content= contents.get(index);
+						ISpellEvent[] events= check(content, delimiter, checker);
+						results[index]= events;
+						fgCache.put(checker, stamp, content, events);
+
+						problems+= events.length;
+						if (problems >= threshold) {
+							int saturated= saturatedTask.get();
+							while (current < saturated && !saturatedTask.compareAndSet(saturated, current))
+								saturated= saturatedTask.get();
+							return;
+						}
+					}
+				}
+			};
+			if (task == tasks)
+				last= runnable;
+			else if (from < to)
+				futures.add(getExecutor().submit(runnable));
+			start= end;
+		}
+
+		// the reconciler thread checks the last partitions itself
+		last.run();
+
+		for (int i= 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (InterruptedException e) {
+				for (int j= i; j < futures.size(); j++)
+					futures.get(j).cancel(false);
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException e) {
+				Throwable cause= e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new IllegalStateException(cause);
+			}
+		}
+		return monitor == null || !monitor.isCanceled();
+	}
+
+	/**
+	 * Checks the content of a single partition.
+	 *
+	 * @param content the content of the partition
+	 * @param delimiter the line delimiter of the document
+	 * @param checker the spell checker
+	 * @return the events, relative to the start of the partition
+	 * @since 3.8
+	 */
+	private static ISpellEvent[] check(String content, String delimiter, ISpellChecker checker) {
+		Document document= new Document(content);
+		document.setInitialLineDelimiter(delimiter);
+		SpellEventCollector collector= new SpellEventCollector();
+		checker.execute(collector, new SpellCheckIterator(document, new Region(0, content.length()), checker.getLocale()));
+		return collector.getEvents();
+	}
+
+	/**
+	 * Returns the executor checking partitions in parallel.
+	 *
+	 * @return the executor
+	 * @since 3.8
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (fgExecutor == null) {
+			ThreadFactory threadFactory= new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "Java Spelling Checker"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			};
+			// when all threads are busy, the reconciler thread checks the partitions itself
+			fgExecutor= new ThreadPoolExecutor(0, MAX_THREADS, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
 		}
+		return fgExecutor;
 	}
 }
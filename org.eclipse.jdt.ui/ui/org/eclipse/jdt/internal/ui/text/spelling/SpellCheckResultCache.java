@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.spelling;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellChecker;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellEvent;
+
+
+/**
+ * Caches the spell events of already checked partitions by their content, so that
+ * partitions which have not been changed since the last reconcile are not checked again.
+ * <p>
+ * The offsets of the cached events are relative to the start of the partition. The cache
+ * is emptied whenever the spell checker or its {@link ISpellChecker#getStamp() stamp}
+ * changes.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class SpellCheckResultCache {
+
+	/** The maximal number of characters of all cached partitions */
+	private static final int MAX_CHARACTERS= 1024 * 1024;
+
+	/** The results by partition content, in access order */
+	private final LinkedHashMap<String, ISpellEvent[]> fResults= new LinkedHashMap<String, ISpellEvent[]>(64, 0.75f, true);
+
+	/** The number of characters of all cached partitions */
+	private int fCharacters;
+
+	/** The spell checker that computed the cached results */
+	private ISpellChecker fChecker;
+
+	/** The stamp of the spell checker when the results were computed */
+	private long fStamp;
+
+
+	/**
+	 * Empties this cache if the given spell checker or its state differs from the one that
+	 * computed the cached results.
+	 *
+	 * @param checker the spell checker
+	 * @param stamp the current stamp of the spell checker
+	 */
+	public synchronized void validate(ISpellChecker checker, long stamp) {
+		if (fChecker != checker || fStamp != stamp) {
+			fResults.clear();
+			fCharacters= 0;
+			fChecker= checker;
+			fStamp= stamp;
+		}
+	}
+
+	/**
+	 * Returns the cached events for a partition with the given content.
+	 *
+	 * @param content the content of the partition
+	 * @return the events relative to the partition start, or <code>null</code> if the
+	 *         content has not been checked
+	 */
+	public synchronized ISpellEvent[] get(String content) {
+		return fResults.get(content);
+	}
+
+	/**
+	 * Caches the events of a partition.
+	 *
+	 * @param checker the spell checker that computed the events
+	 * @param stamp the stamp of the spell checker before the events were computed
+	 * @param content the content of the partition
+	 * @param events the events relative to the partition start
+	 */
+	public synchronized void put(ISpellChecker checker, long stamp, String content, ISpellEvent[] events) {
+		if (fChecker != checker || fStamp != stamp || content.length() > MAX_CHARACTERS / 4)
+			return;
+
+		if (fResults.put(content, events) == null)
+			fCharacters+= content.length();
+
+		for (Iterator<Map.Entry<String, ISpellEvent[]>> iterator= fResults.entrySet().iterator(); fCharacters > MAX_CHARACTERS && iterator.hasNext();) {
+			fCharacters-= iterator.next().getKey().length();
+			iterator.remove();
+		}
+	}
+}
@@ -77,6 +77,16 @@ public abstract class SpellingEngine implements ISpellingEngine {
 		boolean isProblemsThresholdReached() {
 			return fProblemCount >= fProblemsThreshold;
 		}
+
+		/**
+		 * Returns the number of problems which are still accepted before the threshold is reached.
+		 *
+		 * @return the number of remaining problems
+		 * @since 3.8
+		 */
+		int getRemainingProblems() {
+			return Math.max(0, fProblemsThreshold - fProblemCount);
+		}
 	}
 
 	/*
@@ -11,27 +11,33 @@
 package org.eclipse.jdt.internal.ui.text.spelling.engine;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.MalformedInputException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.osgi.service.datalocation.Location;
 
 import org.eclipse.core.resources.ResourcesPlugin;
 
@@ -52,58 +58,6 @@ import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
  */
 public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
-	/**
-	 * Byte array wrapper
-	 * @since 3.6
-	 */
-	private static class ByteArrayWrapper {
-
-		private static int hashCode(byte[] array) {
-			int prime= 31;
-			if (array == null)
-				return 0;
-			int result= 1;
-			for (int index= 0; index < array.length; index++) {
-				result= prime * result + array[index];
-			}
-			return result;
-		}
-
-		private byte[] byteArray;
-
-		public ByteArrayWrapper(byte[] byteArray) {
-			this.byteArray= byteArray;
-		}
-		@Override
-		public int hashCode() {
-			final int prime= 31;
-			int result= 1;
-			result= prime * result + ByteArrayWrapper.hashCode(byteArray);
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (!(obj instanceof ByteArrayWrapper))
-				return false;
-			ByteArrayWrapper other= (ByteArrayWrapper)obj;
-			if (!Arrays.equals(byteArray, other.byteArray))
-				return false;
-			return true;
-		}
-	}
-
-	
-	/**
-	 * Canonical name for UTF-8 encoding
-	 * @since 3.6
-	 */
-	private static final String UTF_8= "UTF-8"; //$NON-NLS-1$
-
 	/** The bucket capacity */
 	protected static final int BUCKET_CAPACITY= 4;
 
@@ -119,11 +73,46 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 */
 	protected static final float LOAD_FACTOR= 0.85f;
 
+	/**
+	 * The name of the folder containing the dictionary index files
+	 * @since 3.8
+	 */
+	private static final String INDEX_FOLDER= "dictionaries"; //$NON-NLS-1$
+
+	/**
+	 * The delay before the index is saved after a word has been added
+	 * @since 3.8
+	 */
+	protected static final long SAVE_INDEX_DELAY= 1000;
+
 	/** The phonetic distance algorithm */
 	private IPhoneticDistanceAlgorithm fDistanceAlgorithm= new DefaultPhoneticDistanceAlgorithm();
 
-	/** The mapping from phonetic hashes to word lists */
-	private final Map<ByteArrayWrapper, Object> fHashBuckets= new HashMap<ByteArrayWrapper, Object>(getInitialSize(), LOAD_FACTOR);
+	/**
+	 * The mapping from phonetic hashes to words
+	 * @since 3.8
+	 */
+	private volatile PhoneticWordIndex fIndex= new PhoneticWordIndex(getInitialSize(), LOAD_FACTOR);
+
+	/**
+	 * The words hashed into the index which are not in the word list. Guarded by
+	 * {@link #fIndexLock}.
+	 * @since 3.8
+	 */
+	private final ArrayList<String> fAddedWords= new ArrayList<String>();
+
+	/**
+	 * The lock guarding {@link #fIndex}. The index is read concurrently by the spelling engine,
+	 * but adding a word may grow and rehash it, which invalidates all handles into it.
+	 * @since 3.8
+	 */
+	private final ReadWriteLock fIndexLock= new ReentrantReadWriteLock();
+
+	/**
+	 * The job saving the index, or <code>null</code> if none has been created yet
+	 * @since 3.8
+	 */
+	private Job fSaveIndexJob;
 
 	/** The phonetic hash provider */
 	private IPhoneticHashProvider fHashProvider= new DefaultPhoneticHashProvider();
@@ -153,21 +142,17 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	}
 
 	/**
-	 * Returns all candidates with the same phonetic hash.
+	 * Returns the bucket of all candidates with the same phonetic hash.
 	 *
 	 * @param hash
 	 *                   The hash to retrieve the candidates of
-	 * @return Array of candidates for the phonetic hash
+	 * @return the bucket handle in the word index or {@link PhoneticWordIndex#NONE} if there
+	 *         are no candidates for the phonetic hash. The handle is only valid while the read
+	 *         lock of the index is held.
+	 * @since 3.8
 	 */
-	protected final Object getCandidates(final String hash) {
-		ByteArrayWrapper hashBytes;
-		try {
-			hashBytes= new ByteArrayWrapper(hash.getBytes(UTF_8));
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
-			return null;
-		}
-		return fHashBuckets.get(hashBytes);
+	private int getCandidates(final String hash) {
+		return fIndex.getBucket(hash);
 	}
 
 	/**
@@ -191,57 +176,36 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		final StringBuffer buffer= new StringBuffer(BUFFER_CAPACITY);
 		final HashSet<RankedWordProposal> result= new HashSet<RankedWordProposal>(BUCKET_CAPACITY * hashs.size());
 
-		for (int index= 0; index < hashs.size(); index++) {
+		fIndexLock.readLock().lock();
+		try {
+			for (int index= 0; index < hashs.size(); index++) {
 
-			hash= hashs.get(index);
+				hash= hashs.get(index);
 
-			final Object candidates= getCandidates(hash);
-			if (candidates == null)
-				continue;
-			else if (candidates instanceof byte[]) {
-				String candidate;
-				try {
-					candidate= new String((byte[])candidates, UTF_8);
-				} catch (UnsupportedEncodingException e) {
-					JavaPlugin.log(e);
-					return result;
-				}
-				distance= fDistanceAlgorithm.getDistance(word, candidate);
-				if (distance < DISTANCE_THRESHOLD) {
-					buffer.setLength(0);
-					buffer.append(candidate);
-					if (sentence)
-						buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-					result.add(new RankedWordProposal(buffer.toString(), -distance));
-				}
-				continue;
-			}
+				final int bucket= getCandidates(hash);
+				if (bucket == PhoneticWordIndex.NONE)
+					continue;
 
-			@SuppressWarnings("unchecked")
-			final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-			int candidateSize= Math.min(500, candidateList.size()); // see https://bugs.eclipse.org/bugs/show_bug.cgi?id=195357
-			for (int offset= 0; offset < candidateSize; offset++) {
+				int candidateCount= 0; // see https://bugs.eclipse.org/bugs/show_bug.cgi?id=195357
+				for (int handle= fIndex.getFirstWord(bucket); handle != PhoneticWordIndex.NONE && candidateCount < 500; handle= fIndex.getNextWord(handle), candidateCount++) {
 
-				String candidate;
-				try {
-					candidate= new String(candidateList.get(offset), UTF_8);
-				} catch (UnsupportedEncodingException e) {
-					JavaPlugin.log(e);
-					return result;
-				}
-				distance= fDistanceAlgorithm.getDistance(word, candidate);
+					final String candidate= fIndex.getWord(handle);
+					distance= fDistanceAlgorithm.getDistance(word, candidate);
 
-				if (distance < DISTANCE_THRESHOLD) {
+					if (distance < DISTANCE_THRESHOLD) {
 
-					buffer.setLength(0);
-					buffer.append(candidate);
+						buffer.setLength(0);
+						buffer.append(candidate);
 
-					if (sentence)
-						buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
+						if (sentence)
+							buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
 
-					result.add(new RankedWordProposal(buffer.toString(), -distance));
+						result.add(new RankedWordProposal(buffer.toString(), -distance));
+					}
 				}
 			}
+		} finally {
+			fIndexLock.readLock().unlock();
 		}
 		return result;
 	}
@@ -265,54 +229,38 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		int minimum= Integer.MAX_VALUE;
 
 		StringBuffer buffer= new StringBuffer(BUFFER_CAPACITY);
+		final String hash= fHashProvider.getHash(word);
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
-			return;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
+		final ArrayList<RankedWordProposal> matches;
+		fIndexLock.readLock().lock();
+		try {
+			final int bucket= getCandidates(hash);
+			if (bucket == PhoneticWordIndex.NONE)
 				return;
-			}
-			distance= fDistanceAlgorithm.getDistance(word, candidate);
-			buffer.append(candidate);
-			if (sentence)
-				buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-			result.add(new RankedWordProposal(buffer.toString(), -distance));
-			return;
-		}
 
-		@SuppressWarnings("unchecked")
-		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-		final ArrayList<RankedWordProposal> matches= new ArrayList<RankedWordProposal>(candidateList.size());
+			matches= new ArrayList<RankedWordProposal>(fIndex.getBucketSize(bucket));
 
-		for (int index= 0; index < candidateList.size(); index++) {
-			String candidate;
-			try {
-				candidate= new String(candidateList.get(index), UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return;
-			}
-			distance= fDistanceAlgorithm.getDistance(word, candidate);
+			for (int handle= fIndex.getFirstWord(bucket); handle != PhoneticWordIndex.NONE; handle= fIndex.getNextWord(handle)) {
+				final String candidate= fIndex.getWord(handle);
+				distance= fDistanceAlgorithm.getDistance(word, candidate);
 
-			if (distance <= minimum) {
+				if (distance <= minimum) {
 
-				if (distance < minimum)
-					matches.clear();
+					if (distance < minimum)
+						matches.clear();
 
-				buffer.setLength(0);
-				buffer.append(candidate);
+					buffer.setLength(0);
+					buffer.append(candidate);
 
-				if (sentence)
-					buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
+					if (sentence)
+						buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
 
-				matches.add(new RankedWordProposal(buffer.toString(), -distance));
-				minimum= distance;
+					matches.add(new RankedWordProposal(buffer.toString(), -distance));
+					minimum= distance;
+				}
 			}
+		} finally {
+			fIndexLock.readLock().unlock();
 		}
 
 		result.addAll(matches);
@@ -325,7 +273,12 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @since 3.3
 	 */
 	protected boolean isEmpty() {
-		return fHashBuckets.size() == 0;
+		fIndexLock.readLock().lock();
+		try {
+			return fIndex.getBucketCount() == 0;
+		} finally {
+			fIndexLock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -475,31 +428,31 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 *                   The word to hash in the dictionary
 	 */
 	protected final void hashWord(final String word) {
-
 		final String hash= fHashProvider.getHash(word);
-		ByteArrayWrapper hashBytes;
-		byte[] wordBytes;
+		fIndexLock.writeLock().lock();
 		try {
-			hashBytes= new ByteArrayWrapper(hash.getBytes(UTF_8));
-			wordBytes= word.getBytes(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
-			return;
+			fIndex.add(hash, word);
+			fAddedWords.add(word);
+		} finally {
+			fIndexLock.writeLock().unlock();
 		}
+	}
 
-		Object bucket= fHashBuckets.get(hashBytes);
-
-		if (bucket == null) {
-			fHashBuckets.put(hashBytes, wordBytes);
-		} else if (bucket instanceof ArrayList) {
-			@SuppressWarnings("unchecked")
-			ArrayList<byte[]> bucketList= (ArrayList<byte[]>)bucket;
-			bucketList.add(wordBytes);
-		} else {
-			ArrayList<Object> list= new ArrayList<Object>(BUCKET_CAPACITY);
-			list.add(bucket);
-			list.add(wordBytes);
-			fHashBuckets.put(hashBytes, list);
+	/**
+	 * Hashes a word which has been appended to the word list into the dictionary. Unlike words
+	 * hashed by {@link #hashWord(String)}, the word is written with the index of the word list.
+	 *
+	 * @param word
+	 *                   The word to hash in the dictionary
+	 * @since 3.8
+	 */
+	protected final void hashAppendedWord(final String word) {
+		final String hash= fHashProvider.getHash(word);
+		fIndexLock.writeLock().lock();
+		try {
+			fIndex.add(hash, word);
+		} finally {
+			fIndexLock.writeLock().unlock();
 		}
 	}
 
@@ -522,39 +475,23 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 			// Do nothing
 		}
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
-			return false;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
+		final String hash= fHashProvider.getHash(word);
+		final String lowercaseWord= word.toLowerCase();
+
+		fIndexLock.readLock().lock();
+		try {
+			final int bucket= getCandidates(hash);
+			if (bucket == PhoneticWordIndex.NONE)
 				return false;
+
+			for (int handle= fIndex.getFirstWord(bucket); handle != PhoneticWordIndex.NONE; handle= fIndex.getNextWord(handle)) {
+				if (fIndex.wordEquals(handle, word) || fIndex.wordEquals(handle, lowercaseWord))
+					return true;
 			}
-			if (candidate.equals(word) || candidate.equals(word.toLowerCase()))
-				return true;
-			return false;
-		}
-		@SuppressWarnings("unchecked")
-		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-		byte[] wordBytes;
-		byte[] lowercaseWordBytes;
-		try {
-			wordBytes= word.getBytes(UTF_8);
-			lowercaseWordBytes= word.toLowerCase().getBytes(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
 			return false;
+		} finally {
+			fIndexLock.readLock().unlock();
 		}
-		for (int index= 0; index < candidateList.size(); index++) {
-			byte[] candidate= candidateList.get(index);
-			if (Arrays.equals(candidate, wordBytes) || Arrays.equals(candidate, lowercaseWordBytes)) {
-				return true;
-			}
-		}
-		return false;
 	}
 
 	/*
@@ -596,7 +533,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @see org.eclipse.jdt.ui.text.spelling.engine.ISpellDictionary#isLoaded()
 	 */
 	public synchronized final boolean isLoaded() {
-		return fLoaded || fHashBuckets.size() > 0;
+		return fLoaded || !isEmpty();
 	}
 
 	/**
@@ -612,12 +549,16 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 			 return fLoaded;
 
 		if (url != null) {
+			if (mapIndex(url))
+				return true;
+
 			InputStream stream= null;
 			int line= 0;
 			try {
 				stream= url.openStream();
 				if (stream != null) {
 					String word= null;
+					final PhoneticWordIndex index= new PhoneticWordIndex(getInitialSize(), LOAD_FACTOR);
 
 					// Setup a reader with a decoder in order to read over malformed input if needed.
 					CharsetDecoder decoder= Charset.forName(getEncoding()).newDecoder();
@@ -645,8 +586,10 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 						}
 						doRead= word != null;
 						if (doRead)
-							hashWord(word);
+							index.add(fHashProvider.getHash(word), word);
 					}
+					setIndex(index, url);
+					scheduleSaveIndex(0);
 					return true;
 				}
 			} catch (FileNotFoundException ex) {
@@ -679,17 +622,204 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		return false;
 	}
 
+	/**
+	 * Replaces the index of this dictionary with the prebuilt index of the given word list,
+	 * if there is an up-to-date one.
+	 *
+	 * @param url the URL of the word list
+	 * @return <code>true</code> iff the prebuilt index has been mapped
+	 * @since 3.8
+	 */
+	private boolean mapIndex(URL url) {
+		File file= getIndexFile(url);
+		long stamp= getIndexStamp(url);
+		if (file == null || stamp == 0)
+			return false;
+
+		try {
+			PhoneticWordIndex index= PhoneticWordIndex.map(file, stamp, LOAD_FACTOR);
+			if (index == null)
+				return false;
+			setIndex(index, null);
+			fMustLoad= false;
+			return true;
+		} catch (IOException exception) {
+			// The index is only a cache, read the word list instead
+			return false;
+		}
+	}
+
+	/**
+	 * Replaces the index of this dictionary with the index of its word list. The words hashed
+	 * into the dictionary before are merged into the new index.
+	 *
+	 * @param index the index of the word list
+	 * @param url the URL of the word list to write the index for, or <code>null</code> if the
+	 *            index must not be written
+	 * @since 3.8
+	 */
+	private void setIndex(PhoneticWordIndex index, URL url) {
+		boolean hasAddedWords;
+		fIndexLock.readLock().lock();
+		try {
+			hasAddedWords= !fAddedWords.isEmpty();
+		} finally {
+			fIndexLock.readLock().unlock();
+		}
+		// Once the added words are merged, the index can no longer be written
+		if (url != null && hasAddedWords)
+			writeIndex(index, url);
+
+		fIndexLock.writeLock().lock();
+		try {
+			for (int i= 0; i < fAddedWords.size(); i++) {
+				final String word= fAddedWords.get(i);
+				index.add(fHashProvider.getHash(word), word);
+			}
+			fIndex= index;
+		} finally {
+			fIndexLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Schedules a job that writes the index of this dictionary to disk, so that the next
+	 * {@link #load(URL)} can map it instead of reading the word list.
+	 *
+	 * @param delay the delay in milliseconds
+	 * @since 3.8
+	 */
+	protected final synchronized void scheduleSaveIndex(long delay) {
+		if (fSaveIndexJob == null) {
+			fSaveIndexJob= new Job(JavaUIMessages.AbstractSpellingDictionary_saveIndex_job) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					saveIndex();
+					return Status.OK_STATUS;
+				}
+			};
+			fSaveIndexJob.setSystem(true);
+			fSaveIndexJob.setPriority(Job.DECORATE);
+		}
+		fSaveIndexJob.schedule(delay);
+	}
+
+	/**
+	 * Writes the index of this dictionary to disk, stamped with the current state of the word
+	 * list. Words must only be added to the word list while holding the lock of this
+	 * dictionary, otherwise the stamp might not match the content of the index. The index is
+	 * not written if it contains words which are not in the word list.
+	 *
+	 * @since 3.8
+	 */
+	private synchronized void saveIndex() {
+		if (!fLoaded)
+			return;
+
+		try {
+			URL url= getURL();
+			if (url == null)
+				return;
+			fIndexLock.readLock().lock();
+			try {
+				if (!fIndex.isMapped() && fIndex.getBucketCount() > 0 && fAddedWords.isEmpty())
+					writeIndex(fIndex, url);
+			} finally {
+				fIndexLock.readLock().unlock();
+			}
+		} catch (MalformedURLException exception) {
+			// Nothing to save
+		}
+	}
+
+	/**
+	 * Writes an index to disk, stamped with the current state of the given word list.
+	 *
+	 * @param index the index of the word list
+	 * @param url the URL of the word list
+	 * @since 3.8
+	 */
+	private void writeIndex(PhoneticWordIndex index, URL url) {
+		File file= getIndexFile(url);
+		long stamp= getIndexStamp(url);
+		if (file == null || stamp == 0)
+			return;
+
+		try {
+			file.getParentFile().mkdirs();
+			index.write(file, stamp);
+		} catch (IOException exception) {
+			// The index is only a cache, e.g. the old index may still be mapped by another workspace
+		}
+	}
+
+	/**
+	 * Returns the file of the prebuilt index for the given word list. Indices are stored in the
+	 * configuration area, so that all workspaces share the same index and its pages. If the
+	 * configuration area is read-only, the state location of the plug-in is used.
+	 *
+	 * @param url the URL of the word list
+	 * @return the index file or <code>null</code> if there is no location to store it
+	 * @since 3.8
+	 */
+	private static File getIndexFile(URL url) {
+		IPath folder= null;
+		Location location= Platform.getConfigurationLocation();
+		if (location != null && !location.isReadOnly()) {
+			URL locationURL= location.getURL();
+			if (locationURL != null && "file".equals(locationURL.getProtocol())) //$NON-NLS-1$
+				folder= new Path(locationURL.getFile()).append(JavaUI.ID_PLUGIN);
+		}
+		if (folder == null) {
+			JavaPlugin plugin= JavaPlugin.getDefault();
+			if (plugin == null)
+				return null;
+			folder= plugin.getStateLocation();
+		}
+		String name= Integer.toHexString(url.toExternalForm().hashCode()) + ".idx"; //$NON-NLS-1$
+		return folder.append(INDEX_FOLDER).append(name).toFile();
+	}
+
+	/**
+	 * Returns a stamp that identifies the current content of the given word list and the way
+	 * it is hashed.
+	 *
+	 * @param url the URL of the word list
+	 * @return the stamp, or <code>0</code> if the modification time of the word list is
+	 *         unknown
+	 * @since 3.8
+	 */
+	private long getIndexStamp(URL url) {
+		try {
+			URLConnection connection= url.openConnection();
+			long lastModified= connection.getLastModified();
+			int length= connection.getContentLength();
+			connection.getInputStream().close();
+			if (lastModified == 0 || length < 0)
+				return 0;
+
+			long stamp= lastModified;
+			stamp= 31 * stamp + length;
+			stamp= 31 * stamp + url.toExternalForm().hashCode();
+			stamp= 31 * stamp + getEncoding().hashCode();
+			stamp= 31 * stamp + fHashProvider.getClass().getName().hashCode();
+			return stamp == 0 ? 1 : stamp;
+		} catch (IOException exception) {
+			return 0;
+		}
+	}
+
 	/**
 	 * Compacts the dictionary.
 	 *
 	 * @since 3.3.
 	 */
 	private void compact() {
-		Iterator<Object> iter= fHashBuckets.values().iterator();
-		while (iter.hasNext()) {
-			Object element= iter.next();
-			if (element instanceof ArrayList)
-				((ArrayList<?>)element).trimToSize();
+		fIndexLock.writeLock().lock();
+		try {
+			fIndex.compact();
+		} finally {
+			fIndexLock.writeLock().unlock();
 		}
 	}
 
@@ -719,7 +849,16 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	public synchronized void unload() {
 		fLoaded= false;
 		fMustLoad= true;
-		fHashBuckets.clear();
+		fIndexLock.writeLock().lock();
+		try {
+			if (fIndex.isMapped())
+				fIndex= new PhoneticWordIndex(getInitialSize(), LOAD_FACTOR);
+			else
+				fIndex.clear();
+			fAddedWords.clear();
+		} finally {
+			fIndexLock.writeLock().unlock();
+		}
 	}
 
 	/*
@@ -15,6 +15,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.Assert;
 
@@ -131,6 +132,12 @@ public class DefaultSpellChecker implements ISpellChecker {
 	 */
 	private final Set<String> fIgnored= Collections.synchronizedSet(new HashSet<String>());
 
+	/**
+	 * The number of modifications of the dictionaries and ignored words.
+	 * @since 3.8
+	 */
+	private final AtomicInteger fModificationCount= new AtomicInteger();
+
 	/**
 	 * The preference store. Assumes the <code>IPreferenceStore</code>
 	 * implementation is thread safe.
@@ -163,6 +170,7 @@ public class DefaultSpellChecker implements ISpellChecker {
 	public final void addDictionary(final ISpellDictionary dictionary) {
 		// synchronizing is necessary as this is a write access
 		fDictionaries.add(dictionary);
+		fModificationCount.incrementAndGet();
 	}
 
 	/*
@@ -203,6 +211,7 @@ public class DefaultSpellChecker implements ISpellChecker {
 			if (dictionary.acceptsWords())
 				dictionary.addWord(addable);
 		}
+		fModificationCount.incrementAndGet();
 
 	}
 
@@ -212,6 +221,7 @@ public class DefaultSpellChecker implements ISpellChecker {
 	public final void checkWord(final String word) {
 		// synchronizing is necessary as this is a write access
 		fIgnored.remove(word.toLowerCase());
+		fModificationCount.incrementAndGet();
 	}
 
 	/*
@@ -301,6 +311,7 @@ public class DefaultSpellChecker implements ISpellChecker {
 	public final void ignoreWord(final String word) {
 		// synchronizing is necessary as this is a write access
 		fIgnored.add(word.toLowerCase());
+		fModificationCount.incrementAndGet();
 	}
 
 	/*
@@ -332,6 +343,7 @@ public class DefaultSpellChecker implements ISpellChecker {
 	public final void removeDictionary(final ISpellDictionary dictionary) {
 		// synchronizing is necessary as this is a write access
 		fDictionaries.remove(dictionary);
+		fModificationCount.incrementAndGet();
 	}
 
 	/*
@@ -341,4 +353,28 @@ public class DefaultSpellChecker implements ISpellChecker {
 	public Locale getLocale() {
 		return fLocale;
 	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellChecker#getStamp()
+	 * @since 3.8
+	 */
+	public long getStamp() {
+		int options= 0;
+		if (fPreferences.getBoolean(PreferenceConstants.SPELLING_IGNORE_DIGITS))
+			options|= 1 << 0;
+		if (fPreferences.getBoolean(PreferenceConstants.SPELLING_IGNORE_MIXED))
+			options|= 1 << 1;
+		if (fPreferences.getBoolean(PreferenceConstants.SPELLING_IGNORE_SENTENCE))
+			options|= 1 << 2;
+		if (fPreferences.getBoolean(PreferenceConstants.SPELLING_IGNORE_UPPER))
+			options|= 1 << 3;
+		if (fPreferences.getBoolean(PreferenceConstants.SPELLING_IGNORE_URLS))
+			options|= 1 << 4;
+		if (fPreferences.getBoolean(PreferenceConstants.SPELLING_IGNORE_NON_LETTERS))
+			options|= 1 << 5;
+		if (fPreferences.getBoolean(PreferenceConstants.SPELLING_IGNORE_SINGLE_LETTERS))
+			options|= 1 << 6;
+		int problemsThreshold= PreferenceConstants.getPreferenceStore().getInt(PreferenceConstants.SPELLING_PROBLEMS_THRESHOLD);
+		return ((long) fModificationCount.get() << 32) ^ ((long) problemsThreshold << 8) ^ options;
+	}
 }
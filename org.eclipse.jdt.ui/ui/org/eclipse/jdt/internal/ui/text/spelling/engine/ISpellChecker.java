@@ -107,4 +107,15 @@ public interface ISpellChecker {
 	 * @since 3.3
 	 */
 	Locale getLocale();
+
+	/**
+	 * Returns a stamp that changes whenever checking the same text with
+	 * {@link #execute(ISpellEventListener, ISpellCheckIterator)} might report different
+	 * events, e.g. because words have been added or ignored, dictionaries have changed or
+	 * the spelling options have been modified.
+	 *
+	 * @return the stamp of the current spell checker state
+	 * @since 3.8
+	 */
+	long getStamp();
 }
@@ -51,7 +51,7 @@ public class PersistentSpellDictionary extends AbstractSpellDictionary {
 	 * @see org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellDictionary#addWord(java.lang.String)
 	 */
 	@Override
-	public void addWord(final String word) {
+	public synchronized void addWord(final String word) {
 		if (isCorrect(word))
 			return;
 
@@ -87,7 +87,10 @@ public class PersistentSpellDictionary extends AbstractSpellDictionary {
 			}
 		}
 
-		hashWord(word);
+		hashAppendedWord(word);
+
+		// The word list doubles as append log, merge the added words into the index in the background
+		scheduleSaveIndex(SAVE_INDEX_DELAY);
 	}
 
 	/*
@@ -0,0 +1,649 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.spelling.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Compact index from phonetic hashes to the words with that hash.
+ * <p>
+ * Hashes and words are stored UTF-8 encoded in a single byte arena. Buckets and words are
+ * referenced by <code>int</code> handles into parallel primitive arrays, and buckets are
+ * found through an open addressing table with linear probing. Apart from growing the
+ * arrays when adding, the index does not allocate objects, neither when adding nor when
+ * looking up hashes or comparing words.
+ * </p>
+ * <p>
+ * The words of a bucket are kept in the order in which they were added. Iterate them with
+ * {@link #getFirstWord(int)} and {@link #getNextWord(int)}:
+ * <pre>
+ * int bucket= index.getBucket(hash);
+ * if (bucket != PhoneticWordIndex.NONE)
+ *     for (int word= index.getFirstWord(bucket); word != PhoneticWordIndex.NONE; word= index.getNextWord(word))
+ *         ...
+ * </pre>
+ * </p>
+ * <p>
+ * An index can be written to a file with {@link #write(File, long)} and later be opened
+ * with {@link #map(File, long, float)}. A mapped index reads its data directly from the
+ * memory mapped file and is copied to the heap only when words are added to it.
+ * </p>
+ * <p>
+ * Like the maps previously used by {@link AbstractSpellDictionary}, this index may be read
+ * concurrently but clients must not modify it concurrently.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class PhoneticWordIndex {
+
+	/**
+	 * Handle returned if there is no such bucket or word.
+	 */
+	public static final int NONE= -1;
+
+	private static final int INITIAL_ARENA_SIZE= 1024;
+
+	/** Magic number of the file format */
+	private static final int MAGIC= 0x4A445344; // "JDSD"
+
+	/** Version of the file format */
+	private static final int VERSION= 1;
+
+	/** Number of <code>int</code>s in the file header, the stamp counts as two */
+	private static final int HEADER_INTS= 8;
+
+	/** The UTF-8 encoded hashes and words */
+	private ByteBuffer fArena;
+	private int fArenaSize;
+
+	/** Open addressing table of bucket handle + 1, 0 marks a free slot */
+	private IntBuffer fTable;
+	private final float fLoadFactor;
+
+	/** Bucket data, indexed by bucket handle */
+	private IntBuffer fBucketHashCode;
+	private IntBuffer fBucketOffset;
+	private IntBuffer fBucketLength;
+	private IntBuffer fBucketFirstWord;
+	private IntBuffer fBucketLastWord;
+	private IntBuffer fBucketSize;
+	private int fBucketCount;
+
+	/** Word data, indexed by word handle */
+	private IntBuffer fWordOffset;
+	private IntBuffer fWordLength;
+	private IntBuffer fWordNext;
+	private int fWordCount;
+
+	/** Is the data still backed by a mapped file? */
+	private boolean fIsMapped;
+
+
+	/**
+	 * Creates a new index.
+	 *
+	 * @param initialSize the expected number of hashes
+	 * @param loadFactor the maximum load factor of the hash table
+	 */
+	public PhoneticWordIndex(int initialSize, float loadFactor) {
+		fLoadFactor= loadFactor;
+		int capacity= 16;
+		while (capacity * loadFactor < initialSize)
+			capacity <<= 1;
+		fTable= IntBuffer.allocate(capacity);
+
+		int buckets= Math.max(16, initialSize);
+		fBucketHashCode= IntBuffer.allocate(buckets);
+		fBucketOffset= IntBuffer.allocate(buckets);
+		fBucketLength= IntBuffer.allocate(buckets);
+		fBucketFirstWord= IntBuffer.allocate(buckets);
+		fBucketLastWord= IntBuffer.allocate(buckets);
+		fBucketSize= IntBuffer.allocate(buckets);
+
+		fWordOffset= IntBuffer.allocate(buckets);
+		fWordLength= IntBuffer.allocate(buckets);
+		fWordNext= IntBuffer.allocate(buckets);
+
+		fArena= ByteBuffer.allocate(INITIAL_ARENA_SIZE);
+	}
+
+	private PhoneticWordIndex(float loadFactor) {
+		fLoadFactor= loadFactor;
+	}
+
+	/**
+	 * Opens an index previously written with {@link #write(File, long)}.
+	 *
+	 * @param file the index file
+	 * @param stamp the stamp the index must have been written with
+	 * @param loadFactor the maximum load factor of the hash table when words are added
+	 * @return the mapped index, or <code>null</code> if the file does not exist, has been
+	 *         written with a different stamp or is not a valid index file
+	 * @throws IOException if the file could not be read
+	 */
+	public static PhoneticWordIndex map(File file, long stamp, float loadFactor) throws IOException {
+		if (!file.isFile())
+			return null;
+
+		RandomAccessFile randomAccessFile= new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel= randomAccessFile.getChannel();
+			long size= channel.size();
+			if (size < HEADER_INTS * 4 || size > Integer.MAX_VALUE)
+				return null;
+
+			MappedByteBuffer buffer= channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			buffer.order(ByteOrder.nativeOrder());
+			IntBuffer header= buffer.asIntBuffer();
+			if (header.get(0) != MAGIC || header.get(1) != VERSION)
+				return null;
+			long fileStamp= ((long) header.get(2) << 32) | (header.get(3) & 0xFFFFFFFFL);
+			if (fileStamp != stamp)
+				return null;
+
+			PhoneticWordIndex index= new PhoneticWordIndex(loadFactor);
+			index.fArenaSize= header.get(4);
+			int tableLength= header.get(5);
+			index.fBucketCount= header.get(6);
+			index.fWordCount= header.get(7);
+
+			// the section lengths must not be negative and the sections must fill the file exactly,
+			// the table needs a free slot to end lookups
+			if (index.fArenaSize < 0 || tableLength <= 0 || Integer.bitCount(tableLength) != 1 || index.fBucketCount < 0 || index.fBucketCount >= tableLength || index.fWordCount < 0)
+				return null;
+			long expectedSize= 4L * HEADER_INTS + ((index.fArenaSize + 3L) & ~3L) + 4L * (tableLength + 6L * index.fBucketCount + 3L * index.fWordCount);
+			if (expectedSize != size)
+				return null;
+
+			int position= HEADER_INTS * 4;
+			index.fArena= slice(buffer, position, index.fArenaSize);
+			position+= align(index.fArenaSize);
+			index.fTable= slice(buffer, position, tableLength * 4).asIntBuffer();
+			position+= tableLength * 4;
+
+			int bucketBytes= index.fBucketCount * 4;
+			index.fBucketHashCode= slice(buffer, position, bucketBytes).asIntBuffer();
+			index.fBucketOffset= slice(buffer, position+= bucketBytes, bucketBytes).asIntBuffer();
+			index.fBucketLength= slice(buffer, position+= bucketBytes, bucketBytes).asIntBuffer();
+			index.fBucketFirstWord= slice(buffer, position+= bucketBytes, bucketBytes).asIntBuffer();
+			index.fBucketLastWord= slice(buffer, position+= bucketBytes, bucketBytes).asIntBuffer();
+			index.fBucketSize= slice(buffer, position+= bucketBytes, bucketBytes).asIntBuffer();
+			position+= bucketBytes;
+
+			int wordBytes= index.fWordCount * 4;
+			index.fWordOffset= slice(buffer, position, wordBytes).asIntBuffer();
+			index.fWordLength= slice(buffer, position+= wordBytes, wordBytes).asIntBuffer();
+			index.fWordNext= slice(buffer, position+= wordBytes, wordBytes).asIntBuffer();
+
+			index.fIsMapped= true;
+			return index;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Writes this index to the given file, replacing its content.
+	 *
+	 * @param file the index file
+	 * @param stamp the stamp to identify the source of this index, see
+	 *            {@link #map(File, long, float)}
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(File file, long stamp) throws IOException {
+		int tableLength= fTable.capacity();
+		long size= 4L * HEADER_INTS + align(fArenaSize) + 4L * (tableLength + 6L * fBucketCount + 3L * fWordCount);
+		ByteBuffer buffer= ByteBuffer.allocate((int) size).order(ByteOrder.nativeOrder());
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt((int) (stamp >>> 32));
+		buffer.putInt((int) stamp);
+		buffer.putInt(fArenaSize);
+		buffer.putInt(tableLength);
+		buffer.putInt(fBucketCount);
+		buffer.putInt(fWordCount);
+
+		for (int i= 0; i < fArenaSize; i++)
+			buffer.put(fArena.get(i));
+		for (int i= fArenaSize; i < align(fArenaSize); i++)
+			buffer.put((byte) 0);
+
+		put(buffer, fTable, tableLength);
+		put(buffer, fBucketHashCode, fBucketCount);
+		put(buffer, fBucketOffset, fBucketCount);
+		put(buffer, fBucketLength, fBucketCount);
+		put(buffer, fBucketFirstWord, fBucketCount);
+		put(buffer, fBucketLastWord, fBucketCount);
+		put(buffer, fBucketSize, fBucketCount);
+		put(buffer, fWordOffset, fWordCount);
+		put(buffer, fWordLength, fWordCount);
+		put(buffer, fWordNext, fWordCount);
+		buffer.flip();
+
+		// Write to a new temporary file first, so that readers never map a partially written index
+		// and concurrent writers don't write to the same temporary file
+		File temporary= File.createTempFile("index", ".tmp", file.getAbsoluteFile().getParentFile()); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			RandomAccessFile randomAccessFile= new RandomAccessFile(temporary, "rw"); //$NON-NLS-1$
+			try {
+				FileChannel channel= randomAccessFile.getChannel();
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			} finally {
+				randomAccessFile.close();
+			}
+			if (!temporary.renameTo(file)) {
+				file.delete();
+				if (!temporary.renameTo(file))
+					throw new IOException("Could not rename " + temporary + " to " + file); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		} finally {
+			temporary.delete(); // if it has not been renamed
+		}
+	}
+
+	/**
+	 * Tells whether this index still reads its data from a memory mapped file.
+	 *
+	 * @return <code>true</code> if this index is mapped
+	 */
+	public boolean isMapped() {
+		return fIsMapped;
+	}
+
+	/**
+	 * Adds the given word to the bucket of the given hash.
+	 *
+	 * @param hash the phonetic hash of the word
+	 * @param word the word
+	 */
+	public void add(String hash, String word) {
+		if (fIsMapped)
+			copyToHeap();
+
+		int bucket= getBucket(hash);
+		if (bucket == NONE)
+			bucket= addBucket(hash);
+
+		if (fWordCount == fWordOffset.capacity()) {
+			int length= grow(fWordCount);
+			fWordOffset= copy(fWordOffset, length);
+			fWordLength= copy(fWordLength, length);
+			fWordNext= copy(fWordNext, length);
+		}
+
+		int handle= fWordCount;
+		fWordOffset.put(handle, fArenaSize);
+		fWordLength.put(handle, append(word));
+		fWordNext.put(handle, NONE);
+		fWordCount++;
+
+		if (fBucketFirstWord.get(bucket) == NONE)
+			fBucketFirstWord.put(bucket, handle);
+		else
+			fWordNext.put(fBucketLastWord.get(bucket), handle);
+		fBucketLastWord.put(bucket, handle);
+		fBucketSize.put(bucket, fBucketSize.get(bucket) + 1);
+	}
+
+	/**
+	 * Returns the bucket of the given hash.
+	 *
+	 * @param hash the phonetic hash
+	 * @return the bucket handle or {@link #NONE} if no word with this hash has been added
+	 */
+	public int getBucket(String hash) {
+		int hashCode= hash.hashCode();
+		IntBuffer table= fTable;
+		int mask= table.capacity() - 1;
+		for (int slot= mix(hashCode) & mask;; slot= (slot + 1) & mask) {
+			int entry= table.get(slot);
+			if (entry == 0)
+				return NONE;
+			int bucket= entry - 1;
+			if (fBucketHashCode.get(bucket) == hashCode && equals(fBucketOffset.get(bucket), fBucketLength.get(bucket), hash))
+				return bucket;
+		}
+	}
+
+	/**
+	 * Returns the number of words in the given bucket.
+	 *
+	 * @param bucket the bucket handle
+	 * @return the number of words
+	 */
+	public int getBucketSize(int bucket) {
+		return fBucketSize.get(bucket);
+	}
+
+	/**
+	 * Returns the first word of the given bucket.
+	 *
+	 * @param bucket the bucket handle
+	 * @return the word handle
+	 */
+	public int getFirstWord(int bucket) {
+		return fBucketFirstWord.get(bucket);
+	}
+
+	/**
+	 * Returns the word following the given word in its bucket.
+	 *
+	 * @param word the word handle
+	 * @return the handle of the next word or {@link #NONE} if this is the last word
+	 */
+	public int getNextWord(int word) {
+		return fWordNext.get(word);
+	}
+
+	/**
+	 * Returns the given word as string.
+	 *
+	 * @param word the word handle
+	 * @return the word
+	 */
+	public String getWord(int word) {
+		int offset= fWordOffset.get(word);
+		int byteLength= fWordLength.get(word);
+		int end= offset + byteLength;
+		char[] chars= new char[byteLength];
+		int length= 0;
+		ByteBuffer arena= fArena;
+		while (offset < end) {
+			int codePoint= decode(arena, offset);
+			offset+= getEncodedLength(arena.get(offset));
+			length+= Character.toChars(codePoint, chars, length);
+		}
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * Tells whether the given word is equal to the given string.
+	 *
+	 * @param word the word handle
+	 * @param string the string to compare with
+	 * @return <code>true</code> if the word equals the string
+	 */
+	public boolean wordEquals(int word, String string) {
+		return equals(fWordOffset.get(word), fWordLength.get(word), string);
+	}
+
+	/**
+	 * Returns the number of buckets in this index.
+	 *
+	 * @return the number of distinct hashes
+	 */
+	public int getBucketCount() {
+		return fBucketCount;
+	}
+
+	/**
+	 * Returns the number of words in this index.
+	 *
+	 * @return the number of words
+	 */
+	public int getWordCount() {
+		return fWordCount;
+	}
+
+	/**
+	 * Returns an estimate of the memory used by this index. For a mapped index, this is
+	 * the size of the mapped file.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemorySize() {
+		return fArena.capacity() + 4L * (fTable.capacity() + 6 * fBucketHashCode.capacity() + 3 * fWordOffset.capacity());
+	}
+
+	/**
+	 * Removes all hashes and words from this index.
+	 */
+	public void clear() {
+		if (fIsMapped) {
+			fTable= IntBuffer.allocate(fTable.capacity());
+			fIsMapped= false;
+			fBucketCount= 0;
+			fWordCount= 0;
+			fArenaSize= 0;
+			compact();
+			return;
+		}
+		for (int i= 0; i < fTable.capacity(); i++)
+			fTable.put(i, 0);
+		fBucketCount= 0;
+		fWordCount= 0;
+		fArenaSize= 0;
+	}
+
+	/**
+	 * Releases the unused capacity of this index.
+	 */
+	public void compact() {
+		if (fIsMapped)
+			return;
+
+		fArena= copy(fArena, fArenaSize);
+
+		fBucketHashCode= copy(fBucketHashCode, fBucketCount);
+		fBucketOffset= copy(fBucketOffset, fBucketCount);
+		fBucketLength= copy(fBucketLength, fBucketCount);
+		fBucketFirstWord= copy(fBucketFirstWord, fBucketCount);
+		fBucketLastWord= copy(fBucketLastWord, fBucketCount);
+		fBucketSize= copy(fBucketSize, fBucketCount);
+
+		fWordOffset= copy(fWordOffset, fWordCount);
+		fWordLength= copy(fWordLength, fWordCount);
+		fWordNext= copy(fWordNext, fWordCount);
+	}
+
+	/**
+	 * Copies the data of a mapped index to the heap, so that it can be modified.
+	 */
+	private void copyToHeap() {
+		fIsMapped= false;
+		fTable= copy(fTable, fTable.capacity());
+		compact();
+	}
+
+	private int addBucket(String hash) {
+		if (fBucketCount + 1 > fTable.capacity() * fLoadFactor)
+			rehash(fTable.capacity() << 1);
+
+		if (fBucketCount == fBucketHashCode.capacity()) {
+			int length= grow(fBucketCount);
+			fBucketHashCode= copy(fBucketHashCode, length);
+			fBucketOffset= copy(fBucketOffset, length);
+			fBucketLength= copy(fBucketLength, length);
+			fBucketFirstWord= copy(fBucketFirstWord, length);
+			fBucketLastWord= copy(fBucketLastWord, length);
+			fBucketSize= copy(fBucketSize, length);
+		}
+
+		int bucket= fBucketCount;
+		int hashCode= hash.hashCode();
+		fBucketHashCode.put(bucket, hashCode);
+		fBucketOffset.put(bucket, fArenaSize);
+		fBucketLength.put(bucket, append(hash));
+		fBucketFirstWord.put(bucket, NONE);
+		fBucketLastWord.put(bucket, NONE);
+		fBucketSize.put(bucket, 0);
+		fBucketCount++;
+
+		insert(fTable, bucket, hashCode);
+		return bucket;
+	}
+
+	private void rehash(int capacity) {
+		IntBuffer table= IntBuffer.allocate(capacity);
+		for (int bucket= 0; bucket < fBucketCount; bucket++)
+			insert(table, bucket, fBucketHashCode.get(bucket));
+		fTable= table;
+	}
+
+	private static void insert(IntBuffer table, int bucket, int hashCode) {
+		int mask= table.capacity() - 1;
+		int slot= mix(hashCode) & mask;
+		while (table.get(slot) != 0)
+			slot= (slot + 1) & mask;
+		table.put(slot, bucket + 1);
+	}
+
+	/**
+	 * Spreads the bits of the given hash code, since phonetic hashes often share long
+	 * common prefixes.
+	 *
+	 * @param hashCode the hash code
+	 * @return the mixed hash code
+	 */
+	private static int mix(int hashCode) {
+		hashCode^= (hashCode >>> 20) ^ (hashCode >>> 12);
+		return hashCode ^ (hashCode >>> 7) ^ (hashCode >>> 4);
+	}
+
+	/**
+	 * Appends the UTF-8 encoding of the given string to the arena.
+	 *
+	 * @param string the string to append
+	 * @return the number of bytes appended
+	 */
+	private int append(String string) {
+		int start= fArenaSize;
+		for (int i= 0, length= string.length(); i < length; i++) {
+			int codePoint= string.codePointAt(i);
+			if (Character.isSupplementaryCodePoint(codePoint))
+				i++;
+
+			if (fArenaSize + 4 > fArena.capacity())
+				fArena= copy(fArena, grow(fArena.capacity()));
+
+			ByteBuffer arena= fArena;
+			if (codePoint < 0x80) {
+				arena.put(fArenaSize++, (byte) codePoint);
+			} else if (codePoint < 0x800) {
+				arena.put(fArenaSize++, (byte) (0xC0 | (codePoint >> 6)));
+				arena.put(fArenaSize++, (byte) (0x80 | (codePoint & 0x3F)));
+			} else if (codePoint < 0x10000) {
+				arena.put(fArenaSize++, (byte) (0xE0 | (codePoint >> 12)));
+				arena.put(fArenaSize++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				arena.put(fArenaSize++, (byte) (0x80 | (codePoint & 0x3F)));
+			} else {
+				arena.put(fArenaSize++, (byte) (0xF0 | (codePoint >> 18)));
+				arena.put(fArenaSize++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				arena.put(fArenaSize++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				arena.put(fArenaSize++, (byte) (0x80 | (codePoint & 0x3F)));
+			}
+		}
+		return fArenaSize - start;
+	}
+
+	/**
+	 * Compares the UTF-8 encoded string in the arena with the given string without decoding
+	 * it into a new string.
+	 *
+	 * @param offset the offset of the encoded string
+	 * @param length the length of the encoded string in bytes
+	 * @param string the string to compare with
+	 * @return <code>true</code> if the strings are equal
+	 */
+	private boolean equals(int offset, int length, String string) {
+		ByteBuffer arena= fArena;
+		int end= offset + length;
+		int i= 0;
+		int stringLength= string.length();
+		while (offset < end) {
+			if (i >= stringLength)
+				return false;
+			int codePoint= string.codePointAt(i);
+			if (decode(arena, offset) != codePoint)
+				return false;
+			offset+= getEncodedLength(arena.get(offset));
+			i+= Character.charCount(codePoint);
+		}
+		return i == stringLength;
+	}
+
+	private static int decode(ByteBuffer arena, int offset) {
+		int first= arena.get(offset) & 0xFF;
+		if (first < 0x80)
+			return first;
+		if (first < 0xE0)
+			return ((first & 0x1F) << 6) | (arena.get(offset + 1) & 0x3F);
+		if (first < 0xF0)
+			return ((first & 0x0F) << 12) | ((arena.get(offset + 1) & 0x3F) << 6) | (arena.get(offset + 2) & 0x3F);
+		return ((first & 0x07) << 18) | ((arena.get(offset + 1) & 0x3F) << 12) | ((arena.get(offset + 2) & 0x3F) << 6) | (arena.get(offset + 3) & 0x3F);
+	}
+
+	private static int getEncodedLength(byte first) {
+		int value= first & 0xFF;
+		if (value < 0x80)
+			return 1;
+		if (value < 0xE0)
+			return 2;
+		if (value < 0xF0)
+			return 3;
+		return 4;
+	}
+
+	private static int grow(int length) {
+		return Math.max(16, length + (length >> 1));
+	}
+
+	private static int align(int size) {
+		return (size + 3) & ~3;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+		ByteBuffer duplicate= buffer.duplicate();
+		duplicate.position(position);
+		duplicate.limit(position + length);
+		return duplicate.slice().order(buffer.order());
+	}
+
+	private static void put(ByteBuffer target, IntBuffer source, int length) {
+		for (int i= 0; i < length; i++)
+			target.putInt(source.get(i));
+	}
+
+	private static IntBuffer copy(IntBuffer buffer, int length) {
+		int[] result= new int[length];
+		int count= Math.min(buffer.capacity(), length);
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset(), result, 0, count);
+		} else {
+			for (int i= 0; i < count; i++)
+				result[i]= buffer.get(i);
+		}
+		return IntBuffer.wrap(result);
+	}
+
+	private static ByteBuffer copy(ByteBuffer buffer, int length) {
+		byte[] result= new byte[length];
+		int count= Math.min(buffer.capacity(), length);
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset(), result, 0, count);
+		} else {
+			for (int i= 0; i < count; i++)
+				result[i]= buffer.get(i);
+		}
+		return ByteBuffer.wrap(result);
+	}
+}
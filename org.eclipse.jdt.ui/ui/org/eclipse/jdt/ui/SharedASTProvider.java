@@ -105,7 +105,9 @@ public final class SharedASTProvider {
 
 	/**
 	 * Returns a compilation unit AST for the given Java element. If the element is the input of the
-	 * active Java editor, the AST is the shared AST.
+	 * active Java editor, the AST is the shared AST. If the element is the input of a recently
+	 * active Java editor and has not been modified since that editor was active, the AST of that
+	 * editor may be returned.
 	 * <p>
 	 * Clients are not allowed to modify the AST and must not keep any references.
 	 * </p>
@@ -115,10 +117,13 @@ public final class SharedASTProvider {
 	 * @param progressMonitor the progress monitor or <code>null</code>
 	 * @return the AST or <code>null</code>.
 	 *         <dl>
-	 *         <li>If {@link #WAIT_NO} has been specified <code>null</code> is returned if the
-	 *         element is not input of the current Java editor or no AST is available</li>
+	 *         <li>If {@link #WAIT_NO} has been specified <code>null</code> is returned if no AST
+	 *         is available: the element is the input of the current Java editor and its AST has
+	 *         not been created yet, or the element is not the input of the current Java editor and no
+	 *         AST of a recently active editor is available for it</li>
 	 *         <li>If {@link #WAIT_ACTIVE_ONLY} has been specified <code>null</code> is returned if
-	 *         the element is not input of the current Java editor</li>
+	 *         the element is not input of the current Java editor and no AST of a recently active
+	 *         editor is available for it</li>
 	 *         <li>If {@link #WAIT_YES} has been specified either the shared AST is returned or a
 	 *         new AST is created.</li>
 	 *         <li><code>null</code> will be returned if the operation gets canceled.</li>
@@ -28,7 +28,9 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.preference.IPreferenceStore;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.Region;
@@ -284,6 +286,65 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		}
 	}
 
+	/**
+	 * Index of annotation / position tuples by position offset, used to
+	 * {@link DefaultJavaFoldingStructureProvider#match(List, Map, List, DefaultJavaFoldingStructureProvider.FoldingStructureComputationContext) match}
+	 * deleted annotations without scanning all changed or added annotations.
+	 *
+	 * @since 3.8
+	 */
+	private static final class OffsetIndex {
+		private final Map<Integer, List<Tuple>> fTuples= new HashMap<Integer, List<Tuple>>();
+
+		/**
+		 * Creates an index of the given annotations. The positions of the annotations are
+		 * taken from <code>positionMap</code> or from the model of the context if
+		 * <code>positionMap</code> is <code>null</code>.
+		 *
+		 * @param annotations the annotations to index
+		 * @param positionMap a <code>Map&lt;Annotation, Position&gt;</code> or <code>null</code>
+		 * @param ctx the context
+		 */
+		OffsetIndex(Collection<JavaProjectionAnnotation> annotations, Map<JavaProjectionAnnotation, Position> positionMap, FoldingStructureComputationContext ctx) {
+			for (Iterator<JavaProjectionAnnotation> it= annotations.iterator(); it.hasNext();) {
+				JavaProjectionAnnotation annotation= it.next();
+				Position position= positionMap == null ? ctx.getModel().getPosition(annotation) : positionMap.get(annotation);
+				if (position == null)
+					continue;
+
+				Integer offset= new Integer(position.getOffset());
+				List<Tuple> list= fTuples.get(offset);
+				if (list == null) {
+					list= new ArrayList<Tuple>(2);
+					fTuples.put(offset, list);
+				}
+				list.add(new Tuple(annotation, position));
+			}
+		}
+
+		/**
+		 * Finds and removes a match for <code>tuple</code>. A tuple is said to match another if
+		 * their annotations have the same comment flag and their position offsets are equal.
+		 *
+		 * @param tuple the tuple for which we want to find a match
+		 * @return a matching tuple or <code>null</code> for no match
+		 */
+		Tuple removeMatch(Tuple tuple) {
+			List<Tuple> list= fTuples.get(new Integer(tuple.position.getOffset()));
+			if (list == null)
+				return null;
+
+			for (Iterator<Tuple> it= list.iterator(); it.hasNext();) {
+				Tuple candidate= it.next();
+				if (tuple.annotation.isComment() == candidate.annotation.isComment()) {
+					it.remove();
+					return candidate;
+				}
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * Filter for annotations.
 	 */
@@ -356,9 +417,10 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 				if (shouldIgnoreDelta(e.getDelta().getCompilationUnitAST(), delta))
 					return;
 
+				IRegion window= computeChangedRegion(delta);
 				fUpdatingCount++;
 				try {
-					update(createContext(false));
+					update(createContext(false), window);
 				} finally {
 					fUpdatingCount--;
 				}
@@ -418,6 +480,74 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 			return false;
 		}
 
+		/**
+		 * Returns the line aligned region of the document that has been modified since the
+		 * previous delta, if the given delta allows to update only the folding structure of the
+		 * elements that overlap this region.
+		 *
+		 * @param delta the Java element delta for the input element
+		 * @return the modified region, or <code>null</code> if the whole folding structure has to
+		 *         be recomputed
+		 * @since 3.8
+		 */
+		private IRegion computeChangedRegion(IJavaElementDelta delta) {
+			int start, endDistance;
+			synchronized (fDirtyLock) {
+				// edits made while the previous delta was computed may not have been in its AST
+				start= Math.min(fPreviousDirtyStart, fDirtyStart);
+				endDistance= Math.min(fPreviousDirtyEndDistance, fDirtyEndDistance);
+				fPreviousDirtyStart= fDirtyStart;
+				fPreviousDirtyEndDistance= fDirtyEndDistance;
+				fDirtyStart= NONE;
+				fDirtyEndDistance= NONE;
+			}
+
+			if (start == NONE || !(fInput instanceof ICompilationUnit) || (delta.getFlags() & IJavaElementDelta.F_FINE_GRAINED) == 0 || hasStructuralChange(delta))
+				return null;
+
+			IDocument document= getDocument();
+			if (document == null)
+				return null;
+
+			try {
+				int end= document.getLength() - endDistance;
+				if (end < start)
+					return null;
+				int offset= document.getLineOffset(document.getLineOfOffset(start));
+				int endLine= document.getLineOfOffset(end);
+				int endOffset= document.getLineOffset(endLine) + document.getLineLength(endLine);
+				return new Region(offset, endOffset - offset);
+			} catch (BadLocationException x) {
+				return null; // concurrent modification
+			}
+		}
+
+		/**
+		 * Tells whether the delta adds, removes or reorders elements, or changes import or package
+		 * declarations.
+		 *
+		 * @param delta the Java element delta
+		 * @return <code>true</code> if the delta changes the element structure
+		 * @since 3.8
+		 */
+		private boolean hasStructuralChange(IJavaElementDelta delta) {
+			IJavaElementDelta[] children= delta.getAffectedChildren();
+			for (int i= 0; i < children.length; i++) {
+				IJavaElementDelta child= children[i];
+				if (child.getKind() != IJavaElementDelta.CHANGED || (child.getFlags() & IJavaElementDelta.F_REORDER) != 0)
+					return true;
+				switch (child.getElement().getElementType()) {
+					case IJavaElement.PACKAGE_DECLARATION:
+					case IJavaElement.IMPORT_CONTAINER:
+					case IJavaElement.IMPORT_DECLARATION:
+						return true;
+				}
+				if (hasStructuralChange(child))
+					return true;
+			}
+			return false;
+		}
+
 		private IJavaElementDelta findElement(IJavaElement target, IJavaElementDelta delta) {
 
 			if (delta == null || target == null)
@@ -647,6 +777,32 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 	}
 
+	/**
+	 * Tracks the range of the document that has been modified since the last update.
+	 *
+	 * @since 3.8
+	 */
+	private final class DirtyRangeTracker implements IDocumentListener {
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			int start= event.getOffset();
+			int endDistance= event.getDocument().getLength() - start - event.getLength();
+			synchronized (fDirtyLock) {
+				fDirtyStart= Math.min(fDirtyStart, start);
+				fDirtyEndDistance= Math.min(fDirtyEndDistance, endDistance);
+			}
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentChanged(DocumentEvent event) {
+		}
+	}
+
 	/**
 	 * Internal projection listener.
 	 */
@@ -716,6 +872,34 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 	private volatile int fUpdatingCount= 0;
 
+	/**
+	 * Marks an unknown start or end distance of a dirty range.
+	 * @since 3.8
+	 */
+	private static final int NONE= Integer.MAX_VALUE;
+
+	/**
+	 * The dirty range tracker and the document it is registered with.
+	 * @since 3.8
+	 */
+	private DirtyRangeTracker fDirtyRangeTracker;
+	private IDocument fTrackedDocument;
+	/**
+	 * Lock for the dirty ranges.
+	 * @since 3.8
+	 */
+	private final Object fDirtyLock= new Object();
+	/**
+	 * Start and end distance of the range modified since the last update.
+	 * @since 3.8
+	 */
+	private int fDirtyStart= NONE, fDirtyEndDistance= NONE;
+	/**
+	 * Start and end distance of the range modified before the last update.
+	 * @since 3.8
+	 */
+	private int fPreviousDirtyStart= NONE, fPreviousDirtyEndDistance= NONE;
+
 	/**
 	 * Creates a new folding provider. It must be
 	 * {@link #install(ITextEditor, ProjectionViewer) installed} on an editor/viewer pair before it
@@ -818,6 +1002,32 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 			JavaCore.removeElementChangedListener(fElementListener);
 			fElementListener= null;
 		}
+		trackDocument(null);
+	}
+
+	/**
+	 * Tracks the modifications of the given document and resets the dirty ranges.
+	 *
+	 * @param document the document to track, or <code>null</code> to stop tracking
+	 * @since 3.8
+	 */
+	private void trackDocument(IDocument document) {
+		if (fTrackedDocument != document) {
+			if (fTrackedDocument != null)
+				fTrackedDocument.removeDocumentListener(fDirtyRangeTracker);
+			fTrackedDocument= document;
+			if (document != null) {
+				if (fDirtyRangeTracker == null)
+					fDirtyRangeTracker= new DirtyRangeTracker();
+				document.addDocumentListener(fDirtyRangeTracker);
+			}
+		}
+		synchronized (fDirtyLock) {
+			fDirtyStart= NONE;
+			fDirtyEndDistance= NONE;
+			fPreviousDirtyStart= NONE;
+			fPreviousDirtyEndDistance= NONE;
+		}
 	}
 
 	/*
@@ -826,7 +1036,10 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 	public final void initialize() {
 		fUpdatingCount++;
 		try {
-			update(createInitialContext());
+			FoldingStructureComputationContext ctx= createInitialContext();
+			if (ctx != null)
+				trackDocument(ctx.getDocument());
+			update(ctx, null);
 		} finally {
 			fUpdatingCount--;
 		}
@@ -873,7 +1086,15 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		fCollapseHeaderComments= store.getBoolean(PreferenceConstants.EDITOR_FOLDING_HEADERS);
 	}
 
-	private void update(FoldingStructureComputationContext ctx) {
+	/**
+	 * Updates the folding structure.
+	 *
+	 * @param ctx the context, may be <code>null</code>
+	 * @param window the region of the document that has been modified, or <code>null</code> to
+	 *            recompute the folding structure of all elements. If not <code>null</code>, only
+	 *            the folding structure of the elements overlapping the region is recomputed.
+	 */
+	private void update(FoldingStructureComputationContext ctx, IRegion window) {
 		if (ctx == null)
 			return;
 
@@ -881,9 +1102,13 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		List<JavaProjectionAnnotation> deletions= new ArrayList<JavaProjectionAnnotation>();
 		List<JavaProjectionAnnotation> updates= new ArrayList<JavaProjectionAnnotation>();
 
-		computeFoldingStructure(ctx);
+		Set<IJavaElement> recomputed= null;
+		if (window != null)
+			recomputed= computeFoldingStructure(window, ctx);
+		if (recomputed == null)
+			computeFoldingStructure(ctx);
 		Map<JavaProjectionAnnotation, Position> newStructure= ctx.fMap;
-		Map<IJavaElement, List<Tuple>> oldStructure= computeCurrentStructure(ctx);
+		Map<IJavaElement, List<Tuple>> oldStructure= computeCurrentStructure(ctx, recomputed);
 
 		Iterator<JavaProjectionAnnotation> e= newStructure.keySet().iterator();
 		while (e.hasNext()) {
@@ -982,6 +1207,68 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		}
 	}
 
+	/**
+	 * Computes the folding structure of the elements whose source range overlaps the given
+	 * region of the document. Changes before the first type may affect the header comment, so
+	 * they are not handled.
+	 *
+	 * @param window the modified region of the document
+	 * @param ctx the computation context
+	 * @return the elements whose folding structure has been computed, or <code>null</code> if
+	 *         the folding structure of all elements has to be computed
+	 * @since 3.8
+	 */
+	private Set<IJavaElement> computeFoldingStructure(IRegion window, FoldingStructureComputationContext ctx) {
+		try {
+			if (!(fInput instanceof ISourceReference) || !(fInput instanceof IParent))
+				return null;
+			String source= ((ISourceReference) fInput).getSource();
+			if (source == null)
+				return null;
+
+			IJavaElement[] children= ((IParent) fInput).getChildren();
+			IType firstType= null;
+			for (int i= 0; i < children.length && firstType == null; i++) {
+				if (children[i] instanceof IType)
+					firstType= (IType) children[i];
+			}
+			if (firstType == null)
+				return null;
+			ISourceRange firstTypeRange= firstType.getSourceRange();
+			if (!SourceRange.isAvailable(firstTypeRange) || window.getOffset() < firstTypeRange.getOffset())
+				return null;
+			if (!overlaps(firstTypeRange, window))
+				ctx.setFirstType(firstType); // no header comment to compute
+
+			ctx.getScanner().setSource(source.toCharArray());
+			Set<IJavaElement> recomputed= new HashSet<IJavaElement>();
+			computeFoldingStructure(children, window, recomputed, ctx);
+			return recomputed;
+		} catch (JavaModelException x) {
+			return null;
+		}
+	}
+
+	private void computeFoldingStructure(IJavaElement[] elements, IRegion window, Set<IJavaElement> recomputed, FoldingStructureComputationContext ctx) throws JavaModelException {
+		for (int i= 0; i < elements.length; i++) {
+			IJavaElement element= elements[i];
+			if (!(element instanceof ISourceReference) || !overlaps(((ISourceReference) element).getSourceRange(), window))
+				continue;
+
+			recomputed.add(element);
+			computeFoldingStructure(element, ctx);
+
+			if (element instanceof IParent) {
+				IParent parent= (IParent) element;
+				computeFoldingStructure(parent.getChildren(), window, recomputed, ctx);
+			}
+		}
+	}
+
+	private static boolean overlaps(ISourceRange range, IRegion region) {
+		return SourceRange.isAvailable(range) && range.getOffset() <= region.getOffset() + region.getLength() && region.getOffset() <= range.getOffset() + range.getLength();
+	}
+
 	/**
 	 * Computes the folding structure for a given {@link IJavaElement java element}. Computed
 	 * projection annotations are
@@ -1295,6 +1582,9 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 		List<JavaProjectionAnnotation> newDeletions= new ArrayList<JavaProjectionAnnotation>();
 		List<JavaProjectionAnnotation> newChanges= new ArrayList<JavaProjectionAnnotation>();
+		Set<JavaProjectionAnnotation> matchedChanges= new HashSet<JavaProjectionAnnotation>();
+		OffsetIndex changeIndex= new OffsetIndex(changes, null, ctx);
+		OffsetIndex additionIndex= new OffsetIndex(additions.keySet(), additions, ctx);
 
 		Iterator<JavaProjectionAnnotation> deletionIterator= deletions.iterator();
 		while (deletionIterator.hasNext()) {
@@ -1305,10 +1595,14 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 			Tuple deletedTuple= new Tuple(deleted, deletedPosition);
 
-			Tuple match= findMatch(deletedTuple, changes, null, ctx);
+			Tuple match= changeIndex.removeMatch(deletedTuple);
 			boolean addToDeletions= true;
-			if (match == null) {
-				match= findMatch(deletedTuple, additions.keySet(), additions, ctx);
+			if (match != null) {
+				matchedChanges.add(match.annotation);
+			} else {
+				match= additionIndex.removeMatch(deletedTuple);
+				if (match != null)
+					additions.remove(match.annotation);
 				addToDeletions= false;
 			}
 
@@ -1330,53 +1624,20 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		}
 
 		deletions.addAll(newDeletions);
+		if (!matchedChanges.isEmpty())
+			changes.removeAll(matchedChanges);
 		changes.addAll(newChanges);
 	}
 
 	/**
-	 * Finds a match for <code>tuple</code> in a collection of
-	 * annotations. The positions for the
-	 * <code>JavaProjectionAnnotation</code> instances in
-	 * <code>annotations</code> can be found in the passed
-	 * <code>positionMap</code> or <code>fCachedModel</code> if
-	 * <code>positionMap</code> is <code>null</code>.
-	 * <p>
-	 * A tuple is said to match another if their annotations have the
-	 * same comment flag and their position offsets are equal.
-	 * </p>
-	 * <p>
-	 * If a match is found, the annotation gets removed from
-	 * <code>annotations</code>.
-	 * </p>
+	 * Returns the current annotations by their element, sorted by offset.
 	 *
-	 * @param tuple the tuple for which we want to find a match
-	 * @param annotations collection of
-	 *        <code>JavaProjectionAnnotation</code>
-	 * @param positionMap a <code>Map&lt;Annotation, Position&gt;</code>
-	 *        or <code>null</code>
 	 * @param ctx the context
-	 * @return a matching tuple or <code>null</code> for no match
+	 * @param recomputed if not <code>null</code>, only the annotations of these elements and
+	 *            annotations with deleted positions are returned
+	 * @return the current structure
 	 */
-	private Tuple findMatch(Tuple tuple, Collection<JavaProjectionAnnotation> annotations, Map<JavaProjectionAnnotation, Position> positionMap, FoldingStructureComputationContext ctx) {
-		Iterator<JavaProjectionAnnotation> it= annotations.iterator();
-		while (it.hasNext()) {
-			JavaProjectionAnnotation annotation= it.next();
-			if (tuple.annotation.isComment() == annotation.isComment()) {
-				Position position= positionMap == null ? ctx.getModel().getPosition(annotation) : positionMap.get(annotation);
-				if (position == null)
-					continue;
-
-				if (tuple.position.getOffset() == position.getOffset()) {
-					it.remove();
-					return new Tuple(annotation, position);
-				}
-			}
-		}
-
-		return null;
-	}
-
-	private Map<IJavaElement, List<Tuple>> computeCurrentStructure(FoldingStructureComputationContext ctx) {
+	private Map<IJavaElement, List<Tuple>> computeCurrentStructure(FoldingStructureComputationContext ctx, Set<IJavaElement> recomputed) {
 		Map<IJavaElement, List<Tuple>> map= new HashMap<IJavaElement, List<Tuple>>();
 		ProjectionAnnotationModel model= ctx.getModel();
 		Iterator<Annotation> e= model.getAnnotationIterator();
@@ -1386,6 +1647,8 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 				JavaProjectionAnnotation java= (JavaProjectionAnnotation) annotation;
 				Position position= model.getPosition(java);
 				Assert.isNotNull(position);
+				if (recomputed != null && !recomputed.contains(java.getElement()) && !position.isDeleted())
+					continue;
 				List<Tuple> list= map.get(java.getElement());
 				if (list == null) {
 					list= new ArrayList<Tuple>(2);
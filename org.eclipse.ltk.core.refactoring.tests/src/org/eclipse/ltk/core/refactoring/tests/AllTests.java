@@ -24,6 +24,7 @@ public class AllTests {
 		TestSuite suite= new TestSuite("All LTK Refactoring Core Tests"); //$NON-NLS-1$
 		
 		suite.addTestSuite(RefactoringContextTest.class);
+		suite.addTestSuite(PerformRefactoringHistoryOperationTest.class);
 		
 		suite.addTest(ParticipantTests.suite());
 		suite.addTest(RefactoringHistoryTests.suite());
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.PerformRefactoringHistoryOperation;
+import org.eclipse.ltk.core.refactoring.Refactoring;
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptor;
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringDescriptorProxyAdapter;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryImplementation;
+
+/**
+ * Tests checking the conditions of refactorings ahead of their execution, see
+ * {@link PerformRefactoringHistoryOperation#setCheckConditionsInParallel(boolean)}.
+ */
+public class PerformRefactoringHistoryOperationTest extends TestCase {
+
+	private static final String ID= "org.eclipse.ltk.core.refactoring.tests.parallel";
+
+	/** The time to wait for another thread, in milliseconds */
+	private static final long TIMEOUT= 10000;
+
+	/** Events of the test refactorings, in the order they happened */
+	private static class Log {
+		private final List fEvents= new ArrayList();
+		private boolean fReleased= false;
+
+		public synchronized void add(String event) {
+			fEvents.add(event);
+			notifyAll();
+		}
+
+		public synchronized int count(String event) {
+			int count= 0;
+			for (int i= 0; i < fEvents.size(); i++) {
+				if (event.equals(fEvents.get(i)))
+					count++;
+			}
+			return count;
+		}
+
+		public synchronized int indexOf(String event) {
+			return fEvents.indexOf(event);
+		}
+
+		public synchronized boolean await(String event) throws InterruptedException {
+			long end= System.currentTimeMillis() + TIMEOUT;
+			while (!fEvents.contains(event)) {
+				long remaining= end - System.currentTimeMillis();
+				if (remaining <= 0)
+					return false;
+				wait(remaining);
+			}
+			return true;
+		}
+
+		public synchronized void stall() throws InterruptedException {
+			long end= System.currentTimeMillis() + TIMEOUT;
+			while (!fReleased) {
+				long remaining= end - System.currentTimeMillis();
+				if (remaining <= 0)
+					return;
+				wait(remaining);
+			}
+		}
+
+		public synchronized void release() {
+			fReleased= true;
+			notifyAll();
+		}
+	}
+
+	private class TestDescriptor extends RefactoringDescriptor {
+		private final Object[] fAffectedObjects;
+
+		/** The event to wait for before the change is performed, or <code>null</code> */
+		private String fAwait= null;
+
+		/** Does the condition checking stall if it is not done in the test thread? */
+		private boolean fStall= false;
+
+		public TestDescriptor(String name, IProject project, Object[] affectedObjects) {
+			super(ID, project.getName(), name, null, RefactoringDescriptor.NONE);
+			fAffectedObjects= affectedObjects;
+		}
+
+		public Refactoring createRefactoring(RefactoringStatus status) throws CoreException {
+			return new TestRefactoring(this);
+		}
+	}
+
+	private class TestRefactoring extends Refactoring {
+		private final TestDescriptor fDescriptor;
+
+		public TestRefactoring(TestDescriptor descriptor) {
+			fDescriptor= descriptor;
+		}
+
+		public String getName() {
+			return fDescriptor.getDescription();
+		}
+
+		public RefactoringStatus checkInitialConditions(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			return new RefactoringStatus();
+		}
+
+		public RefactoringStatus checkFinalConditions(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			fLog.add("check " + getName());
+			if (fDescriptor.fStall && Thread.currentThread() != fTestThread) {
+				try {
+					fLog.stall();
+				} catch (InterruptedException e) {
+					// report as canceled
+				}
+				if (pm.isCanceled())
+					fLog.add("canceled " + getName());
+			}
+			return new RefactoringStatus();
+		}
+
+		public Change createChange(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			fLog.add("create " + getName());
+			return new TestChange(getName(), fDescriptor.fAffectedObjects, fDescriptor.fAwait);
+		}
+	}
+
+	private class TestChange extends Change {
+		private final String fName;
+		private final Object[] fAffectedObjects;
+		private final String fAwait;
+
+		public TestChange(String name, Object[] affectedObjects, String await) {
+			fName= name;
+			fAffectedObjects= affectedObjects;
+			fAwait= await;
+		}
+
+		public String getName() {
+			return fName;
+		}
+
+		public void initializeValidationData(IProgressMonitor pm) {
+		}
+
+		public RefactoringStatus isValid(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			return new RefactoringStatus();
+		}
+
+		public Change perform(IProgressMonitor pm) throws CoreException {
+			try {
+				if (fAwait != null && !fLog.await(fAwait))
+					fLog.add("timeout " + fName);
+			} catch (InterruptedException e) {
+				fLog.add("timeout " + fName);
+			}
+			fLog.add("perform " + fName);
+			return new TestChange("undo " + fName, fAffectedObjects, null);
+		}
+
+		public Object getModifiedElement() {
+			return null;
+		}
+
+		public Object[] getAffectedObjects() {
+			return fAffectedObjects;
+		}
+	}
+
+	private IProject fFirstProject;
+	private IProject fSecondProject;
+
+	private Log fLog;
+	private Thread fTestThread;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fFirstProject= createProject("ParallelFirst");
+		fSecondProject= createProject("ParallelSecond");
+		fLog= new Log();
+		fTestThread= Thread.currentThread();
+	}
+
+	protected void tearDown() throws Exception {
+		fLog.release();
+		fFirstProject.delete(true, true, null);
+		fSecondProject.delete(true, true, null);
+		super.tearDown();
+	}
+
+	private static IProject createProject(String name) throws CoreException {
+		IProject project= ResourcesPlugin.getWorkspace().getRoot().getProject(name);
+		project.create(null);
+		project.open(null);
+		return project;
+	}
+
+	private void perform(TestDescriptor[] descriptors) throws CoreException {
+		RefactoringDescriptorProxy[] proxies= new RefactoringDescriptorProxy[descriptors.length];
+		for (int i= 0; i < descriptors.length; i++) {
+			// histories are performed in descending order of time stamps
+			descriptors[i].setTimeStamp(descriptors.length - i);
+			proxies[i]= new RefactoringDescriptorProxyAdapter(descriptors[i]);
+		}
+		PerformRefactoringHistoryOperation operation= new PerformRefactoringHistoryOperation(new RefactoringHistoryImplementation(proxies));
+		operation.setCheckConditionsInParallel(true);
+		ResourcesPlugin.getWorkspace().run(operation, new NullProgressMonitor());
+		assertTrue(operation.getExecutionStatus().toString(), operation.getExecutionStatus().isOK());
+	}
+
+	private void assertPerformedInOrder(String[] names) {
+		int previous= -1;
+		for (int i= 0; i < names.length; i++) {
+			int index= fLog.indexOf("perform " + names[i]);
+			assertTrue(names[i], index > previous);
+			assertEquals(names[i], 1, fLog.count("perform " + names[i]));
+			previous= index;
+		}
+	}
+
+	public void testIndependentChangeKeepsResult() throws Exception {
+		TestDescriptor first= new TestDescriptor("first", fFirstProject, new Object[] { fFirstProject });
+		first.fAwait= "create second";
+		TestDescriptor second= new TestDescriptor("second", fSecondProject, new Object[] { fSecondProject });
+		perform(new TestDescriptor[] { first, second });
+
+		assertEquals(0, fLog.count("timeout first"));
+		assertPerformedInOrder(new String[] { "first", "second" });
+		assertEquals(1, fLog.count("check second"));
+	}
+
+	public void testConflictingChangeAbandonsResult() throws Exception {
+		TestDescriptor first= new TestDescriptor("first", fFirstProject, new Object[] { fSecondProject.getFile("file.txt") });
+		first.fAwait= "create second";
+		TestDescriptor second= new TestDescriptor("second", fSecondProject, new Object[] { fSecondProject });
+		perform(new TestDescriptor[] { first, second });
+
+		assertEquals(0, fLog.count("timeout first"));
+		assertPerformedInOrder(new String[] { "first", "second" });
+		assertEquals(2, fLog.count("check second"));
+	}
+
+	public void testUnknownAffectedObjectsAbandonResult() throws Exception {
+		TestDescriptor first= new TestDescriptor("first", fFirstProject, null);
+		first.fAwait= "create second";
+		TestDescriptor second= new TestDescriptor("second", fSecondProject, new Object[] { fSecondProject });
+		perform(new TestDescriptor[] { first, second });
+
+		assertEquals(0, fLog.count("timeout first"));
+		assertPerformedInOrder(new String[] { "first", "second" });
+		assertEquals(2, fLog.count("check second"));
+	}
+
+	public void testStalledCheckIsCanceled() throws Exception {
+		TestDescriptor first= new TestDescriptor("first", fFirstProject, new Object[] { fFirstProject });
+		first.fAwait= "check second";
+		TestDescriptor second= new TestDescriptor("second", fSecondProject, new Object[] { fSecondProject });
+		second.fStall= true;
+		perform(new TestDescriptor[] { first, second });
+
+		assertEquals(0, fLog.count("timeout first"));
+		assertPerformedInOrder(new String[] { "first", "second" });
+		assertEquals(2, fLog.count("check second"));
+
+		fLog.release();
+		assertTrue(fLog.await("canceled second"));
+	}
+}
@@ -15,12 +15,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import junit.framework.TestCase;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DefaultLineTracker;
@@ -33,7 +36,9 @@ import org.eclipse.ltk.core.refactoring.RefactoringDescriptor;
 import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
 import org.eclipse.ltk.core.refactoring.RefactoringSessionDescriptor;
 import org.eclipse.ltk.core.refactoring.history.RefactoringHistory;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringSessionReader.IRefactoringDescriptorHandler;
 import org.eclipse.ltk.internal.core.refactoring.history.RefactoringDescriptorProxyAdapter;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryService;
 
 public class RefactoringHistorySerializationTests extends TestCase {
 
@@ -178,6 +183,36 @@ public class RefactoringHistorySerializationTests extends TestCase {
 		}
 	}
 
+	public void testReadDescriptor13() throws Exception {
+		String xml= "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<session version=\"1.0\">\n" + "<refactoring arg0=\"value 0\" comment=\"A mock comment\" description=\"A mock refactoring\" id=\"org.eclipse.ltk.core.mock\"/>\n" + "<refactoring arg1=\"value 1\" comment=\"No comment\" description=\"Another mock refactoring\" flags=\"1\" id=\"org.eclipse.ltk.core.mock\" version=\"1.0\"/>\n" + "<refactoring arg2=\"value 2\" description=\"Yet another mock refactoring\" flags=\"5\" id=\"org.eclipse.ltk.core.mock\" project=\"test0\" version=\"1.1\"/>\n" + "</session>\n" + "";
+		final List descriptions= new ArrayList();
+		RefactoringHistoryService.getInstance().readRefactoringDescriptors(new ByteArrayInputStream(xml.getBytes("utf-8")), RefactoringDescriptor.BREAKING_CHANGE, new IRefactoringDescriptorHandler() {
+
+			public void handleDescriptor(RefactoringDescriptor descriptor) {
+				descriptions.add(descriptor.getDescription());
+			}
+		}, null);
+		assertEquals("Wrong refactoring descriptors read:", Arrays.asList(new String[] { "Another mock refactoring", "Yet another mock refactoring"}), descriptions);
+	}
+
+	public void testReadDescriptor14() throws Exception {
+		String xml= "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<session version=\"1.0\">\n" + "<refactoring arg0=\"value 0\" comment=\"A mock comment\" description=\"A mock refactoring\" id=\"org.eclipse.ltk.core.mock\"/>\n" + "<refactoring arg1=\"value 1\" comment=\"No comment\" description=\"Another mock refactoring\" flags=\"1\" id=\"org.eclipse.ltk.core.mock\" version=\"1.0\"/>\n" + "</session>\n" + "";
+		final List descriptions= new ArrayList();
+		try {
+			RefactoringHistoryService.getInstance().readRefactoringDescriptors(new ByteArrayInputStream(xml.getBytes("utf-8")), RefactoringDescriptor.NONE, new IRefactoringDescriptorHandler() {
+
+				public void handleDescriptor(RefactoringDescriptor descriptor) throws CoreException {
+					descriptions.add(descriptor.getDescription());
+					throw new CoreException(new Status(IStatus.ERROR, RefactoringCore.ID_PLUGIN, IRefactoringCoreStatusCodes.INTERNAL_ERROR, "", null));
+				}
+			}, null);
+			fail("Reading the refactoring descriptors should have been aborted");
+		} catch (CoreException exception) {
+			assertEquals("Wrong status code for aborted reading:", IRefactoringCoreStatusCodes.INTERNAL_ERROR, exception.getStatus().getCode());
+		}
+		assertEquals("Wrong number of refactoring descriptors read:", 1, descriptions.size());
+	}
+
 	public void testReadDescriptor2() throws Exception {
 		String xml= "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<session version=\"1.0\">\n" + "<refactoring arg0=\"value 0\" comment=\"A mock comment\" description=\"A mock refactoring\" id=\"org.eclipse.ltk.core.mock\"/>\n" + "</session>\n" + "";
 		int flags= RefactoringDescriptor.NONE;
@@ -10,6 +10,10 @@
  *******************************************************************************/
 package org.eclipse.ltk.core.refactoring.tests.history;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -18,6 +22,9 @@ import junit.framework.TestCase;
 
 import org.osgi.service.prefs.BackingStoreException;
 
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 
@@ -38,9 +45,12 @@ import org.eclipse.ltk.core.refactoring.history.RefactoringExecutionEvent;
 import org.eclipse.ltk.core.refactoring.history.RefactoringHistory;
 import org.eclipse.ltk.core.refactoring.history.RefactoringHistoryEvent;
 import org.eclipse.ltk.core.refactoring.tests.util.SimpleTestProject;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringPreferenceConstants;
 import org.eclipse.ltk.internal.core.refactoring.history.RefactoringDescriptorProxyAdapter;
 import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryImplementation;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryIndex;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryManager;
 import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryService;
 
 public class RefactoringHistoryServiceTests extends TestCase {
@@ -182,6 +192,10 @@ public class RefactoringHistoryServiceTests extends TestCase {
 		}
 	}
 
+	private IFileStore getWorkspaceHistoryStore() {
+		return EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER).getChild(RefactoringHistoryService.NAME_WORKSPACE_PROJECT);
+	}
+
 	private void setSharedRefactoringHistory(boolean shared) throws BackingStoreException, CoreException {
 		final IEclipsePreferences preferences= new ProjectScope(fProject.getProject()).getNode(RefactoringCore.ID_PLUGIN);
 		preferences.put(RefactoringPreferenceConstants.PREFERENCE_SHARED_REFACTORING_HISTORY, Boolean.toString(shared));
@@ -608,6 +622,92 @@ public class RefactoringHistoryServiceTests extends TestCase {
 		assertEquals("Refactoring history has wrong size", 3, proxies.length);
 	}
 
+	public void testReadWorkspaceHistory4() throws Exception {
+		setUpWorkspaceRefactorings();
+		final RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		RefactoringHistory previousHistory= service.getWorkspaceHistory(null);
+		final IFileStore store= getWorkspaceHistoryStore();
+		final IFileStore index= store.getChild(RefactoringHistoryIndex.NAME_INDEX_FILE);
+		assertTrue("Refactoring history index should exist", index.fetchInfo().exists());
+		RefactoringHistoryIndex.invalidate(store);
+		RefactoringHistory nextHistory= service.getWorkspaceHistory(null);
+		assertEquals("Refactoring history should be the same:", previousHistory, nextHistory);
+	}
+
+	public void testReadWorkspaceHistory5() throws Exception {
+		setUpWorkspaceRefactorings();
+		final RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		RefactoringHistory previousHistory= service.getWorkspaceHistory(null);
+		final IFileStore store= getWorkspaceHistoryStore();
+		final IFileStore index= store.getChild(RefactoringHistoryIndex.NAME_INDEX_FILE);
+		index.delete(EFS.NONE, null);
+		RefactoringHistoryIndex.invalidate(store);
+		RefactoringHistory nextHistory= service.getWorkspaceHistory(null);
+		assertEquals("Refactoring history should be the same:", previousHistory, nextHistory);
+		assertTrue("Refactoring history index should exist", index.fetchInfo().exists());
+	}
+
+	public void testReadWorkspaceHistory6() throws Exception {
+		setUpWorkspaceRefactorings();
+		final RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		RefactoringHistory previousHistory= service.getWorkspaceHistory(null);
+		final IFileStore store= getWorkspaceHistoryStore();
+		assertTrue("Refactoring history index should exist", store.getChild(RefactoringHistoryIndex.NAME_INDEX_FILE).fetchInfo().exists());
+		final IFileStore file= findIndexFile(store);
+		assertNotNull("Refactoring index file should exist", file);
+		final byte[] content= readFile(file);
+		try {
+			// An older version adds a refactoring without updating the binary index
+			final MockRefactoringDescriptor descriptor= new MockRefactoringDescriptor(null, "Added by an older version", "", RefactoringDescriptor.NONE);
+			descriptor.setTimeStamp(1);
+			OutputStream output= file.openOutputStream(EFS.APPEND, null);
+			try {
+				RefactoringHistoryManager.writeRefactoringDescriptorProxies(output, new RefactoringDescriptorProxy[] { new RefactoringDescriptorProxyAdapter(descriptor) });
+			} finally {
+				output.close();
+			}
+			RefactoringHistoryIndex.invalidate(store);
+			RefactoringHistory nextHistory= service.getWorkspaceHistory(null);
+			assertEquals("Refactoring history has wrong size", previousHistory.getDescriptors().length + 1, nextHistory.getDescriptors().length);
+		} finally {
+			OutputStream output= file.openOutputStream(EFS.NONE, null);
+			try {
+				output.write(content);
+			} finally {
+				output.close();
+			}
+			RefactoringHistoryIndex.invalidate(store);
+		}
+		assertEquals("Refactoring history should be the same:", previousHistory, service.getWorkspaceHistory(null));
+	}
+
+	private static IFileStore findIndexFile(IFileStore folder) throws CoreException {
+		IFileStore[] children= folder.childStores(EFS.NONE, null);
+		for (int index= 0; index < children.length; index++) {
+			if (children[index].fetchInfo().isDirectory()) {
+				IFileStore file= findIndexFile(children[index]);
+				if (file != null)
+					return file;
+			} else if (children[index].getName().equals(RefactoringHistoryService.NAME_INDEX_FILE))
+				return children[index];
+		}
+		return null;
+	}
+
+	private static byte[] readFile(IFileStore file) throws CoreException, IOException {
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+		InputStream input= file.openInputStream(EFS.NONE, null);
+		try {
+			byte[] buffer= new byte[1024];
+			int read;
+			while ((read= input.read(buffer)) != -1)
+				bytes.write(buffer, 0, read);
+		} finally {
+			input.close();
+		}
+		return bytes.toByteArray();
+	}
+
 	public void testSharing0() throws Exception {
 		final IProject project= fProject.getProject();
 		final RefactoringHistoryService service= RefactoringHistoryService.getInstance();
@@ -11,22 +11,38 @@
  *******************************************************************************/
 package org.eclipse.ltk.core.refactoring;
 
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 
 import org.eclipse.ltk.core.refactoring.history.IRefactoringHistoryService;
 import org.eclipse.ltk.core.refactoring.history.RefactoringHistory;
+import org.eclipse.ltk.internal.core.refactoring.Messages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryService;
 
 /**
  * Operation that, when run, executes a series of refactoring sequentially.
  * Refactorings are executed using {@link PerformRefactoringOperation}.
+ * Optionally, the conditions of refactorings on independent projects are
+ * checked in parallel.
  * <p>
  * The operation should be executed via the run method offered by
  * <code>IWorkspace</code> to achieve proper delta batching.
@@ -48,6 +64,496 @@ import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryServi
  */
 public class PerformRefactoringHistoryOperation implements IWorkspaceRunnable {
 
+	/** Job which checks the conditions of a refactoring ahead of its execution */
+	private final class ConditionCheckingJob extends Job {
+
+		/** The conditions are being checked */
+		private static final int CHECKING= 0;
+
+		/** The conditions have been checked and the change has been created */
+		private static final int CHECKED= 1;
+
+		/** The conditions could not be checked */
+		private static final int FAILED= 2;
+
+		/** The job has been abandoned */
+		private static final int ABANDONED= 3;
+
+		/**
+		 * The time of the last activity of the job, or <code>0</code> if the
+		 * job has not been started yet
+		 */
+		private volatile long fActivity= 0;
+
+		/** The change, or <code>null</code> */
+		private Change fChange= null;
+
+		/** The status of the condition checking, or <code>null</code> */
+		private RefactoringStatus fConditionStatus= null;
+
+		/** The refactoring context, or <code>null</code> */
+		private RefactoringContext fContext= null;
+
+		/** The refactoring descriptor */
+		private final RefactoringDescriptor fDescriptor;
+
+		/** The lock guarding the state of the job */
+		private final Object fLock= new Object();
+
+		/** The scope of the refactoring */
+		private final RefactoringScope fScope;
+
+		/** The state of the job */
+		private int fState= CHECKING;
+
+		/** The status of the refactoring context creation, or <code>null</code> */
+		private RefactoringStatus fStatus= null;
+
+		/**
+		 * Creates a new condition checking job.
+		 *
+		 * @param descriptor
+		 *            the refactoring descriptor
+		 * @param scope
+		 *            the scope of the refactoring
+		 */
+		public ConditionCheckingJob(final RefactoringDescriptor descriptor, final RefactoringScope scope) {
+			super(Messages.format(RefactoringCoreMessages.PerformRefactoringHistoryOperation_checking_conditions, descriptor.getDescription()));
+			fDescriptor= descriptor;
+			fScope= scope;
+			setSystem(true);
+		}
+
+		/**
+		 * Abandons this job. The result of the job is disposed.
+		 */
+		public void abandon() {
+			synchronized (fLock) {
+				if (fState == CHECKED)
+					disposeResult();
+				fState= ABANDONED;
+			}
+			cancel();
+		}
+
+		/**
+		 * Waits until the conditions have been checked. The job is abandoned
+		 * if it has not been started yet, if it has not shown any activity for
+		 * a while, which is the case if it is blocked by the operation, or if
+		 * the conditions could not be checked.
+		 *
+		 * @param monitor
+		 *            the progress monitor to use
+		 * @return <code>true</code> if the conditions have been checked and
+		 *         the refactoring can be performed, <code>false</code>
+		 *         otherwise
+		 */
+		public boolean await(final IProgressMonitor monitor) {
+			synchronized (fLock) {
+				while (fState == CHECKING && fActivity != 0 && System.currentTimeMillis() - fActivity < STALL_TIMEOUT && !monitor.isCanceled()) {
+					try {
+						fLock.wait(WAIT_INTERVAL);
+					} catch (InterruptedException exception) {
+						break;
+					}
+				}
+				if (fState == CHECKED && !fConditionStatus.hasFatalError())
+					return true;
+			}
+			abandon();
+			return false;
+		}
+
+		/**
+		 * Completes this job with the specified result.
+		 *
+		 * @param context
+		 *            the refactoring context
+		 * @param status
+		 *            the status of the refactoring context creation
+		 * @param conditions
+		 *            the status of the condition checking
+		 * @param change
+		 *            the change, or <code>null</code>
+		 * @return <code>true</code> if the result has been taken over,
+		 *         <code>false</code> if the job has been abandoned
+		 */
+		private boolean complete(final RefactoringContext context, final RefactoringStatus status, final RefactoringStatus conditions, final Change change) {
+			synchronized (fLock) {
+				if (fState != CHECKING)
+					return false;
+				fContext= context;
+				fStatus= status;
+				fConditionStatus= conditions;
+				fChange= change;
+				fState= CHECKED;
+				fLock.notifyAll();
+				return true;
+			}
+		}
+
+		/**
+		 * Disposes the result of this job.
+		 */
+		public void disposeResult() {
+			if (fChange != null) {
+				fChange.dispose();
+				fChange= null;
+			}
+			if (fContext != null) {
+				fContext.dispose();
+				fContext= null;
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		protected IStatus run(final IProgressMonitor monitor) {
+			fActivity= System.currentTimeMillis();
+			final IProgressMonitor wrapper= new ProgressMonitorWrapper(monitor) {
+
+				public void internalWorked(final double work) {
+					fActivity= System.currentTimeMillis();
+					super.internalWorked(work);
+				}
+
+				public boolean isCanceled() {
+					fActivity= System.currentTimeMillis();
+					return super.isCanceled();
+				}
+
+				public void setBlocked(final IStatus reason) {
+					// Never wait for the operation, which is waiting for this job
+					setCanceled(true);
+				}
+
+				public void worked(final int work) {
+					fActivity= System.currentTimeMillis();
+					super.worked(work);
+				}
+			};
+			RefactoringContext context= null;
+			Change change= null;
+			try {
+				wrapper.beginTask(getName(), 100);
+				final RefactoringStatus status= new RefactoringStatus();
+				try {
+					context= createRefactoringContext(fDescriptor, status, new SubProgressMonitor(wrapper, 30));
+				} catch (CoreException exception) {
+					status.merge(RefactoringStatus.create(exception.getStatus()));
+				}
+				if (context != null && !status.hasFatalError()) {
+					final CreateChangeOperation operation= new CreateChangeOperation(new CheckConditionsOperation(context.getRefactoring(), CheckConditionsOperation.ALL_CONDITIONS), RefactoringStatus.FATAL);
+					operation.run(new SubProgressMonitor(wrapper, 70));
+					change= operation.getChange();
+					if (complete(context, status, operation.getConditionCheckingStatus(), change)) {
+						context= null;
+						change= null;
+					}
+				}
+			} catch (CoreException exception) {
+				// The conditions are checked again when the refactoring is performed
+			} catch (RuntimeException exception) {
+				// The conditions are checked again when the refactoring is performed
+			} finally {
+				wrapper.done();
+				if (change != null)
+					change.dispose();
+				if (context != null)
+					context.dispose();
+				synchronized (fLock) {
+					if (fState == CHECKING)
+						fState= FAILED;
+					fLock.notifyAll();
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Scheduler which checks the conditions of independent refactorings ahead
+	 * of their execution
+	 */
+	private final class ConditionCheckingScheduler {
+
+		/** The requested refactoring descriptors */
+		private final RefactoringDescriptor[] fDescriptors;
+
+		/** The scheduled condition checking jobs */
+		private final ConditionCheckingJob[] fJobs;
+
+		/** The index of the next refactoring to consider */
+		private int fNext= 0;
+
+		/** The number of scheduled jobs */
+		private int fPending= 0;
+
+		/** The refactoring descriptor proxies */
+		private final RefactoringDescriptorProxy[] fProxies;
+
+		/** Has the refactoring descriptor been requested? */
+		private final boolean[] fRequested;
+
+		/** The scopes of the refactorings */
+		private final RefactoringScope[] fScopes;
+
+		/** The maximal number of scheduled jobs */
+		private final int fThreads= Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Creates a new condition checking scheduler.
+		 *
+		 * @param proxies
+		 *            the refactoring descriptor proxies
+		 */
+		public ConditionCheckingScheduler(final RefactoringDescriptorProxy[] proxies) {
+			fProxies= proxies;
+			fDescriptors= new RefactoringDescriptor[proxies.length];
+			fJobs= new ConditionCheckingJob[proxies.length];
+			fRequested= new boolean[proxies.length];
+			fScopes= new RefactoringScope[proxies.length];
+		}
+
+		/**
+		 * Abandons the jobs which have checked conditions of refactorings
+		 * affected by the specified change. If the change or the objects it
+		 * affects are unknown, all jobs are abandoned.
+		 *
+		 * @param change
+		 *            the change which is performed, or <code>null</code>
+		 */
+		public void changePerformed(final Change change) {
+			final Object[] elements= change != null ? change.getAffectedObjects() : null;
+			final Set projects= new HashSet();
+			boolean workspace= elements == null;
+			for (int index= 0; !workspace && index < elements.length; index++) {
+				IResource resource= null;
+				if (elements[index] instanceof IResource)
+					resource= (IResource) elements[index];
+				else if (elements[index] instanceof IAdaptable)
+					resource= (IResource) ((IAdaptable) elements[index]).getAdapter(IResource.class);
+				if (resource != null) {
+					final IProject project= resource.getProject();
+					if (project != null)
+						projects.add(project.getName());
+					else
+						workspace= true;
+				}
+			}
+			for (int index= 0; index < fNext; index++) {
+				final ConditionCheckingJob job= fJobs[index];
+				if (job != null && (workspace || intersects(projects, job.fScope.fReads))) {
+					fJobs[index]= null;
+					fPending--;
+					job.abandon();
+				}
+			}
+		}
+
+		/**
+		 * Abandons all scheduled jobs.
+		 */
+		public void dispose() {
+			for (int index= 0; index < fNext; index++) {
+				if (fJobs[index] != null) {
+					fJobs[index].abandon();
+					fJobs[index]= null;
+				}
+			}
+			fPending= 0;
+		}
+
+		/**
+		 * Returns the refactoring descriptor with the specified index.
+		 *
+		 * @param index
+		 *            the index of the refactoring
+		 * @param monitor
+		 *            the progress monitor to use
+		 * @return the refactoring descriptor, or <code>null</code>
+		 */
+		public RefactoringDescriptor getDescriptor(final int index, final IProgressMonitor monitor) {
+			if (!fRequested[index]) {
+				fRequested[index]= true;
+				fDescriptors[index]= fProxies[index].requestDescriptor(new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				if (fDescriptors[index] != null)
+					fScopes[index]= RefactoringScope.create(fDescriptors[index]);
+			}
+			return fDescriptors[index];
+		}
+
+		/**
+		 * Schedules condition checking jobs for the refactorings following
+		 * the specified one which are independent of all refactorings which
+		 * have not been performed yet.
+		 *
+		 * @param index
+		 *            the index of the next refactoring to perform
+		 * @param monitor
+		 *            the progress monitor to use
+		 */
+		private void schedule(final int index, final IProgressMonitor monitor) {
+			if (fNext <= index)
+				fNext= index + 1;
+			while (fNext < fProxies.length && fNext - index <= MAX_LOOK_AHEAD && fPending < fThreads) {
+				final RefactoringDescriptor descriptor= getDescriptor(fNext, monitor);
+				if (descriptor != null) {
+					final RefactoringScope scope= fScopes[fNext];
+					boolean independent= scope != null;
+					for (int current= index; current < fNext; current++) {
+						if (fDescriptors[current] != null) {
+							// Nothing can be checked ahead of a refactoring without project
+							if (fScopes[current] == null)
+								return;
+							if (independent && intersects(fScopes[current].fWrites, scope.fReads))
+								independent= false;
+						}
+					}
+					if (independent) {
+						final ConditionCheckingJob job= new ConditionCheckingJob(descriptor, scope);
+						fJobs[fNext]= job;
+						fPending++;
+						job.schedule();
+					}
+				}
+				fNext++;
+			}
+		}
+
+		/**
+		 * Takes the condition checking job of the specified refactoring and
+		 * schedules further jobs.
+		 *
+		 * @param index
+		 *            the index of the refactoring to perform
+		 * @param monitor
+		 *            the progress monitor to use
+		 * @return the job which has checked the conditions of the
+		 *         refactoring, or <code>null</code> if the conditions have to
+		 *         be checked before the refactoring is performed
+		 */
+		public ConditionCheckingJob take(final int index, final IProgressMonitor monitor) {
+			final ConditionCheckingJob job= fJobs[index];
+			if (job != null) {
+				fJobs[index]= null;
+				fPending--;
+			}
+			schedule(index, monitor);
+			if (job != null && job.await(monitor))
+				return job;
+			return null;
+		}
+	}
+
+	/** The projects a refactoring depends on */
+	private static final class RefactoringScope {
+
+		/**
+		 * Creates the scope of the specified refactoring.
+		 *
+		 * @param descriptor
+		 *            the refactoring descriptor
+		 * @return the scope, or <code>null</code> if the refactoring may
+		 *         depend on the whole workspace
+		 */
+		public static RefactoringScope create(final RefactoringDescriptor descriptor) {
+			final String name= descriptor.getProject();
+			if (name == null || !ResourcesPlugin.getWorkspace().validateName(name, IResource.PROJECT).isOK())
+				return null;
+			final IProject project= ResourcesPlugin.getWorkspace().getRoot().getProject(name);
+			if (!project.isAccessible())
+				return null;
+			try {
+				return new RefactoringScope(getProjects(project, true), getProjects(project, false));
+			} catch (CoreException exception) {
+				return null;
+			}
+		}
+
+		/**
+		 * Returns the names of the specified project and the projects it
+		 * transitively references or is referenced by.
+		 *
+		 * @param project
+		 *            the project
+		 * @param referenced
+		 *            <code>true</code> to return the referenced projects,
+		 *            <code>false</code> to return the referencing projects
+		 * @return the set of project names
+		 * @throws CoreException
+		 *             if the project references cannot be determined
+		 */
+		private static Set getProjects(final IProject project, final boolean referenced) throws CoreException {
+			final Set names= new HashSet();
+			final LinkedList queue= new LinkedList();
+			queue.add(project);
+			while (!queue.isEmpty()) {
+				final IProject current= (IProject) queue.removeFirst();
+				if (names.add(current.getName()) && current.isAccessible()) {
+					final IProject[] projects= referenced ? current.getReferencedProjects() : current.getReferencingProjects();
+					for (int index= 0; index < projects.length; index++)
+						queue.add(projects[index]);
+				}
+			}
+			return names;
+		}
+
+		/** The names of the projects whose state the conditions depend on */
+		private final Set fReads;
+
+		/** The names of the projects the refactoring may change */
+		private final Set fWrites;
+
+		/**
+		 * Creates a new refactoring scope.
+		 *
+		 * @param reads
+		 *            the names of the projects whose state the conditions
+		 *            depend on
+		 * @param writes
+		 *            the names of the projects the refactoring may change
+		 */
+		private RefactoringScope(final Set reads, final Set writes) {
+			fReads= reads;
+			fWrites= writes;
+		}
+	}
+
+	/** The maximal number of refactorings to look ahead for independent ones */
+	private static final int MAX_LOOK_AHEAD= 32;
+
+	/**
+	 * The time in milliseconds after which a condition checking job without
+	 * activity is abandoned
+	 */
+	private static final long STALL_TIMEOUT= 2000;
+
+	/** The time in milliseconds to wait for a condition checking job at once */
+	private static final long WAIT_INTERVAL= 100;
+
+	/**
+	 * Returns whether the specified sets intersect.
+	 *
+	 * @param first
+	 *            the first set
+	 * @param second
+	 *            the second set
+	 * @return <code>true</code> if the sets have a common element,
+	 *         <code>false</code> otherwise
+	 */
+	private static boolean intersects(final Set first, final Set second) {
+		for (final Iterator iterator= first.iterator(); iterator.hasNext();) {
+			if (second.contains(iterator.next()))
+				return true;
+		}
+		return false;
+	}
+
+	/** Should conditions of independent refactorings be checked in parallel? */
+	private boolean fCheckConditionsInParallel= false;
+
 	/** The status of the execution */
 	private RefactoringStatus fExecutionStatus= new RefactoringStatus();
 
@@ -211,11 +717,19 @@ public class PerformRefactoringHistoryOperation implements IWorkspaceRunnable {
 		final RefactoringDescriptorProxy[] proxies= fRefactoringHistory.getDescriptors();
 		monitor.beginTask(RefactoringCoreMessages.PerformRefactoringHistoryOperation_perform_refactorings, 170 * proxies.length);
 		final IRefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		final ConditionCheckingScheduler scheduler= fCheckConditionsInParallel ? new ConditionCheckingScheduler(proxies) : null;
 		try {
 			service.connect();
 			for (int index= 0; index < proxies.length; index++) {
-				final RefactoringDescriptor descriptor= proxies[index].requestDescriptor(new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				final RefactoringDescriptor descriptor;
+				if (scheduler != null)
+					descriptor= scheduler.getDescriptor(index, monitor);
+				else
+					descriptor= proxies[index].requestDescriptor(new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
 				if (descriptor != null) {
+					final ConditionCheckingJob job= scheduler != null ? scheduler.take(index, monitor) : null;
+					if (job != null && performRefactoring(job, scheduler, monitor))
+						continue;
 					RefactoringContext context= null;
 					RefactoringStatus status= new RefactoringStatus();
 					try {
@@ -234,6 +748,8 @@ public class PerformRefactoringHistoryOperation implements IWorkspaceRunnable {
 									status.merge(operation.getConditionStatus());
 									if (!status.hasFatalError())
 										status.merge(operation.getValidationStatus());
+									if (scheduler != null)
+										scheduler.changePerformed(operation.getUndoChange());
 								}
 							} finally {
 								refactoringPerformed(refactoring, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
@@ -247,8 +763,96 @@ public class PerformRefactoringHistoryOperation implements IWorkspaceRunnable {
 				}
 			}
 		} finally {
+			if (scheduler != null)
+				scheduler.dispose();
 			service.disconnect();
 			monitor.done();
 		}
 	}
+
+	/**
+	 * Performs a refactoring whose conditions have already been checked.
+	 *
+	 * @param job
+	 *            the job which has checked the conditions
+	 * @param scheduler
+	 *            the condition checking scheduler
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @return <code>true</code> if the refactoring has been performed,
+	 *         <code>false</code> if the change is no longer valid and the
+	 *         refactoring has to be checked again
+	 * @throws CoreException
+	 *             if an error occurs while performing the change
+	 */
+	private boolean performRefactoring(final ConditionCheckingJob job, final ConditionCheckingScheduler scheduler, final IProgressMonitor monitor) throws CoreException {
+		if (job.fChange != null && job.fChange.isValid(new NullProgressMonitor()).hasFatalError()) {
+			job.disposeResult();
+			return false;
+		}
+		final RefactoringStatus status= new RefactoringStatus();
+		try {
+			status.merge(job.fStatus);
+			monitor.worked(30);
+			final Refactoring refactoring= job.fContext.getRefactoring();
+			try {
+				status.merge(aboutToPerformRefactoring(refactoring, job.fDescriptor, new SubProgressMonitor(monitor, 30, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)));
+				if (!status.hasFatalError()) {
+					status.merge(job.fConditionStatus);
+					final Change change= job.fChange;
+					if (change != null) {
+						job.fChange= null;
+						// the change is disposed once it has been performed
+						scheduler.changePerformed(change);
+						final PerformChangeOperation operation= new PerformChangeOperation(change);
+						operation.setUndoManager(RefactoringCore.getUndoManager(), refactoring.getName());
+						ResourcesPlugin.getWorkspace().run(operation, new SubProgressMonitor(monitor, 90, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+						status.merge(operation.getValidationStatus());
+					} else
+						monitor.worked(90);
+				}
+			} finally {
+				refactoringPerformed(refactoring, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+			}
+		} finally {
+			fExecutionStatus.merge(status);
+			job.disposeResult();
+		}
+		return true;
+	}
+
+	/**
+	 * Determines whether the conditions of refactorings are checked in parallel
+	 * to the execution of preceding refactorings.
+	 * <p>
+	 * If enabled, refactorings are still performed one after the other in the
+	 * order of the refactoring history. While a refactoring is performed, the
+	 * refactoring contexts of the following refactorings are created and their
+	 * conditions are checked in background jobs, provided that none of the
+	 * refactorings in between is performed on a project which is the project
+	 * of the refactoring or one of the projects it references. Refactorings
+	 * without a project are checked in sequence. A refactoring is checked again
+	 * before it is performed if a preceding refactoring has changed one of its
+	 * projects nevertheless, or if its conditions could not be checked ahead.
+	 * </p>
+	 * <p>
+	 * This must only be enabled if
+	 * {@link #createRefactoringContext(RefactoringDescriptor, RefactoringStatus, IProgressMonitor)}
+	 * may be called from any thread and does not depend on preceding
+	 * refactorings having been performed. Note that
+	 * {@link #aboutToPerformRefactoring(Refactoring, RefactoringDescriptor, IProgressMonitor)}
+	 * is called after the conditions of a refactoring have been checked if
+	 * enabled.
+	 * </p>
+	 *
+	 * @param parallel
+	 *            <code>true</code> to check the conditions of independent
+	 *            refactorings in parallel, <code>false</code> to check the
+	 *            conditions of each refactoring right before it is performed
+	 *
+	 * @since 3.6
+	 */
+	public final void setCheckConditionsInParallel(final boolean parallel) {
+		fCheckConditionsInParallel= parallel;
+	}
 }
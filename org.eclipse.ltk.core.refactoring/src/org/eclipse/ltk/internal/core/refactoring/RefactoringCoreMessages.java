@@ -124,6 +124,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String ParticipantExtensionPoint_wrong_type;
 
+	public static String PerformRefactoringHistoryOperation_checking_conditions;
+
 	public static String PerformRefactoringHistoryOperation_perform_refactorings;
 
 	public static String ProcessorBasedRefactoring_check_condition_participant_failed;
@@ -180,6 +182,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String RefactoringCorePlugin_participant_removed;
 
+	public static String RefactoringHistoryIndex_compacting_index;
+
 	public static String RefactoringHistoryManager_empty_argument;
 
 	public static String RefactoringHistoryManager_error_reading_file;
@@ -206,6 +210,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String RefactoringSessionReader_no_session;
 
+	public static String RefactoringSessionReader_reading_refactorings;
+
 	public static String RefactoringSessionReader_unsupported_version_information;
 
 	public static String RefactoringUndoContext_label;
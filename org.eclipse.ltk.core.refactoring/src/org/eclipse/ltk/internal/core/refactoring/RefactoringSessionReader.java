@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2011 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,8 +30,12 @@ import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
+import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 
 import org.eclipse.ltk.core.refactoring.IRefactoringCoreStatusCodes;
@@ -48,6 +52,27 @@ import org.eclipse.ltk.internal.core.refactoring.history.RefactoringContribution
  */
 public final class RefactoringSessionReader extends DefaultHandler {
 
+	/**
+	 * Handler which receives the refactoring descriptors of a refactoring
+	 * session while the session is being read.
+	 *
+	 * @since 3.6
+	 */
+	public interface IRefactoringDescriptorHandler {
+
+		/**
+		 * Handles a refactoring descriptor of the refactoring session. The
+		 * descriptors are handled in the order of the refactoring session.
+		 *
+		 * @param descriptor
+		 *            the refactoring descriptor
+		 * @throws CoreException
+		 *             if the descriptor cannot be handled. Reading the
+		 *             refactoring session is aborted.
+		 */
+		public void handleDescriptor(RefactoringDescriptor descriptor) throws CoreException;
+	}
+
 	/** The comment of the refactoring session, or <code>null</code> */
 	private String fComment= null;
 
@@ -59,6 +84,15 @@ public final class RefactoringSessionReader extends DefaultHandler {
 
 	private final boolean fCreateDefaultDescriptors;
 
+	/**
+	 * The handler of the refactoring descriptors, or <code>null</code> to
+	 * collect the descriptors
+	 */
+	private IRefactoringDescriptorHandler fHandler= null;
+
+	/** The progress monitor while streaming, or <code>null</code> */
+	private IProgressMonitor fMonitor= null;
+
 	/**
 	 * The current list of refactoring descriptors, or <code>null</code>
 	 * (element type: <code>RefactoringDescriptor</code>)
@@ -132,19 +166,91 @@ public final class RefactoringSessionReader extends DefaultHandler {
 	 *             if an error occurs while reading form the input source
 	 */
 	public RefactoringSessionDescriptor readSession(final InputSource source) throws CoreException {
+		try {
+			parse(source);
+			if (fRefactoringDescriptors != null) {
+				checkVersion();
+				return new RefactoringSessionDescriptor((RefactoringDescriptor[]) fRefactoringDescriptors.toArray(new RefactoringDescriptor[fRefactoringDescriptors.size()]), fVersion, fComment);
+			}
+		} finally {
+			fRefactoringDescriptors= null;
+			fVersion= null;
+			fComment= null;
+			fLocator= null;
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the refactoring descriptors of a refactoring session from the
+	 * specified input object and passes them to the given handler as soon as
+	 * they have been read.
+	 * <p>
+	 * In contrast to {@link #readSession(InputSource)}, the refactoring
+	 * descriptors are not retained by the reader, so that arbitrarily large
+	 * refactoring sessions can be processed in constant memory.
+	 * </p>
+	 *
+	 * @param source
+	 *            the input source
+	 * @param handler
+	 *            the handler of the refactoring descriptors
+	 * @param monitor
+	 *            the progress monitor to use, or <code>null</code>. Progress
+	 *            is reported for every refactoring descriptor.
+	 * @return the comment of the refactoring session, or <code>null</code>
+	 * @throws CoreException
+	 *             if an error occurs while reading from the input source, or
+	 *             if the handler fails to handle a refactoring descriptor
+	 */
+	public String readSession(final InputSource source, final IRefactoringDescriptorHandler handler, IProgressMonitor monitor) throws CoreException {
+		Assert.isNotNull(handler);
+		if (monitor == null)
+			monitor= new NullProgressMonitor();
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringSessionReader_reading_refactorings, IProgressMonitor.UNKNOWN);
+			fHandler= handler;
+			fMonitor= monitor;
+			parse(source);
+			return fComment;
+		} finally {
+			fHandler= null;
+			fMonitor= null;
+			fVersion= null;
+			fComment= null;
+			fLocator= null;
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Checks the version of the refactoring session read so far.
+	 *
+	 * @throws CoreException
+	 *             if the version is missing or unsupported
+	 */
+	private void checkVersion() throws CoreException {
+		if (fVersion == null || "".equals(fVersion)) //$NON-NLS-1$
+			throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), IRefactoringCoreStatusCodes.MISSING_REFACTORING_HISTORY_VERSION, RefactoringCoreMessages.RefactoringSessionReader_missing_version_information, null));
+		if (!IRefactoringSerializationConstants.CURRENT_VERSION.equals(fVersion))
+			throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), IRefactoringCoreStatusCodes.UNSUPPORTED_REFACTORING_HISTORY_VERSION, RefactoringCoreMessages.RefactoringSessionReader_unsupported_version_information, null));
+	}
+
+	/**
+	 * Parses the specified input source.
+	 *
+	 * @param source
+	 *            the input source
+	 * @throws CoreException
+	 *             if an error occurs while parsing the input source
+	 */
+	private void parse(final InputSource source) throws CoreException {
 		fSessionFound= false;
 		try {
 			source.setSystemId("/"); //$NON-NLS-1$
 			createParser(SAXParserFactory.newInstance()).parse(source, this);
 			if (!fSessionFound)
 				throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), IRefactoringCoreStatusCodes.REFACTORING_HISTORY_FORMAT_ERROR, RefactoringCoreMessages.RefactoringSessionReader_no_session, null));
-			if (fRefactoringDescriptors != null) {
-				if (fVersion == null || "".equals(fVersion)) //$NON-NLS-1$
-					throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), IRefactoringCoreStatusCodes.MISSING_REFACTORING_HISTORY_VERSION, RefactoringCoreMessages.RefactoringSessionReader_missing_version_information, null));
-				if (!IRefactoringSerializationConstants.CURRENT_VERSION.equals(fVersion))
-					throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), IRefactoringCoreStatusCodes.UNSUPPORTED_REFACTORING_HISTORY_VERSION, RefactoringCoreMessages.RefactoringSessionReader_unsupported_version_information, null));
-				return new RefactoringSessionDescriptor((RefactoringDescriptor[]) fRefactoringDescriptors.toArray(new RefactoringDescriptor[fRefactoringDescriptors.size()]), fVersion, fComment);
-			}
 		} catch (IOException exception) {
 			throwCoreException(exception, exception.getLocalizedMessage());
 		} catch (ParserConfigurationException exception) {
@@ -157,14 +263,13 @@ public final class RefactoringSessionReader extends DefaultHandler {
 			});
 			throwCoreException(exception, message);
 		} catch (SAXException exception) {
+			final Exception cause= exception.getException();
+			if (cause instanceof CoreException)
+				throw (CoreException) cause;
+			if (cause instanceof OperationCanceledException)
+				throw (OperationCanceledException) cause;
 			throwCoreException(exception, exception.getLocalizedMessage());
-		} finally {
-			fRefactoringDescriptors= null;
-			fVersion= null;
-			fComment= null;
-			fLocator= null;
 		}
-		return null;
 	}
 
 	private void throwCoreException(Exception exception, String message) throws CoreException {
@@ -245,9 +350,22 @@ public final class RefactoringSessionReader extends DefaultHandler {
 			} catch (NumberFormatException exception) {
 				// Do nothing
 			}
-			if (fRefactoringDescriptors == null)
-				fRefactoringDescriptors= new ArrayList();
-			fRefactoringDescriptors.add(descriptor);
+			if (fHandler != null) {
+				if (fMonitor.isCanceled())
+					throw new SAXException(new OperationCanceledException());
+				try {
+					checkVersion();
+					fMonitor.subTask(description);
+					fHandler.handleDescriptor(descriptor);
+				} catch (CoreException exception) {
+					throw new SAXException(exception);
+				}
+				fMonitor.worked(1);
+			} else {
+				if (fRefactoringDescriptors == null)
+					fRefactoringDescriptors= new ArrayList();
+				fRefactoringDescriptors.add(descriptor);
+			}
 
 		} else if (IRefactoringSerializationConstants.ELEMENT_SESSION.equals(qualifiedName)) {
 			fSessionFound= true;
@@ -0,0 +1,964 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+
+import org.eclipse.ltk.core.refactoring.IRefactoringCoreStatusCodes;
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+import org.eclipse.ltk.internal.core.refactoring.IRefactoringSerializationConstants;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+
+/**
+ * Index of the refactorings stored in a refactoring history location.
+ * <p>
+ * The index holds the time stamps and descriptions of all refactorings of a
+ * history location sorted by time stamp, so that the refactorings of a time
+ * range are found without reading the individual index files of the history
+ * location. Refactoring descriptors are only read on request through the
+ * proxies returned by the index.
+ * </p>
+ * <p>
+ * The index of a history location in the plugin state location is persisted in
+ * an append-only binary file in the history location. Removed refactorings are
+ * appended as removal records, which are dropped by a compaction job once they
+ * outweigh the refactorings in the index. The file also records the length and
+ * modification time of each index file of the history location, and is rebuilt
+ * if an index file has been changed without updating it, for instance by an
+ * interrupted write or by an older version. The index of a shared history
+ * location is held in memory only, so that it is not shared along with the
+ * project, and is discarded if the history location is changed outside of the
+ * refactoring history manager.
+ * </p>
+ *
+ * @since 3.6
+ */
+public final class RefactoringHistoryIndex {
+
+	/** Job which compacts the index file */
+	private final class CompactionJob extends Job {
+
+		/**
+		 * Creates a new compaction job.
+		 */
+		public CompactionJob() {
+			super(RefactoringCoreMessages.RefactoringHistoryIndex_compacting_index);
+			setSystem(true);
+			setPriority(Job.DECORATE);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		protected IStatus run(final IProgressMonitor monitor) {
+			synchronized (RefactoringHistoryIndex.this) {
+				if (fLoaded && fGarbage > 0) {
+					try {
+						writeIndex(monitor);
+					} catch (CoreException exception) {
+						return exception.getStatus();
+					}
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/** The length and modification time of a refactoring index file */
+	private static final class FileStamp {
+
+		/**
+		 * Returns the stamp of the specified file.
+		 *
+		 * @param info
+		 *            the file info
+		 * @return the stamp, or <code>null</code> if the file does not exist
+		 */
+		public static FileStamp create(final IFileInfo info) {
+			if (!info.exists())
+				return null;
+			return new FileStamp(info.getLength(), info.getLastModified());
+		}
+
+		/** The length of the file */
+		private final long fLength;
+
+		/** The modification time of the file */
+		private final long fModified;
+
+		/**
+		 * Creates a new file stamp.
+		 *
+		 * @param length
+		 *            the length of the file
+		 * @param modified
+		 *            the modification time of the file
+		 */
+		public FileStamp(final long length, final long modified) {
+			fLength= length;
+			fModified= modified;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean equals(final Object object) {
+			if (!(object instanceof FileStamp))
+				return false;
+			final FileStamp other= (FileStamp) object;
+			return fLength == other.fLength && fModified == other.fModified;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int hashCode() {
+			return (int) (fLength ^ fModified ^ (fModified >>> 32));
+		}
+	}
+
+	/** The initial capacity of the index */
+	private static final int INITIAL_CAPACITY= 64;
+
+	/** The magic number of the index file */
+	private static final int INDEX_MAGIC= 0x52484958;
+
+	/** The maximal number of cached indexes */
+	private static final int MAX_INDEXES= 16;
+
+	/** The minimal number of garbage records to trigger a compaction */
+	private static final int MIN_GARBAGE= 256;
+
+	/** The name of the index file */
+	public static final String NAME_INDEX_FILE= "refactorings.bin"; //$NON-NLS-1$
+
+	/** The name of the temporary index file used while compacting */
+	private static final String NAME_TEMPORARY_FILE= "refactorings.bin.tmp"; //$NON-NLS-1$
+
+	/** The record kind of an added refactoring */
+	private static final int RECORD_ADDED= 1;
+
+	/** The record kind of a removed refactoring */
+	private static final int RECORD_REMOVED= 2;
+
+	/** The record kind of the stamp of an index file */
+	private static final int RECORD_STAMP= 3;
+
+	/** The version of the index file format */
+	private static final int INDEX_VERSION= 2;
+
+	/** The index file has been read completely */
+	private static final int READ_COMPLETE= 0;
+
+	/** The index file ends with a truncated record */
+	private static final int READ_TRUNCATED= 1;
+
+	/** The index file does not match the index files of the history location */
+	private static final int READ_OUTDATED= 2;
+
+	/**
+	 * The index cache, in the order of access (element type:
+	 * <code>&lt;IFileStore, RefactoringHistoryIndex&gt;</code>). Indexes not
+	 * used recently are discarded.
+	 */
+	private static final Map fgIndexes= new LinkedHashMap(MAX_INDEXES, 0.75f, true) {
+
+		private static final long serialVersionUID= 1L;
+
+		protected final boolean removeEldestEntry(final Map.Entry entry) {
+			if (size() <= MAX_INDEXES)
+				return false;
+			((RefactoringHistoryIndex) entry.getValue()).discard();
+			return true;
+		}
+	};
+
+	/**
+	 * Returns the index of the specified history location.
+	 * <p>
+	 * The index is not read until it is first queried.
+	 * </p>
+	 *
+	 * @param store
+	 *            the history file store
+	 * @return the index of the history location
+	 */
+	public static RefactoringHistoryIndex getIndex(final IFileStore store) {
+		Assert.isNotNull(store);
+		synchronized (fgIndexes) {
+			RefactoringHistoryIndex index= (RefactoringHistoryIndex) fgIndexes.get(store);
+			if (index == null) {
+				index= new RefactoringHistoryIndex(store, isStateLocation(store));
+				fgIndexes.put(store, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Notifies the index of a shared history location about a change of the
+	 * history folder in the workspace.
+	 * <p>
+	 * The index is discarded if the change has not been made by the
+	 * refactoring history manager, for instance by a team operation.
+	 * </p>
+	 *
+	 * @param store
+	 *            the history file store
+	 * @param delta
+	 *            the resource delta of the history folder
+	 */
+	public static void historyChanged(final IFileStore store, final IResourceDelta delta) {
+		final RefactoringHistoryIndex index;
+		synchronized (fgIndexes) {
+			index= (RefactoringHistoryIndex) fgIndexes.get(store);
+		}
+		if (index != null && !index.fPersistent) {
+			try {
+				delta.accept(new IResourceDeltaVisitor() {
+
+					public final boolean visit(final IResourceDelta current) throws CoreException {
+						final IResource resource= current.getResource();
+						if (resource.getType() == IResource.FILE && resource.getName().equalsIgnoreCase(RefactoringHistoryService.NAME_INDEX_FILE)) {
+							if (resource.getLocationURI() == null || !index.isWrittenFile(EFS.getStore(resource.getLocationURI())))
+								index.discard();
+						}
+						return true;
+					}
+				});
+			} catch (CoreException exception) {
+				index.discard();
+			}
+		}
+	}
+
+	/**
+	 * Discards the index of the specified history location.
+	 * <p>
+	 * This method must be called if the history location has been moved,
+	 * copied or deleted.
+	 * </p>
+	 *
+	 * @param store
+	 *            the history file store
+	 */
+	public static void invalidate(final IFileStore store) {
+		final RefactoringHistoryIndex index;
+		synchronized (fgIndexes) {
+			index= (RefactoringHistoryIndex) fgIndexes.remove(store);
+		}
+		if (index != null)
+			index.discard();
+	}
+
+	/**
+	 * Returns whether the specified history location resides in the plugin
+	 * state location.
+	 *
+	 * @param store
+	 *            the history file store
+	 * @return <code>true</code> if the history location is private to the
+	 *         plugin, <code>false</code> otherwise
+	 */
+	private static boolean isStateLocation(final IFileStore store) {
+		final IFileStore parent= store.getParent();
+		return parent != null && parent.equals(EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER));
+	}
+
+	/** The descriptions of the refactorings, in the order of the time stamps */
+	private String[] fDescriptions= null;
+
+	/** The number of records in the index file not describing a refactoring */
+	private int fGarbage= 0;
+
+	/** The compaction job, or <code>null</code> */
+	private CompactionJob fJob= null;
+
+	/** Has the index been read? */
+	private boolean fLoaded= false;
+
+	/** Is the index persisted in the history location? */
+	private final boolean fPersistent;
+
+	/** The number of refactorings in the index */
+	private int fSize= 0;
+
+	/** The time stamps of the refactorings, in ascending order */
+	private long[] fStamps= null;
+
+	/** The history file store */
+	private final IFileStore fStore;
+
+	/**
+	 * The stamps of the refactoring index files of the history location as
+	 * recorded in the index file (element type:
+	 * <code>&lt;String, FileStamp&gt;</code>, keyed by the path relative to the
+	 * history location)
+	 */
+	private final Map fFileStamps= new HashMap();
+
+	/**
+	 * The modification time stamps of the index files written by the
+	 * refactoring history manager (element type:
+	 * <code>&lt;IFileStore, Long&gt;</code>)
+	 */
+	private final Map fWrittenFiles= new HashMap();
+
+	/**
+	 * Creates a new refactoring history index.
+	 *
+	 * @param store
+	 *            the history file store
+	 * @param persistent
+	 *            <code>true</code> to persist the index in the history
+	 *            location, <code>false</code> otherwise
+	 */
+	private RefactoringHistoryIndex(final IFileStore store, final boolean persistent) {
+		fStore= store;
+		fPersistent= persistent;
+	}
+
+	/**
+	 * Appends records to the index file, followed by the stamp of the
+	 * refactoring index file which has been written.
+	 *
+	 * @param kind
+	 *            the kind of the records
+	 * @param proxies
+	 *            the refactoring descriptor proxies of the records
+	 * @param path
+	 *            the path of the refactoring index file relative to the
+	 *            history location
+	 * @param stamp
+	 *            the stamp of the refactoring index file, or
+	 *            <code>null</code> if it does not exist
+	 * @throws CoreException
+	 *             if an error occurs while writing the index file
+	 */
+	private void appendRecords(final int kind, final RefactoringDescriptorProxy[] proxies, final String path, final FileStamp stamp) throws CoreException {
+		DataOutputStream output= null;
+		try {
+			output= new DataOutputStream(new BufferedOutputStream(fStore.getChild(NAME_INDEX_FILE).openOutputStream(EFS.APPEND, null)));
+			for (int index= 0; index < proxies.length; index++)
+				writeRecord(output, kind, proxies[index].getTimeStamp(), proxies[index].getDescription());
+			writeStampRecord(output, path, stamp);
+		} catch (IOException exception) {
+			throw createCoreException(exception);
+		} finally {
+			if (output != null) {
+				try {
+					output.close();
+				} catch (IOException exception) {
+					// Do nothing
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a core exception from the specified input/output error.
+	 *
+	 * @param exception
+	 *            the input/output error
+	 * @return the core exception
+	 */
+	private CoreException createCoreException(final IOException exception) {
+		return new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), IRefactoringCoreStatusCodes.REFACTORING_HISTORY_IO_ERROR, exception.getLocalizedMessage(), exception));
+	}
+
+	/**
+	 * Discards the index held in memory.
+	 */
+	private synchronized void discard() {
+		fLoaded= false;
+		fStamps= null;
+		fDescriptions= null;
+		fSize= 0;
+		fGarbage= 0;
+		fWrittenFiles.clear();
+		fFileStamps.clear();
+	}
+
+	/**
+	 * Notifies the index about refactorings added to the history location.
+	 *
+	 * @param file
+	 *            the refactoring index file the refactorings have been added
+	 *            to
+	 * @param proxies
+	 *            the refactoring descriptor proxies of the added refactorings
+	 */
+	synchronized void entriesAdded(final IFileStore file, final RefactoringDescriptorProxy[] proxies) {
+		for (int index= 0; index < proxies.length; index++) {
+			if (fLoaded)
+				insert(proxies[index].getTimeStamp(), proxies[index].getDescription());
+		}
+		updateIndex(file, RECORD_ADDED, proxies);
+	}
+
+	/**
+	 * Notifies the index about refactorings removed from the history location.
+	 *
+	 * @param file
+	 *            the refactoring index file the refactorings have been
+	 *            removed from
+	 * @param proxies
+	 *            the refactoring descriptor proxies of the removed
+	 *            refactorings
+	 */
+	synchronized void entriesRemoved(final IFileStore file, final RefactoringDescriptorProxy[] proxies) {
+		for (int index= 0; index < proxies.length; index++) {
+			if (fLoaded)
+				remove(proxies[index].getTimeStamp(), proxies[index].getDescription());
+		}
+		updateIndex(file, RECORD_REMOVED, proxies);
+	}
+
+	/**
+	 * Returns the offset of the first refactoring with a time stamp greater or
+	 * equal than the specified one.
+	 *
+	 * @param stamp
+	 *            the time stamp
+	 * @return the offset of the refactoring, or the size of the index
+	 */
+	private int findFirst(final long stamp) {
+		int low= 0;
+		int high= fSize;
+		while (low < high) {
+			final int middle= (low + high) >>> 1;
+			if (fStamps[middle] < stamp)
+				low= middle + 1;
+			else
+				high= middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the offset of the first refactoring with a time stamp greater
+	 * than the specified one.
+	 *
+	 * @param stamp
+	 *            the time stamp
+	 * @return the offset of the refactoring, or the size of the index
+	 */
+	private int findLast(final long stamp) {
+		int low= 0;
+		int high= fSize;
+		while (low < high) {
+			final int middle= (low + high) >>> 1;
+			if (fStamps[middle] <= stamp)
+				low= middle + 1;
+			else
+				high= middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Inserts a refactoring into the index held in memory.
+	 *
+	 * @param stamp
+	 *            the time stamp of the refactoring
+	 * @param description
+	 *            the description of the refactoring
+	 * @return <code>true</code> if the refactoring has been inserted,
+	 *         <code>false</code> if it is already contained in the index
+	 */
+	private boolean insert(final long stamp, final String description) {
+		final int last= findLast(stamp);
+		for (int offset= findFirst(stamp); offset < last; offset++) {
+			if (fDescriptions[offset].equals(description))
+				return false;
+		}
+		if (fSize == fStamps.length) {
+			final long[] stamps= new long[fSize * 2];
+			final String[] descriptions= new String[fSize * 2];
+			System.arraycopy(fStamps, 0, stamps, 0, fSize);
+			System.arraycopy(fDescriptions, 0, descriptions, 0, fSize);
+			fStamps= stamps;
+			fDescriptions= descriptions;
+		}
+		System.arraycopy(fStamps, last, fStamps, last + 1, fSize - last);
+		System.arraycopy(fDescriptions, last, fDescriptions, last + 1, fSize - last);
+		fStamps[last]= stamp;
+		fDescriptions[last]= description;
+		fSize++;
+		return true;
+	}
+
+	/**
+	 * Returns whether the specified index file has been written by the
+	 * refactoring history manager.
+	 *
+	 * @param file
+	 *            the refactoring index file
+	 * @return <code>true</code> if the file has last been written by the
+	 *         refactoring history manager, <code>false</code> otherwise
+	 */
+	private synchronized boolean isWrittenFile(final IFileStore file) {
+		final Long stamp= (Long) fWrittenFiles.get(file);
+		return stamp != null && stamp.longValue() == file.fetchInfo().getLastModified();
+	}
+
+	/**
+	 * Reads the index, either from the index file or from the index files of
+	 * the history location.
+	 *
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while reading the index
+	 */
+	private void load(final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, 100);
+			fStamps= new long[INITIAL_CAPACITY];
+			fDescriptions= new String[INITIAL_CAPACITY];
+			fSize= 0;
+			fGarbage= 0;
+			fFileStamps.clear();
+			final IFileStore file= fStore.getChild(NAME_INDEX_FILE);
+			if (fPersistent && file.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists()) {
+				try {
+					int result= readIndex(file, new SubProgressMonitor(monitor, 60, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+					if (result != READ_OUTDATED && !fFileStamps.equals(getFileStamps(new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL))))
+						result= READ_OUTDATED;
+					if (result != READ_OUTDATED) {
+						fLoaded= true;
+						if (result == READ_TRUNCATED)
+							writeIndex(new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+						else
+							scheduleCompaction();
+						return;
+					}
+				} catch (IOException exception) {
+					RefactoringCorePlugin.log(exception);
+				}
+				fStamps= new long[INITIAL_CAPACITY];
+				fDescriptions= new String[INITIAL_CAPACITY];
+				fSize= 0;
+				fGarbage= 0;
+			}
+			fFileStamps.clear();
+			if (fPersistent)
+				fFileStamps.putAll(getFileStamps(new NullProgressMonitor()));
+			final Set set= new HashSet();
+			RefactoringHistoryManager.readRefactoringDescriptorProxies(fStore, null, set, 0, Long.MAX_VALUE, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+			final RefactoringDescriptorProxy[] proxies= (RefactoringDescriptorProxy[]) set.toArray(new RefactoringDescriptorProxy[set.size()]);
+			RefactoringHistoryManager.sortRefactoringDescriptorsAscending(proxies);
+			for (int index= 0; index < proxies.length; index++)
+				insert(proxies[index].getTimeStamp(), proxies[index].getDescription());
+			fLoaded= true;
+			if (fPersistent)
+				writeIndex(new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Reads refactoring descriptor proxies from the index.
+	 * <p>
+	 * The refactoring descriptor proxies are returned in ascending order of
+	 * their time stamps.
+	 * </p>
+	 *
+	 * @param project
+	 *            the name of the project, or <code>null</code> for the
+	 *            workspace
+	 * @param collection
+	 *            the collection where to add the proxies
+	 * @param start
+	 *            the start time stamp, inclusive
+	 * @param end
+	 *            the end time stamp, inclusive
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while reading the index
+	 */
+	synchronized void readRefactoringDescriptorProxies(final String project, final Collection collection, final long start, final long end, final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, 100);
+			if (fLoaded && fPersistent && !fStore.getChild(NAME_INDEX_FILE).fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
+				discard();
+			if (!fLoaded)
+				load(new SubProgressMonitor(monitor, 80, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+			final int last= findLast(end);
+			for (int offset= findFirst(start); offset < last; offset++)
+				collection.add(new DefaultRefactoringDescriptorProxy(fDescriptions[offset], project, fStamps[offset]));
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Reads the index file.
+	 * <p>
+	 * A truncated record at the end of the file, as left by an interrupted
+	 * write, is skipped.
+	 * </p>
+	 *
+	 * @param file
+	 *            the index file
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @return {@link #READ_COMPLETE}, {@link #READ_TRUNCATED} if the index
+	 *         file ends with a truncated record, or {@link #READ_OUTDATED} if
+	 *         the index file has been written by another version
+	 * @throws CoreException
+	 *             if an error occurs while opening the index file
+	 * @throws IOException
+	 *             if the index file has an illegal format
+	 */
+	private int readIndex(final IFileStore file, final IProgressMonitor monitor) throws CoreException, IOException {
+		DataInputStream input= null;
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, 1);
+			input= new DataInputStream(new BufferedInputStream(file.openInputStream(EFS.NONE, new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL))));
+			if (input.readInt() != INDEX_MAGIC)
+				throw new IOException(file.toString());
+			if (input.readInt() != INDEX_VERSION)
+				return READ_OUTDATED;
+			while (true) {
+				final int kind= input.read();
+				if (kind < 0)
+					return READ_COMPLETE;
+				try {
+					if (kind == RECORD_STAMP) {
+						final long length= input.readLong();
+						final long modified= input.readLong();
+						final String path= readString(input);
+						final Object previous= length < 0 ? fFileStamps.remove(path) : fFileStamps.put(path, new FileStamp(length, modified));
+						if (previous != null)
+							fGarbage++;
+						if (length < 0)
+							fGarbage++;
+						continue;
+					}
+					final long stamp= input.readLong();
+					final String description= readString(input);
+					if (kind == RECORD_ADDED) {
+						if (!insert(stamp, description))
+							fGarbage++;
+					} else if (kind == RECORD_REMOVED) {
+						fGarbage++;
+						if (remove(stamp, description))
+							fGarbage++;
+					} else
+						throw new IOException(file.toString());
+				} catch (EOFException exception) {
+					return READ_TRUNCATED;
+				}
+			}
+		} finally {
+			monitor.done();
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException exception) {
+					// Do nothing
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+	 *
+	 * @param input
+	 *            the input stream
+	 * @return the string
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static String readString(final DataInputStream input) throws IOException {
+		final byte[] bytes= new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, IRefactoringSerializationConstants.OUTPUT_ENCODING);
+	}
+
+	/**
+	 * Returns the stamps of the refactoring index files in the history
+	 * location.
+	 *
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @return the stamps (element type: <code>&lt;String, FileStamp&gt;</code>,
+	 *         keyed by the path relative to the history location)
+	 * @throws CoreException
+	 *             if an error occurs while listing the history location
+	 */
+	private Map getFileStamps(final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, 1);
+			final Map stamps= new HashMap();
+			collectFileStamps(fStore, "", stamps); //$NON-NLS-1$
+			return stamps;
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Collects the stamps of the refactoring index files below the specified
+	 * folder.
+	 *
+	 * @param folder
+	 *            the folder
+	 * @param path
+	 *            the path of the folder relative to the history location,
+	 *            ending with a separator unless empty
+	 * @param stamps
+	 *            the map where to add the stamps
+	 * @throws CoreException
+	 *             if an error occurs while listing the folder
+	 */
+	private static void collectFileStamps(final IFileStore folder, final String path, final Map stamps) throws CoreException {
+		final IFileInfo[] infos= folder.childInfos(EFS.NONE, null);
+		for (int index= 0; index < infos.length; index++) {
+			final String name= infos[index].getName();
+			if (infos[index].isDirectory())
+				collectFileStamps(folder.getChild(name), path + name + '/', stamps);
+			else if (name.equals(RefactoringHistoryService.NAME_INDEX_FILE))
+				stamps.put(path + name, FileStamp.create(infos[index]));
+		}
+	}
+
+	/**
+	 * Returns the path of the specified file relative to the history location.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the relative path, or <code>null</code> if the file is not in
+	 *         the history location
+	 */
+	private String getRelativePath(final IFileStore file) {
+		final StringBuffer buffer= new StringBuffer(file.getName());
+		for (IFileStore parent= file.getParent(); parent != null; parent= parent.getParent()) {
+			if (parent.equals(fStore))
+				return buffer.toString();
+			buffer.insert(0, '/');
+			buffer.insert(0, parent.getName());
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a refactoring from the index held in memory.
+	 *
+	 * @param stamp
+	 *            the time stamp of the refactoring
+	 * @param description
+	 *            the description of the refactoring
+	 * @return <code>true</code> if the refactoring has been removed,
+	 *         <code>false</code> if it is not contained in the index
+	 */
+	private boolean remove(final long stamp, final String description) {
+		final int last= findLast(stamp);
+		for (int offset= findFirst(stamp); offset < last; offset++) {
+			if (fDescriptions[offset].equals(description)) {
+				System.arraycopy(fStamps, offset + 1, fStamps, offset, fSize - offset - 1);
+				System.arraycopy(fDescriptions, offset + 1, fDescriptions, offset, fSize - offset - 1);
+				fSize--;
+				fDescriptions[fSize]= null;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Schedules the compaction of the index file if it contains more garbage
+	 * than refactorings.
+	 */
+	private void scheduleCompaction() {
+		if (fPersistent && fGarbage >= MIN_GARBAGE && fGarbage > fSize) {
+			if (fJob == null)
+				fJob= new CompactionJob();
+			fJob.schedule();
+		}
+	}
+
+	/**
+	 * Updates the index after the specified index file of the history
+	 * location has been written.
+	 *
+	 * @param file
+	 *            the refactoring index file
+	 * @param kind
+	 *            the kind of the update
+	 * @param proxies
+	 *            the refactoring descriptor proxies of the update
+	 */
+	private void updateIndex(final IFileStore file, final int kind, final RefactoringDescriptorProxy[] proxies) {
+		try {
+			if (fPersistent) {
+				final String path= getRelativePath(file);
+				final FileStamp stamp= FileStamp.create(file.fetchInfo());
+				if (fLoaded && path != null) {
+					final Object previous= stamp != null ? fFileStamps.put(path, stamp) : fFileStamps.remove(path);
+					if (previous != null)
+						fGarbage++;
+				}
+				if (fStore.getChild(NAME_INDEX_FILE).fetchInfo().exists()) {
+					appendRecords(kind, proxies, path, stamp);
+					fGarbage+= kind == RECORD_REMOVED ? 2 * proxies.length : 0;
+					if (fLoaded)
+						scheduleCompaction();
+				} else if (fLoaded)
+					writeIndex(null);
+			} else if (fLoaded)
+				fWrittenFiles.put(file, new Long(file.fetchInfo().getLastModified()));
+		} catch (CoreException exception) {
+			RefactoringCorePlugin.log(exception);
+			discard();
+			try {
+				fStore.getChild(NAME_INDEX_FILE).delete(EFS.NONE, null);
+			} catch (CoreException inner) {
+				// Do nothing
+			}
+		}
+	}
+
+	/**
+	 * Writes the index held in memory to the index file, replacing any
+	 * existing one.
+	 *
+	 * @param monitor
+	 *            the progress monitor to use, or <code>null</code>
+	 * @throws CoreException
+	 *             if an error occurs while writing the index file
+	 */
+	private void writeIndex(final IProgressMonitor monitor) throws CoreException {
+		if (!fStore.fetchInfo().exists())
+			return;
+		final IFileStore temporary= fStore.getChild(NAME_TEMPORARY_FILE);
+		DataOutputStream output= null;
+		try {
+			output= new DataOutputStream(new BufferedOutputStream(temporary.openOutputStream(EFS.NONE, monitor)));
+			output.writeInt(INDEX_MAGIC);
+			output.writeInt(INDEX_VERSION);
+			for (int index= 0; index < fSize; index++)
+				writeRecord(output, RECORD_ADDED, fStamps[index], fDescriptions[index]);
+			for (final Iterator iterator= fFileStamps.entrySet().iterator(); iterator.hasNext();) {
+				final Map.Entry entry= (Map.Entry) iterator.next();
+				writeStampRecord(output, (String) entry.getKey(), (FileStamp) entry.getValue());
+			}
+			output.close();
+			output= null;
+			temporary.move(fStore.getChild(NAME_INDEX_FILE), EFS.OVERWRITE, monitor);
+			fGarbage= 0;
+		} catch (IOException exception) {
+			throw createCoreException(exception);
+		} finally {
+			if (output != null) {
+				try {
+					output.close();
+				} catch (IOException exception) {
+					// Do nothing
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a record to the specified output stream.
+	 *
+	 * @param output
+	 *            the output stream
+	 * @param kind
+	 *            the kind of the record
+	 * @param stamp
+	 *            the time stamp of the refactoring
+	 * @param description
+	 *            the description of the refactoring
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static void writeRecord(final DataOutputStream output, final int kind, final long stamp, final String description) throws IOException {
+		output.writeByte(kind);
+		output.writeLong(stamp);
+		writeString(output, description);
+	}
+
+	/**
+	 * Writes the stamp of a refactoring index file to the specified output
+	 * stream.
+	 *
+	 * @param output
+	 *            the output stream
+	 * @param path
+	 *            the path of the refactoring index file relative to the
+	 *            history location, or <code>null</code> to write nothing
+	 * @param stamp
+	 *            the stamp of the file, or <code>null</code> if the file
+	 *            does not exist
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static void writeStampRecord(final DataOutputStream output, final String path, final FileStamp stamp) throws IOException {
+		if (path == null)
+			return;
+		output.writeByte(RECORD_STAMP);
+		output.writeLong(stamp != null ? stamp.fLength : -1);
+		output.writeLong(stamp != null ? stamp.fModified : 0);
+		writeString(output, path);
+	}
+
+	/**
+	 * Writes a string to the specified output stream.
+	 *
+	 * @param output
+	 *            the output stream
+	 * @param string
+	 *            the string
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static void writeString(final DataOutputStream output, final String string) throws IOException {
+		final byte[] bytes= string.getBytes(IRefactoringSerializationConstants.OUTPUT_ENCODING);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
@@ -15,7 +15,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -47,6 +46,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
@@ -79,6 +79,7 @@ import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringPreferenceConstants;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringSessionReader;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringSessionReader.IRefactoringDescriptorHandler;
 import org.eclipse.ltk.internal.core.refactoring.UndoableOperation2ChangeAdapter;
 
 /**
@@ -261,6 +262,9 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 							destination.mkdir(EFS.NONE, new SubProgressMonitor(monitor, 20));
 							source.copy(destination, EFS.OVERWRITE, new SubProgressMonitor(monitor, 20));
 							source.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
+							destination.getChild(RefactoringHistoryIndex.NAME_INDEX_FILE).delete(EFS.NONE, null);
+							RefactoringHistoryIndex.invalidate(source);
+							RefactoringHistoryIndex.invalidate(destination);
 						}
 					} else {
 						final IFileStore source= EFS.getStore(uri).getChild(NAME_HISTORY_FOLDER);
@@ -271,6 +275,8 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 							destination.mkdir(EFS.NONE, new SubProgressMonitor(monitor, 20));
 							source.copy(destination, EFS.OVERWRITE, new SubProgressMonitor(monitor, 20));
 							source.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
+							RefactoringHistoryIndex.invalidate(source);
+							RefactoringHistoryIndex.invalidate(destination);
 						}
 					}
 				} finally {
@@ -534,6 +540,7 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 			if (name.equals(NAME_WORKSPACE_PROJECT)) {
 				final IFileStore metaStore= stateStore.getChild(NAME_HISTORY_FOLDER).getChild(name);
 				metaStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 100));
+				RefactoringHistoryIndex.invalidate(metaStore);
 			} else {
 				final URI uri= project.getLocationURI();
 				if (uri != null && project.isAccessible()) {
@@ -542,6 +549,8 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 						metaStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
 						final IFileStore projectStore= EFS.getStore(uri).getChild(NAME_HISTORY_FOLDER);
 						projectStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
+						RefactoringHistoryIndex.invalidate(metaStore);
+						RefactoringHistoryIndex.invalidate(projectStore);
 					} finally {
 						project.refreshLocal(IResource.DEPTH_INFINITE, new SubProgressMonitor(monitor, 60));
 					}
@@ -762,25 +771,59 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 	 * {@inheritDoc}
 	 */
 	public RefactoringHistory readRefactoringHistory(final InputStream stream, final int flags) throws CoreException {
+		final List list= new ArrayList();
+		readRefactoringDescriptors(stream, flags, new IRefactoringDescriptorHandler() {
+
+			public final void handleDescriptor(final RefactoringDescriptor descriptor) {
+				list.add(new RefactoringDescriptorProxyAdapter(descriptor));
+			}
+		}, null);
+		return new RefactoringHistoryImplementation((RefactoringDescriptorProxy[]) list.toArray(new RefactoringDescriptorProxy[list.size()]));
+	}
+
+	/**
+	 * Reads the refactoring descriptors of a refactoring script from the input
+	 * stream and passes them to the specified handler one at a time.
+	 * <p>
+	 * The refactoring descriptors are not retained, so that refactoring
+	 * scripts of any size can be processed in constant memory.
+	 * </p>
+	 * <p>
+	 * Note that clients which present or perform a refactoring history, such
+	 * as the apply refactoring script wizard or
+	 * {@link org.eclipse.ltk.core.refactoring.PerformRefactoringHistoryOperation},
+	 * still read the script with
+	 * {@link #readRefactoringHistory(InputStream, int)} and hold all of its
+	 * descriptors.
+	 * </p>
+	 *
+	 * @param stream
+	 *            a <code>UTF-8</code> input stream where to read the
+	 *            refactoring script from
+	 * @param flags
+	 *            the refactoring descriptor flags which must be present in
+	 *            order to pass a descriptor to the handler, or
+	 *            <code>RefactoringDescriptor#NONE</code>
+	 * @param handler
+	 *            the handler of the refactoring descriptors
+	 * @param monitor
+	 *            the progress monitor to use, or <code>null</code>
+	 * @throws CoreException
+	 *             if an error occurs while reading the refactoring script, or
+	 *             if the handler fails to handle a refactoring descriptor
+	 */
+	public void readRefactoringDescriptors(final InputStream stream, final int flags, final IRefactoringDescriptorHandler handler, final IProgressMonitor monitor) throws CoreException {
 		Assert.isNotNull(stream);
+		Assert.isNotNull(handler);
 		Assert.isTrue(flags >= RefactoringDescriptor.NONE);
-		final List list= new ArrayList();
-		final RefactoringSessionDescriptor descriptor= new RefactoringSessionReader(false, null).readSession(new InputSource(stream));
-		if (descriptor != null) {
-			final RefactoringDescriptor[] descriptors= descriptor.getRefactorings();
-			if (flags > RefactoringDescriptor.NONE) {
-				for (int index= 0; index < descriptors.length; index++) {
-					final int current= descriptors[index].getFlags();
-					if ((current | flags) == current)
-						list.add(descriptors[index]);
-				}
-			} else
-				list.addAll(Arrays.asList(descriptors));
-		}
-		final RefactoringDescriptorProxy[] proxies= new RefactoringDescriptorProxy[list.size()];
-		for (int index= 0; index < list.size(); index++)
-			proxies[index]= new RefactoringDescriptorProxyAdapter((RefactoringDescriptor) list.get(index));
-		return new RefactoringHistoryImplementation(proxies);
+		new RefactoringSessionReader(false, null).readSession(new InputSource(stream), new IRefactoringDescriptorHandler() {
+
+			public final void handleDescriptor(final RefactoringDescriptor descriptor) throws CoreException {
+				final int current= descriptor.getFlags();
+				if ((current | flags) == current)
+					handler.handleDescriptor(descriptor);
+			}
+		}, monitor);
 	}
 
 	/**
@@ -898,6 +941,8 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 				if (newStore.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
 					newStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
 				oldStore.move(newStore, EFS.OVERWRITE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				RefactoringHistoryIndex.invalidate(oldStore);
+				RefactoringHistoryIndex.invalidate(newStore);
 			}
 		} catch (CoreException exception) {
 			RefactoringCorePlugin.log(exception);
@@ -929,6 +974,19 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 						}
 					}
 				}
+				for (int index= 0; index < deltas.length; index++) {
+					final IResourceDelta folderDelta= deltas[index].findMember(new Path(NAME_HISTORY_FOLDER));
+					if (folderDelta != null) {
+						final URI uri= deltas[index].getResource().getLocationURI();
+						if (uri != null) {
+							try {
+								RefactoringHistoryIndex.historyChanged(EFS.getStore(uri).getChild(NAME_HISTORY_FOLDER), folderDelta);
+							} catch (CoreException exception) {
+								RefactoringCorePlugin.log(exception);
+							}
+						}
+					}
+				}
 			}
 		}
 	}
@@ -30,6 +30,10 @@ import org.eclipse.ltk.ui.refactoring.history.RefactoringHistoryWizard;
 
 /**
  * Wizard to apply a refactoring script.
+ * <p>
+ * The refactoring script is read into a refactoring history as a whole, since
+ * the wizard presents all refactorings of the script before performing them.
+ * </p>
  *
  * @since 3.2
  */
@@ -154,6 +158,13 @@ public final class ApplyRefactoringScriptWizard extends RefactoringHistoryWizard
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	protected boolean isCheckConditionsInParallel() {
+		return true;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
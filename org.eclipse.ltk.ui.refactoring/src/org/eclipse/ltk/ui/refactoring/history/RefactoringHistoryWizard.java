@@ -963,6 +963,37 @@ public class RefactoringHistoryWizard extends Wizard {
 		return new RefactoringStatus();
 	}
 
+	/**
+	 * Hook method which determines whether the conditions of refactorings on
+	 * independent projects are checked in parallel when the remaining
+	 * refactorings are performed on finish.
+	 * <p>
+	 * If enabled,
+	 * {@link #createRefactoringContext(RefactoringDescriptor, RefactoringStatus, IProgressMonitor)}
+	 * is called from background threads and possibly before preceding
+	 * refactorings have been performed.
+	 * {@link #aboutToPerformRefactoring(Refactoring, RefactoringDescriptor, IProgressMonitor)}
+	 * is still called in the thread performing the refactorings, right before
+	 * the refactoring is performed, but after its conditions have been
+	 * checked. The default implementation returns <code>false</code>.
+	 * </p>
+	 * <p>
+	 * Subclasses may reimplement this method to return <code>true</code> if
+	 * their hook methods do not depend on the order in which refactorings are
+	 * performed.
+	 * </p>
+	 *
+	 * @return <code>true</code> to check conditions in parallel,
+	 *         <code>false</code> otherwise
+	 *
+	 * @see PerformRefactoringHistoryOperation#setCheckConditionsInParallel(boolean)
+	 *
+	 * @since 3.7
+	 */
+	protected boolean isCheckConditionsInParallel() {
+		return false;
+	}
+
 	/**
 	 * Is the current refactoring the last one?
 	 *
@@ -1115,6 +1146,7 @@ public class RefactoringHistoryWizard extends Wizard {
 					}
 				}
 			};
+			operation.setCheckConditionsInParallel(isCheckConditionsInParallel());
 			try {
 				wizard.run(false, false, new WorkbenchRunnableAdapter(operation, ResourcesPlugin.getWorkspace().getRoot()));
 			} catch (InvocationTargetException exception) {